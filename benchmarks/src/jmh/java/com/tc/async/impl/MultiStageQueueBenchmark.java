@@ -0,0 +1,140 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Source;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Producers adding to a multi-threaded stage while one consumer per source queue drains it, which is the shape of
+ * the server's request processor stage under load.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MultiStageQueueBenchmark {
+
+  @Param({"4", "16"})
+  private int queueCount;
+
+  @Param({"1024"})
+  private int queueSize;
+
+  private MultiStageQueueImpl<Context> queue;
+  private Thread[] consumers;
+  private volatile boolean running;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    queue = new MultiStageQueueImpl<>(queueCount, new QueueFactory(), Context.class, (event) -> () -> {},
+        new DefaultLoggerProvider(), "benchmark", queueSize);
+    running = true;
+    consumers = new Thread[queueCount];
+    for (int x = 0; x < queueCount; x++) {
+      Source source = queue.getSource(x);
+      consumers[x] = new Thread(() -> {
+        try {
+          while (running) {
+            Event event = source.poll(100);
+            if (event != null) {
+              event.call();
+            }
+          }
+        } catch (Exception e) {
+          // benchmark is over
+        }
+      }, "benchmark_consumer_" + x);
+      consumers[x].setDaemon(true);
+      consumers[x].start();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    running = false;
+    queue.close();
+    for (Thread consumer : consumers) {
+      consumer.join();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Producer {
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    Context keyed;
+    Context unkeyed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      keyed = new Context(IDS.incrementAndGet());
+      unkeyed = new Context(null);
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void addKeyed(Producer producer) {
+    queue.addToSink(producer.keyed);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void addUnkeyed(Producer producer) {
+    queue.addToSink(producer.unkeyed);
+  }
+
+  static class Context implements MultiThreadedEventContext {
+    private final Object key;
+
+    Context(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public Object getSchedulingKey() {
+      return key;
+    }
+
+    @Override
+    public boolean flush() {
+      return false;
+    }
+  }
+}
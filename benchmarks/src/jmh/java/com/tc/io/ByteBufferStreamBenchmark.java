@@ -0,0 +1,101 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.io;
+
+import com.tc.bytes.TCReference;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encode and decode of a message shaped like an invoke: a few header fields, a string and a payload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ByteBufferStreamBenchmark {
+
+  @Param({"64", "4096", "65536"})
+  private int payloadSize;
+
+  private byte[] payload;
+  private TCByteBufferOutputStream encoded;
+  private TCReference encodedBuffers;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    payload = new byte[payloadSize];
+    for (int x = 0; x < payload.length; x++) {
+      payload[x] = (byte) x;
+    }
+    encoded = new TCByteBufferOutputStream();
+    write(encoded, payload);
+    encodedBuffers = encoded.accessBuffers();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    encodedBuffers.close();
+  }
+
+  @Benchmark
+  public int encode() {
+    try (TCByteBufferOutputStream out = new TCByteBufferOutputStream()) {
+      write(out, payload);
+      return out.getBytesWritten();
+    }
+  }
+
+  @Benchmark
+  public void decode(Blackhole bh) throws IOException {
+    TCByteBufferInputStream in = new TCByteBufferInputStream(encodedBuffers);
+    bh.consume(in.readLong());
+    bh.consume(in.readInt());
+    bh.consume(in.readBoolean());
+    bh.consume(in.readString());
+    byte[] data = new byte[in.readInt()];
+    in.readFully(data);
+    bh.consume(data);
+    in.close();
+  }
+
+  private static void write(TCByteBufferOutputStream out, byte[] payload) {
+    out.writeLong(42L);
+    out.writeInt(7);
+    out.writeBoolean(true);
+    out.writeString("com.example.ClusteredMap:benchmark");
+    out.writeInt(payload.length);
+    out.write(payload);
+  }
+}
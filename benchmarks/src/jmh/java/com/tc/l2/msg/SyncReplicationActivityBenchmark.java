@@ -0,0 +1,105 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.l2.msg;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.msg.SyncReplicationActivity.ActivityType;
+import com.tc.net.ClientID;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityID;
+import com.tc.object.FetchID;
+import com.tc.object.tx.TransactionID;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of the activities the active replicates to its passives: invokes in steady state and entity payloads
+ * during passive sync.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SyncReplicationActivityBenchmark {
+
+  @Param({"INVOKE_ACTION", "SYNC_ENTITY_CONCURRENCY_PAYLOAD"})
+  private ActivityType type;
+
+  @Param({"128", "8192"})
+  private int payloadSize;
+
+  private SyncReplicationActivity activity;
+  private TCReference serialized;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    byte[] payload = new byte[payloadSize];
+    for (int x = 0; x < payload.length; x++) {
+      payload[x] = (byte) x;
+    }
+    FetchID fetch = new FetchID(1L);
+    if (type == ActivityType.INVOKE_ACTION) {
+      activity = SyncReplicationActivity.createInvokeMessage(fetch, new ClientID(1L), new ClientInstanceID(1L),
+          new TransactionID(100L), new TransactionID(90L), type, TCByteBufferFactory.wrap(payload), 1, "benchmark");
+    } else {
+      activity = SyncReplicationActivity.createPayloadMessage(new EntityID("com.example.ClusteredMap", "benchmark"),
+          1L, fetch, 1, TCByteBufferFactory.wrap(payload), "benchmark");
+    }
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    activity.serializeTo(out);
+    serialized = out.accessBuffers();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    serialized.close();
+  }
+
+  @Benchmark
+  public int serialize() {
+    try (TCByteBufferOutputStream out = new TCByteBufferOutputStream()) {
+      activity.serializeTo(out);
+      return out.getBytesWritten();
+    }
+  }
+
+  @Benchmark
+  public SyncReplicationActivity deserialize() throws IOException {
+    try (TCByteBufferInputStream in = new TCByteBufferInputStream(serialized)) {
+      return SyncReplicationActivity.deserializeFrom(in);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.net.protocol.transport;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checksum of the wire header, computed once per message sent and verified once per message received.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class WireProtocolHeaderBenchmark {
+
+  private WireProtocolHeader header;
+  private int length;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    header = new WireProtocolHeader();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_TCM);
+    header.setSourceAddress(new byte[] {10, 0, 0, 1});
+    header.setDestinationAddress(new byte[] {10, 0, 0, 2});
+    header.setSourcePort(41000);
+    header.setDestinationPort(9410);
+    header.setMessageCount(1);
+    header.finalizeHeader(4096);
+  }
+
+  @Benchmark
+  public long compute() {
+    // vary the length so the checksum is not computed over identical bytes every time
+    header.finalizeHeader(4096 + (length++ & 0xFF));
+    return header.getChecksum();
+  }
+
+  @Benchmark
+  public boolean validate() {
+    return header.isChecksumValid();
+  }
+}
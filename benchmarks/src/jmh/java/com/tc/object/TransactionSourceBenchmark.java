@@ -0,0 +1,81 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.object;
+
+import com.tc.object.tx.TransactionID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Retiring transaction ids on the client.  A window of ids is kept outstanding and retired slightly out of order so
+ * the oldest id advances the way it does when completions arrive from several server threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TransactionSourceBenchmark {
+
+  @Param({"1", "64"})
+  private int outstanding;
+
+  private TransactionSource source;
+  private TransactionID[] window;
+  private int next;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    source = new TransactionSource();
+    window = new TransactionID[outstanding];
+    for (int x = 0; x < outstanding; x++) {
+      window[x] = source.create();
+    }
+    next = 0;
+  }
+
+  @Benchmark
+  public boolean retire() {
+    // retire in a stride that is coprime with the window size so the order is shuffled but every slot is hit
+    int slot = next;
+    next = (next + 7) % outstanding;
+    TransactionID retired = window[slot];
+    window[slot] = source.create();
+    return source.retire(retired);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean retireContended() {
+    TransactionID txn = source.create();
+    return source.retire(txn);
+  }
+}
@@ -23,6 +23,7 @@ package com.tc.async.api;
 public class DirectExecutionMode {
   
   private static final ThreadLocal<Thread> ACTIVATED = new ThreadLocal<>();
+  private static final ThreadLocal<Thread> KEYED = new ThreadLocal<>();
 
   public static void activate(boolean activate) {
     if (activate) {
@@ -35,4 +36,20 @@ public class DirectExecutionMode {
   public static boolean isActivated() {
     return ACTIVATED.get() == Thread.currentThread();
   }  
+
+  /**
+   * Keyed direct execution runs an event inline when nothing is queued or running for its own scheduling key,
+   * rather than requiring the whole stage to be idle.  Single threaded stages still require the stage to be idle.
+   */
+  public static void activateKeyed(boolean activate) {
+    if (activate) {
+      KEYED.set(Thread.currentThread());
+    } else {
+      KEYED.remove();
+    }
+  }
+
+  public static boolean isKeyedActivated() {
+    return KEYED.get() == Thread.currentThread();
+  }
 }
@@ -46,4 +46,9 @@ public interface Stage<EC> {
   public boolean isStarted();
   
   public Map<String, ?> getState();
+  /**
+   * @return queue wait and service time percentiles of the sampled events handled by this stage, empty unless
+   *  seda.&lt;stage&gt;.latency.sampling is set
+   */
+  public Map<String, ?> getLatency();
 }
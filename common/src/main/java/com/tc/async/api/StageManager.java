@@ -22,6 +22,7 @@ import com.tc.stats.Stats;
 import com.tc.text.PrettyPrintable;
 
 import java.util.List;
+import java.util.Map;
 
 
 public interface StageManager extends PrettyPrintable {
@@ -42,6 +43,10 @@ public interface StageManager extends PrettyPrintable {
   public void setLoggerProvider(TCLoggerProvider loggerProvider);
 
   public Stats[] getStats();
+  /**
+   * @return the latency percentiles of each started stage keyed by stage name
+   */
+  public Map<String, ?> getLatencies();
   
   public int getDefaultStageMaximumCapacity();
 }
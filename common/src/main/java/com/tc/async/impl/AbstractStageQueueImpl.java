@@ -56,6 +56,10 @@ public abstract class AbstractStageQueueImpl<EC> implements StageQueue<EC> {
     extraStats = track;
   }
   
+  final boolean canRunDirect() {
+    return creator instanceof DirectEventCreator;
+  }
+
   final Event createEvent(EC context) {
     return (extraStats) ? this.monitoring.createEvent(context) : creator.createEvent(context);
   }
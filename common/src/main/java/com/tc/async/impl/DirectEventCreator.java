@@ -32,12 +32,19 @@ import org.slf4j.LoggerFactory;
 public class DirectEventCreator<EC> implements EventCreator<EC> {
   private final EventCreator<EC> base;
   private final Supplier<Boolean> isIdle;
+  // true when the stage has a queue per scheduling key, keyed execution is then decided by the queue
+  private final boolean keyedQueues;
   private volatile boolean directInflight = false;
   private static final Logger LOGGER = LoggerFactory.getLogger(DirectEventCreator.class);
 
   public DirectEventCreator(EventCreator<EC> base, Supplier<Boolean> isIdle) {
+    this(base, isIdle, false);
+  }
+
+  public DirectEventCreator(EventCreator<EC> base, Supplier<Boolean> isIdle, boolean keyedQueues) {
     this.base = base;
     this.isIdle = isIdle;
+    this.keyedQueues = keyedQueues;
     Assert.assertNotNull(this.isIdle);
   }
 
@@ -65,7 +72,7 @@ public class DirectEventCreator<EC> implements EventCreator<EC> {
   
   private boolean isSingleThreaded() {
     if (LOGGER.isDebugEnabled()) {
-      if (DirectExecutionMode.isActivated()) {
+      if (isActivated()) {
         if (!this.isIdle.get()) {
           return false;
         } else {
@@ -74,8 +81,12 @@ public class DirectEventCreator<EC> implements EventCreator<EC> {
       }
       return false;
     } else {
-      return DirectExecutionMode.isActivated() && this.isIdle.get();
+      return isActivated() && this.isIdle.get();
     }
   }
+
+  private boolean isActivated() {
+    return DirectExecutionMode.isActivated() || (!keyedQueues && DirectExecutionMode.isKeyedActivated());
+  }
   
 }
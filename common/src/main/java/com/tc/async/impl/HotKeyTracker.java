@@ -0,0 +1,94 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.async.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the service time of a keyed stage by scheduling key so that a key which monopolizes one of the
+ * stage's threads can be spotted.  Keys are hashed onto a fixed set of slots the same way the stage spreads them
+ * over its queues, each slot remembering the last key seen as a sample, so colliding keys share a slot and the
+ * tracker never grows.
+ */
+class HotKeyTracker {
+  private static final int SLOTS = 64;
+  private static final int REPORTED = 5;
+  // a slot taking more than this share of the stage's service time is flagged as hot
+  private static final double HOT_SHARE = 0.5;
+
+  private final Slot[] slots = new Slot[SLOTS];
+  private final LongAdder total = new LongAdder();
+
+  HotKeyTracker() {
+    for (int x = 0; x < SLOTS; x++) {
+      slots[x] = new Slot();
+    }
+  }
+
+  void record(Object key, long serviceNanos) {
+    Slot slot = slots[Math.floorMod(key.hashCode(), SLOTS)];
+    slot.sample = key;
+    slot.count.increment();
+    slot.time.add(serviceNanos);
+    total.add(serviceNanos);
+  }
+
+  Map<String, Object> getStateMap() {
+    long all = total.sum();
+    // snapshot the times first, sorting on live counters could see them change mid sort
+    long[][] times = new long[SLOTS][];
+    for (int x = 0; x < SLOTS; x++) {
+      times[x] = new long[] {slots[x].time.sum(), x};
+    }
+    Arrays.sort(times, Comparator.comparingLong((long[] t) -> t[0]).reversed());
+    List<Object> keys = new ArrayList<>(REPORTED);
+    boolean hot = false;
+    for (int x = 0; x < REPORTED; x++) {
+      long time = times[x][0];
+      Slot slot = slots[(int) times[x][1]];
+      if (time == 0 || all == 0) {
+        break;
+      }
+      double share = (double) time / all;
+      hot |= share > HOT_SHARE;
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("key", String.valueOf(slot.sample));
+      entry.put("count", slot.count.sum());
+      entry.put("serviceMicros", TimeUnit.NANOSECONDS.toMicros(time));
+      entry.put("share", Math.round(share * 1000) / 10.0);
+      keys.add(entry);
+    }
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("hot", hot);
+    map.put("keys", keys);
+    return map;
+  }
+
+  private static class Slot {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder time = new LongAdder();
+    private volatile Object sample;
+  }
+}
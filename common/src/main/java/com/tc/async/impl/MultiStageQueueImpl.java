@@ -17,17 +17,28 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.DirectExecutionMode;
 import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.async.api.Source;
 import com.tc.logging.TCLoggerProvider;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This StageQueueImpl represents the sink and gives a handle to the source. We are internally just using a queue
@@ -42,9 +53,9 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
   static final ShortestFindStrategy SHORTEST_FIND_STRATEGY;
 
   static {
-    ShortestFindStrategy strat = ShortestFindStrategy.PARTITION;
+    ShortestFindStrategy strat = ShortestFindStrategy.OCCUPANCY;
     try {
-      strat = chooseStrategy(ShortestFindStrategy.PARTITION);
+      strat = chooseStrategy(ShortestFindStrategy.OCCUPANCY);
     } catch (Throwable t) {
     }
     SHORTEST_FIND_STRATEGY = strat;
@@ -53,7 +64,11 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
 
   static enum ShortestFindStrategy {
     BRUTE,
-    PARTITION
+    PARTITION,
+    /**
+     * use the bitmap of queues that workers reported as drained, falling back to round robin
+     */
+    OCCUPANCY
   }
 
   private final boolean moduloAnd;
@@ -62,7 +77,20 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
   final int PARTITION_MAX_MASK;
   private final MultiSourceQueueImpl[] sourceQueues;
   private volatile int fcheck = 0;  // used to start the shortest queue search
+  private final AtomicLongArray idleQueues;  // one bit per queue, set when its worker drained it
   AtomicInteger partitionHand =new AtomicInteger(0);
+  private final boolean canRunKeyed;
+  private final LongAdder keyedDirect = new LongAdder();
+  // unkeyed events any worker may run, null unless work stealing is enabled for the stage.  Each one is wrapped in
+  // a StealToken also put on the shortest queue so it runs there if no idle worker takes it first
+  private final ConcurrentLinkedQueue<StealToken> unkeyed;
+  // idle workers stealing or running a stolen event, counted before the event is taken
+  private final AtomicInteger stolenRunning = new AtomicInteger();
+  // flushes parked until the stolen events in hand finish
+  private final Queue<Thread> stolenWaiters = new ConcurrentLinkedQueue<>();
+  // stealing stops while a flush passes through the queues so the flush only has to wait out the events in hand
+  private final AtomicInteger flushing = new AtomicInteger();
+  private final LongAdder stolen = new LongAdder();
 
   /**
    * The Constructor.
@@ -91,7 +119,14 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     }
     PARTITION_MAX_MASK = (1 << (31 - PARTITION_SHIFT)) - 1;
     this.sourceQueues = new MultiSourceQueueImpl[queueCount];
+    this.idleQueues = new AtomicLongArray((queueCount + Long.SIZE - 1) / Long.SIZE);
+    boolean stealing = queueCount > 1 && TCPropertiesImpl.getProperties().getBoolean("seda." + stageName + ".workstealing", false);
+    this.unkeyed = stealing ? new ConcurrentLinkedQueue<>() : null;
+    for (int i = 0; i < queueCount; i++) {
+      idleQueues.accumulateAndGet(i / Long.SIZE, 1L << (i & (Long.SIZE - 1)), (a, b) -> a | b);
+    }
     createWorkerQueues(queueCount, queueFactory, type, queueSize, stageName);
+    this.canRunKeyed = canRunDirect();
 
     if (Integer.bitCount(queueCount) == 1) {
       this.moduloAnd = true;
@@ -132,7 +167,78 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     }
 
     for (int i = 0; i < queueCount; i++) {
-      this.sourceQueues[i] = new MultiSourceQueueImpl(queueFactory.createInstance(type, queueSize), v->this.fcheck = v, i);
+      this.sourceQueues[i] = (unkeyed != null)
+          ? new MultiSourceQueueImpl(queueFactory.createInstance(type, queueSize), this::queueIdle, i, this::steal, this::stolenDone)
+          : new MultiSourceQueueImpl(queueFactory.createInstance(type, queueSize), this::queueIdle, i, null, null);
+    }
+  }
+
+  private void queueIdle(int index) {
+    this.fcheck = index;
+    long bit = 1L << (index & (Long.SIZE - 1));
+    int word = index / Long.SIZE;
+    if ((idleQueues.get(word) & bit) == 0) {
+      idleQueues.accumulateAndGet(word, bit, (a, b) -> a | b);
+    }
+  }
+
+  private void queueBusy(int index) {
+    long bit = 1L << (index & (Long.SIZE - 1));
+    int word = index / Long.SIZE;
+    if ((idleQueues.get(word) & bit) != 0) {
+      idleQueues.accumulateAndGet(word, ~bit, (a, b) -> a & b);
+    }
+  }
+
+  private boolean isQueueIdle(int index) {
+    return (idleQueues.get(index / Long.SIZE) & (1L << (index & (Long.SIZE - 1)))) != 0;
+  }
+
+  /**
+   * Called by an idle worker to take an unkeyed event queued behind other work.
+   */
+  private Event steal() {
+    // counted first so a flush starting from here on either stops this steal or waits for the event taken
+    stolenRunning.incrementAndGet();
+    if (flushing.get() == 0) {
+      StealToken next;
+      while ((next = unkeyed.poll()) != null) {
+        if (next.take()) {
+          stolen.increment();
+          return next.event;
+        }
+      }
+    }
+    stolenDone();
+    return null;
+  }
+
+  private void stolenDone() {
+    if (stolenRunning.decrementAndGet() == 0) {
+      for (Thread waiter : stolenWaiters) {
+        LockSupport.unpark(waiter);
+      }
+    }
+  }
+
+  private void awaitStolen() {
+    if (stolenRunning.get() > 0) {
+      Thread current = Thread.currentThread();
+      boolean interrupted = false;
+      stolenWaiters.add(current);
+      try {
+        while (stolenRunning.get() > 0) {
+          LockSupport.park(this);
+          if (Thread.interrupted()) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        stolenWaiters.remove(current);
+        if (interrupted) {
+          current.interrupt();
+        }
+      }
     }
   }
 
@@ -153,10 +259,41 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     Event event = createEvent(context);
     if (event != null) {
       // NOTE:  We don't currently consult the predicate for multi-threaded events (the only implementation always returns true, in any case).
-      boolean interrupted = Thread.interrupted();
       int index = getSourceQueueFor(context);
-      Event wrapper = (context.flush()) ? new FlushingHandledContext(event, index) : event;
+      if (canRunKeyed && DirectExecutionMode.isKeyedActivated() && context.getSchedulingKey() != null && !context.flush()) {
+        MultiSourceQueueImpl queue = this.sourceQueues[index];
+        if (queue.claim()) {
+          Throwable failure = null;
+          try {
+            keyedDirect.increment();
+            event.call();
+          } catch (Throwable t) {
+            failure = t;
+          } finally {
+            queue.release();
+          }
+          if (failure == null) {
+            return;
+          }
+          // the producer is not a stage thread, hand the failure to the worker which owns the key so it goes
+          //  through the stage's own exception handling
+          event = new InlineFailure(failure);
+        }
+      }
+      boolean interrupted = Thread.interrupted();
+      Event wrapper;
+      if (context.flush()) {
+        flushing.incrementAndGet();
+        wrapper = new FlushingHandledContext(event, index);
+      } else if (unkeyed != null && context.getSchedulingKey() == null) {
+        StealToken token = new StealToken(event);
+        unkeyed.add(token);
+        wrapper = token;
+      } else {
+        wrapper = event;
+      }
       try {
+        queueBusy(index);
         while (true) {
           try {
             updateDepth(this.sourceQueues[index].put(wrapper));
@@ -174,9 +311,23 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     }
   }
 
-  // TODO:  Way too busy. REALLY need a better way
   private int findShortestQueueIndex() {
     switch (SHORTEST_FIND_STRATEGY) {
+      case OCCUPANCY: {
+        // the workers keep the idle bitmap current so no queue sizes are sampled here
+        final int hint = fcheck;
+        if (isQueueIdle(hint)) {
+          return hint;
+        }
+        for (int word = 0; word < idleQueues.length(); word++) {
+          long bits = idleQueues.get(word);
+          if (bits != 0) {
+            return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+          }
+        }
+        // every queue has a backlog, spread the load
+        return moduloQueueCount(nextPartition());
+      }
       case PARTITION: {
         int offset = moduloQueueCount(nextPartition() << PARTITION_SHIFT);
         int min = Integer.MAX_VALUE;
@@ -239,21 +390,50 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     return Math.abs(hashcode % arrayLength);
   }
   
+  @Override
+  public Map<String, ?> getState() {
+    Map<String, Object> state = new LinkedHashMap<>(super.getState());
+    if (canRunKeyed) {
+      state.put("keyedDirect", keyedDirect.sum());
+    }
+    if (unkeyed != null) {
+      state.put("stolen", stolen.sum());
+      state.put("unkeyedWaiting", unkeyed.size());
+    }
+    return state;
+  }
+
   @Override
   public String toString() {
     return "StageQueue(" + this.stageName + ")";
   }
 
   private static final class MultiSourceQueueImpl implements SourceQueue {
+    // set in pending while an event is executed by the producer in place of the worker
+    private static final int CLAIMED = 1 << 30;
 
     private final Consumer<Integer> hint;
     private final BlockingQueue<Event> queue;
     private final int                      sourceIndex;
-
-    public MultiSourceQueueImpl(BlockingQueue<Event> queue, Consumer<Integer> hint, int sourceIndex) {
+    // events put and not yet finished by the worker, the worker finishes an event when it polls for the next one,
+    // plus CLAIMED while an event runs in place so a put racing the claim always sees it
+    private final AtomicInteger pending = new AtomicInteger();
+    // only touched by the worker
+    private boolean polled;
+    // the worker parked until the event running in place finishes
+    private volatile Thread waiter;
+    // null unless work stealing is enabled
+    private final Supplier<Event> stealer;
+    private final Runnable stolenDone;
+    // only touched by the worker
+    private boolean stole;
+
+    public MultiSourceQueueImpl(BlockingQueue<Event> queue, Consumer<Integer> hint, int sourceIndex, Supplier<Event> stealer, Runnable stolenDone) {
       this.queue = queue;
       this.hint = hint;
       this.sourceIndex = sourceIndex;
+      this.stealer = stealer;
+      this.stolenDone = stolenDone;
     }
 
     @Override
@@ -268,21 +448,93 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
 
     @Override
     public Event poll(long timeout) throws InterruptedException {
-      Event rv = timeout == 0 ? this.queue.poll() : this.queue.poll(timeout, TimeUnit.MILLISECONDS);
+      if (polled) {
+        polled = false;
+        pending.decrementAndGet();
+      }
+      if (stole) {
+        stole = false;
+        stolenDone.run();
+      }
+      Event rv;
+      if (stealer != null) {
+        rv = this.queue.poll();
+        if (rv == null) {
+          // nothing of our own to do, help with unkeyed work stuck behind other workers
+          Event steal = stealer.get();
+          if (steal != null) {
+            stole = true;
+            return steal;
+          }
+          if (timeout != 0) {
+            rv = this.queue.poll(timeout, TimeUnit.MILLISECONDS);
+          }
+        }
+      } else {
+        rv = timeout == 0 ? this.queue.poll() : this.queue.poll(timeout, TimeUnit.MILLISECONDS);
+      }
       if (rv != null) {
+        polled = true;
         if (queue.isEmpty()) {
           // set the empty index for shortest queue in hopes of catching it on the first try
           hint.accept(this.sourceIndex);
         }
+        // an event queued behind one running in place must not overtake it
+        awaitRelease();
       } else {
         hint.accept(this.sourceIndex);
       }
       return rv;
     }
 
+    /**
+     * Take this queue for an event executed by the caller.  Only succeeds when nothing is queued or running here.
+     */
+    boolean claim() {
+      return pending.compareAndSet(0, CLAIMED);
+    }
+
+    void release() {
+      pending.addAndGet(-CLAIMED);
+      Thread waiting = waiter;
+      if (waiting != null) {
+        LockSupport.unpark(waiting);
+      }
+    }
+
+    private boolean isClaimed() {
+      return (pending.get() & CLAIMED) != 0;
+    }
+
+    private void awaitRelease() {
+      if (isClaimed()) {
+        boolean interrupted = false;
+        waiter = Thread.currentThread();
+        try {
+          while (isClaimed()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+              interrupted = true;
+            }
+          }
+        } finally {
+          waiter = null;
+          if (interrupted) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }
+
     @Override
     public int put(Event context) throws InterruptedException {
-      this.queue.put(context);
+      pending.incrementAndGet();
+      try {
+        this.queue.put(context);
+      } catch (InterruptedException ie) {
+        pending.decrementAndGet();
+        throw ie;
+      }
       return this.queue.size();
     }
 
@@ -309,15 +561,22 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     @Override
     public void call() throws EventHandlerException {
       if (++executionCount == sourceQueues.length) {
-//  been through all the queues.  execute now.
-        super.call();
+//  been through all the queues.  wait out any unkeyed events idle workers took ahead of it then execute now.
+        awaitStolen();
+        try {
+          super.call();
+        } finally {
+          flushing.decrementAndGet();
+        }
       } else {
 //  move to next queue
         boolean interrupted = false;
         try {
           while (true) {
             try {
-              sourceQueues[moduloQueueCount(executionCount + offset)].put(this);
+              int next = moduloQueueCount(executionCount + offset);
+              queueBusy(next);
+              sourceQueues[next].put(this);
               break;
             } catch (InterruptedException e) {
               logger.debug("FlushingHandledContext move to next queue: " + e + " : " + ((executionCount + offset) % sourceQueues.length));
@@ -332,4 +591,54 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
       }
     }
   }
+
+  /**
+   * Rethrows, on the stage worker, the failure of an event the producer executed in place.
+   */
+  private static class InlineFailure implements Event {
+    private final Throwable failure;
+
+    InlineFailure(Throwable failure) {
+      this.failure = failure;
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      if (failure instanceof EventHandlerException) {
+        throw (EventHandlerException) failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      } else {
+        throw new EventHandlerException(failure);
+      }
+    }
+  }
+
+  /**
+   * Marks the place in a queue of an unkeyed event.  When reached, the worker runs the event unless an idle worker
+   * already took it, so an event never runs from the place of another one queued on the other side of a flush.
+   */
+  private class StealToken implements Event {
+    private final Event event;
+    private final AtomicBoolean taken = new AtomicBoolean();
+
+    StealToken(Event event) {
+      this.event = event;
+    }
+
+    boolean take() {
+      return !taken.get() && taken.compareAndSet(false, true);
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      if (take()) {
+        // usually at the head, thieves skip and drop it otherwise
+        unkeyed.remove(this);
+        event.call();
+      }
+    }
+  }
 }
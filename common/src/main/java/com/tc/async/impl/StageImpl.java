@@ -34,6 +34,7 @@ import com.tc.exception.TCShutdownServerException;
 import com.tc.logging.TCLoggerProvider;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
+import com.tc.stats.LatencyHistogram;
 import com.tc.util.concurrent.QueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 import java.util.ArrayList;
@@ -42,6 +43,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 import org.terracotta.tripwire.StageMonitor;
@@ -69,6 +71,11 @@ public class StageImpl<EC> implements Stage<EC> {
                                                      .getLong(TCPropertiesConsts.L2_SEDA_STAGE_STALL_WARNING, 500);
   private volatile long lastWarnTime = 0;
   private int spinning = 0;
+  // 1 in this many events is recorded in the latency histograms, 0 records none
+  private final int latencySampling;
+  private final LatencyHistogram queueLatency = new LatencyHistogram();
+  private final LatencyHistogram serviceLatency = new LatencyHistogram();
+  private final HotKeyTracker hotKeys;
   
   private StageMonitor event;
   /**
@@ -95,7 +102,7 @@ public class StageImpl<EC> implements Stage<EC> {
     }
     this.threads = new WorkerThread[queueCount];
     this.handler = handler;
-    this.stageQueue = StageQueue.FACTORY.factory(queueCount, queueFactory, type, eventCreator(canBeDirect), loggerProvider, name, queueSize);
+    this.stageQueue = StageQueue.FACTORY.factory(queueCount, queueFactory, type, eventCreator(canBeDirect, MultiThreadedEventContext.class.isAssignableFrom(type)), loggerProvider, name, queueSize);
     this.group = group;
     this.listener = listener;
     this.sleepMs = TCPropertiesImpl.getProperties().getInt("seda." + name + ".sleepMs", 0);
@@ -107,13 +114,15 @@ public class StageImpl<EC> implements Stage<EC> {
       logger.warn("Stage pausing is enabled for stage " + name);
     }
     this.event = TripwireFactory.createStageMonitor(name, queueCount);
+    this.latencySampling = Math.max(0, TCPropertiesImpl.getProperties().getInt("seda." + name + ".latency.sampling", 0));
+    this.hotKeys = (queueCount > 1 && latencySampling > 0) ? new HotKeyTracker() : null;
     if (!stallLogging) {
       lastWarnTime = Long.MAX_VALUE;
     }
   }
   
-  private EventCreator<EC> eventCreator(boolean direct) {
-    return (direct) ? new DirectEventCreator<>(baseCreator(), ()->isEmpty()) : baseCreator();
+  private EventCreator<EC> eventCreator(boolean direct, boolean keyed) {
+    return (direct) ? new DirectEventCreator<>(baseCreator(), ()->isEmpty(), keyed) : baseCreator();
   }
   
   private EventCreator<EC> baseCreator() {
@@ -127,17 +136,32 @@ public class StageImpl<EC> implements Stage<EC> {
         }
         try {
           handler.handleEvent(event);
-          long end = System.nanoTime();;
+        } finally {
+          long end = System.nanoTime();
           if (end - exec > TimeUnit.MILLISECONDS.toNanos(warnStallTime)) {
             warnIfWarranted("executed", event, TimeUnit.NANOSECONDS.toMillis(end-exec));
           }
-        } finally {
+          if (latencySampling > 0 && (latencySampling == 1 || ThreadLocalRandom.current().nextInt(latencySampling) == 0)) {
+            recordLatency(event, exec - start, end - exec);
+          }
           inflight.decrement();
         }
       };
     };
   }
   
+  private void recordLatency(EC context, long queued, long service) {
+    queueLatency.record(queued);
+    serviceLatency.record(service);
+    if (hotKeys != null && context instanceof MultiThreadedEventContext) {
+      Object key = ((MultiThreadedEventContext)context).getSchedulingKey();
+      if (key != null) {
+        hotKeys.record(key, service);
+      }
+    }
+    event.latencyOccurred(queued, service);
+  }
+  
   private void warnIfWarranted(String type, Object event, long time) {
     long now = System.currentTimeMillis();
     if (now - lastWarnTime > 1000) {
@@ -277,9 +301,22 @@ public class StageImpl<EC> implements Stage<EC> {
     data.put("backlog", inflight.sum());
     data.put("sink", this.stageQueue.getState());
     data.put("threads", tl);
+    data.put("latency", getLatency());
     return data;
   }
 
+  @Override
+  public Map<String, ?> getLatency() {
+    Map<String, Object> latency = new LinkedHashMap<>();
+    latency.put("sampling", latencySampling);
+    latency.put("queue", queueLatency.getStateMap());
+    latency.put("service", serviceLatency.getStateMap());
+    if (hotKeys != null) {
+      latency.put("hotKeys", hotKeys.getStateMap());
+    }
+    return latency;
+  }
+
   private class WorkerThread<EC> extends Thread {
     private final Source       source;
     private volatile boolean idle = false;
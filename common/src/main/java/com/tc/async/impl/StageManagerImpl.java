@@ -40,6 +40,7 @@ import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -200,6 +201,17 @@ public class StageManagerImpl implements StageManager {
     return stats;
   }
 
+  @Override
+  public Map<String, ?> getLatencies() {
+    Map<String, Object> map = new TreeMap<>();
+    for (Stage<?> stage : stages.values()) {
+      if (stage.isStarted()) {
+        map.put(stage.getName(), stage.getLatency());
+      }
+    }
+    return map;
+  }
+
   @Override
   public Map<String, ?> getStateMap() {
     Map<String,Object> map = new LinkedHashMap<>();
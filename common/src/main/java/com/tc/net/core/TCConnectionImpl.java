@@ -29,6 +29,8 @@ import com.tc.io.TCDirectByteBufferOutputStream;
 import com.tc.net.core.event.TCConnectionEventCaller;
 import com.tc.net.core.event.TCConnectionEventListener;
 import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.transport.PayloadCodec;
+import com.tc.net.protocol.transport.WireProtocolCompressor;
 import com.tc.net.protocol.transport.WireProtocolGroupMessageImpl;
 import com.tc.net.protocol.transport.WireProtocolHeader;
 import com.tc.net.protocol.transport.WireProtocolMessage;
@@ -51,6 +53,7 @@ import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -65,11 +68,13 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import com.tc.net.protocol.tcm.TCActionNetworkMessage;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -81,6 +86,9 @@ import java.util.concurrent.locks.ReentrantLock;
 final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannelWriter {
 
   private static final long NO_CONNECT_TIME = -1L;
+  private static final long NOT_STALLED = 0L;
+  // the kernel caps a single gathering write at IOV_MAX buffers, 1024 on most platforms
+  private static final int GATHER_MAX_BUFFERS = 1024;
   private static final Logger logger = LoggerFactory.getLogger(TCConnection.class);
   private static final long WARN_THRESHOLD = 0x800000L;                                                    // 4MB
 
@@ -114,6 +122,12 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   private final LongAdder totalWrite = new LongAdder();
   private final Queue<WriteContext>  writeContexts = new ConcurrentLinkedQueue<>();
   private final ReentrantLock writeContextControl = new ReentrantLock();
+  // contexts handed to the socket in one gathering write, the head may be partially written and is
+  // resumed on the next write selection.  guarded by writerLock
+  private final Deque<WriteContext> inFlight = new ArrayDeque<>();
+  private volatile long writeStallStart = NOT_STALLED;
+  private final LongAdder writeStalls = new LongAdder();
+  private final LongAdder writeStalledNanos = new LongAdder();
 
   private static final boolean MSG_GROUPING_ENABLED = TCPropertiesImpl
                           .getProperties()
@@ -130,6 +144,12 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
                           .getProperties()
                           .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
                                       false);
+  private static final int COMPRESSION_THRESHOLD = TCPropertiesImpl
+                          .getProperties()
+                          .getInt(TCPropertiesConsts.NET_CORE_COMPRESSION_THRESHOLD,
+                                  4096);
+  // null until a codec is agreed on in the transport handshake
+  private volatile WireProtocolCompressor compressor;
   private final Object readerLock = new Object();
   private final Object writerLock = new Object();
 
@@ -187,10 +207,16 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     state.put("messageWritten", this.messagesWritten.longValue());
     state.put("messageBatch", this.messageBatch.longValue());
     state.put("messageRead", this.messagesRead.longValue());
+    state.put("writeStalls", this.writeStalls.longValue());
+    state.put("writeStalledTime", this.getWriteStalledTime());
     state.put("worker", commWorker.getName());
     state.put("closed", isClosed());
     state.put("connected", isConnected());
     state.put("transportConnected", isTransportEstablished());
+    WireProtocolCompressor c = this.compressor;
+    if (c != null) {
+      state.put("compression", c.getStateMap());
+    }
     if (buffers != null) {
         state.put("buffers.type", "direct");
         state.put("buffers.cached", buffers.size());
@@ -251,6 +277,14 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   private void cleanupUnsentWriteMessages() {
       this.writeMessages.forEach(TCNetworkMessage::complete);
       this.writeMessages.clear();
+      synchronized (writerLock) {
+        this.inFlight.forEach(WriteContext::writeComplete);
+        this.inFlight.clear();
+        WireProtocolCompressor c = this.compressor;
+        if (c != null) {
+          c.close();
+        }
+      }
       this.writeContexts.forEach(WriteContext::writeComplete);
       this.writeContexts.clear();
   }
@@ -451,37 +485,138 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     final boolean debug = logger.isDebugEnabled();
     long totalBytesWritten = 0;
 
-    WriteContext context = this.writeContexts.poll();
-
-    if (context == null) {
-      if (buildWriteContextsFromMessages(true)) {
-        context = this.writeContexts.poll();
-      }
+    if (this.inFlight.isEmpty() && this.writeContexts.isEmpty()) {
+      buildWriteContextsFromMessages(true);
     }
 
-    while (context != null) {
-      long bytesWritten = context.write();
-      messageBatch.increment();
+    while (gatherWriteContexts()) {
+      long bytesWritten = writeGathered();
       if (debug) {
-        logger.debug("Wrote " + bytesWritten + " bytes on connection " + this.channel.toString() + " with batch size " + context.getBatchSize());
+        logger.debug("Wrote " + bytesWritten + " bytes on connection " + this.channel.toString() + " from " + this.inFlight.size() + " write contexts");
       }
       totalBytesWritten += bytesWritten;
 
-      Assert.assertTrue(context.done());
-      if (debug) {
-        logger.debug("Complete message sent on connection " + this.channel.toString());
+      WriteContext context = this.inFlight.peek();
+      while (context != null && context.done()) {
+        this.inFlight.poll();
+        messageBatch.increment();
+        if (debug) {
+          logger.debug("Complete message sent on connection " + this.channel.toString() + " with batch size " + context.getBatchSize());
+        }
+        context.writeComplete();
+        context = this.inFlight.peek();
+      }
+
+      if (context != null) {
+        // the peer is not draining the socket.  keep write interest and resume these contexts on the
+        // next selection rather than holding the comm thread shared with other connections
+        if (this.writeStallStart == NOT_STALLED) {
+          this.writeStallStart = System.nanoTime();
+          this.writeStalls.increment();
+        }
+        return totalBytesWritten;
       }
-      context.writeComplete();
-      context = writeContexts.poll();
+      endWriteStall();
     }
 
-    if (!this.closed.isSet() && context == null && !buildWriteContextsFromMessages(false)) {
+    if (!this.closed.isSet() && !buildWriteContextsFromMessages(false)) {
       this.commWorker.removeWriteInterest(this, this.channel);
     }
 
     return totalBytesWritten;
   }
 
+  /**
+   * Move ready write contexts behind the ones already in flight until the gathering limit is reached.
+   *
+   * @return true if there is anything to write
+   */
+  private boolean gatherWriteContexts() {
+    int buffers = 0;
+    for (WriteContext context : this.inFlight) {
+      buffers += context.prepare().length;
+    }
+    while (buffers < GATHER_MAX_BUFFERS) {
+      WriteContext context = this.writeContexts.poll();
+      if (context == null) {
+        break;
+      }
+      buffers += context.prepare().length;
+      this.inFlight.add(context);
+    }
+    return !this.inFlight.isEmpty();
+  }
+
+  /**
+   * Write the views of all in flight contexts with as few gathering writes as the socket allows.
+   * The payload is never copied, the socket reads straight from the message buffers.
+   *
+   * @return bytes written
+   */
+  private long writeGathered() throws IOException {
+    ByteBuffer[] views;
+    if (this.inFlight.size() == 1) {
+      views = this.inFlight.peek().prepare();
+    } else {
+      ArrayList<ByteBuffer> all = new ArrayList<>();
+      for (WriteContext context : this.inFlight) {
+        Collections.addAll(all, context.prepare());
+      }
+      views = all.toArray(new ByteBuffer[all.size()]);
+    }
+    long start = remaining(views);
+    long left = start;
+    while (left > 0) {
+      switch (socket.writeFrom(views)) {
+        case SUCCESS:
+          break;
+        case ZERO:
+          // socket buffer is full, resume when the channel is writable again
+          return start - remaining(views);
+        case EOF:
+          throw new EOFException();
+        case OVERFLOW:
+          // unexpected
+          throw new IOException();
+        case UNDERFLOW:
+          // not sure what to do here.  need to figure out if there is some way to
+          // send dummy bytes
+          throw new IOException("underflow");
+      }
+      left = remaining(views);
+    }
+    return start;
+  }
+
+  private static long remaining(ByteBuffer[] views) {
+    long remaining = 0;
+    for (ByteBuffer view : views) {
+      remaining += view.remaining();
+    }
+    return remaining;
+  }
+
+  private void endWriteStall() {
+    long start = this.writeStallStart;
+    if (start != NOT_STALLED) {
+      this.writeStalledNanos.add(System.nanoTime() - start);
+      this.writeStallStart = NOT_STALLED;
+    }
+  }
+
+  /**
+   * @return total time in milliseconds this connection spent waiting for the peer to drain the
+   *         socket, including a stall in progress
+   */
+  long getWriteStalledTime() {
+    long stalled = this.writeStalledNanos.sum();
+    long start = this.writeStallStart;
+    if (start != NOT_STALLED) {
+      stalled += System.nanoTime() - start;
+    }
+    return TimeUnit.NANOSECONDS.toMillis(stalled);
+  }
+
   private void putMessageImpl(TCNetworkMessage message) {
     // ??? Does the message queue and the WriteContext belong in the base connection class?
     final boolean debug = logger.isDebugEnabled();
@@ -830,6 +965,9 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     private final WireProtocolMessage message;
     private final int batchSize;
     private boolean sent = false;
+    // kept across write selections while the message is partially written
+    private TCReference msgRef;
+    private ByteBuffer[] compat;
 
     WriteContext(WireProtocolMessage message, int batchSize) {
       this.message = message;
@@ -838,20 +976,34 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
     private TCReference prep() {
       if (message.prepareToSend()) {
-        return message.getEntireMessageData().duplicate();
+        WireProtocolCompressor c = compressor;
+        return (c == null) ? message.getEntireMessageData().duplicate() : c.encode(message);
       } else {
         return TCReferenceSupport.createGCReference(Collections.emptyList());
       }
     }
 
     boolean done() {
+      if (!sent && msgRef != null && !msgRef.hasRemaining()) {
+        sent = true;
+      }
       return sent;
     }
 
     void writeComplete() {
+      release();
       this.message.complete();
     }
 
+    private void release() {
+      if (msgRef != null) {
+        msgRef.returnByteBufferArray(compat);
+        msgRef.close();
+        msgRef = null;
+        compat = null;
+      }
+    }
+
     boolean isNotValid() {
       return !message.isValid();
     }
@@ -860,38 +1012,26 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       return batchSize;
     }
 
-    long write() throws IOException {
-      long written = 0;
-      try (TCReference msgRef = prep()) {
-        long msgSize = msgRef.available();
-        ByteBuffer[] compat = msgRef.toByteBufferArray();
-        try {
-          while (msgRef.hasRemaining()) {
-            switch (socket.writeFrom(compat)) {
-              case SUCCESS:
-              case ZERO:
-                break;
-              case EOF:
-                throw new EOFException();
-              case OVERFLOW:
-                // unexpected
-                throw new IOException();
-              case UNDERFLOW:
-                if (msgSize > 0) {
-                  throw new IOException("underflow");
-                }
-                break;
-                // not sure what to do here.  need to figure out if there is some way to
-                // send dummy bytes
-            }
-          }
-          sent = true;
-          written = msgSize - msgRef.available();
-        } finally {
-          msgRef.returnByteBufferArray(compat);
-        }
+    /**
+     * @return nio views over the unwritten part of the message, stable until the context completes
+     */
+    ByteBuffer[] prepare() {
+      if (msgRef == null) {
+        msgRef = prep();
+        compat = msgRef.toByteBufferArray();
+      }
+      return compat;
+    }
+  }
+
+  @Override
+  public void setPayloadCodec(PayloadCodec codec) {
+    synchronized (writerLock) {
+      WireProtocolCompressor previous = this.compressor;
+      this.compressor = (codec == PayloadCodec.NONE) ? null : new WireProtocolCompressor(codec, COMPRESSION_THRESHOLD);
+      if (previous != null) {
+        previous.close();
       }
-      return written;
     }
   }
 
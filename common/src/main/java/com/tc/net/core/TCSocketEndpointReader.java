@@ -54,8 +54,9 @@ public class TCSocketEndpointReader implements AutoCloseable {
   private int readTo = 0;   // read cursor in the raw buffer
 
   public TCSocketEndpointReader() {
-    this.allocator = (s)->TCByteBufferFactory.getInstance(s);
-    this.returns = (b)->{};
+    // pooled buffers may be larger than requested, read into the whole buffer
+    this.allocator = (s)->TCByteBufferFactory.getInstance(s).clear();
+    this.returns = TCByteBufferFactory::returnInstance;
   }
 
   public TCSocketEndpointReader(TCDirectByteBufferCache cache) {
@@ -54,6 +54,8 @@ public class ClientMessageTransport extends MessageTransportBase {
                                                                                    .getProperties()
                                                                                    .getLong(TCPropertiesConsts.TC_TRANSPORT_HANDSHAKE_TIMEOUT,
                                                                                             10000);
+  private static final PayloadCodec PAYLOAD_CODEC = PayloadCodec.forName(TCPropertiesImpl.getProperties()
+      .getProperty(TCPropertiesConsts.NET_CORE_COMPRESSION_CODEC, true));
   private final TCConnectionManager connectionManager;
   private CompletableFuture<NetworkStackID>                         opener;
   private CompletableFuture<SynAckMessage>                          waitForSynAckResult;
@@ -304,6 +306,8 @@ public class ClientMessageTransport extends MessageTransportBase {
         // This is a reconnect
         Assert.eval(getConnectionID().equals(synAck.getConnectionId()));
       }
+      // older servers never answer with a codec so payloads stay raw
+      getConnection().setPayloadCodec(synAck.getPayloadCodec());
       getConnection().setTransportEstablished();
       setSynAckResult(synAck);
     }
@@ -396,7 +400,7 @@ public class ClientMessageTransport extends MessageTransportBase {
       // get the stack layer list and pass it in
       short stackLayerFlags = getCommunicationStackFlags(this);
       TransportHandshakeMessage syn = this.messageFactory.createSyn(getConnectionID(), getConnection(),
-                                                                    stackLayerFlags);
+                                                                    stackLayerFlags, PAYLOAD_CODEC);
       // send syn message
       try {
         this.sendToConnection(syn);
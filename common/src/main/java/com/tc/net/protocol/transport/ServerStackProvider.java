@@ -32,6 +32,8 @@ import com.tc.net.protocol.RejectReconnectionException;
 import com.tc.net.protocol.ServerNetworkStackHarness;
 import com.tc.net.protocol.tcm.ServerMessageChannelFactory;
 import com.tc.net.protocol.tcm.msgs.CommsMessageFactory;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 
 import java.io.IOException;
@@ -52,6 +54,8 @@ import java.net.InetSocketAddress;
  */
 public class ServerStackProvider implements NetworkStackProvider, MessageTransportListener, ProtocolAdaptorFactory {
   private static final Logger logger = LoggerFactory.getLogger(ServerStackProvider.class);
+  private static final PayloadCodec PAYLOAD_CODEC = PayloadCodec.forName(TCPropertiesImpl.getProperties()
+      .getProperty(TCPropertiesConsts.NET_CORE_COMPRESSION_CODEC, true));
 
   private final Map<ClientID, ServerNetworkStackHarness> harnesses          = new ConcurrentHashMap<>();
   private final NetworkStackHarnessFactory       harnessFactory;
@@ -376,15 +380,22 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
             syn.getSource(), isMaxConnectionReached);
         return;
       }
-      sendSynAck(transport.getConnectionID(), syn.getSource(), isMaxConnectionReached);
+      sendSynAck(transport.getConnectionID(), syn.getSource(), isMaxConnectionReached, agreePayloadCodec(syn.getPayloadCodec()));
+    }
+
+    /**
+     * Payloads are only compressed when the client asked for the codec this server is configured with.
+     */
+    private PayloadCodec agreePayloadCodec(PayloadCodec requested) {
+      return (requested == PAYLOAD_CODEC) ? requested : PayloadCodec.NONE;
     }
 
     private boolean verifySyn(WireProtocolMessage message) {
       return message instanceof TransportHandshakeMessage && (((TransportHandshakeMessage) message).isSyn());
     }
 
-    private void sendSynAck(ConnectionID connectionId, TCConnection source, boolean isMaxConnectionReached) {
-      sendSynAck(connectionId, null, source, isMaxConnectionReached);
+    private void sendSynAck(ConnectionID connectionId, TCConnection source, boolean isMaxConnectionReached, PayloadCodec codec) {
+      sendSynAck(connectionId, null, source, isMaxConnectionReached, codec);
     }
 
     /**
@@ -398,6 +409,11 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
 
     private void sendSynAck(ConnectionID connectionId, TransportHandshakeErrorContext errorContext,
                             TCConnection source, boolean isMaxConnectionsReached) {
+      sendSynAck(connectionId, errorContext, source, isMaxConnectionsReached, PayloadCodec.NONE);
+    }
+
+    private void sendSynAck(ConnectionID connectionId, TransportHandshakeErrorContext errorContext,
+                            TCConnection source, boolean isMaxConnectionsReached, PayloadCodec codec) {
       TransportHandshakeMessage synAck;
       boolean isError = (errorContext != null);
       int maxConnections = connectionPolicy.getMaxConnections();
@@ -415,7 +431,8 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
                 source, isMaxConnectionsReached, maxConnections);
         }
       } else {
-        synAck = handshakeMessageFactory.createSynAck(connectionId, source, isMaxConnectionsReached, maxConnections);
+        synAck = handshakeMessageFactory.createSynAck(connectionId, source, isMaxConnectionsReached, maxConnections, codec);
+        source.setPayloadCodec(codec);
         source.setTransportEstablished();
       }
       sendMessage(synAck);
@@ -36,6 +36,7 @@ package com.tc.object;
   SERVER_ENDINVOKE("SERVER:end"),
   SERVER_COMPLETE("SERVER:complete"),
   SERVER_RETIRED("SERVER:retired"),
+  SERVER_REPLICATED("SERVER:replicated"),
   END("NOT USED")
   ;
   
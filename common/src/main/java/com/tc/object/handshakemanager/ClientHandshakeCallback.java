@@ -30,5 +30,11 @@ public interface ClientHandshakeCallback {
 
   public void initializeHandshake(ClientHandshakeMessage handshakeMessage);
 
+  /**
+   * Called with the credits granted in the handshake ack before unpausing, 0 if the server did not grant any.
+   */
+  public default void setInvokeCredits(int credits) {
+  }
+
   public void shutdown();
 }
@@ -134,6 +134,10 @@ public class DSOChannelManagerImpl implements DSOChannelManager, DSOChannelManag
       synchronized (activeChannels) {
         activeChannels.put(clientID, channel);
         ackMsg.initialize(getAllActiveClientIDs(), clientID, serverVersion);
+        Object credits = channel.getAttachment(ClientHandshakeAckMessage.INVOKE_CREDITS_ATTACHMENT);
+        if (credits != null) {
+          ackMsg.setInvokeCredits((Integer) credits);
+        }
         if (ackMsg.send() == null) {
           logger.warn("Not sending handshake message to disconnected client: " + clientID);
         }
@@ -43,6 +43,18 @@ public interface TCPropertiesConsts {
    *                                      seda stage
    * stage.sink.capacity                : Capacity of seda stage queue, Integer.MAX_VALUE if not set
    *                                      (experimental, do not change)
+   * stage.queue.type                   : Queue implementation of seda stages, "blocking" (default) or "ring"
+   *                                      for lock-free multi-producer single-consumer ring buffers
+   * stage.queue.wait                   : How ring buffer consumers wait, "park", "spin_park" (default) or "yield"
+   * stage.queue.ring.size              : Ring size used for unbounded stages before spilling to a linked queue
+   * stage.direct.keyed                 : If true, requests run inline on the receiving thread whenever nothing is
+   *                                      queued or running for their concurrency key, regardless of client count.
+   *                                      Ignored when stage.sink.disable.direct is true
+   * passive.apply.threads              : Number of workers applying replicated invokes on a passive, 0 applies
+   *                                      them on the replication stage thread
+   * stage.invoke.credits               : Number of invokes each client may have outstanding, granted in the
+   *                                      handshake to clients which support it, 0 disables credits.  A client
+   *                                      over its grant is backed off like one without credits
    * </code>
    ********************************************************************************************************************/
   public static final String ENTITY_PROCESSOR_THREADS                                    = "server.entity.processor.threads";
@@ -53,6 +65,12 @@ public interface TCPropertiesConsts {
   public static final String L2_SEDA_STAGE_USE_BACKOFF                                    = "l2.seda.stage.voltron.backoff";
   public static final String L2_SEDA_STAGE_STALL_WARNING                                    = "l2.seda.stage.stall.warning";
   public static final String L2_SEDA_STAGE_ALWAYS_HYDRATE                                    = "l2.seda.stage.always.hydrate";
+  public static final String L2_SEDA_STAGE_QUEUE_TYPE                                    = "l2.seda.stage.queue.type";
+  public static final String L2_SEDA_STAGE_QUEUE_WAIT                                    = "l2.seda.stage.queue.wait";
+  public static final String L2_SEDA_STAGE_QUEUE_RING_SIZE                                    = "l2.seda.stage.queue.ring.size";
+  public static final String L2_SEDA_STAGE_DIRECT_KEYED                                    = "l2.seda.stage.direct.keyed";
+  public static final String L2_SEDA_STAGE_INVOKE_CREDITS                                    = "l2.seda.stage.invoke.credits";
+  public static final String L2_SEDA_PASSIVE_APPLY_THREADS                                    = "l2.seda.passive.apply.threads";
   public static final String L2_TCCOM_WORKERTHREADS                                                          = "l2.tccom.workerthreads";
   public static final String L2_SEDA_STAGE_WORKERTHREADS                                                     = "l2.seda.stage.workerthreads";
 
@@ -83,10 +101,31 @@ public interface TCPropertiesConsts {
    *                                 instance in a cluster with no passives present
    * startuplock.retries.enabled   : If true then L2s will try to lock indefinitely on the data
    *                                 directory while starting up
+   * persistence.incremental.enabled : If true then server state maps are persisted as a snapshot
+   *                                 plus a log of changes instead of being rewritten whole
+   * persistence.incremental.compaction.interval : Number of logged changes before a new snapshot
+   * entity.reload.parallelism     : Number of threads loading persisted entities at startup, 1 loads
+   *                                 them one by one on the starting thread.  Above 1 entities of the same type
+   *                                 are loaded concurrently so the entity services and the service providers
+   *                                 they use must be thread-safe
+   * invoke.trace.sampling         : Fraction of invokes whose phase timings are traced per entity class and
+   *                                 returned to clients accepting statistics, 0 turns tracing off
+   * persistence.local.directory   : Directory of the local disk platform storage used when no persistence
+   *                                 service is configured, unset keeps platform storage in memory
+   * persistence.local.compaction.bytes : Size of the local sequence log after which it is rewritten
+   * reconnect.resend.parallelism  : Number of threads decoding resent invokes before they are replayed after a
+   *                                 failover, 1 decodes them one by one on the replaying thread
    * </code>
    ********************************************************************************************************************/
   public static final String PLUGIN_CLASSLOADER_COMPATIBILITY                               = "server.classloader.compatibility";
   public static final String ENTITY_DEFERMENT_QUEUE_SIZE                                    = "server.entity.deferment.queue.size";
+  public static final String PERSISTENCE_INCREMENTAL_ENABLED                                = "server.persistence.incremental.enabled";
+  public static final String PERSISTENCE_INCREMENTAL_COMPACTION_INTERVAL                    = "server.persistence.incremental.compaction.interval";
+  public static final String ENTITY_RELOAD_PARALLELISM                                      = "server.entity.reload.parallelism";
+  public static final String INVOKE_TRACE_SAMPLING                                          = "server.invoke.trace.sampling";
+  public static final String PERSISTENCE_LOCAL_DIRECTORY                                    = "server.persistence.local.directory";
+  public static final String PERSISTENCE_LOCAL_COMPACTION_BYTES                             = "server.persistence.local.compaction.bytes";
+  public static final String RECONNECT_RESEND_PARALLELISM                                   = "server.reconnect.resend.parallelism";
   
   /*********************************************************************************************************************
    * <code>
@@ -101,12 +140,21 @@ public interface TCPropertiesConsts {
    *                                 compressed
    *    timeoutForAckOnExit        - Max wait time in seconds to wait for ACKs before exit.
    *                                 value 0 for infinite wait.
+   *    entity.invoke.coalescing.delay    - Max time in microseconds an invoke waits so that invokes from
+   *                                 other threads go out in the same wire message group, 0 disables
+   *    entity.invoke.coalescing.maxbytes - Payload bytes of waiting invokes that trigger an early send
+   *    entity.invoke.credits.maxwait     - Max time in milliseconds an invoke waits for a credit from the
+   *                                 server before it is sent anyway, at most as many invokes as were granted
+   *                                 are sent this way
    * </code>
    ********************************************************************************************************************/  
 
   public static final String TC_TRANSPORT_HANDSHAKE_TIMEOUT                                 = "tc.transport.handshake.timeout";
   public static final String TC_CONFIG_SOURCEGET_TIMEOUT                                    = "tc.config.getFromSource.timeout";
   public static final String TC_CONFIG_TOTAL_TIMEOUT                                        = "tc.config.total.timeout";
+  public static final String L1_INVOKE_COALESCING_DELAY_MICROS                              = "l1.entity.invoke.coalescing.delay";
+  public static final String L1_INVOKE_COALESCING_MAX_BYTES                                 = "l1.entity.invoke.coalescing.maxbytes";
+  public static final String L1_INVOKE_CREDITS_MAX_WAIT_MILLIS                              = "l1.entity.invoke.credits.maxwait";
 
   /*********************************************************************************************************************
    * <code>
@@ -142,8 +190,9 @@ public interface TCPropertiesConsts {
    * stage.monitor.enabled                : <true/false>    - Enable or Disable stage Monitoring
    * stage.monitor.delay                  : long            - frequency in milliseconds
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
-   * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
-   * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * bytebuffer.pool.maxsize              : Largest buffer size (bytes) kept by the pool
+   * bytebuffer.common.pool.maxbytes      : Max bytes held idle by the shared pool
+   * bytebuffer.threadlocal.pool.maxcount : Buffers cached per thread for each size class
    * </code>
    ********************************************************************************************************************/
   
@@ -155,6 +204,10 @@ public interface TCPropertiesConsts {
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_GROUPING_MAX_COUNT                                  = "tc.messages.grouping.maxCount";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_BYTEBUFFER_POOLING_ENABLED                                  = "tc.bytebuffer.pooling.enabled";
+  public static final String TC_BYTEBUFFER_POOL_MAXSIZE                                     = "tc.bytebuffer.pool.maxsize";
+  public static final String TC_BYTEBUFFER_COMMON_POOL_MAXBYTES                             = "tc.bytebuffer.common.pool.maxbytes";
+  public static final String TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT                        = "tc.bytebuffer.threadlocal.pool.maxcount";
 
   /*********************************************************************************************************************
    * <code>
@@ -180,10 +233,15 @@ public interface TCPropertiesConsts {
    * Section : TCP Settings
    * tcpnodelay : Enable/disable tcp packet batching
    * keepalive  : Enable/disable tcp probe for running/broken connections
+   * compression.codec     : Codec to compress message payloads with, "none" (default) or "deflate", used when
+   *                         the peer supports it as well
+   * compression.threshold : Payload bytes below which messages are sent uncompressed
    * </code>
    ********************************************************************************************************************/
   public static final String NET_CORE_KEEPALIVE                                             = "net.core.keepalive";
   public static final String NET_CORE_TCP_NO_DELAY                                          = "net.core.tcpnodelay";
+  public static final String NET_CORE_COMPRESSION_CODEC                                     = "net.core.compression.codec";
+  public static final String NET_CORE_COMPRESSION_THRESHOLD                                 = "net.core.compression.threshold";
 
   /*********************************************************************************************************************
    * <code>
@@ -293,7 +351,11 @@ public interface TCPropertiesConsts {
       L2_SEDA_STAGE_SINGLE_THREAD,
       L2_SEDA_STAGE_STALL_WARNING,
       L2_SEDA_STAGE_ALWAYS_HYDRATE,
+      L2_SEDA_STAGE_QUEUE_TYPE,
+      L2_SEDA_STAGE_QUEUE_WAIT,
+      L2_SEDA_STAGE_QUEUE_RING_SIZE,
       L2_NHA_TCGROUPCOMM_RECONNECT_L2PROXY_TO_PORT,
+      PERSISTENCE_LOCAL_DIRECTORY,
   };
 
 }
@@ -0,0 +1,125 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of latencies in the manner of HdrHistogram.  Each power of two range is split into
+ * {@code 2^SUB_BITS} linear buckets so any recorded value is reported within 12.5% of its true value while the
+ * whole range of a long fits in a fixed array.  Recording is lock free and does not allocate.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts.incrementAndGet(bucketFor(nanos));
+    total.increment();
+    sum.add(nanos);
+    max.accumulate(nanos);
+  }
+
+  public long getCount() {
+    return total.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the highest value in the bucket holding the requested percentile, in nanos
+   */
+  public long getValueAtPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int x = 0; x < BUCKETS; x++) {
+      snapshot[x] = counts.get(x);
+      count += snapshot[x];
+    }
+    return valueAtPercentile(snapshot, count, percentile);
+  }
+
+  private long valueAtPercentile(long[] snapshot, long count, double percentile) {
+    if (count == 0) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+    long seen = 0;
+    for (int x = 0; x < BUCKETS; x++) {
+      seen += snapshot[x];
+      if (seen >= rank) {
+        return Math.min(highestEquivalent(x), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  public Map<String, Object> getStateMap() {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int x = 0; x < BUCKETS; x++) {
+      snapshot[x] = counts.get(x);
+      count += snapshot[x];
+    }
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("count", count);
+    map.put("meanMicros", count == 0 ? 0L : TimeUnit.NANOSECONDS.toMicros(sum.sum() / count));
+    map.put("p50Micros", TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(snapshot, count, 50)));
+    map.put("p90Micros", TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(snapshot, count, 90)));
+    map.put("p99Micros", TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(snapshot, count, 99)));
+    map.put("p999Micros", TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(snapshot, count, 99.9)));
+    map.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(getMax()));
+    return map;
+  }
+
+  static int bucketFor(long value) {
+    if (value < SUB_COUNT) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_COUNT - 1);
+    return (magnitude - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  static long highestEquivalent(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    int magnitude = bucket / SUB_COUNT + SUB_BITS - 1;
+    long width = 1L << (magnitude - SUB_BITS);
+    long lowest = ((long) (SUB_COUNT + bucket % SUB_COUNT)) << (magnitude - SUB_BITS);
+    return lowest + width - 1;
+  }
+}
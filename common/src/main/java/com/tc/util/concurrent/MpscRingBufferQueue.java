@@ -0,0 +1,294 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free multi-producer, single-consumer queue backed by a power of two ring.  Producers
+ * claim slots with a single CAS on the tail sequence and the one consumer advances the head
+ * without any atomic read-modify-write.
+ * <p>
+ * A bounded queue blocks producers when the ring is full.  An unbounded queue spills into a linked
+ * queue instead; once anything is spilled, producers keep spilling until the consumer has drained
+ * the spill so per-producer ordering is preserved.
+ * <p>
+ * Only one thread may call the consuming methods (poll, take, drainTo) at a time.
+ */
+public class MpscRingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+  public enum WaitStrategy {
+    /** park the consumer until a producer signals */
+    PARK,
+    /** busy spin for a while before parking */
+    SPIN_PARK,
+    /** yield the processor between checks, producers never need to signal */
+    YIELD
+  }
+
+  private static final int SPIN_TRIES = 1024;
+  private static final long PRODUCER_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+  private final AtomicReferenceArray<E> ring;
+  private final int mask;
+  private final int capacity;
+  private final Queue<E> spill;
+  private final AtomicInteger spillCount = new AtomicInteger();
+  private final WaitStrategy wait;
+
+  private final Sequence tail = new Sequence();
+  private final Sequence head = new Sequence();
+  private volatile Thread waiter;
+
+  /**
+   * @param capacity size of the ring, rounded up to a power of two for the ring itself
+   * @param bounded if true producers wait for space when the ring is full, otherwise they spill
+   * @param wait how the consumer waits for events
+   */
+  public MpscRingBufferQueue(int capacity, boolean bounded, WaitStrategy wait) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.ring = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.capacity = bounded ? capacity : size;
+    this.spill = bounded ? null : new ConcurrentLinkedQueue<>();
+    this.wait = wait;
+  }
+
+  @Override
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    if (spill != null && spillCount.get() > 0) {
+      return spill(e);
+    }
+    long t;
+    do {
+      t = tail.get();
+      if (t - head.get() >= capacity) {
+        return spill == null ? false : spill(e);
+      }
+    } while (!tail.compareAndSet(t, t + 1));
+    ring.lazySet((int) t & mask, e);
+    signal();
+    return true;
+  }
+
+  private boolean spill(E e) {
+    spill.offer(e);
+    spillCount.incrementAndGet();
+    signal();
+    return true;
+  }
+
+  private void signal() {
+    Thread w = waiter;
+    if (w != null) {
+      LockSupport.unpark(w);
+    }
+  }
+
+  @Override
+  public E poll() {
+    long h = head.get();
+    if (h < tail.get()) {
+      int index = (int) h & mask;
+      E e = ring.get(index);
+      while (e == null) {
+        // slot is claimed but the producer has not published yet
+        Thread.yield();
+        e = ring.get(index);
+      }
+      ring.lazySet(index, null);
+      head.lazySet(h + 1);
+      return e;
+    }
+    if (spill != null && spillCount.get() > 0) {
+      E e = spill.poll();
+      if (e != null) {
+        spillCount.decrementAndGet();
+      }
+      return e;
+    }
+    return null;
+  }
+
+  @Override
+  public E peek() {
+    long h = head.get();
+    if (h < tail.get()) {
+      return ring.get((int) h & mask);
+    }
+    return spill == null ? null : spill.peek();
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    E e = poll();
+    if (e != null) {
+      return e;
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int spins = 0;
+    while (true) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      if (wait == WaitStrategy.YIELD) {
+        Thread.yield();
+      } else if (wait == WaitStrategy.SPIN_PARK && spins < SPIN_TRIES) {
+        spins++;
+      } else {
+        waiter = Thread.currentThread();
+        if (isEmpty()) {
+          LockSupport.parkNanos(this, remaining);
+        }
+        waiter = null;
+      }
+      e = poll();
+      if (e != null) {
+        return e;
+      }
+    }
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    E e = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    while (e == null) {
+      e = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    return e;
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (wait == WaitStrategy.YIELD) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, PRODUCER_BACKOFF_NANOS);
+      }
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (deadline - System.nanoTime() <= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(this, PRODUCER_BACKOFF_NANOS);
+    }
+    return true;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return spill == null ? capacity - size() : Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    int count = 0;
+    E e;
+    while (count < maxElements && (e = poll()) != null) {
+      c.add(e);
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head.get() >= tail.get() && (spill == null || spillCount.get() == 0);
+  }
+
+  @Override
+  public int size() {
+    long inRing = tail.get() - head.get();
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(0, inRing) + spillCount.get());
+  }
+
+  /**
+   * Weakly consistent snapshot, for diagnostics only.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    List<E> snapshot = new ArrayList<>();
+    long t = tail.get();
+    for (long x = head.get(); x < t; x++) {
+      E e = ring.get((int) x & mask);
+      if (e != null) {
+        snapshot.add(e);
+      }
+    }
+    if (spill != null) {
+      snapshot.addAll(spill);
+    }
+    return snapshot.iterator();
+  }
+
+  @Override
+  public String toString() {
+    return "MpscRingBufferQueue{capacity=" + capacity + ", size=" + size() + ", wait=" + wait + '}';
+  }
+
+  /**
+   * Sequence padded so that head and tail do not share a cache line.
+   */
+  @SuppressWarnings("unused")
+  private static class Sequence extends AtomicLong {
+    private static final long serialVersionUID = 1L;
+    private long p1, p2, p3, p4, p5, p6, p7;
+  }
+}
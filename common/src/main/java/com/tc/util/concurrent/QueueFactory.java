@@ -20,11 +20,40 @@ package com.tc.util.concurrent;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import com.tc.async.impl.Event;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.properties.TCProperties;
+import com.tc.util.concurrent.MpscRingBufferQueue.WaitStrategy;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 
 public class QueueFactory {
+  private static final String RING_TYPE = "ring";
+  private static final int DEFAULT_RING_SIZE = 4096;
+
+  private final boolean ring;
+  private final WaitStrategy wait;
+  private final int ringSize;
+
+  public QueueFactory() {
+    TCProperties props = TCPropertiesImpl.getProperties();
+    this.ring = RING_TYPE.equalsIgnoreCase(props.getProperty(TCPropertiesConsts.L2_SEDA_STAGE_QUEUE_TYPE, true));
+    String waitName = props.getProperty(TCPropertiesConsts.L2_SEDA_STAGE_QUEUE_WAIT, true);
+    this.wait = waitName == null ? WaitStrategy.SPIN_PARK : WaitStrategy.valueOf(waitName.toUpperCase());
+    this.ringSize = props.getInt(TCPropertiesConsts.L2_SEDA_STAGE_QUEUE_RING_SIZE, DEFAULT_RING_SIZE);
+  }
+
+  public QueueFactory(WaitStrategy wait, int ringSize) {
+    this.ring = true;
+    this.wait = wait;
+    this.ringSize = ringSize;
+  }
+
   public <E> BlockingQueue<Event> createInstance(Class<E> type, int capacity) {
+    if (ring && capacity != 0) {
+      boolean bounded = capacity != Integer.MAX_VALUE && capacity > 0;
+      return new MpscRingBufferQueue<>(bounded ? capacity : ringSize, bounded, wait);
+    }
     return (capacity == 0) ? new SynchronousQueue<>() : 
             (capacity == Integer.MAX_VALUE || capacity < 0) ? new LinkedBlockingQueue<>() :
             (capacity <= 1024) ? new ArrayBlockingQueue<>(capacity) :
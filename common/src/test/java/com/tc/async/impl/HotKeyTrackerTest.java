@@ -0,0 +1,44 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.async.impl;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HotKeyTrackerTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testHotKey() {
+    HotKeyTracker tracker = new HotKeyTracker();
+    for (int x = 0; x < 10; x++) {
+      tracker.record("key" + x, 10);
+    }
+    assertFalse((Boolean) tracker.getStateMap().get("hot"));
+    tracker.record("busy", 1000);
+    Map<String, Object> state = tracker.getStateMap();
+    assertTrue((Boolean) state.get("hot"));
+    Map<String, Object> top = (Map<String, Object>) ((List<Object>) state.get("keys")).get(0);
+    assertEquals("busy", top.get("key"));
+  }
+}
@@ -17,10 +17,15 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.DirectExecutionMode;
+import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Source;
 import com.tc.logging.DefaultLoggerProvider;
 import com.tc.logging.TCLoggerProvider;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
+import com.tc.util.concurrent.MpscRingBufferQueue;
 import com.tc.util.concurrent.QueueFactory;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -33,6 +38,8 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.Random;
@@ -40,12 +47,14 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -200,6 +209,32 @@ public class MultiStageQueueImplTest {
     Assert.assertFalse(cxts.get(5).isEmpty());
   }
 
+  @Test
+  public void testOccupancyHint() throws Exception {
+    if (!MultiStageQueueImpl.SHORTEST_FIND_STRATEGY.equals(MultiStageQueueImpl.ShortestFindStrategy.OCCUPANCY)) {
+      return;
+    }
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(4,
+        new QueueFactory(MpscRingBufferQueue.WaitStrategy.PARK, 16), MultiThreadedEventContext.class,
+        (event)->()->{}, logger, "occupancy", -1);
+    MultiThreadedEventContext cxt = mock(MultiThreadedEventContext.class);
+    when(cxt.getSchedulingKey()).thenReturn(null);
+    // every queue starts idle so each unkeyed event lands on a different queue
+    for (int x = 0; x < 4; x++) {
+      impl.addToSink(cxt);
+    }
+    for (int x = 0; x < 4; x++) {
+      assertEquals(1, impl.getSource(x).size());
+    }
+    // drain queue 2, it becomes the hint for the next unkeyed event
+    assertNotNull(impl.getSource(2).poll(0));
+    assertTrue(impl.getSource(2).isEmpty());
+    impl.addToSink(cxt);
+    assertEquals(1, impl.getSource(2).size());
+    assertEquals(1, impl.getSource(0).size());
+  }
+
   @Test
   public void testPartitionRollover() throws Exception {
     if (!MultiStageQueueImpl.SHORTEST_FIND_STRATEGY.equals(MultiStageQueueImpl.ShortestFindStrategy.PARTITION)) {
@@ -235,6 +270,205 @@ public class MultiStageQueueImplTest {
     assertTrue(impl.partitionHand.get() < prior);
   }
 
+  @Test
+  public void testKeyedDirectRunsInlineOnlyWhenKeyIdle() throws Exception {
+    List<Object> ran = new ArrayList<>();
+    EventCreator<MultiThreadedEventContext> creator = new DirectEventCreator<>((event)->()->ran.add(event), ()->false, true);
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(4, new QueueFactory(), MultiThreadedEventContext.class,
+        creator, new DefaultLoggerProvider(), "keyed", 16);
+    MultiThreadedEventContext keyed = mock(MultiThreadedEventContext.class);
+    when(keyed.getSchedulingKey()).thenReturn(1);
+    MultiThreadedEventContext other = mock(MultiThreadedEventContext.class);
+    when(other.getSchedulingKey()).thenReturn(2);
+    try {
+      // not activated, queued
+      impl.addToSink(keyed);
+      assertEquals(1, impl.getSource(1).size());
+      DirectExecutionMode.activateKeyed(true);
+      // key 1 has a queued event so this must queue behind it
+      impl.addToSink(keyed);
+      assertEquals(2, impl.getSource(1).size());
+      // key 2 is idle and runs in place
+      impl.addToSink(other);
+      assertEquals(1, ran.size());
+      assertTrue(impl.getSource(2).isEmpty());
+      // drain key 1, the last event is not finished until the worker polls again
+      impl.getSource(1).poll(0).call();
+      impl.getSource(1).poll(0).call();
+      impl.addToSink(keyed);
+      assertEquals(1, impl.getSource(1).size());
+      impl.getSource(1).poll(0).call();
+      assertNull(impl.getSource(1).poll(0));
+      impl.addToSink(keyed);
+      assertEquals(5, ran.size());
+      assertTrue(impl.getSource(1).isEmpty());
+      assertEquals(2L, impl.getState().get("keyedDirect"));
+    } finally {
+      DirectExecutionMode.activateKeyed(false);
+    }
+  }
+
+  @Test
+  public void testKeyedDirectClaimRacingPut() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger ran = new AtomicInteger();
+    AtomicBoolean overlap = new AtomicBoolean();
+    EventCreator<MultiThreadedEventContext> creator = new DirectEventCreator<>((event)->()->{
+      if (running.incrementAndGet() != 1) {
+        overlap.set(true);
+      }
+      Thread.yield();
+      running.decrementAndGet();
+      ran.incrementAndGet();
+    }, ()->false, true);
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(4, new QueueFactory(), MultiThreadedEventContext.class,
+        creator, new DefaultLoggerProvider(), "keyedRace", 1024);
+    MultiThreadedEventContext keyed = mock(MultiThreadedEventContext.class);
+    when(keyed.getSchedulingKey()).thenReturn(1);
+    int count = 20000;
+    AtomicBoolean done = new AtomicBoolean();
+    Thread worker = new Thread(()->{
+      try {
+        Source source = impl.getSource(1);
+        while (!done.get() || !source.isEmpty()) {
+          Event next = source.poll(10);
+          if (next != null) {
+            next.call();
+          }
+        }
+        // finish the last event
+        source.poll(0);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }, "keyedRace-worker");
+    Runnable producer = ()->{
+      for (int x = 0; x < count; x++) {
+        impl.addToSink(keyed);
+      }
+    };
+    DirectExecutionMode.activateKeyed(true);
+    try {
+      worker.start();
+      // two producers on the same key, one may be running in place while the other puts
+      Thread other = new Thread(producer, "keyedRace-producer");
+      other.start();
+      producer.run();
+      other.join();
+      done.set(true);
+      worker.join();
+      assertEquals(2 * count, ran.get());
+      assertTrue("the worker ran an event while one was running in place", !overlap.get());
+    } finally {
+      DirectExecutionMode.activateKeyed(false);
+    }
+  }
+
+  @Test
+  public void testKeyedDirectFailureGoesToWorker() throws Exception {
+    EventCreator<MultiThreadedEventContext> creator = new DirectEventCreator<>((event)->()->{
+      throw new EventHandlerException("inline");
+    }, ()->false, true);
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(4, new QueueFactory(), MultiThreadedEventContext.class,
+        creator, new DefaultLoggerProvider(), "keyedFailure", 16);
+    MultiThreadedEventContext keyed = mock(MultiThreadedEventContext.class);
+    when(keyed.getSchedulingKey()).thenReturn(1);
+    DirectExecutionMode.activateKeyed(true);
+    try {
+      // the producer does not see the failure, the worker for the key does
+      impl.addToSink(keyed);
+      assertEquals(1L, impl.getState().get("keyedDirect"));
+      Event failure = impl.getSource(1).poll(0);
+      assertNotNull(failure);
+      try {
+        failure.call();
+        fail();
+      } catch (EventHandlerException expected) {
+        assertEquals("inline", expected.getMessage());
+      }
+    } finally {
+      DirectExecutionMode.activateKeyed(false);
+    }
+  }
+
+  @Test
+  public void testIdleWorkerStealsUnkeyed() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty("seda.stealing.workstealing", "true");
+    List<Object> ran = new ArrayList<>();
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(4, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->ran.add(event), new DefaultLoggerProvider(), "stealing", 16);
+    MultiThreadedEventContext unkeyed = mock(MultiThreadedEventContext.class);
+    when(unkeyed.getSchedulingKey()).thenReturn(null);
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(1);
+    when(flush.flush()).thenReturn(true);
+
+    impl.addToSink(unkeyed);
+    int queued = -1;
+    for (int x = 0; x < 4; x++) {
+      if (!impl.getSource(x).isEmpty()) {
+        queued = x;
+      }
+    }
+    assertTrue(queued >= 0);
+    // a worker with nothing of its own takes the unkeyed event
+    Source idle = impl.getSource((queued + 1) % 4);
+    idle.poll(0).call();
+    assertEquals(1, ran.size());
+    // the marker left on the other queue finds nothing to run
+    impl.getSource(queued).poll(0).call();
+    assertEquals(1, ran.size());
+    assertEquals(1L, impl.getState().get("stolen"));
+
+    // no stealing while a flush is passing through the queues
+    impl.addToSink(flush);
+    impl.addToSink(unkeyed);
+    idle.poll(0);
+    assertEquals(1L, impl.getState().get("stolen"));
+    assertEquals(1, impl.getState().get("unkeyedWaiting"));
+  }
+
+  @Test
+  public void testFlushRacingStolenWork() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty("seda.stealingFlush.workstealing", "true");
+    List<Object> ran = new ArrayList<>();
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(4, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->ran.add(event), new DefaultLoggerProvider(), "stealingFlush", 16);
+    MultiThreadedEventContext before = mock(MultiThreadedEventContext.class);
+    MultiThreadedEventContext after = mock(MultiThreadedEventContext.class);
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(1);
+    when(flush.flush()).thenReturn(true);
+
+    // every queue starts idle so the first unkeyed event goes to queue 0, then the flush passes queues 1 to 3
+    impl.addToSink(before);
+    assertEquals(1, impl.getSource(0).size());
+    impl.addToSink(flush);
+    for (int x = 1; x < 4; x++) {
+      impl.getSource(x).poll(0).call();
+    }
+    assertEquals(2, impl.getSource(0).size());
+    // queued behind the flush on a queue it already passed
+    impl.addToSink(after);
+    int queued = -1;
+    for (int x = 1; x < 4; x++) {
+      if (!impl.getSource(x).isEmpty()) {
+        queued = x;
+      }
+    }
+    assertTrue(queued > 0);
+    // the marker runs its own event, never the one submitted before the flush
+    impl.getSource(queued).poll(0).call();
+    assertEquals(Collections.singletonList(after), ran);
+    // an idle worker trying to steal while the flush is out backs off without holding the flush up
+    assertNull(impl.getSource(queued).poll(0));
+    impl.getSource(0).poll(0).call();
+    impl.getSource(0).poll(0).call();
+    assertEquals(Arrays.asList(after, before, flush), ran);
+    assertEquals(0L, impl.getState().get("stolen"));
+    assertEquals(0, impl.getState().get("unkeyedWaiting"));
+  }
+
   @Test
   @Ignore
   public void testThroughput8() throws InterruptedException {
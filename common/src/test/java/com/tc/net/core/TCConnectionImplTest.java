@@ -25,6 +25,9 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import static junit.framework.TestCase.fail;
@@ -455,6 +458,118 @@ public class TCConnectionImplTest {
     }
   }
   
+  @Test
+  public void testPartialWriteResumes() throws Exception {
+    try (PortManager.PortRef portRef = PortManager.getInstance().reservePort()) {
+      int port = portRef.port();
+      try (ServerSocket socket = new ServerSocket(port)) {
+        TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+        TCProtocolAdaptor adaptor = mock(TCProtocolAdaptor.class);
+        TCConnectionManagerImpl mgr = new TCConnectionManagerImpl();
+        final CoreNIOServices nioServiceThread = mock(CoreNIOServices.class);
+        SocketParams socketParams = new SocketParams();
+        SocketEndpointFactory bufferManagerFactory = mock(SocketEndpointFactory.class);
+
+        AtomicBoolean full = new AtomicBoolean(true);
+        SocketEndpoint bufferManager = mock(SocketEndpoint.class);
+        when(bufferManager.writeFrom(any())).then(iom -> {
+          ByteBuffer[] bytes = (ByteBuffer[])iom.getArgument(0);
+          if (full.get()) {
+            // accept part of the message and then report the socket full
+            if (bytes[0].remaining() == 512) {
+              bytes[0].position(256);
+              return SocketEndpoint.ResultType.SUCCESS;
+            }
+            return SocketEndpoint.ResultType.ZERO;
+          }
+          for (ByteBuffer b : bytes) {
+            b.position(b.limit());
+          }
+          return SocketEndpoint.ResultType.SUCCESS;
+        });
+
+        when(bufferManagerFactory.createSocketEndpoint(any(SocketChannel.class), anyBoolean())).thenReturn(bufferManager);
+
+        TCConnectionImpl conn = new TCConnectionImpl(listener, adaptor, mgr, nioServiceThread, socketParams,
+            bufferManagerFactory);
+        InetSocketAddress addr = new InetSocketAddress("localhost", port);
+        conn.connect(addr, 0);
+
+        WireProtocolMessage msg = mock(WireProtocolMessage.class);
+        when(msg.prepareToSend()).thenReturn(Boolean.TRUE);
+        when(msg.getHeader()).thenReturn(mock(WireProtocolHeader.class));
+        when(msg.getWireProtocolHeader()).thenReturn(mock(WireProtocolHeader.class));
+        when(msg.getEntireMessageData()).thenReturn(TCReferenceSupport.createGCReference(TCByteBufferFactory.wrap(new byte[512])));
+        when(msg.getDataLength()).thenReturn(512);
+
+        conn.putMessage(msg);
+
+        Assert.assertEquals(256, conn.doWrite());
+        verify(msg, never()).complete();
+        verify(nioServiceThread, never()).removeWriteInterest(any(TCConnectionImpl.class), any(SelectableChannel.class));
+        Assert.assertEquals(1L, conn.getState().get("writeStalls"));
+
+        full.set(false);
+        Assert.assertEquals(256, conn.doWrite());
+        verify(msg).complete();
+        verify(msg).getEntireMessageData();
+        verify(nioServiceThread).removeWriteInterest(any(TCConnectionImpl.class), any(SelectableChannel.class));
+      }
+    }
+  }
+
+  @Test
+  public void testGatheringWrite() throws Exception {
+    try (PortManager.PortRef portRef = PortManager.getInstance().reservePort()) {
+      int port = portRef.port();
+      try (ServerSocket socket = new ServerSocket(port)) {
+        TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+        TCProtocolAdaptor adaptor = mock(TCProtocolAdaptor.class);
+        TCConnectionManagerImpl mgr = new TCConnectionManagerImpl();
+        final CoreNIOServices nioServiceThread = mock(CoreNIOServices.class);
+        SocketParams socketParams = new SocketParams();
+        SocketEndpointFactory bufferManagerFactory = mock(SocketEndpointFactory.class);
+
+        List<Integer> gathered = new ArrayList<>();
+        SocketEndpoint bufferManager = mock(SocketEndpoint.class);
+        when(bufferManager.writeFrom(any())).then(iom -> {
+          ByteBuffer[] bytes = (ByteBuffer[])iom.getArgument(0);
+          gathered.add(bytes.length);
+          for (ByteBuffer b : bytes) {
+            b.position(b.limit());
+          }
+          return SocketEndpoint.ResultType.SUCCESS;
+        });
+
+        when(bufferManagerFactory.createSocketEndpoint(any(SocketChannel.class), anyBoolean())).thenReturn(bufferManager);
+
+        TCConnectionImpl conn = new TCConnectionImpl(listener, adaptor, mgr, nioServiceThread, socketParams,
+            bufferManagerFactory);
+        InetSocketAddress addr = new InetSocketAddress("localhost", port);
+        conn.connect(addr, 0);
+
+        WireProtocolMessage[] msgs = new WireProtocolMessage[3];
+        for (int x=0;x<msgs.length;x++) {
+          WireProtocolMessage msg = mock(WireProtocolMessage.class);
+          when(msg.prepareToSend()).thenReturn(Boolean.TRUE);
+          when(msg.getHeader()).thenReturn(mock(WireProtocolHeader.class));
+          when(msg.getWireProtocolHeader()).thenReturn(mock(WireProtocolHeader.class));
+          when(msg.getEntireMessageData()).thenReturn(TCReferenceSupport.createGCReference(TCByteBufferFactory.wrap(new byte[128])));
+          when(msg.getDataLength()).thenReturn(128);
+          conn.putMessage(msg);
+          msgs[x] = msg;
+        }
+
+        Assert.assertEquals(3 * 128, conn.doWrite());
+        // all three messages go out with a single gathering write
+        Assert.assertEquals(Collections.singletonList(3), gathered);
+        for (WireProtocolMessage msg : msgs) {
+          verify(msg).complete();
+        }
+      }
+    }
+  }
+
   private void sleepThenClose(TCConnectionImpl conn) {
     try {
       TimeUnit.SECONDS.sleep(3);
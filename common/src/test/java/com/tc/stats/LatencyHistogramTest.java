@@ -0,0 +1,62 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsCoverTheirValues() {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE};
+    for (long v : values) {
+      int bucket = LatencyHistogram.bucketFor(v);
+      assertTrue(v + " above bucket " + bucket, v <= LatencyHistogram.highestEquivalent(bucket));
+      if (bucket > 0) {
+        assertTrue(v + " below bucket " + bucket, v > LatencyHistogram.highestEquivalent(bucket - 1));
+      }
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long x = 1; x <= 1000; x++) {
+      histogram.record(x * 1000);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1_000_000, histogram.getMax());
+    assertWithin(500_000, histogram.getValueAtPercentile(50));
+    assertWithin(990_000, histogram.getValueAtPercentile(99));
+    assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    assertEquals(0L, histogram.getStateMap().get("count"));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(expected + " vs " + actual, Math.abs(expected - actual) <= expected / 8);
+  }
+}
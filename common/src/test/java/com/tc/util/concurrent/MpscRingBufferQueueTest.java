@@ -0,0 +1,108 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.util.concurrent;
+
+import com.tc.util.concurrent.MpscRingBufferQueue.WaitStrategy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class MpscRingBufferQueueTest {
+
+  @Test
+  public void testBoundedRejectsWhenFull() {
+    MpscRingBufferQueue<Integer> queue = new MpscRingBufferQueue<>(3, true, WaitStrategy.PARK);
+    assertTrue(queue.offer(1));
+    assertTrue(queue.offer(2));
+    assertTrue(queue.offer(3));
+    assertFalse(queue.offer(4));
+    assertEquals(3, queue.size());
+    assertEquals(0, queue.remainingCapacity());
+    assertEquals(1, (int) queue.poll());
+    assertTrue(queue.offer(4));
+    assertEquals(2, (int) queue.poll());
+    assertEquals(3, (int) queue.poll());
+    assertEquals(4, (int) queue.poll());
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testUnboundedSpillKeepsOrder() {
+    MpscRingBufferQueue<Integer> queue = new MpscRingBufferQueue<>(4, false, WaitStrategy.PARK);
+    for (int x = 0; x < 10; x++) {
+      assertTrue(queue.offer(x));
+    }
+    assertEquals(10, queue.size());
+    assertEquals(0, (int) queue.poll());
+    // spill is not empty so this must not jump ahead through the ring
+    queue.offer(10);
+    for (int x = 1; x <= 10; x++) {
+      assertEquals(x, (int) queue.poll());
+    }
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testTimedPollExpires() throws Exception {
+    for (WaitStrategy wait : WaitStrategy.values()) {
+      MpscRingBufferQueue<Integer> queue = new MpscRingBufferQueue<>(8, true, wait);
+      assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  public void testMultipleProducers() throws Exception {
+    for (WaitStrategy wait : WaitStrategy.values()) {
+      MpscRingBufferQueue<long[]> queue = new MpscRingBufferQueue<>(64, true, wait);
+      int producers = 4;
+      int perProducer = 20000;
+      List<Thread> threads = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        final int id = p;
+        Thread t = new Thread(() -> {
+          try {
+            for (long x = 0; x < perProducer; x++) {
+              queue.put(new long[] {id, x});
+            }
+          } catch (InterruptedException ie) {
+            throw new AssertionError(ie);
+          }
+        });
+        threads.add(t);
+        t.start();
+      }
+      long[] next = new long[producers];
+      for (int x = 0; x < producers * perProducer; x++) {
+        long[] item = queue.take();
+        // each producer's events must arrive in order
+        assertEquals(next[(int) item[0]]++, item[1]);
+      }
+      for (Thread t : threads) {
+        t.join();
+      }
+      assertTrue(queue.isEmpty());
+    }
+  }
+}
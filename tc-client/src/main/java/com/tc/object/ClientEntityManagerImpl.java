@@ -53,6 +53,8 @@ import com.tc.object.msg.ClientEntityReferenceContext;
 import com.tc.object.msg.ClientHandshakeMessage;
 import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.text.MapListPrettyPrint;
 import com.tc.text.PrettyPrintable;
 import com.tc.util.Assert;
@@ -88,7 +90,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private final Logger logger;
 
   private final ClientMessageChannel channel;
-  private final ConcurrentMap<TransactionID, InFlightMessage> inFlightMessages;
+  // hands out transaction ids and holds the in-flight message of each until it is retired
   private final TransactionSource transactionSource;
 
   private final ClientEntityStateManager stateManager;
@@ -99,14 +101,31 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private final LongAdder msgCount = new LongAdder();
   private final LongAdder inflights = new LongAdder();
   private final LongAdder addWindow = new LongAdder();
+  // phase timings of the invokes traced by the server, per entity class
+  private final ConcurrentMap<String, InFlightStats> traces = new ConcurrentHashMap<>();
+  // null unless invokes are coalesced before sending
+  private final InvokeCoalescer coalescer;
+  private final InvokeCredits credits;
 
   public ClientEntityManagerImpl(ClientMessageChannel channel) {
+    this(channel, TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.L1_INVOKE_COALESCING_DELAY_MICROS, 0L),
+        TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L1_INVOKE_COALESCING_MAX_BYTES, 64 * 1024),
+        TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.L1_INVOKE_CREDITS_MAX_WAIT_MILLIS, 1000L));
+  }
+
+  /**
+   * @param coalesceDelayMicros how long an invoke may wait for others to be sent with it, 0 sends immediately
+   * @param coalesceMaxBytes payload bytes that trigger sending the waiting invokes before the delay expires
+   * @param creditWaitMillis how long an invoke waits for a credit when the server granted them
+   */
+  ClientEntityManagerImpl(ClientMessageChannel channel, long coalesceDelayMicros, int coalesceMaxBytes, long creditWaitMillis) {
     this.channel = channel;
     this.logger = new ClientIDLogger(() -> channel.getClientID(), LoggerFactory.getLogger(ClientEntityManager.class));
-    this.inFlightMessages = new ConcurrentHashMap<>();
     this.transactionSource = new TransactionSource();
     this.stateManager = new ClientEntityStateManager();
     this.objectStoreMap = new ConcurrentHashMap<>(10240, 0.75f, 128);
+    this.coalescer = coalesceDelayMicros > 0 ? new InvokeCoalescer(coalesceDelayMicros, TimeUnit.MICROSECONDS, coalesceMaxBytes, this::sendInFlightMessage) : null;
+    this.credits = new InvokeCredits(creditWaitMillis, TimeUnit.MILLISECONDS);
   }
 
   @Override
@@ -118,7 +137,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     if (this.stateManager.isShutdown()) {
       return false;
     } else {
-      inFlightMessages.put(msg.getTransactionID(), msg);
+      transactionSource.put(msg);
       return true;
     }
   }
@@ -131,7 +150,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
 
   @Override
   public void handleMessage(TransactionID tid, byte[] message) {
-    InFlightMessage msg = this.inFlightMessages.get(tid);
+    InFlightMessage msg = this.transactionSource.get(tid);
     if (msg != null) {
       msg.handleMessage(message);
     } else {
@@ -141,7 +160,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
 
   @Override
   public void handleStatistics(TransactionID tid, long[] message) {
-    InFlightMessage msg = this.inFlightMessages.get(tid);
+    InFlightMessage msg = this.transactionSource.get(tid);
     if (msg != null) {
       msg.addServerStatistics(message);
     } else {
@@ -253,7 +272,9 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private Invocation.Task invoke(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> requestedCallbacks,
                                  SafeInvocationCallback<byte[]> callback, boolean requiresReplication, VoltronEntityMessage.Type type, byte[] payload) {
     Set<VoltronEntityMessage.Acks> requestedAcks = makeServerAcks(requestedCallbacks);
-    return queueInFlightMessage(eid, () -> createMessageWithDescriptor(eid, entityDescriptor, requiresReplication, payload, type, requestedAcks), callback);
+    // only invokes wait for company, lifecycle operations flush whatever is waiting ahead of them
+    boolean urgent = type != VoltronEntityMessage.Type.INVOKE_ACTION;
+    return queueInFlightMessage(eid, () -> createMessageWithDescriptor(eid, entityDescriptor, requiresReplication, payload, type, requestedAcks), callback, payload.length, urgent);
   }
 
   @Override
@@ -278,9 +299,18 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     if (stateManager.isShutdown()) {
       sub.put("pendingMessages", "<shutdown>");
     } else {
-      sub.put("pendingMessages", inFlightMessages.size());
+      sub.put("pendingMessages", transactionSource.size());
     }
     map.put("channel", sub);
+    if (coalescer != null) {
+      map.put("coalescing", coalescer.getStateMap());
+    }
+    map.put("invokeCredits", credits.getStateMap());
+    if (!traces.isEmpty()) {
+      Map<String, Object> traced = new LinkedHashMap<>();
+      traces.forEach((type, phases) -> traced.put(type, phases.getStateMap()));
+      map.put("invokeTraces", traced);
+    }
     if (stats instanceof PrettyPrintable) {
       sub.put("stats", ((PrettyPrintable)stats).getStateMap());
     }
@@ -291,7 +321,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public void received(TransactionID id) {
     // Note that this call comes the platform, potentially concurrently with complete()/failure().
-    InFlightMessage inFlight = inFlightMessages.get(id);
+    InFlightMessage inFlight = transactionSource.get(id);
     if (inFlight != null) {
       inFlight.received();
     } else {
@@ -308,9 +338,10 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public void complete(TransactionID id, byte[] value) {
     // Note that this call comes the platform, potentially concurrently with received().
-    InFlightMessage inFlight = inFlightMessages.get(id);
+    InFlightMessage inFlight = transactionSource.get(id);
     if (inFlight != null) {
       inFlight.setResult(value, null);
+      releaseCredit(inFlight);
     } else {
    // resend result or stop
     }
@@ -319,9 +350,10 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public void failed(TransactionID id, Exception error) {
     // Note that this call comes the platform, potentially concurrently with received().
-    InFlightMessage inFlight = inFlightMessages.get(id);
+    InFlightMessage inFlight = transactionSource.get(id);
     if (inFlight != null) {
       inFlight.setResult(null, error);
+      releaseCredit(inFlight);
     } else {
    // resend result or stop
     }
@@ -330,21 +362,25 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public void retired(TransactionID id) {
     // We only retire the InFlightMessage from our mapping and release the request ticket once we get the retired ACK.
-    try {
-      InFlightMessage inFlight = inFlightMessages.remove(id);
-      if (inFlight != null) {
-        inFlight.retired();
-      } else {
-        // resend result or stop
+    InFlightMessage inFlight = transactionSource.remove(id);
+    if (inFlight != null) {
+      inFlight.retired();
+      releaseCredit(inFlight);
+      if (inFlight.hasServerStatistics()) {
+        traces.computeIfAbsent(inFlight.getEntityID().getClassName(), c -> new InFlightStats()).collect(inFlight.collect());
       }
-    } finally {
-      transactionSource.retire(id);
+    } else {
+      // resend result or stop
     }
   }
 
   @Override
   public synchronized void pause() {
     stateManager.pause();
+    if (coalescer != null) {
+      // anything still waiting is resent with the handshake like every other in-flight message
+      coalescer.flush();
+    }
   }
 
   @Override
@@ -353,8 +389,14 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     notifyAll();
   }
 
+  @Override
+  public void setInvokeCredits(int granted) {
+    credits.grant(granted);
+  }
+
   @Override
   public synchronized void initializeHandshake(ClientHandshakeMessage handshakeMessage) {
+    handshakeMessage.setInvokeCreditsSupported(true);
     // Walk the objectStoreMap and add reconnect references for any objects found there.
     for (EntityClientEndpointImpl<?, ?> endpoint : this.objectStoreMap.values()) {
       EntityDescriptor descriptor = endpoint.getEntityDescriptor();
@@ -365,8 +407,8 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       handshakeMessage.addReconnectReference(context);
     }
     
-    // Walk the inFlightMessages, adding them all to the handshake, since we need them to be replayed.
-    for (InFlightMessage inFlight : this.inFlightMessages.values()) {
+    // Walk the in-flight messages, adding them all to the handshake, since we need them to be replayed.
+    for (InFlightMessage inFlight : this.transactionSource.inFlight()) {
       if (inFlight.commit()) {
         VoltronEntityMessage message = inFlight.getMessage();
         //  validate the locking on release and destroy on resends
@@ -389,7 +431,11 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
         notifyAll();
       }
     }
-    for (InFlightMessage msg : inFlightMessages.values()) {
+    credits.stop();
+    if (coalescer != null) {
+      coalescer.shutdown();
+    }
+    for (InFlightMessage msg : transactionSource.inFlight()) {
       throwClosedExceptionOnMessage(msg, "Connection closed under in-flight message");
     }
     // We also want to notify any end-points that they have been disconnected.
@@ -417,9 +463,9 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     ConnectionClosedException closed = new ConnectionClosedException(msg.getEntityID().getClassName(), msg.getEntityID().getEntityName(), description, false, null);
     msg.setResult(null, closed);
     msg.retired();
+    releaseCredit(msg);
     // may or may not be there.
-    inFlightMessages.remove(msg.getTransactionID());
-    transactionSource.retire(msg.getTransactionID());
+    transactionSource.remove(msg.getTransactionID());
   }
 
   private <M extends EntityMessage, R extends EntityResponse> EntityClientEndpoint<M, R> internalLookup(final EntityID entity, long version, final ClientInstanceID instance, final MessageCodec<M, R> codec) throws EntityException {
@@ -502,34 +548,36 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     return lifecycleAndComplete(entityDescriptor.getEntityID(), entityDescriptor, VoltronEntityMessage.Type.FETCH_ENTITY);
   }
 
-  private Invocation.Task queueInFlightMessage(EntityID eid, Supplier<NetworkVoltronEntityMessage> message, SafeInvocationCallback<byte[]> callback) {
+  private Invocation.Task queueInFlightMessage(EntityID eid, Supplier<NetworkVoltronEntityMessage> message, SafeInvocationCallback<byte[]> callback, int size, boolean urgent) {
     boolean queued;
     try {
-      InFlightMessage inFlight = new InFlightMessage(eid, message, callback);
+      // only invokes take a credit, lifecycle operations are never held back
+      InFlightMessage inFlight = createInFlightMessage(eid, message, callback, !urgent);
       try {
         msgCount.increment();
-        inflights.add(inFlightMessages.size());
+        inflights.add(transactionSource.size());
         // NOTE:  If we are already stop, the handler in outbound will fail this message for us.
         queued = enqueueMessage(inFlight);
       } catch (Throwable t) {
+        releaseCredit(inFlight);
         transactionSource.retire(inFlight.getTransactionID());
         throw t;
       }
 
       if (queued && !stateManager.isShutdown()) {
-        inFlight.sent();
-        if (!inFlight.send()) {
-          logger.debug("message not sent.  Make sure resend happens " + inFlight);
-          if (!channel.getProductID().isReconnectEnabled()) {
-            throwClosedExceptionOnMessage(inFlight, "connection not capable of resend");
-          }
+        if (coalescer != null) {
+          coalescer.submit(inFlight, size, urgent);
+        } else {
+          sendInFlightMessage(inFlight);
         }
       } else {
         throwClosedExceptionOnMessage(inFlight, "Connection closed before sending message");
       }
       return () -> {
         if (inFlight.cancel()) {
-          inFlightMessages.remove(inFlight.getTransactionID(), inFlight);
+          // never reaches the server so the transaction is retired here
+          transactionSource.remove(inFlight.getTransactionID());
+          releaseCredit(inFlight);
           return true;
         } else {
           return false;
@@ -544,6 +592,43 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     }
   }
 
+  private InFlightMessage createInFlightMessage(EntityID eid, Supplier<NetworkVoltronEntityMessage> message, SafeInvocationCallback<byte[]> callback, boolean takeCredit) {
+    // the credit is taken before the transaction is created so waiting does not hold back the oldest transaction
+    boolean credited = takeCredit && credits.acquire();
+    try {
+      InFlightMessage inFlight = new InFlightMessage(eid, message, callback);
+      if (credited) {
+        inFlight.creditAcquired();
+        credited = false;
+      }
+      return inFlight;
+    } finally {
+      if (credited) {
+        credits.release();
+      }
+    }
+  }
+
+  private void releaseCredit(InFlightMessage inFlight) {
+    if (inFlight.releaseCredit()) {
+      credits.release();
+    }
+  }
+
+  private void sendInFlightMessage(InFlightMessage inFlight) {
+    if (coalescer != null && stateManager.isShutdown()) {
+      // already failed by shutdown while waiting to be sent
+      return;
+    }
+    inFlight.sent();
+    if (!inFlight.send()) {
+      logger.debug("message not sent.  Make sure resend happens " + inFlight);
+      if (!channel.getProductID().isReconnectEnabled()) {
+        throwClosedExceptionOnMessage(inFlight, "connection not capable of resend");
+      }
+    }
+  }
+
   private NetworkVoltronEntityMessage createMessageWithoutClientInstance(EntityID entityID, long version, boolean requiresReplication, byte[] config, VoltronEntityMessage.Type type, Set<VoltronEntityMessage.Acks> acks) {
     // We have no client instance for a create but the request currently requires a full descriptor.
     EntityDescriptor entityDescriptor = createDescriptorForLifecycle(entityID, version);
@@ -46,6 +46,7 @@ import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import com.tc.net.protocol.tcm.TCAction;
@@ -69,6 +70,8 @@ public class InFlightMessage implements PrettyPrintable {
   private final Trace trace;
 
   private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+  // set while the message holds an invoke credit granted by the server
+  private final AtomicBoolean holdsCredit = new AtomicBoolean();
 
   private volatile long start;
   private volatile long send;
@@ -106,13 +109,12 @@ public class InFlightMessage implements PrettyPrintable {
       stats[StatType.CLIENT_RETIRED.ordinal()] = retired;
       stats[StatType.CLIENT_DECODED.ordinal()] = end;
       if (serverStats != null) {
-        stats[StatType.SERVER_ADD.ordinal()] = serverStats[StatType.SERVER_ADD.serverSpot()];
-        stats[StatType.SERVER_SCHEDULE.ordinal()] = serverStats[StatType.SERVER_SCHEDULE.serverSpot()];
-        stats[StatType.SERVER_BEGININVOKE.ordinal()] = serverStats[StatType.SERVER_BEGININVOKE.serverSpot()];
-        stats[StatType.SERVER_ENDINVOKE.ordinal()] = serverStats[StatType.SERVER_ENDINVOKE.serverSpot()];
-        stats[StatType.SERVER_RECEIVED.ordinal()] = serverStats[StatType.SERVER_RECEIVED.serverSpot()];
-        stats[StatType.SERVER_RETIRED.ordinal()] = serverStats[StatType.SERVER_RETIRED.serverSpot()];
-        stats[StatType.SERVER_COMPLETE.ordinal()] = serverStats[StatType.SERVER_COMPLETE.serverSpot()];
+        for (StatType type : StatType.values()) {
+          int spot = type.serverSpot();
+          if (spot > 0 && spot < serverStats.length && type != StatType.END) {
+            stats[type.ordinal()] = serverStats[spot];
+          }
+        }
       }
     }
     return stats;
@@ -257,10 +259,28 @@ public class InFlightMessage implements PrettyPrintable {
     }
   }
 
+  void creditAcquired() {
+    holdsCredit.set(true);
+  }
+
+  /**
+   * @return true only the first time for a message holding a credit, the caller gives the credit back
+   */
+  boolean releaseCredit() {
+    return holdsCredit.compareAndSet(true, false);
+  }
+
   void addServerStatistics(long[] stats) {
     this.serverStats = stats;
   }
 
+  /**
+   * @return true if the server traced this invoke and returned its phase timings
+   */
+  boolean hasServerStatistics() {
+    return this.serverStats != null;
+  }
+
   public boolean commit() {
     return state.compareAndSet(State.PENDING, State.COMMITTED) || State.COMMITTED.equals(state.get());
   }
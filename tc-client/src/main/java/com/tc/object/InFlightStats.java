@@ -23,7 +23,6 @@ import static com.tc.object.StatType.CLIENT_GOT;
 import static com.tc.object.StatType.CLIENT_SEND;
 import static com.tc.object.StatType.CLIENT_SENT;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.LongAdder;
 import static com.tc.object.StatType.CLIENT_RECEIVED;
@@ -34,39 +33,56 @@ import static com.tc.object.StatType.SERVER_BEGININVOKE;
 import static com.tc.object.StatType.SERVER_COMPLETE;
 import static com.tc.object.StatType.SERVER_ENDINVOKE;
 import static com.tc.object.StatType.SERVER_RECEIVED;
+import static com.tc.object.StatType.SERVER_REPLICATED;
 import static com.tc.object.StatType.SERVER_RETIRED;
 import static com.tc.object.StatType.SERVER_SCHEDULE;
+import com.tc.stats.LatencyHistogram;
 import com.tc.text.PrettyPrintable;
-import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Latency distributions of the client and server phases of traced invokes.  The server decides which invokes are
+ * traced and returns their timings, only those invokes are collected here.
  */
 class InFlightStats implements PrettyPrintable {
   
-  private static final List<Combo> values = Arrays.asList(
-    new Combo(CLIENT_ENCODE, CLIENT_SEND),
-    new Combo(CLIENT_SEND, CLIENT_SENT),
-    new Combo(CLIENT_SENT, CLIENT_RECEIVED),
-    new Combo(CLIENT_RECEIVED, CLIENT_COMPLETE),
-    new Combo(CLIENT_COMPLETE, CLIENT_GOT),
-    new Combo(CLIENT_GOT, CLIENT_DECODED),
-    new Combo(CLIENT_COMPLETE, CLIENT_RETIRED),
-    new Combo(CLIENT_SENT, CLIENT_RETIRED),
-    new Combo(CLIENT_ENCODE, CLIENT_DECODED),
-    new Combo(SERVER_ADD, SERVER_SCHEDULE),
-    new Combo(SERVER_SCHEDULE, SERVER_BEGININVOKE),
-    new Combo(SERVER_BEGININVOKE, SERVER_ENDINVOKE),
-    new Combo(SERVER_RECEIVED, SERVER_COMPLETE),
-    new Combo(SERVER_COMPLETE, SERVER_RETIRED)
-  );
+  private static final StatType[][] PHASES = {
+    {CLIENT_ENCODE, CLIENT_SEND},
+    {CLIENT_SEND, CLIENT_SENT},
+    {CLIENT_SENT, CLIENT_RECEIVED},
+    {CLIENT_RECEIVED, CLIENT_COMPLETE},
+    {CLIENT_COMPLETE, CLIENT_GOT},
+    {CLIENT_GOT, CLIENT_DECODED},
+    {CLIENT_COMPLETE, CLIENT_RETIRED},
+    {CLIENT_SENT, CLIENT_RETIRED},
+    {CLIENT_ENCODE, CLIENT_DECODED},
+    {SERVER_ADD, SERVER_SCHEDULE},
+    {SERVER_SCHEDULE, SERVER_REPLICATED},
+    {SERVER_REPLICATED, SERVER_BEGININVOKE},
+    {SERVER_BEGININVOKE, SERVER_ENDINVOKE},
+    {SERVER_RECEIVED, SERVER_COMPLETE},
+    {SERVER_COMPLETE, SERVER_RETIRED}
+  };
+  private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
   private final LongAdder totalCount = new LongAdder();
+
+  InFlightStats() {
+    for (int x = 0; x < phases.length; x++) {
+      phases[x] = new LatencyHistogram();
+    }
+  }
   
   public void collect(long[] input) {
     if (input != null) {
-      values.forEach(c->c.add(input));
+      for (int x = 0; x < PHASES.length; x++) {
+        long from = input[PHASES[x][0].ordinal()];
+        long to = input[PHASES[x][1].ordinal()];
+        // phases which were not stamped on this invoke are left out
+        if (from != 0 && to != 0) {
+          phases[x].record(to - from);
+        }
+      }
     }
     totalCount.increment();
   }
@@ -75,7 +91,10 @@ class InFlightStats implements PrettyPrintable {
   public Map<String, ?> getStateMap() {
     Map<String, Object> map = new LinkedHashMap<>();
     if (totalCount.sum() > 0) {
-      values.forEach(c->map.put(c.toString(), c.value()/totalCount.sum()));
+      map.put("traced", totalCount.sum());
+      for (int x = 0; x < PHASES.length; x++) {
+        map.put(PHASES[x][0].description() + "->" + PHASES[x][1].description(), phases[x].getStateMap());
+      }
     }
     return map;
   } 
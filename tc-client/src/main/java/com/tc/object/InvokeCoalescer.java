@@ -0,0 +1,127 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.object;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Holds outgoing in-flight messages for a short window so that invokes issued by many threads
+ * reach the connection back to back.  The transport then packs them into a single wire message
+ * group, which the server already unpacks into individual transactions with their own acks.
+ * <p>
+ * Messages are always handed to the sender in the order they were submitted.  A window is
+ * flushed when it is older than the max delay, when it holds more than max bytes of payload, or
+ * when an urgent message is submitted.
+ */
+class InvokeCoalescer {
+  private final long maxDelayNanos;
+  private final int maxBytes;
+  private final Consumer<InFlightMessage> sender;
+  private final ScheduledExecutorService timer;
+  // serializes flushes so batches drained one after the other are also sent in that order
+  private final Object sendLock = new Object();
+
+  private List<InFlightMessage> pending = new ArrayList<>();
+  private int pendingBytes;
+  private boolean scheduled;
+
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  InvokeCoalescer(long maxDelay, TimeUnit units, int maxBytes, Consumer<InFlightMessage> sender) {
+    this.maxDelayNanos = units.toNanos(maxDelay);
+    this.maxBytes = maxBytes;
+    this.sender = sender;
+    this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "Invoke Coalescer");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * @param size payload bytes of the message
+   * @param urgent send this message and everything before it now
+   */
+  void submit(InFlightMessage message, int size, boolean urgent) {
+    boolean flushNow;
+    synchronized (this) {
+      pending.add(message);
+      pendingBytes += size;
+      flushNow = urgent || pendingBytes >= maxBytes;
+      if (!flushNow && !scheduled) {
+        scheduled = true;
+        try {
+          timer.schedule(this::flush, maxDelayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException shutdown) {
+          flushNow = true;
+        }
+      }
+    }
+    if (flushNow) {
+      flush();
+    }
+  }
+
+  void flush() {
+    synchronized (sendLock) {
+      List<InFlightMessage> batch;
+      synchronized (this) {
+        batch = pending;
+        if (batch.isEmpty()) {
+          return;
+        }
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        scheduled = false;
+      }
+      batches.increment();
+      coalesced.add(batch.size());
+      batch.forEach(sender);
+    }
+  }
+
+  /**
+   * Flush anything waiting and stop the timer.
+   */
+  void shutdown() {
+    timer.shutdownNow();
+    flush();
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("maxDelayNanos", maxDelayNanos);
+    map.put("maxBytes", maxBytes);
+    map.put("batches", batches.sum());
+    map.put("messages", coalesced.sum());
+    synchronized (this) {
+      map.put("pending", pending.size());
+    }
+    return map;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.object;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the invokes a client has outstanding to the credits the server granted in the handshake ack.  An invoke
+ * takes a credit before it is sent and gives it back when its result arrives, so a client issuing faster than the
+ * server completes waits here rather than filling the server's queues and being backed off there.
+ * <p>
+ * Waiting is bounded so that an invoke issued from a thread which also delivers results cannot stall the client
+ * for good, an invoke which waited out the max wait is sent anyway and counted as an overdraft.  The overdraft is
+ * capped at the grant itself, past that invokes wait for a credit to come back however long it takes.  The server
+ * backs off a client with more invokes outstanding than its grant.
+ */
+class InvokeCredits {
+  private final long maxWaitNanos;
+
+  // 0 until the server grants credits, invokes are then not bounded
+  private int limit;
+  private int outstanding;
+  private boolean stopped;
+
+  private long waits;
+  private long overdrafts;
+
+  InvokeCredits(long maxWait, TimeUnit units) {
+    this.maxWaitNanos = units.toNanos(maxWait);
+  }
+
+  /**
+   * Set the credits granted by the server.  Invokes already outstanding keep their credits across a reconnect since
+   * they are resent with the handshake.
+   */
+  synchronized void grant(int credits) {
+    limit = Math.max(0, credits);
+    notifyAll();
+  }
+
+  /**
+   * @return true if a credit was taken which must be given back with {@link #release()}
+   */
+  synchronized boolean acquire() {
+    if (limit == 0 || stopped) {
+      return false;
+    }
+    if (outstanding >= limit) {
+      waits += 1;
+      boolean interrupted = false;
+      long deadline = System.nanoTime() + maxWaitNanos;
+      long remaining = maxWaitNanos;
+      while (limit > 0 && !stopped && (overdraftSpent() || (outstanding >= limit && remaining > 0 && !interrupted))) {
+        try {
+          if (overdraftSpent()) {
+            wait();
+          } else {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+          }
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+        remaining = deadline - System.nanoTime();
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (limit == 0 || stopped) {
+        return false;
+      }
+      if (outstanding >= limit) {
+        overdrafts += 1;
+      }
+    }
+    outstanding += 1;
+    return true;
+  }
+
+  private boolean overdraftSpent() {
+    return outstanding - limit >= limit;
+  }
+
+  synchronized void release() {
+    outstanding -= 1;
+    notify();
+  }
+
+  /**
+   * Stop bounding invokes and let go of anyone waiting, the connection is gone.
+   */
+  synchronized void stop() {
+    stopped = true;
+    notifyAll();
+  }
+
+  synchronized Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("credits", limit);
+    map.put("outstanding", outstanding);
+    map.put("waits", waits);
+    map.put("overdrafts", overdrafts);
+    return map;
+  }
+}
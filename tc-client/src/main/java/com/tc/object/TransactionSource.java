@@ -18,48 +18,215 @@
 package com.tc.object;
 
 import com.tc.object.tx.TransactionID;
-import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Hands out transaction ids and tracks the messages in flight for them, indexed directly by the id.  Ids live in
+ * fixed size segments of slots held in a ring.  Every id moves from empty, to holding its in-flight message, to
+ * retired, with single slot updates that take no lock.  The oldest id which is not retired advances over retired
+ * slots and the ring positions of segments behind it are taken by new segments.  The ring only grows, under a lock,
+ * when the window between the oldest and the newest id no longer fits.
+ * <p>
+ * Retired segments are dropped rather than recycled.  A late retire of an old id may still hold its segment and would
+ * write into the slot of a newer id if the segment were cleared and handed out again.
+ */
 public class TransactionSource {
+  private static final int SEGMENT_SHIFT = 10;
+  private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+  private static final int INITIAL_SEGMENTS = 4;
+  private static final Object RETIRED = new Object();
+
 // older servers don't like zero transasction ids so start at 1L
   private final AtomicLong current = new AtomicLong(1L);
-  private volatile TransactionID oldestCache = new TransactionID(1L);
-  private long retiredBase = 1L;
-  private int retirePosition = 0;
-  private final long GC_THRESHOLD = 32 * 1024;
-  private BitSet retired = new BitSet();
+  private final AtomicLong oldest = new AtomicLong(1L);
+  private final AtomicReference<TransactionID> oldestCache = new AtomicReference<>(new TransactionID(1L));
+  private final LongAdder inFlight = new LongAdder();
+  private volatile AtomicReferenceArray<Segment> ring = new AtomicReferenceArray<>(INITIAL_SEGMENTS);
+
+  private static class Segment extends AtomicReferenceArray<Object> {
+    private static final long serialVersionUID = 1L;
+    private final long index;
+
+    Segment(long index) {
+      super(SEGMENT_SIZE);
+      this.index = index;
+    }
+  }
 
   public TransactionID create() {
     return new TransactionID(current.getAndIncrement());
   }
 
   public TransactionID oldest() {
-    return oldestCache;
+    return oldestCache.get();
+  }
+
+  /**
+   * Track the message in flight for its transaction id until the id is retired.
+   */
+  public void put(InFlightMessage msg) {
+    long id = msg.getTransactionID().toLong();
+    Segment segment = segment(id, true);
+    if (segment != null && segment.compareAndSet(slot(id), null, msg)) {
+      inFlight.increment();
+    }
   }
 
-  private void updateOldest() {
-    retirePosition = retired.nextClearBit(retirePosition);
-    long transactionId = retirePosition + retiredBase;
-    if (oldestCache.toLong() != transactionId) {
-      oldestCache = new TransactionID(transactionId);
+  /**
+   * @return the message in flight for the transaction or null if there is none
+   */
+  public InFlightMessage get(TransactionID txnId) {
+    long id = txnId.toLong();
+    Segment segment = segment(id, false);
+    if (segment != null) {
+      Object value = segment.get(slot(id));
+      if (value instanceof InFlightMessage) {
+        return (InFlightMessage) value;
+      }
     }
+    return null;
   }
 
-  private void gc() {
-    if (retirePosition > GC_THRESHOLD) {
-      retiredBase += retirePosition;
-      retired = retired.get(retirePosition, retired.size());
-      retirePosition = 0;
+  /**
+   * Retire the transaction and stop tracking its message.
+   *
+   * @return the message which was in flight for the transaction or null if there was none
+   */
+  public InFlightMessage remove(TransactionID txnId) {
+    Object previous = release(txnId.toLong());
+    return (previous instanceof InFlightMessage) ? (InFlightMessage) previous : null;
+  }
+
+  /**
+   * Retire a transaction which may never have had a message in flight.
+   *
+   * @return true if this call retired the transaction
+   */
+  public boolean retire(TransactionID txnId) {
+    return release(txnId.toLong()) != RETIRED;
+  }
+
+  /**
+   * @return the number of messages in flight
+   */
+  public long size() {
+    return inFlight.sum();
+  }
+
+  /**
+   * @return a snapshot of the messages in flight, in transaction order
+   */
+  public List<InFlightMessage> inFlight() {
+    List<InFlightMessage> list = new ArrayList<>();
+    long end = current.get();
+    long id = oldest.get();
+    while (id < end) {
+      Segment segment = segment(id, false);
+      long segmentEnd = Math.min(end, ((id >>> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT);
+      if (segment != null) {
+        for (; id < segmentEnd; id++) {
+          Object value = segment.get(slot(id));
+          if (value instanceof InFlightMessage) {
+            list.add((InFlightMessage) value);
+          }
+        }
+      }
+      id = segmentEnd;
     }
+    return list;
   }
 
-  public synchronized boolean retire(TransactionID txnId) {
-    int index = (int)(txnId.toLong() - retiredBase);
-    boolean last = !retired.get(index);
-    retired.set(index);
-    updateOldest();
-    gc();
-    return last;
+  private Object release(long id) {
+    Segment segment = segment(id, true);
+    if (segment == null) {
+      // the segment was reused so the transaction was retired long ago
+      return RETIRED;
+    }
+    Object previous = segment.getAndSet(slot(id), RETIRED);
+    if (previous != RETIRED) {
+      if (previous != null) {
+        inFlight.decrement();
+      }
+      advanceOldest();
+    }
+    return previous;
+  }
+
+  private void advanceOldest() {
+    long o = oldest.get();
+    while (o < current.get() && isRetired(o)) {
+      if (oldest.compareAndSet(o, o + 1)) {
+        o += 1;
+      } else {
+        o = oldest.get();
+      }
+    }
+    // only move the cached id forward, a slower thread may have seen an older value
+    TransactionID cached = oldestCache.get();
+    while (cached.toLong() < o && !oldestCache.compareAndSet(cached, new TransactionID(o))) {
+      cached = oldestCache.get();
+    }
+  }
+
+  private boolean isRetired(long id) {
+    Segment segment = segment(id, false);
+    return segment != null && segment.get(slot(id)) == RETIRED;
+  }
+
+  private static int slot(long id) {
+    return (int) (id & SEGMENT_MASK);
+  }
+
+  private Segment segment(long id, boolean create) {
+    long index = id >>> SEGMENT_SHIFT;
+    AtomicReferenceArray<Segment> r = ring;
+    Segment segment = r.get((int) (index & (r.length() - 1)));
+    if (segment != null && segment.index == index) {
+      return segment;
+    } else if (create) {
+      return addSegment(index);
+    } else {
+      return null;
+    }
+  }
+
+  private synchronized Segment addSegment(long index) {
+    long oldestIndex = oldest.get() >>> SEGMENT_SHIFT;
+    if (index < oldestIndex) {
+      return null;
+    }
+    while (true) {
+      AtomicReferenceArray<Segment> r = ring;
+      int pos = (int) (index & (r.length() - 1));
+      Segment segment = r.get(pos);
+      if (segment != null && segment.index == index) {
+        return segment;
+      } else if (segment == null || segment.index < oldestIndex) {
+        // every id in a segment behind the oldest is retired so its place can be taken, by a fresh segment since
+        // stale references to the old one may still be retiring ids
+        segment = new Segment(index);
+        r.set(pos, segment);
+        return segment;
+      } else {
+        grow(r, oldestIndex);
+      }
+    }
+  }
+
+  private void grow(AtomicReferenceArray<Segment> r, long oldestIndex) {
+    AtomicReferenceArray<Segment> grown = new AtomicReferenceArray<>(r.length() << 1);
+    for (int x = 0; x < r.length(); x++) {
+      Segment segment = r.get(x);
+      if (segment != null && segment.index >= oldestIndex) {
+        grown.set((int) (segment.index & (grown.length() - 1)), segment);
+      }
+    }
+    ring = grown;
   }
 }
@@ -157,15 +157,16 @@ public class ClientHandshakeManagerImpl implements ClientHandshakeManager {
   @Override
   public void acknowledgeHandshake(ClientHandshakeAckMessage handshakeAck) {
     acknowledgeHandshake(handshakeAck.getThisNodeId(), handshakeAck.getAllNodes(),
-        handshakeAck.getServerVersion());
+        handshakeAck.getServerVersion(), handshakeAck.getInvokeCredits());
   }
 
-  protected synchronized void acknowledgeHandshake(ClientID thisNodeId, ClientID[] clusterMembers, String serverVersion) {
+  protected synchronized void acknowledgeHandshake(ClientID thisNodeId, ClientID[] clusterMembers, String serverVersion, int invokeCredits) {
     this.logger.debug("Received Handshake ack");
     if (this.state != State.STARTING) {
       this.logger.warn("Ignoring handshake acknowledgement while " + this.state);
     } else {
       checkClientServerVersionCompatibility(serverVersion);
+      this.callBacks.setInvokeCredits(invokeCredits);
 
       changeToRunning();
       notifyAll();
@@ -0,0 +1,87 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.object;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+
+
+public class InvokeCoalescerTest {
+
+  @Test
+  public void testDelayFlushesInOrder() throws Exception {
+    List<InFlightMessage> sent = new CopyOnWriteArrayList<>();
+    InvokeCoalescer coalescer = new InvokeCoalescer(10, TimeUnit.MILLISECONDS, Integer.MAX_VALUE, sent::add);
+    InFlightMessage a = mock(InFlightMessage.class);
+    InFlightMessage b = mock(InFlightMessage.class);
+    coalescer.submit(a, 10, false);
+    coalescer.submit(b, 10, false);
+    assertTrue(sent.isEmpty());
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (sent.size() < 2 && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(5);
+    }
+    assertEquals(Arrays.asList(a, b), sent);
+    coalescer.shutdown();
+  }
+
+  @Test
+  public void testMaxBytesFlushesImmediately() {
+    List<InFlightMessage> sent = new CopyOnWriteArrayList<>();
+    InvokeCoalescer coalescer = new InvokeCoalescer(1, TimeUnit.HOURS, 100, sent::add);
+    InFlightMessage a = mock(InFlightMessage.class);
+    InFlightMessage b = mock(InFlightMessage.class);
+    coalescer.submit(a, 60, false);
+    assertTrue(sent.isEmpty());
+    coalescer.submit(b, 60, false);
+    assertEquals(Arrays.asList(a, b), sent);
+    coalescer.shutdown();
+  }
+
+  @Test
+  public void testUrgentFlushesWaiting() {
+    List<InFlightMessage> sent = new CopyOnWriteArrayList<>();
+    InvokeCoalescer coalescer = new InvokeCoalescer(1, TimeUnit.HOURS, Integer.MAX_VALUE, sent::add);
+    InFlightMessage invoke = mock(InFlightMessage.class);
+    InFlightMessage lifecycle = mock(InFlightMessage.class);
+    coalescer.submit(invoke, 10, false);
+    coalescer.submit(lifecycle, 0, true);
+    assertEquals(Arrays.asList(invoke, lifecycle), sent);
+    coalescer.shutdown();
+  }
+
+  @Test
+  public void testShutdownFlushes() {
+    List<InFlightMessage> sent = new CopyOnWriteArrayList<>();
+    InvokeCoalescer coalescer = new InvokeCoalescer(1, TimeUnit.HOURS, Integer.MAX_VALUE, sent::add);
+    InFlightMessage a = mock(InFlightMessage.class);
+    coalescer.submit(a, 10, false);
+    coalescer.shutdown();
+    assertEquals(Arrays.asList(a), sent);
+    // after shutdown messages are not held anymore
+    InFlightMessage b = mock(InFlightMessage.class);
+    coalescer.submit(b, 10, false);
+    assertEquals(Arrays.asList(a, b), sent);
+  }
+}
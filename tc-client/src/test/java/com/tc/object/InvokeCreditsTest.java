@@ -0,0 +1,101 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.object;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class InvokeCreditsTest {
+
+  @Test
+  public void testNoGrantNeverWaits() {
+    InvokeCredits credits = new InvokeCredits(1, TimeUnit.HOURS);
+    for (int x = 0; x < 100; x++) {
+      assertFalse(credits.acquire());
+    }
+  }
+
+  @Test
+  public void testReleaseWakesWaiter() throws Exception {
+    InvokeCredits credits = new InvokeCredits(1, TimeUnit.HOURS);
+    credits.grant(1);
+    assertTrue(credits.acquire());
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      if (credits.acquire()) {
+        acquired.countDown();
+      }
+    });
+    waiter.start();
+    assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+    credits.release();
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+    waiter.join();
+    assertEquals(0L, credits.getStateMap().get("overdrafts"));
+  }
+
+  @Test
+  public void testMaxWaitOverdraws() {
+    InvokeCredits credits = new InvokeCredits(10, TimeUnit.MILLISECONDS);
+    credits.grant(1);
+    assertTrue(credits.acquire());
+    assertTrue(credits.acquire());
+    assertEquals(2, credits.getStateMap().get("outstanding"));
+    assertEquals(1L, credits.getStateMap().get("overdrafts"));
+  }
+
+  @Test
+  public void testOverdraftIsCapped() throws Exception {
+    InvokeCredits credits = new InvokeCredits(10, TimeUnit.MILLISECONDS);
+    credits.grant(1);
+    assertTrue(credits.acquire());
+    assertTrue(credits.acquire());
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      if (credits.acquire()) {
+        acquired.countDown();
+      }
+    });
+    waiter.start();
+    // the overdraft is spent so the max wait no longer applies
+    assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+    assertEquals(2, credits.getStateMap().get("outstanding"));
+    credits.release();
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+    waiter.join();
+    assertEquals(2, credits.getStateMap().get("outstanding"));
+  }
+
+  @Test
+  public void testStopReleasesWaiter() throws Exception {
+    InvokeCredits credits = new InvokeCredits(1, TimeUnit.HOURS);
+    credits.grant(1);
+    assertTrue(credits.acquire());
+    Thread waiter = new Thread(credits::acquire);
+    waiter.start();
+    credits.stop();
+    waiter.join(TimeUnit.SECONDS.toMillis(10));
+    assertFalse(waiter.isAlive());
+    assertFalse(credits.acquire());
+  }
+}
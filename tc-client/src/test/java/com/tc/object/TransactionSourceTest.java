@@ -18,6 +18,7 @@
 package com.tc.object;
 
 import com.tc.object.tx.TransactionID;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,6 +31,9 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  *
  */
@@ -104,4 +108,39 @@ public class TransactionSourceTest {
     TransactionSource instance = new TransactionSource();
     Assert.assertTrue(new TransactionID(instance.oldest().toLong()).isValid());
   }
+
+  @Test
+  public void testInFlightAcrossSegments() {
+    TransactionSource instance = new TransactionSource();
+    int count = 10000;
+    InFlightMessage[] messages = new InFlightMessage[count];
+    for (int x=0;x<count;x++) {
+      TransactionID tid = instance.create();
+      messages[x] = mock(InFlightMessage.class);
+      when(messages[x].getTransactionID()).thenReturn(tid);
+      instance.put(messages[x]);
+    }
+    Assert.assertEquals(count, instance.size());
+    // retire everything but the first so the window spans every segment
+    for (int x=count-1;x>0;x--) {
+      Assert.assertSame(messages[x], instance.remove(messages[x].getTransactionID()));
+    }
+    Assert.assertEquals(1, instance.size());
+    Assert.assertEquals(1L, instance.oldest().toLong());
+    List<InFlightMessage> remaining = instance.inFlight();
+    Assert.assertEquals(1, remaining.size());
+    Assert.assertSame(messages[0], remaining.get(0));
+    Assert.assertNull(instance.get(messages[1].getTransactionID()));
+    Assert.assertSame(messages[0], instance.get(messages[0].getTransactionID()));
+
+    Assert.assertSame(messages[0], instance.remove(messages[0].getTransactionID()));
+    Assert.assertEquals(count + 1L, instance.oldest().toLong());
+    Assert.assertFalse(instance.retire(messages[0].getTransactionID()));
+    Assert.assertEquals(0, instance.size());
+
+    // segments behind the oldest are reused
+    TransactionID next = instance.create();
+    Assert.assertTrue(instance.retire(next));
+    Assert.assertEquals(next.toLong() + 1, instance.oldest().toLong());
+  }
 }
@@ -19,10 +19,14 @@ package com.tc.bytes;
 
 import com.tc.util.concurrent.SetOnceFlag;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -31,7 +35,11 @@ import java.util.function.Supplier;
 public class TCByteBufferAllocator {
   private final Supplier<TCByteBuffer> newBuffers;
   private final Queue<TCByteBuffer> returns;
+  private final Consumer<TCByteBuffer> release;
+  private final boolean external;
   private final List<TCByteBuffer> items = new ArrayList<>();
+  // buffers owned by the caller, they are handed out in sequence but never recycled
+  private final Set<TCByteBuffer> attached = Collections.newSetFromMap(new IdentityHashMap<>());
   private final SetOnceFlag complete = new SetOnceFlag();
   
   public TCByteBufferAllocator(Supplier<TCByteBuffer> tracked) {
@@ -41,6 +49,19 @@ public class TCByteBufferAllocator {
   public TCByteBufferAllocator(Supplier<TCByteBuffer> tracked, Queue<TCByteBuffer> returns) {
     this.newBuffers = tracked;
     this.returns = returns;
+    this.release = returns::add;
+    this.external = false;
+  }
+
+  /**
+   * Buffers are handed to release once the reference produced by {@link #complete()} is closed.  Buffers
+   * dropped by a rewind are reused by this allocator and released on completion if still unused.
+   */
+  public TCByteBufferAllocator(Supplier<TCByteBuffer> tracked, Consumer<TCByteBuffer> release) {
+    this.newBuffers = tracked;
+    this.returns = new LinkedList<>();
+    this.release = release;
+    this.external = true;
   }
   
   public TCByteBuffer add() {
@@ -54,6 +75,18 @@ public class TCByteBufferAllocator {
     items.add(next);
     return next;
   }
+
+  /**
+   * Append a buffer owned by the caller after the buffers allocated so far.  The buffer must be in write mode with
+   * its position at the end of its data.  It is never reused or handed to release.
+   */
+  public void attach(TCByteBuffer buffer) {
+    if (complete.isSet()) {
+      throw new IllegalStateException("buffers already accessed");
+    }
+    attached.add(buffer);
+    items.add(buffer);
+  }
   
   private void reset(int stop) {
     if (complete.isSet()) {
@@ -69,7 +102,9 @@ public class TCByteBufferAllocator {
         c.position(stop - pos);
       } else {
         it.remove();
-        returns.add(c.reInit());
+        if (!attached.remove(c)) {
+          returns.add(c.reInit());
+        }
       }
     }
   }
@@ -81,6 +116,18 @@ public class TCByteBufferAllocator {
   
   public TCReference complete() {
     complete.set();
-    return TCReferenceSupport.createReference(items, returns::add);
+    if (!returns.isEmpty() && external) {
+      returns.forEach(release);
+      returns.clear();
+    }
+    if (attached.isEmpty()) {
+      return TCReferenceSupport.createReference(items, release);
+    } else {
+      return TCReferenceSupport.createReference(items, b -> {
+        if (!attached.contains(b)) {
+          release.accept(b);
+        }
+      });
+    }
   }
 }
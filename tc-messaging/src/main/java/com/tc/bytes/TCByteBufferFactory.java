@@ -33,11 +33,14 @@ public class TCByteBufferFactory {
   private static final int                 WARN_THRESHOLD          = 10 * 1024 * 1024;                                                // 10MiB
   private static final TCByteBuffer        ZERO_BYTE_BUFFER        = TCByteBufferImpl.wrap(new byte[0]);
   private static final Logger logger = LoggerFactory.getLogger(TCByteBufferFactory.class);
+  private static volatile TCByteBufferPool POOL;
   /**
-   * Get a single variable sized TCByteBuffer instance Note: These are not pooled (yet)
+   * Get a single variable sized TCByteBuffer instance.  When pooling is enabled, buffers up to the largest
+   * size class of the pool are taken from the pool and should be handed back through {@link #returnInstance(TCByteBuffer)}
+   * once the last reference to them is closed.
    * 
    * @param size The desired minimum capacity of the buffer. The actual capacity may be higher. The buffer's limit will
-   *        be equal to it's capacity.
+   *        be equal to the requested size.
    */
   public static TCByteBuffer getInstance(int size) {
 
@@ -47,12 +50,50 @@ public class TCByteBufferFactory {
     if (size < 0) { throw new IllegalArgumentException("Requested length cannot be less than zero"); }
     if (size == 0) { return ZERO_BYTE_BUFFER; }
 
-    // Don't give 4k ByteBuffer from pool for smaller size requests.
-    TCByteBufferImpl buf = new TCByteBufferImpl(size, false);
+    TCByteBufferPool pool = POOL;
+    TCByteBuffer buf = pool != null ? pool.poll(size) : null;
+    if (buf == null) {
+      // small requests are not pooled, many are never handed back and would cost a whole size class each
+      buf = new TCByteBufferImpl(size, false);
+    }
     Assert.assertTrue(buf.position() == 0);
     return buf;
   }
 
+  /**
+   * Hand a buffer obtained from {@link #getInstance(int)} back to the pool.  The buffer must already be
+   * reinitialized, as done by {@link TCReferenceSupport} when the last reference is closed.  Buffers
+   * that were not allocated by the pool are left to the garbage collector.
+   */
+  public static void returnInstance(TCByteBuffer buf) {
+    TCByteBufferPool pool = POOL;
+    if (pool != null) {
+      pool.offer(buf);
+    }
+  }
+
+  /**
+   * Enable pooling of heap buffers handed out by {@link #getInstance(int)}.
+   *
+   * @param maxSize largest buffer size that is pooled
+   * @param magazineSize number of buffers cached by each thread per size class
+   * @param maxRetained maximum number of idle bytes held by the pool
+   */
+  public static void enablePooling(int maxSize, int magazineSize, long maxRetained) {
+    POOL = new TCByteBufferPool(maxSize, magazineSize, maxRetained);
+  }
+
+  public static void disablePooling() {
+    POOL = null;
+  }
+
+  /**
+   * @return the active buffer pool or null if pooling is not enabled
+   */
+  public static TCByteBufferPool getPool() {
+    return POOL;
+  }
+
   public static void setFixedBufferSize(int size) {
     if (size > 512 && size < 32 * 1024 *1024) {
       FIXED_BUFFER_SIZE = size;
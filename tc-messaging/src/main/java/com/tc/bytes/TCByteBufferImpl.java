@@ -35,14 +35,24 @@ public class TCByteBufferImpl implements TCByteBuffer {
   private static final boolean ACCESS_CHECK = Boolean.getBoolean("buffer.access.check");
   private final AtomicBoolean lock =  ACCESS_CHECK ? new AtomicBoolean() : null;
   private final AtomicInteger references = ACCESS_CHECK ? new AtomicInteger() : null;
+  private final boolean pooled;
 
   TCByteBufferImpl(int capacity, boolean direct) {
-    this(null, direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+    this(capacity, direct, false);
+  }
+
+  TCByteBufferImpl(int capacity, boolean direct, boolean pooled) {
+    this(null, direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity), pooled);
   }
 
   private TCByteBufferImpl(TCByteBuffer src, ByteBuffer buf) {
+    this(src, buf, false);
+  }
+
+  private TCByteBufferImpl(TCByteBuffer src, ByteBuffer buf, boolean pooled) {
     source = src;
     hiddenBuffer = buf;
+    this.pooled = pooled;
   }
 
   static TCByteBuffer wrap(byte[] data) {
@@ -589,6 +599,13 @@ public class TCByteBufferImpl implements TCByteBuffer {
     return this;
   }
 
+  /**
+   * @return true if this buffer was allocated by a {@link TCByteBufferPool} and may be recycled into it
+   */
+  boolean isPooled() {
+    return pooled;
+  }
+
   void verifyLocked() {
     if (ACCESS_CHECK && !lock.get()) {
       throw new IllegalStateException("buffer is not locked");
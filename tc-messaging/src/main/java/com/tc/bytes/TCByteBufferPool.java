@@ -0,0 +1,271 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.bytes;
+
+import com.tc.text.PrettyPrintable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of heap buffers organized in power of two size classes.  Each thread keeps a small
+ * magazine of buffers per size class in front of a shared depot so the common allocate and
+ * release cycle stays thread local.  Buffers only come back to the pool once the last
+ * {@link TCReference} over them is closed, so leak tracking through {@link TCReferenceSupport}
+ * still applies to pooled buffers.  The magazines of threads which exited are handed back to the
+ * depot from the allocation and release slow paths.
+ */
+public class TCByteBufferPool implements PrettyPrintable {
+  private static final int MIN_SHIFT = 9;  // 512 bytes
+
+  private final int maxShift;
+  private final int magazineSize;
+  private final long maxRetained;
+  private final long reclaimInterval;
+
+  private final Queue<TCByteBuffer>[] depot;
+  private final Map<Thread, Magazine[]> magazines = new ConcurrentHashMap<>();
+  private final ThreadLocal<Magazine[]> local = ThreadLocal.withInitial(this::register);
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder discards = new LongAdder();
+  private final AtomicLong retained = new AtomicLong();
+  private final AtomicLong nextReclaim = new AtomicLong(System.nanoTime());
+
+  /**
+   * @param maxSize largest buffer handed out by the pool, rounded up to a power of two
+   * @param magazineSize number of buffers each thread caches per size class
+   * @param maxRetained upper bound in bytes of the memory held idle by the pool
+   */
+  public TCByteBufferPool(int maxSize, int magazineSize, long maxRetained) {
+    this(maxSize, magazineSize, maxRetained, TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @SuppressWarnings("unchecked")
+  TCByteBufferPool(int maxSize, int magazineSize, long maxRetained, long reclaimIntervalNanos) {
+    if (maxSize < (1 << MIN_SHIFT)) {
+      throw new IllegalArgumentException("max pooled size must be at least " + (1 << MIN_SHIFT));
+    }
+    if (magazineSize < 0 || maxRetained < 0) {
+      throw new IllegalArgumentException("pool limits cannot be negative");
+    }
+    this.maxShift = shiftFor(maxSize);
+    this.magazineSize = magazineSize;
+    this.maxRetained = maxRetained;
+    this.reclaimInterval = reclaimIntervalNanos;
+    this.depot = new Queue[maxShift - MIN_SHIFT + 1];
+    for (int x = 0; x < depot.length; x++) {
+      depot[x] = new ConcurrentLinkedQueue<>();
+    }
+  }
+
+  private static int shiftFor(int size) {
+    return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+  }
+
+  private int classIndex(int size) {
+    int shift = shiftFor(size);
+    return shift > maxShift ? -1 : shift - MIN_SHIFT;
+  }
+
+  public int getMaxPooledSize() {
+    return 1 << maxShift;
+  }
+
+  public int getMinPooledSize() {
+    return 1 << MIN_SHIFT;
+  }
+
+  /**
+   * Get a buffer of at least the requested size.  The capacity of the returned buffer is the
+   * size class of the request and the limit is set to the requested size.
+   *
+   * @return a buffer or null if the request is smaller than the smallest size class or larger
+   *         than the largest, rounding those up would waste more than pooling saves
+   */
+  public TCByteBuffer poll(int size) {
+    int index = classIndex(size);
+    if (index < 0 || size < (1 << MIN_SHIFT)) {
+      return null;
+    }
+    TCByteBuffer buffer = local.get()[index].pop();
+    if (buffer == null) {
+      buffer = depot[index].poll();
+    }
+    if (buffer == null && maybeReclaimDeadThreads()) {
+      buffer = depot[index].poll();
+    }
+    if (buffer == null) {
+      misses.increment();
+      buffer = new TCByteBufferImpl(1 << (index + MIN_SHIFT), false, true);
+    } else {
+      hits.increment();
+      retained.addAndGet(-buffer.capacity());
+      buffer.unlock();
+    }
+    return buffer.limit(size);
+  }
+
+  /**
+   * Return a buffer to the pool.  Only buffers allocated by a pool are accepted and they must
+   * have been reinitialized by the caller.
+   *
+   * @return true if the buffer is retained by the pool
+   */
+  public boolean offer(TCByteBuffer buffer) {
+    if (!(buffer instanceof TCByteBufferImpl) || !((TCByteBufferImpl)buffer).isPooled()) {
+      return false;
+    }
+    ((TCByteBufferImpl)buffer).verifyLocked();
+    int index = classIndex(buffer.capacity());
+    if (index < 0 || buffer.capacity() != 1 << (index + MIN_SHIFT)) {
+      return false;
+    }
+    int capacity = buffer.capacity();
+    if (retained.addAndGet(capacity) > maxRetained) {
+      retained.addAndGet(-capacity);
+      discards.increment();
+      // the budget may be held by magazines of exited threads, make those buffers reachable again
+      maybeReclaimDeadThreads();
+      return false;
+    }
+    Magazine magazine = local.get()[index];
+    if (!magazine.push(buffer)) {
+      magazine.drainTo(depot[index], magazineSize / 2);
+      if (!magazine.push(buffer)) {
+        depot[index].offer(buffer);
+      }
+    }
+    return true;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getDiscards() {
+    return discards.sum();
+  }
+
+  public long getBytesRetained() {
+    return retained.get();
+  }
+
+  /**
+   * Move the magazines of threads that have exited back to the shared depot.
+   *
+   * @return true if any magazine was reclaimed
+   */
+  public boolean reclaimDeadThreads() {
+    boolean reclaimed = false;
+    for (Map.Entry<Thread, Magazine[]> e : magazines.entrySet()) {
+      // removed first so that only one caller drains the magazines of a thread
+      if (!e.getKey().isAlive() && magazines.remove(e.getKey(), e.getValue())) {
+        Magazine[] mags = e.getValue();
+        for (int x = 0; x < mags.length; x++) {
+          mags[x].drainTo(depot[x], magazineSize);
+        }
+        reclaimed = true;
+      }
+    }
+    return reclaimed;
+  }
+
+  /**
+   * Reclaim from the allocation and release slow paths, at most once per interval so a pool which keeps missing does
+   * not walk every thread on each miss.
+   */
+  private boolean maybeReclaimDeadThreads() {
+    long now = System.nanoTime();
+    long next = nextReclaim.get();
+    if (now - next >= 0 && nextReclaim.compareAndSet(next, now + reclaimInterval)) {
+      return reclaimDeadThreads();
+    }
+    return false;
+  }
+
+  private Magazine[] register() {
+    Magazine[] mags = new Magazine[depot.length];
+    for (int x = 0; x < mags.length; x++) {
+      mags[x] = new Magazine(magazineSize);
+    }
+    magazines.put(Thread.currentThread(), mags);
+    return mags;
+  }
+
+  @Override
+  public Map<String, ?> getStateMap() {
+    reclaimDeadThreads();
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("className", this.getClass().getName());
+    map.put("maxPooledSize", getMaxPooledSize());
+    map.put("magazineSize", magazineSize);
+    map.put("maxRetained", maxRetained);
+    map.put("hits", getHits());
+    map.put("misses", getMisses());
+    map.put("discards", getDiscards());
+    map.put("bytesRetained", getBytesRetained());
+    map.put("threads", magazines.size());
+    return map;
+  }
+
+  /**
+   * Thread confined stack of free buffers for one size class.
+   */
+  private static class Magazine {
+    private final TCByteBuffer[] items;
+    private int count;
+
+    Magazine(int size) {
+      this.items = new TCByteBuffer[size];
+    }
+
+    TCByteBuffer pop() {
+      if (count == 0) {
+        return null;
+      }
+      TCByteBuffer buffer = items[--count];
+      items[count] = null;
+      return buffer;
+    }
+
+    boolean push(TCByteBuffer buffer) {
+      if (count == items.length) {
+        return false;
+      }
+      items[count++] = buffer;
+      return true;
+    }
+
+    void drainTo(Queue<TCByteBuffer> target, int max) {
+      for (int x = 0; x < max && count > 0; x++) {
+        target.offer(pop());
+      }
+    }
+  }
+}
@@ -17,11 +17,13 @@
  */
 package com.tc.entity;
 
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferInputStream;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.net.protocol.tcm.MessageMonitor;
 import com.tc.net.protocol.tcm.NetworkRecall;
+import com.tc.net.protocol.tcm.TCActionNetworkMessage;
 import com.tc.net.protocol.tcm.TCMessageHeader;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.ClientInstanceID;
@@ -30,10 +32,7 @@ import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
 import com.tc.util.Assert;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 
 
@@ -41,6 +40,9 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
   
   private final byte OP_ID = 1;
   private final byte DONE_ID = 2;
+  private static final int INITIAL_CAPACITY = 16;
+  // payloads at least this large are referenced by the outgoing stream rather than copied into it
+  private static final int REFERENCE_THRESHOLD = 1024;
   
   public enum Operation {
     RECEIVED,
@@ -72,78 +74,67 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
       }
     };
     
+    private static final Operation[] VALUES = values();
+    
     boolean hasData() {
       return false;
     }
   }  
-    
-  private List<Op> timeline = new LinkedList<>();
+
+  // the timeline is kept in parallel arrays rather than as a list of ops.  outgoing ops are 
+  // also written to the output stream as they are added so sending does not serialize them again.
+  // data holds the byte[] payloads, or the long[] timings of stats, by reference
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private Object[] data = new Object[INITIAL_CAPACITY];
+  private int size;
+
+  private long copiedBytes;
+  private long referencedBytes;
 
   private boolean stopAdding;
-  
-  private static class Op {
-    private final Operation type;
-    private final long id;
-    private final byte[] data;
 
-    public Op(Operation type, long id, byte[] data) {
-      this.type = type;
-      this.id = id;
-      this.data = data;
-    }
-    
-    public Op(byte[] raw) {
-      ByteBuffer reader = ByteBuffer.wrap(raw);
-      this.type = Operation.values()[reader.getInt()];
-      this.id = reader.getLong();
-      this.data = new byte[reader.remaining()];
-      reader.get(this.data);
-    }
-    
-    public byte[] convert() {
-      ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + data.length);
-      buffer.putInt(type.ordinal());
-      buffer.putLong(id);
-      if (data != null) {
-        buffer.put(data);
-      }
-      return buffer.array();
+  private void record(Operation type, long id, Object payload) {
+    if (size == types.length) {
+      types = Arrays.copyOf(types, size << 1);
+      ids = Arrays.copyOf(ids, size << 1);
+      data = Arrays.copyOf(data, size << 1);
     }
+    types[size] = (byte) type.ordinal();
+    ids[size] = id;
+    data[size] = payload;
+    size += 1;
   }
 
   @Override
   public int replay(ReplayReceiver receiver) {
     int count = 0;
-    for (Op op : timeline) {
-      switch(op.type) {
+    for (int x=0;x<size;x++) {
+      long id = ids[x];
+      switch(Operation.VALUES[types[x]]) {
         case INVOKE_MESSAGE:
-          receiver.message(new TransactionID(op.id), op.data);
+          receiver.message(new TransactionID(id), (byte[])data[x]);
           break;
         case RECEIVED:
-          receiver.received(new TransactionID(op.id));
+          receiver.received(new TransactionID(id));
           break;
         case RESULT:
-          receiver.result(new TransactionID(op.id), op.data);
+          receiver.result(new TransactionID(id), (byte[])data[x]);
           break;
         case SERVER_MESSAGE:
-          receiver.message(new ClientInstanceID(op.id), op.data);
+          receiver.message(new ClientInstanceID(id), (byte[])data[x]);
           break;
         case RESULT_RETIRED:
-          receiver.result(new TransactionID(op.id), op.data);
+          receiver.result(new TransactionID(id), (byte[])data[x]);
       //  fallthrough
         case RETIRED:
-          receiver.retired(new TransactionID(op.id));
+          receiver.retired(new TransactionID(id));
           break;
         case DONE:
-          receiver.stats(TransactionID.NULL_ID, new long[] {op.id});
+          receiver.stats(TransactionID.NULL_ID, new long[] {id});
           break;
         case STATS:
-          ByteBuffer data = ByteBuffer.wrap(op.data);
-          long[] vals = new long[data.remaining() / Long.BYTES];
-          for (int x=0;x<vals.length;x++) {
-            vals[x] = data.getLong();
-          }
-          receiver.stats(new TransactionID(op.id), vals);
+          receiver.stats(new TransactionID(id), (long[])data[x]);
           break;
         default:
           throw new AssertionError("unknown op");
@@ -174,10 +165,10 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
     return buildOp(Operation.RECEIVED, tid.toLong(), null);
   }
   
-  private synchronized boolean buildOp(Operation type, long id, byte[] data) {
+  private synchronized boolean buildOp(Operation type, long id, Object payload) {
     if (!stopAdding) {
-      Op op = new Op(type, id, data);
-      timeline.add(op);
+      record(type, id, payload);
+      writeOp(type, id, payload);
       switch (type) {
         case DONE:
           stopAdding = true;
@@ -195,6 +186,29 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
     return false;
   }
   
+  private void writeOp(Operation type, long id, Object payload) {
+    TCByteBufferOutputStream out = getOutputStream();
+    putNVPair(OP_ID, (short)type.ordinal());
+    out.writeLong(id);
+    if (type == Operation.STATS) {
+      long[] timings = (long[])payload;
+      out.writeInt(timings.length * Long.BYTES);
+      for (long t : timings) {
+        out.writeLong(t);
+      }
+    } else if (type.hasData()) {
+      byte[] bytes = (byte[])payload;
+      out.writeInt(bytes.length);
+      if (bytes.length >= REFERENCE_THRESHOLD) {
+        out.writeReference(TCByteBufferFactory.wrap(bytes));
+        referencedBytes += bytes.length;
+      } else {
+        out.write(bytes);
+        copiedBytes += bytes.length;
+      }
+    }
+  }
+  
   @Override
   public boolean addRetired(TransactionID tid) {
     return buildOp(Operation.RETIRED, tid.toLong(), null);
@@ -222,54 +236,46 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
 
   @Override
   public boolean addStats(TransactionID cid, long[] timings) {
-    ByteBuffer buffer = ByteBuffer.allocate(timings.length * Long.BYTES);
-    for (long t : timings) {
-      buffer.putLong(t);
-    }
-    return buildOp(Operation.STATS, cid.toLong(), buffer.array());
+    return buildOp(Operation.STATS, cid.toLong(), timings);
   }
   
   @Override
   public void stopAdding() {
     stopAddingTime = System.nanoTime();
     buildOp(Operation.DONE, stopAddingTime - startAddingTime, null);
-    timeline = Collections.unmodifiableList(timeline);
   }
   
   @Override
   protected boolean hydrateValue(byte name) throws IOException {
     if (name == OP_ID) {
-      Operation type = Operation.values()[getShortValue()];
+      Operation type = Operation.VALUES[getShortValue()];
       long id = getLongValue();
-      byte[] data = null;
-      if (type.hasData()) {
-        int len = getIntValue();
-        data = new byte[len];
-        getInputStream().readFully(data);
+      Object payload = null;
+      if (type == Operation.STATS) {
+        long[] timings = new long[getIntValue() / Long.BYTES];
+        for (int x=0;x<timings.length;x++) {
+          timings[x] = getLongValue();
+        }
+        payload = timings;
+      } else if (type.hasData()) {
+        byte[] bytes = new byte[getIntValue()];
+        getInputStream().readFully(bytes);
+        payload = bytes;
       }
-      timeline.add(new Op(type, id, data));
+      record(type, id, payload);
       return true;
     } else if (name == DONE_ID) {
-      Assert.assertEquals(getIntValue(), timeline.size());
+      Assert.assertEquals(getIntValue(), size);
       return true;
     }
     return false;
   }
 
   @Override
-  protected void dehydrateValues() {
-    int count = 0;
-    for (Op op : timeline) {
-      putNVPair(OP_ID, (short)op.type.ordinal());
-      getOutputStream().writeLong(op.id);
-      if (op.type.hasData()) {
-        getOutputStream().writeInt(op.data.length);
-        getOutputStream().write(op.data);
-      }
-      count++;
-    }
-    putNVPair(DONE_ID,count);
-    
+  protected synchronized void dehydrateValues() {
+    // ops were written as they were added, nothing may follow the count
+    stopAdding = true;
+    putNVPair(DONE_ID, size);
   }
   
   private long stopAddingTime;
@@ -294,4 +300,14 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
   public boolean shouldSend() {
     return immediateSend;
   }
+
+  // for tests
+  TCActionNetworkMessage getNetworkMessage() {
+    return convertToNetworkMessage();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "LinearVoltronEntityMultiResponse{" + "ops=" + size + ", copiedBytes=" + copiedBytes + ", referencedBytes=" + referencedBytes + '}';
+  }
 }
@@ -75,7 +75,7 @@ public class TCByteBufferOutputStream extends OutputStream implements TCByteBuff
           }
         }
       }
-    }));
+    }, TCByteBufferFactory::returnInstance));
     if (init < 1) { throw new IllegalArgumentException("Max block size must be greater than or equal to 1"); }
     if (max < 1) { throw new IllegalArgumentException(
                                                                    "Initial block size must be greater than or equal to 1"); }
@@ -108,6 +108,26 @@ public class TCByteBufferOutputStream extends OutputStream implements TCByteBuff
     write(new TCByteBuffer[] { data });
   }
 
+  /**
+   * Add a buffer to the stream without copying it.  The data from position to limit is used and the stream takes
+   * ownership of the buffer, so the caller must not touch it afterwards.  Small buffers are cheaper to copy with
+   * {@link #write(TCByteBuffer)}.
+   */
+  public void writeReference(TCByteBuffer data) {
+    checkClosed();
+    if (data == null) { throw new NullPointerException(); }
+    int len = data.remaining();
+    if (len == 0) { return; }
+
+    finalizeBuffer();
+    // allocated buffers are kept in write mode until the stream moves past them
+    TCByteBuffer attached = data.slice();
+    attached.position(len);
+    this.buffers.attach(attached);
+    current = attached;
+    written += len;
+  }
+
   private void checkBuffer() {
     while (current == null || !current.hasRemaining()) {
       current = addBuffer();
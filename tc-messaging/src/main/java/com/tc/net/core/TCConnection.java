@@ -20,6 +20,7 @@ package com.tc.net.core;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.core.event.TCConnectionEventListener;
 import com.tc.net.protocol.NetworkMessageSink;
+import com.tc.net.protocol.transport.PayloadCodec;
 import com.tc.util.TCTimeoutException;
 
 import java.io.IOException;
@@ -139,4 +140,10 @@ public interface TCConnection extends NetworkMessageSink {
   default TCByteBufferOutputStream createOutput() {
     return new TCByteBufferOutputStream();
   }
+
+  /**
+   * Compress outgoing payloads with the codec agreed on in the transport handshake, NONE sends them raw.
+   */
+  default void setPayloadCodec(PayloadCodec codec) {
+  }
 }
@@ -0,0 +1,58 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.net.protocol.transport;
+
+import java.util.Locale;
+
+/**
+ * Codecs a connection may compress its payloads with, agreed on in the transport handshake.  The id is what goes on
+ * the wire so ids of existing codecs must never change.
+ */
+public enum PayloadCodec {
+  NONE((byte) 0),
+  DEFLATE((byte) 1);
+
+  private final byte id;
+
+  PayloadCodec(byte id) {
+    this.id = id;
+  }
+
+  public byte getId() {
+    return id;
+  }
+
+  /**
+   * @return the codec for the id, NONE for ids this version does not know
+   */
+  public static PayloadCodec fromId(byte id) {
+    for (PayloadCodec codec : values()) {
+      if (codec.id == id) {
+        return codec;
+      }
+    }
+    return NONE;
+  }
+
+  public static PayloadCodec forName(String name) {
+    if (name == null || name.trim().isEmpty()) {
+      return NONE;
+    }
+    return valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+}
@@ -35,4 +35,10 @@ public interface TransportHandshakeMessage extends WireProtocolMessage {
   public boolean isAck();
 
   public short getStackLayerFlags();
+
+  /**
+   * @return on a SYN the codec the client asks payloads to be compressed with, on a SYN_ACK the codec the server
+   *         agreed to, NONE if the peer sent neither
+   */
+  public PayloadCodec getPayloadCodec();
 }
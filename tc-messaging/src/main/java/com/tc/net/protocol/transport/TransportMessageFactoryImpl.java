@@ -48,6 +48,13 @@ public class TransportMessageFactoryImpl implements TransportHandshakeMessageFac
                             WireProtocolHeader.PROTOCOL_TRANSPORT_HANDSHAKE, stackLayerFlags);
   }
 
+  @Override
+  public TransportHandshakeMessage createSyn(ConnectionID connectionId, TCConnection source, short stackLayerFlags,
+                                             PayloadCodec codec) {
+    return createNewMessage(TransportMessageImpl.SYN, connectionId, null, null, source, false, 0,
+                            WireProtocolHeader.PROTOCOL_TRANSPORT_HANDSHAKE, stackLayerFlags, codec);
+  }
+
   @Override
   public TransportHandshakeMessage createAck(ConnectionID connectionId, TCConnection source) {
     return createNewMessage(TransportMessageImpl.ACK, connectionId, null, null, source, false, 0);
@@ -60,6 +67,14 @@ public class TransportMessageFactoryImpl implements TransportHandshakeMessageFac
                             maxConnections);
   }
 
+  @Override
+  public TransportHandshakeMessage createSynAck(ConnectionID connectionId, TCConnection source,
+                                                boolean isMaxConnectionsExceeded, int maxConnections,
+                                                PayloadCodec codec) {
+    return createNewMessage(TransportMessageImpl.SYN_ACK, connectionId, null, null, source, isMaxConnectionsExceeded,
+                            maxConnections, WireProtocolHeader.PROTOCOL_TRANSPORT_HANDSHAKE, (short) -1, codec);
+  }
+
   @Override
   public TransportHandshakeMessage createSynAck(ConnectionID connectionId, TransportHandshakeError errorContext, String message,
                                                 TCConnection source, boolean isMaxConnectionsExceeded,
@@ -87,11 +102,19 @@ public class TransportMessageFactoryImpl implements TransportHandshakeMessageFac
    * the flags set for the present layers in the communication stack All other kinds of packet will have it as -1 and
    * this wouldn't be send to the server
    */
-  @SuppressWarnings("resource")
   private static TransportMessageImpl createNewMessage(byte type, ConnectionID connectionId,
                                                        TransportHandshakeError errorContext, String message, TCConnection source,
                                                        boolean isMaxConnectionsExceeded, int maxConnections, short protocol,
                                                        short stackLayerFlags) {
+    return createNewMessage(type, connectionId, errorContext, message, source, isMaxConnectionsExceeded, maxConnections,
+                            protocol, stackLayerFlags, PayloadCodec.NONE);
+  }
+
+  @SuppressWarnings("resource")
+  private static TransportMessageImpl createNewMessage(byte type, ConnectionID connectionId,
+                                                       TransportHandshakeError errorContext, String message, TCConnection source,
+                                                       boolean isMaxConnectionsExceeded, int maxConnections, short protocol,
+                                                       short stackLayerFlags, PayloadCodec codec) {
     TCByteBufferOutputStream bbos = new TCByteBufferOutputStream();
 
     bbos.write(TransportMessageImpl.VERSION);
@@ -110,6 +133,9 @@ public class TransportMessageFactoryImpl implements TransportHandshakeMessageFac
     if (type == TransportMessageImpl.TIME_CHECK) {
       bbos.writeLong(System.currentTimeMillis()); // timestamp
     }
+    if (codec != PayloadCodec.NONE) {
+      bbos.write(codec.getId());
+    }
 
     final WireProtocolHeader header = new WireProtocolHeader();
     header.setProtocol(protocol);
@@ -62,6 +62,7 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
   private final TransportHandshakeError        errorType;
   private final int          callbackPort;
   private final long         timestamp;
+  private final PayloadCodec payloadCodec;
 
   @SuppressWarnings("resource")
   TransportMessageImpl(TCConnection source, TCNetworkHeader header, TCReference payload) throws TCProtocolException {
@@ -90,6 +91,12 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
         this.errorContext = null;
       }
       this.timestamp = (type == TIME_CHECK) ? in.readLong() : -1;
+      // appended after the fields every version reads, older peers neither send nor read it
+      if ((type == SYN || type == SYN_ACK) && in.available() > 0) {
+        this.payloadCodec = PayloadCodec.fromId(in.readByte());
+      } else {
+        this.payloadCodec = PayloadCodec.NONE;
+      }
     } catch (TCProtocolException e) {
       throw e;
     } catch (Exception e) {
@@ -100,7 +107,7 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
   @Override
   protected String describePayload() {
     return "type: " + typeToString() + ", connectionId: " + connectionId + ", timestamp: " + timestamp
-           + ", errorContext " + errorContext + "\n";
+           + ", codec: " + payloadCodec + ", errorContext " + errorContext + "\n";
   }
 
   private String typeToString() {
@@ -198,4 +205,9 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
   public int getCallbackPort() {
     return this.callbackPort;
   }
+
+  @Override
+  public PayloadCodec getPayloadCodec() {
+    return this.payloadCodec;
+  }
 }
@@ -104,6 +104,10 @@ public class WireProtocolAdaptorImpl extends AbstractTCProtocolAdaptor implement
     WireProtocolHeader wph = (WireProtocolHeader) hdr;
     final WireProtocolMessage rv;
 
+    if (wph.isCompressed()) {
+      data = WireProtocolCompressor.decode(wph, data);
+    }
+
     if (wph.isHandshakeOrHealthCheckMessage()) {
       rv = new TransportMessageImpl(source, wph, data);
     } else {
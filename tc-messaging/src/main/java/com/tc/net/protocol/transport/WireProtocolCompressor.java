@@ -0,0 +1,227 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.net.protocol.transport;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.bytes.TCReferenceSupport;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.net.protocol.TCProtocolException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the payload of outgoing wire messages with the codec agreed on in the transport handshake.  A compressed
+ * message goes out with the {@link WireProtocolHeader#PROTOCOL_COMPRESSED} protocol and a payload of
+ * 
+ * <pre>
+ *        +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *        |      Original Protocol        |     Codec     | Original    ...
+ *        +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *        ... Payload Length              |     Compressed data         ...
+ *        +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * </pre>
+ * 
+ * Only TCM messages and message groups are compressed, handshakes and health checks always go out raw.  Payloads
+ * under the threshold or which do not shrink are sent raw as well.  Not thread safe, the connection calls it while
+ * holding its write lock and closes it with the connection to release the native deflater.
+ */
+public class WireProtocolCompressor {
+  private static final int PREFIX_LENGTH = (Short.SIZE + Byte.SIZE + Integer.SIZE) / 8;
+  private static final int CHUNK = 8 * 1024;
+  // deflate can not expand data by more than this factor, bounds the length a compressed payload may claim
+  private static final int MAX_INFLATE_RATIO = 1032;
+
+  private final PayloadCodec codec;
+  private final int threshold;
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private byte[] output = new byte[CHUNK];
+  private boolean closed;
+
+  private final LongAdder compressed = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+
+  public WireProtocolCompressor(PayloadCodec codec, int threshold) {
+    if (codec != PayloadCodec.DEFLATE) {
+      throw new IllegalArgumentException("unsupported codec " + codec);
+    }
+    this.codec = codec;
+    this.threshold = threshold;
+  }
+
+  public PayloadCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Called on a message which was prepared to send.
+   *
+   * @return the bytes to write for the message, the caller closes the reference once written
+   */
+  public TCReference encode(WireProtocolMessage message) {
+    short protocol = message.getMessageProtocol();
+    if (closed || (protocol != WireProtocolHeader.PROTOCOL_TCM && protocol != WireProtocolHeader.PROTOCOL_MSGGROUP)
+        || message.getDataLength() < threshold) {
+      return message.getEntireMessageData().duplicate();
+    }
+    long start = System.nanoTime();
+    int length = deflate(message.getPayload());
+    nanos.add(System.nanoTime() - start);
+    if (length + PREFIX_LENGTH >= message.getDataLength()) {
+      skipped.increment();
+      return message.getEntireMessageData().duplicate();
+    }
+    compressed.increment();
+    bytesIn.add(message.getDataLength());
+    bytesOut.add(length + PREFIX_LENGTH);
+
+    TCByteBuffer payload = TCByteBufferFactory.wrap(new byte[PREFIX_LENGTH + length]);
+    payload.putShort(protocol);
+    payload.put(codec.getId());
+    payload.putInt(message.getDataLength());
+    payload.put(output, 0, length);
+    payload.flip();
+
+    WireProtocolHeader header = (WireProtocolHeader) message.getWireProtocolHeader().clone();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_COMPRESSED);
+    header.finalizeHeader(header.getHeaderByteLength() + payload.limit());
+    return TCReferenceSupport.createGCReference(header.getDataBuffer(), payload);
+  }
+
+  /**
+   * Release the native deflater, messages encoded afterwards go out raw.
+   */
+  public void close() {
+    if (!closed) {
+      closed = true;
+      deflater.end();
+    }
+  }
+
+  private int deflate(TCReference payload) {
+    deflater.reset();
+    int length = 0;
+    try (TCReference data = payload.duplicate()) {
+      for (TCByteBuffer buffer : data) {
+        deflater.setInput(buffer.getNioBuffer());
+        while (!deflater.needsInput()) {
+          length = deflateInto(length);
+        }
+      }
+    }
+    deflater.finish();
+    while (!deflater.finished()) {
+      length = deflateInto(length);
+    }
+    return length;
+  }
+
+  private int deflateInto(int length) {
+    if (length == output.length) {
+      output = Arrays.copyOf(output, output.length * 2);
+    }
+    return length + deflater.deflate(output, length, output.length - length);
+  }
+
+  /**
+   * Restore a message received with the {@link WireProtocolHeader#PROTOCOL_COMPRESSED} protocol.  Any peer which
+   * supports compression can always decompress, whatever it asked for in the handshake.
+   *
+   * @param header the header of the compressed message, rewritten to the original protocol and length
+   * @param data the compressed payload, closed by this call
+   * @return the original payload
+   */
+  public static TCReference decode(WireProtocolHeader header, TCReference data) throws TCProtocolException {
+    try (TCByteBufferInputStream in = new TCByteBufferInputStream(data)) {
+      short protocol = in.readShort();
+      PayloadCodec codec = PayloadCodec.fromId(in.readByte());
+      int length = in.readInt();
+      if (codec != PayloadCodec.DEFLATE || length < 0) {
+        throw new TCProtocolException("Unsupported compressed payload codec: " + codec + " length:" + length);
+      }
+      // checked before allocating, the length comes off the wire
+      long maxLength = Math.min((long) in.available() * MAX_INFLATE_RATIO,
+          (long) Integer.MAX_VALUE - header.getHeaderByteLength());
+      if (length > maxLength) {
+        throw new TCProtocolException("Compressed payload of " + in.available() + " bytes claims " + length
+            + " bytes, max " + maxLength);
+      }
+      byte[] original = new byte[length];
+      Inflater inflater = new Inflater();
+      try (TCReference compressed = in.readReference(in.available())) {
+        int offset = 0;
+        for (TCByteBuffer buffer : compressed) {
+          inflater.setInput(buffer.getNioBuffer());
+          while (!inflater.needsInput() && !inflater.finished()) {
+            int read = inflater.inflate(original, offset, length - offset);
+            if (read == 0) {
+              if (inflater.needsDictionary()) {
+                // the encoder never sets one, and inflate makes no progress without it
+                throw new TCProtocolException("Compressed payload requires a preset dictionary");
+              }
+              if (offset == length) {
+                break;
+              }
+              if (!inflater.needsInput() && !inflater.finished()) {
+                throw new TCProtocolException("Compressed payload stopped inflating at " + offset + " bytes, expected " + length);
+              }
+            }
+            offset += read;
+          }
+        }
+        if (offset != length || !inflater.finished()) {
+          throw new TCProtocolException("Compressed payload inflated to " + offset + " bytes, expected " + length);
+        }
+      } finally {
+        inflater.end();
+      }
+      header.setProtocol(protocol);
+      header.finalizeHeader(header.getHeaderByteLength() + length);
+      return TCReferenceSupport.createGCReference(TCByteBufferFactory.wrap(original));
+    } catch (DataFormatException | IOException e) {
+      throw new TCProtocolException(e);
+    } finally {
+      data.close();
+    }
+  }
+
+  public Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("codec", codec);
+    map.put("threshold", threshold);
+    map.put("compressed", compressed.sum());
+    map.put("skipped", skipped.sum());
+    map.put("bytesIn", bytesIn.sum());
+    map.put("bytesOut", bytesOut.sum());
+    long out = bytesOut.sum();
+    map.put("ratio", out == 0 ? 0d : (double) bytesIn.sum() / out);
+    map.put("compressTimeMicros", TimeUnit.NANOSECONDS.toMicros(nanos.sum()));
+    return map;
+  }
+}
@@ -69,11 +69,13 @@ public class WireProtocolHeader extends AbstractTCNetworkHeader implements Clone
   public static final short    PROTOCOL_OOOP                = 3;
   public static final short    PROTOCOL_HEALTHCHECK_PROBES  = 4;
   public static final short    PROTOCOL_MSGGROUP            = 5;
+  // only sent to peers which agreed on a codec in the transport handshake, see WireProtocolCompressor
+  public static final short    PROTOCOL_COMPRESSED          = 6;
 
   private static final int     MAGIC_NUM                    = 0xAAAAAAAA;
 
   private static final short[] VALID_PROTOCOLS              = new short[] { PROTOCOL_TCM, PROTOCOL_TRANSPORT_HANDSHAKE,
-      PROTOCOL_OOOP, PROTOCOL_HEALTHCHECK_PROBES, PROTOCOL_MSGGROUP };
+      PROTOCOL_OOOP, PROTOCOL_HEALTHCHECK_PROBES, PROTOCOL_MSGGROUP, PROTOCOL_COMPRESSED };
 
   // 15 32-bit words max
   static final short           MAX_LENGTH                   = 15 * 4;
@@ -371,6 +373,9 @@ public class WireProtocolHeader extends AbstractTCNetworkHeader implements Clone
       case PROTOCOL_MSGGROUP: {
         return "TRANSPORT MSGGROUP";
       }
+      case PROTOCOL_COMPRESSED: {
+        return "COMPRESSED";
+      }
       default: {
         return "UNKNOWN (" + protocol + ")";
       }
@@ -396,6 +401,10 @@ public class WireProtocolHeader extends AbstractTCNetworkHeader implements Clone
 
   }
 
+  public boolean isCompressed() {
+    return PROTOCOL_COMPRESSED == getProtocol();
+  }
+
   public boolean isMessagesGrouped() {
     return PROTOCOL_MSGGROUP == getProtocol();
   }
@@ -23,6 +23,10 @@ import com.tc.net.NodeID;
 import java.util.Set;
 
 public interface ClientHandshakeAckMessage extends ClientHandshakeResponse {
+  /**
+   * Channel attachment holding the invoke credits granted to a client which advertised support for them.
+   */
+  String INVOKE_CREDITS_ATTACHMENT = "InvokeCredits";
 
   public void initialize(Set<? extends NodeID> allNodes, ClientID thisNodeID, String serverVersion);
 
@@ -32,4 +36,14 @@ public interface ClientHandshakeAckMessage extends ClientHandshakeResponse {
 
   public String getServerVersion();
 
+  /**
+   * Only set for clients which advertised support in their handshake, older clients do not know the value.
+   */
+  public void setInvokeCredits(int credits);
+
+  /**
+   * @return the number of invokes the client may have outstanding, 0 if the server did not grant credits
+   */
+  public int getInvokeCredits();
+
 }
@@ -37,10 +37,12 @@ public class ClientHandshakeAckMessageImpl extends DSOMessageBase implements Cli
   private static final byte      ALL_NODES         = 2;
   private static final byte      THIS_NODE_ID      = 3;
   private static final byte      SERVER_VERSION    = 4;
+  private static final byte      INVOKE_CREDITS    = 5;
 
   private final Set<NodeID>      allNodes          = new HashSet<NodeID>();
   private ClientID               thisNodeId;
   private String                 serverVersion;
+  private int                    invokeCredits;
 
   public ClientHandshakeAckMessageImpl(SessionID sessionID, MessageMonitor monitor,
                                        TCByteBufferOutputStream out, MessageChannel channel,
@@ -62,6 +64,9 @@ public class ClientHandshakeAckMessageImpl extends DSOMessageBase implements Cli
 
     putNVPair(THIS_NODE_ID, thisNodeId);
     putNVPair(SERVER_VERSION, serverVersion);
+    if (invokeCredits > 0) {
+      putNVPair(INVOKE_CREDITS, invokeCredits);
+    }
   }
 
   @Override
@@ -76,6 +81,9 @@ public class ClientHandshakeAckMessageImpl extends DSOMessageBase implements Cli
       case SERVER_VERSION:
         serverVersion = getStringValue();
         return true;
+      case INVOKE_CREDITS:
+        invokeCredits = getIntValue();
+        return true;
       default:
         return false;
     }
@@ -104,4 +112,14 @@ public class ClientHandshakeAckMessageImpl extends DSOMessageBase implements Cli
   public String getServerVersion() {
     return serverVersion;
   }
+
+  @Override
+  public void setInvokeCredits(int credits) {
+    this.invokeCredits = credits;
+  }
+
+  @Override
+  public int getInvokeCredits() {
+    return invokeCredits;
+  }
 }
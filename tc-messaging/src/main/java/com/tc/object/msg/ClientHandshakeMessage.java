@@ -60,4 +60,11 @@ public interface ClientHandshakeMessage extends TCAction {
   void addResendMessage(ResendVoltronEntityMessage message);
 
   Collection<ResendVoltronEntityMessage> getResendMessages();
+
+  /**
+   * Advertise that the client waits for invoke credits when the server grants them in the handshake ack.
+   */
+  void setInvokeCreditsSupported(boolean supported);
+
+  boolean isInvokeCreditsSupported();
 }
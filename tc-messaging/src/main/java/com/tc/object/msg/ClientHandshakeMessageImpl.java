@@ -40,7 +40,8 @@ import java.util.Comparator;
 public class ClientHandshakeMessageImpl extends DSOMessageBase implements ClientHandshakeMessage {
   private static final byte   RECONNECT        = 1;
   private static final byte   CLIENT_VERSION           = 2;
-  private static final byte   UNUSED_2        = 3;
+  // was unused and always false, older servers still read and ignore it
+  private static final byte   INVOKE_CREDITS           = 3;
   private static final byte   LOCAL_TIME_MILLS         = 4;
   private static final byte   RECONNECT_REFERENCES     = 5;
   private static final byte   RESEND_MESSAGES          = 6;
@@ -58,6 +59,7 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
   private String              clientAddress            = ""; 
   private int                 pid                      = -1;
   private boolean             reconnect                = false;
+  private boolean             invokeCredits            = false;
   private final Set<ClientEntityReferenceContext> reconnectReferences = new HashSet<ClientEntityReferenceContext>();
   private final Set<ResendVoltronEntityMessage> resendMessages = new TreeSet<ResendVoltronEntityMessage>(new Comparator<ResendVoltronEntityMessage>() {
     @Override
@@ -90,6 +92,16 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
     return this.reconnect;
   }
 
+  @Override
+  public void setInvokeCreditsSupported(boolean supported) {
+    this.invokeCredits = supported;
+  }
+
+  @Override
+  public boolean isInvokeCreditsSupported() {
+    return this.invokeCredits;
+  }
+
   @Override
   public String getClientVersion() {
     return this.clientVersion;
@@ -153,7 +165,7 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
   @Override
   protected void dehydrateValues() {
     putNVPair(RECONNECT, reconnect);  // unused but keep for compatibility
-    putNVPair(UNUSED_2, false);  // unused but keep for compatibility
+    putNVPair(INVOKE_CREDITS, this.invokeCredits);
     putNVPair(CLIENT_UUID, this.uuid);
     putNVPair(CLIENT_NAME, this.name);
     putNVPair(CLIENT_VERSION, this.clientVersion);
@@ -175,8 +187,8 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
       case RECONNECT:
         this.reconnect = getBooleanValue();
         return true;
-      case UNUSED_2:
-        getBooleanValue();  // unused but keep for compatibility
+      case INVOKE_CREDITS:
+        this.invokeCredits = getBooleanValue();
         return true;
       case CLIENT_VERSION:
         this.clientVersion = getStringValue();
@@ -0,0 +1,134 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.bytes;
+
+import com.tc.io.TCByteBufferOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class TCByteBufferPoolTest {
+
+  @Test
+  public void testSizeClasses() {
+    TCByteBufferPool pool = new TCByteBufferPool(64 * 1024, 4, Long.MAX_VALUE);
+    TCByteBuffer small = pool.poll(512);
+    assertEquals(512, small.capacity());
+    assertEquals(512, small.limit());
+    TCByteBuffer mid = pool.poll(1025);
+    assertEquals(2048, mid.capacity());
+    assertEquals(1025, mid.limit());
+    assertNull(pool.poll(64 * 1024 + 1));
+    assertEquals(2, pool.getMisses());
+  }
+
+  @Test
+  public void testSmallRequestsBypassThePool() {
+    TCByteBufferPool pool = new TCByteBufferPool(64 * 1024, 4, Long.MAX_VALUE);
+    assertNull(pool.poll(4));
+    assertNull(pool.poll(pool.getMinPooledSize() - 1));
+    assertEquals(0, pool.getMisses());
+    TCByteBufferFactory.enablePooling(64 * 1024, 4, Long.MAX_VALUE);
+    try {
+      TCByteBuffer header = TCByteBufferFactory.getInstance(4);
+      assertEquals(4, header.capacity());
+      assertEquals(0, TCByteBufferFactory.getPool().getMisses());
+      assertEquals(0, TCByteBufferFactory.getPool().getHits());
+    } finally {
+      TCByteBufferFactory.disablePooling();
+    }
+  }
+
+  @Test
+  public void testRecycle() {
+    TCByteBufferPool pool = new TCByteBufferPool(64 * 1024, 4, Long.MAX_VALUE);
+    TCByteBuffer buf = pool.poll(4096);
+    assertTrue(pool.offer(buf.reInit()));
+    assertEquals(4096, pool.getBytesRetained());
+    TCByteBuffer next = pool.poll(3000);
+    assertSame(buf, next);
+    assertEquals(3000, next.limit());
+    assertEquals(0, next.position());
+    assertEquals(1, pool.getHits());
+    assertEquals(0, pool.getBytesRetained());
+  }
+
+  @Test
+  public void testRejectsForeignBuffers() {
+    TCByteBufferPool pool = new TCByteBufferPool(64 * 1024, 4, Long.MAX_VALUE);
+    assertFalse(pool.offer(TCByteBufferFactory.wrap(new byte[1024]).reInit()));
+    assertFalse(pool.offer(pool.poll(1024).slice().reInit()));
+    assertEquals(0, pool.getBytesRetained());
+  }
+
+  @Test
+  public void testRetainedLimit() {
+    TCByteBufferPool pool = new TCByteBufferPool(64 * 1024, 1, 1024);
+    TCByteBuffer a = pool.poll(1024);
+    TCByteBuffer b = pool.poll(1024);
+    assertTrue(pool.offer(a.reInit()));
+    assertFalse(pool.offer(b.reInit()));
+    assertEquals(1, pool.getDiscards());
+    assertEquals(1024, pool.getBytesRetained());
+  }
+
+  @Test
+  public void testExitedThreadMagazineIsReclaimedOnMiss() throws Exception {
+    TCByteBufferPool pool = new TCByteBufferPool(64 * 1024, 4, 4096, 0L);
+    TCByteBuffer[] held = new TCByteBuffer[1];
+    Thread worker = new Thread(() -> {
+      held[0] = pool.poll(4096);
+      assertTrue(pool.offer(held[0].reInit()));
+    });
+    worker.start();
+    worker.join();
+    assertEquals(4096, pool.getBytesRetained());
+    // the only retained buffer sits in the exited thread's magazine
+    assertSame(held[0], pool.poll(4096));
+    assertEquals(0, pool.getBytesRetained());
+    assertEquals(1, pool.getStateMap().get("threads"));
+  }
+
+  @Test
+  public void testReferenceCloseReturnsToPool() {
+    TCByteBufferFactory.enablePooling(64 * 1024, 4, Long.MAX_VALUE);
+    try {
+      TCByteBufferPool pool = TCByteBufferFactory.getPool();
+      TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+      out.write(new byte[5000]);
+      out.close();
+      long allocated = pool.getMisses();
+      try (TCReference ref = out.accessBuffers()) {
+        assertEquals(5000, ref.available());
+        assertEquals(0, pool.getBytesRetained());
+      }
+      assertTrue(pool.getBytesRetained() > 0);
+      TCByteBufferOutputStream again = new TCByteBufferOutputStream();
+      again.write(new byte[5000]);
+      again.close();
+      assertEquals(allocated, pool.getMisses());
+      again.accessBuffers().close();
+    } finally {
+      TCByteBufferFactory.disablePooling();
+    }
+  }
+}
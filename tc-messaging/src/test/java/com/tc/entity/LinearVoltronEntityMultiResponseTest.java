@@ -0,0 +1,118 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCReference;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCActionNetworkMessage;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class LinearVoltronEntityMultiResponseTest {
+
+  @Test
+  public void testStreamedOpsRoundTrip() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream(4, 4096);
+    LinearVoltronEntityMultiResponse response = new LinearVoltronEntityMultiResponse(new SessionID(0), monitor, out, null, TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+
+    byte[] small = new byte[] {1, 2, 3};
+    byte[] large = new byte[8 * 1024];
+    Arrays.fill(large, (byte) 9);
+    assertTrue(response.startAdding());
+    assertTrue(response.addReceived(new TransactionID(1)));
+    assertTrue(response.addResult(new TransactionID(1), small));
+    assertTrue(response.addResultAndRetire(new TransactionID(2), large));
+    assertTrue(response.addServerMessage(new ClientInstanceID(3), small));
+    assertTrue(response.addStats(new TransactionID(1), new long[] {4L, 5L}));
+    response.stopAdding();
+    assertFalse(response.addRetired(new TransactionID(1)));
+
+    List<String> sent = new ArrayList<>();
+    assertEquals(6, response.replay(new Recorder(sent)));
+
+    TCActionNetworkMessage msg = response.getNetworkMessage();
+    TCMessageHeader header = (TCMessageHeader) msg.getHeader();
+    msg.load();
+    TCReference payload = msg.getPayload();
+    LinearVoltronEntityMultiResponse decoded = new LinearVoltronEntityMultiResponse(SessionID.NULL_ID, monitor, null, header, new TCByteBufferInputStream(payload));
+    decoded.hydrate();
+
+    List<String> received = new ArrayList<>();
+    assertEquals(6, decoded.replay(new Recorder(received)));
+    // the elapsed time in the done op is the only value that differs between runs
+    assertEquals(sent.subList(0, 6), received.subList(0, 6));
+    assertEquals("received 1", received.get(0));
+    assertEquals("result 2 " + Arrays.hashCode(large), received.get(2));
+    assertEquals("retired 2", received.get(3));
+    assertEquals("stats 1 [4, 5]", received.get(5));
+  }
+
+  private static class Recorder implements VoltronEntityMultiResponse.ReplayReceiver {
+    private final List<String> events;
+
+    Recorder(List<String> events) {
+      this.events = events;
+    }
+
+    @Override
+    public void received(TransactionID tid) {
+      events.add("received " + tid.toLong());
+    }
+
+    @Override
+    public void retired(TransactionID tid) {
+      events.add("retired " + tid.toLong());
+    }
+
+    @Override
+    public void result(TransactionID tid, byte[] result) {
+      events.add("result " + tid.toLong() + " " + Arrays.hashCode(result));
+    }
+
+    @Override
+    public void message(ClientInstanceID cid, byte[] message) {
+      events.add("message " + cid.getID() + " " + Arrays.hashCode(message));
+    }
+
+    @Override
+    public void message(TransactionID tid, byte[] message) {
+      events.add("invoke message " + tid.toLong() + " " + Arrays.hashCode(message));
+    }
+
+    @Override
+    public void stats(TransactionID tid, long[] message) {
+      events.add("stats " + tid.toLong() + " " + Arrays.toString(message));
+    }
+  }
+}
@@ -545,4 +545,30 @@ public class TCByteBufferOutputStreamTest {
     }
 
   }
+
+  @Test
+  public void testWriteReference() throws IOException {
+    byte[] referenced = new byte[100];
+    Arrays.fill(referenced, (byte) 7);
+    TCByteBufferOutputStream bbos = new TCByteBufferOutputStream(16);
+    bbos.writeInt(referenced.length);
+    bbos.writeReference(TCByteBufferFactory.wrap(referenced));
+    bbos.writeInt(42);
+    assertEquals(Integer.BYTES * 2 + referenced.length, bbos.getBytesWritten());
+
+    TCReference ref = bbos.accessBuffers();
+    boolean shared = false;
+    for (TCByteBuffer buf : ref) {
+      shared |= buf.array() == referenced;
+    }
+    assertTrue(shared);
+
+    try (TCByteBufferInputStream in = new TCByteBufferInputStream(ref)) {
+      assertEquals(referenced.length, in.readInt());
+      byte[] read = new byte[referenced.length];
+      in.readFully(read);
+      assertTrue(Arrays.equals(referenced, read));
+      assertEquals(42, in.readInt());
+    }
+  }
 }
@@ -0,0 +1,161 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.net.protocol.transport;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.bytes.TCReferenceSupport;
+import com.tc.net.protocol.TCProtocolException;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WireProtocolCompressorTest {
+
+  @Test
+  public void testCompressedRoundTrip() throws Exception {
+    byte[] original = new byte[16 * 1024];
+    for (int x = 0; x < original.length; x++) {
+      original[x] = (byte) (x % 7);
+    }
+    WireProtocolMessage message = message(WireProtocolHeader.PROTOCOL_TCM, original);
+    WireProtocolCompressor compressor = new WireProtocolCompressor(PayloadCodec.DEFLATE, 1024);
+
+    try (TCReference encoded = compressor.encode(message)) {
+      Iterator<TCByteBuffer> buffers = encoded.iterator();
+      WireProtocolHeader header = new WireProtocolHeader(buffers.next().duplicate());
+      assertTrue(header.isCompressed());
+      assertTrue(header.isChecksumValid());
+      TCByteBuffer compressed = buffers.next();
+      assertTrue(compressed.remaining() < original.length);
+      assertEquals(header.getTotalPacketLength(), header.getHeaderByteLength() + compressed.remaining());
+
+      try (TCReference decoded = WireProtocolCompressor.decode(header, TCReferenceSupport.createGCReference(compressed.duplicate()))) {
+        assertEquals(WireProtocolHeader.PROTOCOL_TCM, header.getProtocol());
+        assertEquals(header.getHeaderByteLength() + original.length, header.getTotalPacketLength());
+        byte[] result = new byte[original.length];
+        decoded.iterator().next().get(result);
+        assertArrayEquals(original, result);
+      }
+    }
+    assertEquals(1L, compressor.getStateMap().get("compressed"));
+  }
+
+  @Test
+  public void testSmallAndHandshakeMessagesAreRaw() throws Exception {
+    WireProtocolCompressor compressor = new WireProtocolCompressor(PayloadCodec.DEFLATE, 1024);
+    WireProtocolMessage small = message(WireProtocolHeader.PROTOCOL_TCM, new byte[512]);
+    WireProtocolMessage handshake = message(WireProtocolHeader.PROTOCOL_TRANSPORT_HANDSHAKE, new byte[4096]);
+    try (TCReference encoded = compressor.encode(small)) {
+      assertEquals(small.getTotalLength(), encoded.available());
+    }
+    try (TCReference encoded = compressor.encode(handshake)) {
+      assertEquals(handshake.getTotalLength(), encoded.available());
+    }
+    assertEquals(0L, compressor.getStateMap().get("compressed"));
+  }
+
+  @Test
+  public void testClosedCompressorSendsRaw() throws Exception {
+    WireProtocolCompressor compressor = new WireProtocolCompressor(PayloadCodec.DEFLATE, 1024);
+    WireProtocolMessage message = message(WireProtocolHeader.PROTOCOL_TCM, new byte[16 * 1024]);
+    compressor.close();
+    compressor.close();
+    try (TCReference encoded = compressor.encode(message)) {
+      assertEquals(message.getTotalLength(), encoded.available());
+    }
+  }
+
+  @Test
+  public void testDecodeRejectsOversizedLength() throws Exception {
+    TCByteBuffer payload = TCByteBufferFactory.wrap(new byte[2 + 1 + 4 + 16]);
+    payload.putShort(WireProtocolHeader.PROTOCOL_TCM);
+    payload.put(PayloadCodec.DEFLATE.getId());
+    payload.putInt(Integer.MAX_VALUE - 64);
+    payload.rewind();
+    WireProtocolHeader header = new WireProtocolHeader();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_COMPRESSED);
+    try {
+      WireProtocolCompressor.decode(header, TCReferenceSupport.createGCReference(payload));
+      fail();
+    } catch (TCProtocolException e) {
+      // expected, rejected before the claimed length is allocated
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testDecodeRejectsPresetDictionary() throws Exception {
+    TCByteBuffer payload = TCByteBufferFactory.wrap(new byte[2 + 1 + 4 + 16]);
+    payload.putShort(WireProtocolHeader.PROTOCOL_TCM);
+    payload.put(PayloadCodec.DEFLATE.getId());
+    payload.putInt(16);
+    // zlib header with FDICT set followed by the dictionary id, the rest is never reached
+    payload.put(new byte[] {0x78, 0x20, 0, 0, 0, 1});
+    payload.rewind();
+    WireProtocolHeader header = new WireProtocolHeader();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_COMPRESSED);
+    try {
+      WireProtocolCompressor.decode(header, TCReferenceSupport.createGCReference(payload));
+      fail();
+    } catch (TCProtocolException e) {
+      // expected, rather than spinning on an inflater which needs a dictionary
+    }
+  }
+
+  @Test
+  public void testHandshakeCarriesCodec() throws Exception {
+    TransportMessageFactoryImpl factory = new TransportMessageFactoryImpl();
+    ConnectionID connectionId = new ConnectionID("abc", 1L);
+    TransportHandshakeMessage syn = factory.createSyn(connectionId, null, (short) 0, PayloadCodec.DEFLATE);
+    assertEquals(PayloadCodec.DEFLATE, readBack(syn).getPayloadCodec());
+
+    TransportHandshakeMessage legacy = factory.createSynAck(connectionId, null, false, 13);
+    assertEquals(PayloadCodec.NONE, readBack(legacy).getPayloadCodec());
+    assertEquals(13, readBack(legacy).getMaxConnections());
+  }
+
+  private static TransportHandshakeMessage readBack(TransportHandshakeMessage message) throws Exception {
+    WireProtocolHeader header = new WireProtocolHeader();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_TRANSPORT_HANDSHAKE);
+    return new TransportMessageImpl(null, header, message.getPayload().duplicate());
+  }
+
+  private static WireProtocolMessage message(short protocol, byte[] data) {
+    WireProtocolHeader header = new WireProtocolHeader();
+    header.setProtocol(protocol);
+    header.finalizeHeader(header.getHeaderByteLength() + data.length);
+    TCByteBuffer payload = TCByteBufferFactory.wrap(data);
+
+    WireProtocolMessage message = mock(WireProtocolMessage.class);
+    when(message.getMessageProtocol()).thenReturn(protocol);
+    when(message.getWireProtocolHeader()).thenReturn(header);
+    when(message.getDataLength()).thenReturn(data.length);
+    when(message.getTotalLength()).thenReturn(header.getHeaderByteLength() + data.length);
+    when(message.getPayload()).thenAnswer(i -> TCReferenceSupport.createGCReference(payload.duplicate()));
+    when(message.getEntireMessageData()).thenAnswer(i -> TCReferenceSupport.createGCReference(header.getDataBuffer().duplicate(), payload.duplicate()));
+    return message;
+  }
+}
@@ -23,6 +23,7 @@ import com.tc.l2.msg.SyncReplicationActivity;
 import com.tc.object.EntityID;
 import com.tc.object.session.SessionID;
 import com.tc.objectserver.entity.MessagePayload;
+import com.tc.objectserver.entity.PassiveSyncWindow;
 import com.tc.objectserver.handler.RetirementManager;
 import java.util.Map;
 import org.terracotta.entity.ConfigurationException;
@@ -58,7 +59,18 @@ public interface ManagedEntity {
    * 
    * @param passive target passive
    */
-  void sync(SessionID passive);
+  default void sync(SessionID passive) {
+    sync(passive, PassiveSyncWindow.serial());
+  }
+
+  /**
+   * Called to sync an entity.  Acknowledgments from the passive are waited on as the window requires, the caller
+   * drains the window once every entity has been synced.
+   *
+   * @param passive target passive
+   * @param window bounds the sync messages awaiting acknowledgment from the passive
+   */
+  void sync(SessionID passive, PassiveSyncWindow window);
   /**
   * Called when passive sync wants to start sync on this entity.
   * 
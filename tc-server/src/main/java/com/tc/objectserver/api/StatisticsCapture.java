@@ -23,6 +23,7 @@ package com.tc.objectserver.api;
 public interface StatisticsCapture {
   void addMessage();
   void schedule();
+  void replicated();
   void beginInvoke();
   void endInvoke();
 }
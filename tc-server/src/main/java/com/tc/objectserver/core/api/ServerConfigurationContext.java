@@ -44,6 +44,8 @@ public interface ServerConfigurationContext extends ConfigurationContext {
   public static final String ACTIVE_TO_PASSIVE_DRIVER_FLUSH_STAGE                       = "active_to_passive_driver_flush_stage";
   public static final String PASSIVE_TO_ACTIVE_DRIVER_STAGE                       = "passive_to_active_driver_stage";
   public static final String PASSIVE_REPLICATION_STAGE                            = "passive_replication_stage";
+  // threads applying replicated invokes for the replication stage, not a stage of their own
+  public static final String PASSIVE_REPLICATION_APPLY                            = "passive_replication_apply";
   public static final String PASSIVE_OUTGOING_RESPONSE_STAGE                            = "passive_outgoing_response_stage";
   public static final String PASSIVE_RELAY_STAGE                            = "passive_relay_stage";
   public static final String PASSIVE_DUPLICATE_STAGE                            = "passive_duplicate_stage";
@@ -17,6 +17,7 @@
  */
 package com.tc.objectserver.core.impl;
 
+import com.tc.async.api.StageManager;
 import com.tc.net.core.TCConnectionManager;
 import com.tc.net.protocol.transport.ConnectionPolicy;
 import com.tc.object.net.ChannelStats;
@@ -37,10 +38,11 @@ public class ServerManagementContext implements PrettyPrintable {
   private final Guardian           guardian;
   private final VoltronMessageHandler handler;
   private final VoltronMessageSink msgSink;
+  private final StageManager stages;
 
   public ServerManagementContext(DSOChannelManagerMBean channelMgr, TCConnectionManager connections, ChannelStats channelStats,
                                  ConnectionPolicy connectionPolicy, Guardian guard, VoltronMessageHandler handler,
-                                 VoltronMessageSink msgs) {
+                                 VoltronMessageSink msgs, StageManager stages) {
     this.channelMgr = channelMgr;
     this.connections = connections;
     this.channelStats = channelStats;
@@ -48,6 +50,7 @@ public class ServerManagementContext implements PrettyPrintable {
     this.guardian = guard;
     this.handler = handler;
     this.msgSink = msgs;
+    this.stages = stages;
   }
 
   public DSOChannelManagerMBean getChannelManager() {
@@ -78,6 +81,10 @@ public class ServerManagementContext implements PrettyPrintable {
     return this.msgSink;
   }
 
+  public StageManager getStageManager() {
+    return this.stages;
+  }
+
   @Override
   public Map<String, ?> getStateMap() {
     LinkedHashMap<String, Object> map = new LinkedHashMap<>();
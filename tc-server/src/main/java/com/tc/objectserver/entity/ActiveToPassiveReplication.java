@@ -33,6 +33,8 @@ import com.tc.net.groups.GroupManager;
 import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.text.PrettyPrintable;
 import com.tc.util.Assert;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -56,6 +58,7 @@ import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
@@ -72,9 +75,14 @@ import org.terracotta.tripwire.TripwireFactory;
  *  This class lies idle until activated by setting the current passive nodes.  This should 
  *  occur only when the server is transitioning from passive-standby to active
  */
-public class ActiveToPassiveReplication implements PassiveReplicationBroker, GroupEventsListener {
+public class ActiveToPassiveReplication implements PassiveReplicationBroker, GroupEventsListener, PrettyPrintable {
   
   private static final Logger LOGGER = LoggerFactory.getLogger(ActiveToPassiveReplication.class);
+  // number of sync messages to a passive which may await acknowledgment, 0 waits for each one
+  private static final int SYNC_WINDOW = TCPropertiesImpl.getProperties().getInt("active-passive.sync.window", 0);
+  // payload bytes to a passive which may be waiting to be applied, 0 does not bound them
+  private static final long SYNC_WINDOW_BYTES = TCPropertiesImpl.getProperties().getLong("active-passive.sync.window.bytes", 64L * 1024 * 1024);
+  private static final long SYNC_PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
   private volatile boolean activated = false;
   private final Map<ServerID, SessionID> passiveNodes = new ConcurrentHashMap<>();
   private final Set<NodeID> standByNodes = new HashSet<>();
@@ -89,6 +97,7 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   
   private final Sink<ReplicationReceivingAction> receiveHandler;
   private final AtomicLong sessionMaker = new AtomicLong();
+  private final Map<SessionID, PassiveSyncWindow> syncing = new ConcurrentHashMap<>();
 
   public ActiveToPassiveReplication(ConsistencyManager consistencyMgr, ProcessTransactionHandler snapshotter, EntityPersistor persistor, ReplicationSender replicationSender, Sink<ReplicationReceivingAction> processor, GroupManager serverMatch) {
     this.consistencyMgr = consistencyMgr;
@@ -208,13 +217,26 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
               createStartSyncMessage(tuplesForCreation.
                   toArray(new SyncReplicationActivity.EntityCreationTuple[tuplesForCreation.size()])), Collections.singleton(session)).waitForCompleted();
 
-      for (ManagedEntity entity : e) {
-        LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
-        entity.sync(session);
-        LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+      PassiveSyncWindow window = new PassiveSyncWindow(SYNC_WINDOW, SYNC_WINDOW_BYTES);
+      window.setEntityCount(tuplesForCreation.size());
+      syncing.put(session, window);
+      try {
+        long lastProgress = System.nanoTime();
+        for (ManagedEntity entity : e) {
+          LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
+          entity.sync(session, window);
+          LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+          if (System.nanoTime() - lastProgress > SYNC_PROGRESS_INTERVAL) {
+            lastProgress = System.nanoTime();
+            LOGGER.info("Syncing node: {} {}", newNode, window);
+          }
+        }
+        window.drain();
+      } finally {
+        syncing.remove(session);
       }
       //  passive sync done message.  causes passive to go into passive standby mode
-      LOGGER.info("Finished sync to node: {}", newNode);
+      LOGGER.info("Finished sync to node: {} {}", newNode, window);
       replicateActivity(SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(replicateEntityPersistor())), Collections.singleton(session)).waitForCompleted();
       sync.end();
       sync.commit();
@@ -395,6 +417,20 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
       }
     }
   }
+  @Override
+  public Map<String, ?> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("className", this.getClass().getName());
+    map.put("syncWindow", SYNC_WINDOW);
+    map.put("syncWindowBytes", SYNC_WINDOW_BYTES);
+    Map<String, Object> sync = new LinkedHashMap<>();
+    map.put("syncing", sync);
+    for (Map.Entry<SessionID, PassiveSyncWindow> entry : syncing.entrySet()) {
+      sync.put(entry.getKey().toString(), entry.getValue().getStateMap());
+    }
+    return map;
+  }
+
   // for test
   Map<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter> getWaiters() {
     return waiters;
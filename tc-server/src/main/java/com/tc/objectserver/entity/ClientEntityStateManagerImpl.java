@@ -26,6 +26,10 @@ import com.tc.object.ClientInstanceID;
 import com.tc.object.EntityDescriptor;
 import com.tc.object.FetchID;
 import com.tc.util.Assert;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -34,8 +38,15 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 
+/**
+ * References are indexed by client so that disconnecting a client only visits the references of that client,
+ * and each entity keeps a count of its references so checking for references does not visit any.  All
+ * changes for a client are made while computing its entry so both indexes stay consistent with concurrent
+ * adds and removes.
+ */
 public class ClientEntityStateManagerImpl implements ClientEntityStateManager {
-  private final Map<ClientDescriptorImpl, FetchID> clientStates = new ConcurrentHashMap<>();
+  private final Map<ClientID, Map<ClientDescriptorImpl, FetchID>> clientStates = new ConcurrentHashMap<>();
+  private final Map<FetchID, Integer> entityReferences = new ConcurrentHashMap<>();
   private static final Logger logger    = LoggerFactory.getLogger(ClientEntityStateManagerImpl.class);
 
   public ClientEntityStateManagerImpl() {
@@ -44,48 +55,77 @@ public class ClientEntityStateManagerImpl implements ClientEntityStateManager {
   @Override
   public boolean addReference(ClientDescriptorImpl instance, FetchID eid) {
     Assert.assertFalse(instance.getClientInstanceID() == ClientInstanceID.NULL_ID);
-    FetchID check = clientStates.put(instance, eid);
-    return Objects.isNull(check);
+    FetchID[] check = new FetchID[1];
+    clientStates.compute(instance.getNodeID(), (client, references) -> {
+      if (references == null) {
+        references = new ConcurrentHashMap<>();
+      }
+      check[0] = references.put(instance, eid);
+      if (!eid.equals(check[0])) {
+        entityReferences.merge(eid, 1, Integer::sum);
+        if (check[0] != null) {
+          released(check[0]);
+        }
+      }
+      return references;
+    });
+    return Objects.isNull(check[0]);
   }
 
   @Override
   public boolean removeReference(ClientDescriptorImpl descriptor) {
     Assert.assertFalse(descriptor.getClientInstanceID() == ClientInstanceID.NULL_ID);
-    FetchID eid = clientStates.remove(descriptor);
-    return Objects.nonNull(eid);
+    FetchID[] eid = new FetchID[1];
+    clientStates.computeIfPresent(descriptor.getNodeID(), (client, references) -> {
+      eid[0] = references.remove(descriptor);
+      if (eid[0] != null) {
+        released(eid[0]);
+      }
+      return references.isEmpty() ? null : references;
+    });
+    return Objects.nonNull(eid[0]);
+  }
+
+  private void released(FetchID eid) {
+    entityReferences.computeIfPresent(eid, (entity, count) -> count == 1 ? null : count - 1);
   }
 
   @Override
   public boolean verifyNoEntityReferences(FetchID eid) {
-    return !clientStates.values().stream().anyMatch((led)->led.equals(eid));
+    return !entityReferences.containsKey(eid);
   }
 
   @Override
   public boolean verifyNoClientReferences(ClientID eid) {
-    return !clientStates.keySet().stream().anyMatch((led)->led.getNodeID().equals(eid));
+    return !clientStates.containsKey(eid);
   }
   
   @Override
   public List<FetchID> clientDisconnected(ClientID client) {
-    return clientStates.entrySet().stream()
-        .filter(e->e.getKey().getNodeID().equals(client))
-        .map(e->e.getValue())
-        .distinct()
-        .collect(Collectors.toList());
+    Map<ClientDescriptorImpl, FetchID> references = clientStates.get(client);
+    if (references == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(new LinkedHashSet<>(references.values()));
   }
   
   @Override
   public List<EntityDescriptor> clientDisconnectedFromEntity(ClientID client, FetchID entity) {
-    return clientStates.entrySet().stream()
-        .filter(e->(e.getKey().getNodeID().equals(client) && e.getValue().equals(entity)))
+    Map<ClientDescriptorImpl, FetchID> references = clientStates.get(client);
+    if (references == null) {
+      return Collections.emptyList();
+    }
+    return references.entrySet().stream()
+        .filter(e->e.getValue().equals(entity))
         .map(e->EntityDescriptor.createDescriptorForInvoke(e.getValue(), e.getKey().getClientInstanceID()))
         .collect(Collectors.toList());
   }
 
   @Override
   public Set<ClientID> clearClientReferences() {
-    Set<ClientID> msgs = clientStates.keySet().stream().map(ClientDescriptorImpl::getNodeID).distinct().collect(Collectors.toSet());
+    Set<ClientID> msgs = new HashSet<>(clientStates.keySet());
     clientStates.clear();
+    entityReferences.clear();
     return msgs;
   }
 }
@@ -308,16 +308,18 @@ public class ManagedEntityImpl implements ManagedEntity {
     Trace.activeTrace().log("ManagedEntityImpl.scheduleInOrder");
 // this all makes sense because this is only called by the PTH single thread
 // deferCleared is cleared by one of the request queues
-    if (!DirectExecutionMode.isActivated()) {
+    if (!DirectExecutionMode.isActivated() && !DirectExecutionMode.isKeyedActivated()) {
       if (isInActiveState) {
         Assert.assertTrue(Thread.currentThread().getName().contains(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE));
       } else {
+        // replicated invokes may also be scheduled by the workers applying them in parallel, each key stays on one worker
         Assert.assertTrue(Thread.currentThread().getName().contains(ServerConfigurationContext.PASSIVE_REPLICATION_STAGE) ||
+          Thread.currentThread().getName().contains(ServerConfigurationContext.PASSIVE_REPLICATION_APPLY) ||
           Thread.currentThread().getName().contains(ServerConfigurationContext.L2_STATE_CHANGE_STAGE));
       }
     }
 
-    SchedulingRunnable next = new SchedulingRunnable(request, payload, r, ckey);
+    SchedulingRunnable next = new SchedulingRunnable(request, payload, r, ckey, (results instanceof StatisticsCapture) ? (StatisticsCapture)results : null);
     if (logger.isDebugEnabled()) {
       logger.debug("Scheduling action: {} entity: {}-{} from {}-{} ({})", next.request.getAction(), getID(), getConsumerID(), request.getNodeID(), request.getTransaction(), request.getTraceID());
     }
@@ -589,7 +591,7 @@ public class ManagedEntityImpl implements ManagedEntity {
               .ifPresent(em->performAction(request, em, response, concurrencyKey));
           break;
         case REQUEST_SYNC_ENTITY:
-          performSync(response, request.replicateTo(Collections.emptySet()), concurrencyKey);
+          performSync(response, request.replicateTo(Collections.emptySet()), concurrencyKey, syncWindow(request));
           break;
         case RECEIVE_SYNC_ENTITY_KEY_START:
           receiveSyncEntityKeyStart(response, concurrencyKey);
@@ -814,7 +816,11 @@ public class ManagedEntityImpl implements ManagedEntity {
     response.complete();
   }
 
-  private void performSync(ResultCapture response, Set<SessionID> passives, int concurrencyKey) {
+  private static PassiveSyncWindow syncWindow(ServerEntityRequest request) {
+    return (request instanceof PassiveSyncServerEntityRequest) ? ((PassiveSyncServerEntityRequest)request).window : PassiveSyncWindow.serial();
+  }
+
+  private void performSync(ResultCapture response, Set<SessionID> passives, int concurrencyKey, PassiveSyncWindow window) {
     if (!this.isDestroyed) {
       if (this.isInActiveState) {
         if (null == this.activeServerEntity) {
@@ -824,7 +830,8 @@ public class ManagedEntityImpl implements ManagedEntity {
           PassiveSynchronizationChannel<EntityMessage> syncChannel = new EntityMessagePassiveSynchronizationChannelImpl(
             passives,
             concurrencyKey,
-            false
+            false,
+            window
           );
         //  start is handled by the sync request that triggered this action
           this.activeServerEntity.synchronizeKeyToPassive(syncChannel, concurrencyKey);
@@ -1138,20 +1145,20 @@ public class ManagedEntityImpl implements ManagedEntity {
   }
 
   @Override
-  public void sync(SessionID passive) {
+  public void sync(SessionID passive, PassiveSyncWindow window) {
 //  this is simply a barrier to make sure all actions are flushed before sync is started (hence, it has a null passive).
-    PassiveSyncServerEntityRequest req = new PassiveSyncServerEntityRequest(passive);
+    PassiveSyncServerEntityRequest req = new PassiveSyncServerEntityRequest(passive, window);
 // wait for future is ok, occuring on sync executor thread
     BarrierCompletion syncStart = new BarrierCompletion();
     this.executor.scheduleRequest(interop.isSyncing(), this.id, this.version, this.fetchID, new ServerEntityRequestImpl(ClientInstanceID.NULL_ID, ServerEntityAction.LOCAL_FLUSH_AND_SYNC, ClientID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, false), MessagePayload.emptyPayload(), (w)-> {
         Assert.assertTrue(this.isInActiveState);
         if (!this.isDestroyed) {
-          executor.scheduleSync(SyncReplicationActivity.createStartEntityMessage(id, version, fetchID, TCByteBufferFactory.wrap(constructorInfo), canDelete ? this.clientReferenceCount : ManagedEntity.UNDELETABLE_ENTITY), passive).waitForCompleted();
+          window.entityStarted(executor.scheduleSync(SyncReplicationActivity.createStartEntityMessage(id, version, fetchID, TCByteBufferFactory.wrap(constructorInfo), canDelete ? this.clientReferenceCount : ManagedEntity.UNDELETABLE_ENTITY), passive));
         }
         interop.syncStarted();
         syncStart.complete();
       }, true, ConcurrencyStrategy.MANAGEMENT_KEY);
-    //  wait for completed above waits for acknowledgment from the passive
+    //  the window above waits for acknowledgment from the passive
     //  waitForCompletion below waits for completion of the local request processor
     syncStart.waitForCompletion();
 // wait for future is ok, occuring on sync executor thread
@@ -1163,21 +1170,22 @@ public class ManagedEntityImpl implements ManagedEntity {
           Assert.assertTrue(concurrency > 0);
 
           if (activeServerEntity != null) {
-            activeServerEntity.prepareKeyForSynchronizeOnPassive(new EntityMessagePassiveSynchronizationChannelImpl(Collections.singleton(passive), concurrency, true), concurrency);
+            activeServerEntity.prepareKeyForSynchronizeOnPassive(new EntityMessagePassiveSynchronizationChannelImpl(Collections.singleton(passive), concurrency, true, window), concurrency);
           }
           // We don't actually use the message in the direct strategy so this is safe.
           //  don't care about the result
           BarrierCompletion sectionComplete = new BarrierCompletion();
           this.executor.scheduleRequest(interop.isSyncing(), this.id, this.version, this.fetchID, req, MessagePayload.emptyPayload(),  (w)->invoke(req, new ResultCaptureImpl(null, result->sectionComplete.complete(), null, exception->{throw new RuntimeException("bad message", exception);}), MessagePayload.emptyPayload(), concurrency), true, concurrency);
 
-        //  wait for completed above waits for acknowledgment from the passive
         //  waitForCompletion below waits for completion of the local request processor
+        //  the window waits for acknowledgment from the passive once too many keys are outstanding.  The end of
+        //  the key is always sent after all of its payloads so the order on the wire is kept
           sectionComplete.waitForCompletion();
-          executor.scheduleSync(SyncReplicationActivity.createEndEntityKeyMessage(id, version, fetchID, concurrency), passive).waitForCompleted();
+          window.keyEnded(executor.scheduleSync(SyncReplicationActivity.createEndEntityKeyMessage(id, version, fetchID, concurrency), passive));
         }
   //  end passive sync for an entity
   // wait for future is ok, occuring on sync executor thread
-        executor.scheduleSync(SyncReplicationActivity.createEndEntityMessage(id, version, fetchID), passive).waitForCompleted();
+        window.entityEnded(executor.scheduleSync(SyncReplicationActivity.createEndEntityMessage(id, version, fetchID), passive));
       }
     } finally {
       //  flush the sync pipeline and switch back to main pipeline.
@@ -1248,10 +1256,12 @@ public class ManagedEntityImpl implements ManagedEntity {
   private static class PassiveSyncServerEntityRequest implements ServerEntityRequest {
     private final SessionID passive;
     private final ServerEntityAction action;
+    private final PassiveSyncWindow window;
 
-    public PassiveSyncServerEntityRequest(SessionID passive) {
+    public PassiveSyncServerEntityRequest(SessionID passive, PassiveSyncWindow window) {
       action = ServerEntityAction.REQUEST_SYNC_ENTITY;
       this.passive = passive;
+      this.window = window;
     }
 
     @Override
@@ -1296,14 +1306,16 @@ public class ManagedEntityImpl implements ManagedEntity {
     private final Runnable original;
     private final int concurrency;
     private final Event event;
+    private final StatisticsCapture stats;
 
     private ActivePassiveAckWaiter  waitFor;
 
-    public SchedulingRunnable(ServerEntityRequest request, MessagePayload payload, Runnable r, int concurrency) {
+    public SchedulingRunnable(ServerEntityRequest request, MessagePayload payload, Runnable r, int concurrency, StatisticsCapture stats) {
       this.request = request;
       this.payload = payload;
       this.original = r;
       this.concurrency = concurrency;
+      this.stats = stats;
       this.event = TripwireFactory.createMessageEvent(id.toString(),
               concurrency,
               request.getAction().toString(),
@@ -1364,6 +1376,10 @@ public class ManagedEntityImpl implements ManagedEntity {
     public void accept(ActivePassiveAckWaiter waiter) {
       try {
         setWaitFor(waiter);
+        if (stats != null) {
+          // replication has been handed to the passives, the invoke runs next
+          stats.replicated();
+        }
         event.begin();
         original.run();
       } finally {
@@ -1494,27 +1510,31 @@ public class ManagedEntityImpl implements ManagedEntity {
     private final List<SessionID> passives;
     private final int concurrencyKey;
     private final boolean prepare;
+    private final PassiveSyncWindow window;
 
-    public EntityMessagePassiveSynchronizationChannelImpl(Collection<SessionID> passives, int concurrencyKey, boolean prepare) {
+    public EntityMessagePassiveSynchronizationChannelImpl(Collection<SessionID> passives, int concurrencyKey, boolean prepare, PassiveSyncWindow window) {
       this.passives = new ArrayList<>(passives);
       Collections.sort(this.passives);
       this.concurrencyKey = concurrencyKey;
       this.prepare = prepare;
+      this.window = window;
     }
 
     @Override
 //  TODO:  what should be done about exception handling?
     public void synchronizeToPassive(EntityMessage payload) {
+      byte[] message;
+      try {
+        // encoded once, every passive reads the same bytes
+        message = syncCodec.encode(concurrencyKey, payload);
+      } catch (MessageCodecException ce) {
+        throw new RuntimeException(ce);
+      }
       for (SessionID passive : passives) {
-        try {
-          byte[] message = syncCodec.encode(concurrencyKey, payload);
-          ActivePassiveAckWaiter waiter = executor.scheduleSync(SyncReplicationActivity.createPayloadMessage(id, version, fetchID,
-                                             concurrencyKey, TCByteBufferFactory.wrap(message), ""), passive);
-          //  wait for the passive to receive before sending the next
-          waiter.waitForReceived();
-        } catch (MessageCodecException ce) {
-          throw new RuntimeException(ce);
-        }
+        ActivePassiveAckWaiter waiter = executor.scheduleSync(SyncReplicationActivity.createPayloadMessage(id, version, fetchID,
+                                           concurrencyKey, TCByteBufferFactory.wrap(message), ""), passive);
+        //  wait for the passive before sending more than the window and its byte budget allow
+        window.payloadSent(waiter, message.length);
       }
     }
 
@@ -0,0 +1,243 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.entity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the sync activities sent to one passive which have not been acknowledged yet.  With a window of zero
+ * every sync message waits for the passive before the next one is sent, otherwise up to window entity and key
+ * boundaries may be completing on the passive while the active moves on to the next keys and entities.  Payloads
+ * are bounded the same way but only wait for the passive to receive them.
+ * <p>
+ * Payload bytes are bounded separately.  Once the payloads the passive has not applied yet exceed the byte budget
+ * the active waits for the oldest of them to complete, so an entity streaming a large key range holds at most the
+ * budget in flight on the active and queued on the passive, whatever the payload count window.
+ * <p>
+ * The order of sync messages on the wire is unchanged, only the waiting is deferred.  Also counts the progress of
+ * the sync.
+ */
+public class PassiveSyncWindow {
+  private final int window;
+  private final long maxBytes;
+  private final Deque<ActivePassiveAckWaiter> completing = new ArrayDeque<>();
+  private final Deque<ActivePassiveAckWaiter> receiving = new ArrayDeque<>();
+  // payloads not yet applied by the passive and their sizes, only tracked with a byte budget
+  private final Deque<ActivePassiveAckWaiter> applying = new ArrayDeque<>();
+  private final Deque<Integer> applyingSizes = new ArrayDeque<>();
+  private long applyingBytes;
+  // charged against the byte budget for every payload on top of its size, covers the waiter and message kept for it
+  static final int PAYLOAD_OVERHEAD = 64;
+
+  private final long start = System.nanoTime();
+  private volatile int entityCount;
+  private final LongAdder entitiesSent = new LongAdder();
+  private final LongAdder entitiesAcked = new LongAdder();
+  private final LongAdder keysSent = new LongAdder();
+  private final LongAdder keysAcked = new LongAdder();
+  private final LongAdder payloads = new LongAdder();
+  private final LongAdder payloadBytes = new LongAdder();
+
+  public PassiveSyncWindow(int window) {
+    this(window, 0L);
+  }
+
+  /**
+   * @param maxBytes payload bytes which may be waiting to be applied by the passive, 0 does not bound them
+   */
+  public PassiveSyncWindow(int window, long maxBytes) {
+    this.window = Math.max(0, window);
+    this.maxBytes = Math.max(0L, maxBytes);
+  }
+
+  /**
+   * A window which waits for every sync message, the sync is done one step at a time.
+   */
+  public static PassiveSyncWindow serial() {
+    return new PassiveSyncWindow(0);
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  public void setEntityCount(int count) {
+    this.entityCount = count;
+  }
+
+  /**
+   * Track the message which begins the sync of an entity.
+   */
+  public void entityStarted(ActivePassiveAckWaiter waiter) {
+    track(waiter);
+  }
+
+  /**
+   * Track the message which ends the sync of one concurrency key.
+   */
+  public void keyEnded(ActivePassiveAckWaiter waiter) {
+    keysSent.increment();
+    waiter.runWhenCompleted(keysAcked::increment);
+    track(waiter);
+  }
+
+  /**
+   * Track the message which ends the sync of an entity.
+   */
+  public void entityEnded(ActivePassiveAckWaiter waiter) {
+    entitiesSent.increment();
+    waiter.runWhenCompleted(entitiesAcked::increment);
+    track(waiter);
+  }
+
+  /**
+   * Track a payload message, these only wait for the passive to receive them unless the byte budget is exceeded.
+   */
+  public void payloadSent(ActivePassiveAckWaiter waiter, int size) {
+    payloads.increment();
+    payloadBytes.add(size);
+    if (maxBytes > 0) {
+      budget(waiter, size);
+    }
+    ActivePassiveAckWaiter oldest;
+    while ((oldest = next(receiving, waiter)) != null) {
+      oldest.waitForReceived();
+      waiter = null;
+    }
+  }
+
+  /**
+   * Wait for the oldest payloads to be applied until the rest fit in the byte budget.  The newest payload is never
+   * waited for here so a single payload larger than the budget still goes through.
+   */
+  private void budget(ActivePassiveAckWaiter waiter, int size) {
+    ActivePassiveAckWaiter oldest;
+    boolean add = true;
+    while ((oldest = overBudget(add ? waiter : null, size)) != null) {
+      add = false;
+      oldest.waitForCompleted();
+    }
+  }
+
+  private synchronized ActivePassiveAckWaiter overBudget(ActivePassiveAckWaiter add, int size) {
+    if (add != null) {
+      applying.addLast(add);
+      applyingSizes.addLast(size + PAYLOAD_OVERHEAD);
+      applyingBytes += size + PAYLOAD_OVERHEAD;
+    }
+    pruneApplied();
+    if (applyingBytes > maxBytes && applying.size() > 1) {
+      applyingBytes -= applyingSizes.pollFirst();
+      return applying.pollFirst();
+    }
+    return null;
+  }
+
+  /**
+   * Wait for the passive to complete everything tracked by this window.
+   */
+  public void drain() {
+    ActivePassiveAckWaiter oldest;
+    while ((oldest = poll(completing)) != null) {
+      oldest.waitForCompleted();
+    }
+    while ((oldest = poll(receiving)) != null) {
+      oldest.waitForReceived();
+    }
+    while ((oldest = pollApplying()) != null) {
+      oldest.waitForCompleted();
+    }
+  }
+
+  /**
+   * Forget the oldest payloads the passive has already applied so only the bytes still unapplied count.
+   */
+  private void pruneApplied() {
+    ActivePassiveAckWaiter oldest;
+    while ((oldest = applying.peekFirst()) != null && oldest.isCompleted()) {
+      applying.pollFirst();
+      applyingBytes -= applyingSizes.pollFirst();
+    }
+  }
+
+  private synchronized ActivePassiveAckWaiter pollApplying() {
+    Integer size = applyingSizes.pollFirst();
+    if (size != null) {
+      applyingBytes -= size;
+    }
+    return applying.pollFirst();
+  }
+
+  private void track(ActivePassiveAckWaiter waiter) {
+    ActivePassiveAckWaiter oldest;
+    while ((oldest = next(completing, waiter)) != null) {
+      oldest.waitForCompleted();
+      waiter = null;
+    }
+  }
+
+  /**
+   * Add the waiter to the queue, if any, and return the oldest waiter if the queue exceeds the window.
+   */
+  private synchronized ActivePassiveAckWaiter next(Deque<ActivePassiveAckWaiter> queue, ActivePassiveAckWaiter add) {
+    if (add != null) {
+      queue.addLast(add);
+    }
+    return (queue.size() > window) ? queue.pollFirst() : null;
+  }
+
+  private synchronized ActivePassiveAckWaiter poll(Deque<ActivePassiveAckWaiter> queue) {
+    return queue.pollFirst();
+  }
+
+  @Override
+  public String toString() {
+    long keys = keysAcked.sum();
+    long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return "entities " + entitiesAcked.sum() + "/" + entityCount + " keys " + keys + " payloads " + payloads.sum()
+        + " (" + (keys * 1000 / millis) + " keys/s, " + (payloadBytes.sum() * 1000 / millis / 1024) + " KiB/s)";
+  }
+
+  public Map<String, Object> getStateMap() {
+    long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("window", window);
+    map.put("maxBytes", maxBytes);
+    map.put("entities", entityCount);
+    map.put("entitiesSent", entitiesSent.sum());
+    map.put("entitiesAcked", entitiesAcked.sum());
+    map.put("keysSent", keysSent.sum());
+    map.put("keysAcked", keysAcked.sum());
+    map.put("payloads", payloads.sum());
+    map.put("payloadBytes", payloadBytes.sum());
+    map.put("elapsedMillis", millis);
+    map.put("keysPerSecond", keysAcked.sum() * 1000 / millis);
+    synchronized (this) {
+      pruneApplied();
+      map.put("pendingCompletion", completing.size());
+      map.put("pendingReceipt", receiving.size());
+      map.put("pendingApplyBytes", applyingBytes);
+    }
+    return map;
+  }
+}
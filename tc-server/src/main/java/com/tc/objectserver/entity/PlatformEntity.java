@@ -91,7 +91,7 @@ public class PlatformEntity implements ManagedEntity {
   public boolean canDelete() { return false; }
 
   @Override
-  public void sync(SessionID passive) {
+  public void sync(SessionID passive, PassiveSyncWindow window) {
   //  never sync
   }
   
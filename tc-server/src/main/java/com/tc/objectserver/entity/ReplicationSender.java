@@ -29,9 +29,11 @@ import com.tc.object.session.SessionID;
 import com.tc.objectserver.handler.GroupMessageBatchContext;
 import com.tc.objectserver.handler.ReplicationSendingAction;
 import com.tc.properties.TCPropertiesImpl;
+import com.tc.text.PrettyPrintable;
 import com.tc.util.Assert;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -45,12 +47,17 @@ import org.terracotta.tripwire.Event;
 import org.terracotta.tripwire.TripwireFactory;
 
 
-public class ReplicationSender {
+public class ReplicationSender implements PrettyPrintable {
   private static final int DEFAULT_BATCH_LIMIT = 1024;
   private static final int DEFAULT_INFLIGHT_MESSAGES = 1;
+  private static final int DEFAULT_MAX_INFLIGHT_MESSAGES = 16;
   // Find out how many messages we should keep in-flight and our maximum batch size.
   private static int maximumBatchSize = TCPropertiesImpl.getProperties().getInt("active-passive.batchsize", DEFAULT_BATCH_LIMIT);
   private static int idealMessagesInFlight = TCPropertiesImpl.getProperties().getInt("active-passive.inflight", DEFAULT_INFLIGHT_MESSAGES);
+  // in adaptive mode the batch size and in-flight window follow the measured send time of each batch to the passive, the two
+  //  properties above become the ceiling of the batch size and the floor of the window
+  private static boolean adaptiveBatching = TCPropertiesImpl.getProperties().getBoolean("active-passive.adaptive", false);
+  private static int maximumMessagesInFlight = TCPropertiesImpl.getProperties().getInt("active-passive.adaptive.inflight", DEFAULT_MAX_INFLIGHT_MESSAGES);
   //  this is all single threaded.  If there is any attempt to make this multi-threaded,
   //  control structures must be fixed
   private final GroupManager<AbstractGroupMessage> group;
@@ -132,6 +139,19 @@ public class ReplicationSender {
       logger.debug("ignoring: " + session + " no longer exists");
     }
   }
+  @Override
+  public Map<String, ?> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("className", this.getClass().getName());
+    map.put("adaptive", adaptiveBatching);
+    Map<String, Object> passives = new LinkedHashMap<>();
+    map.put("passives", passives);
+    for (Map.Entry<SessionID, SyncState> entry : filtering.entrySet()) {
+      passives.put(entry.getKey().toString(), entry.getValue().batchContext.getStateMap());
+    }
+    return map;
+  }
+
 // for testing only
   boolean isSyncOccuring(SessionID origin) {
     SyncState state = filtering.get(origin);
@@ -167,7 +187,8 @@ public class ReplicationSender {
       this.session = nodeToId;
       this.executionLane = lane;
       
-      this.batchContext = new GroupMessageBatchContext<>(ReplicationMessage::createActivityContainer, group, target, maximumBatchSize, idealMessagesInFlight, (node)->flushBatch());  
+      this.batchContext = new GroupMessageBatchContext<>(ReplicationMessage::createActivityContainer, group, target, maximumBatchSize, idealMessagesInFlight, 
+          adaptiveBatching ? maximumMessagesInFlight : 0, (node)->flushBatch());  
     }
     
     private boolean isSameSession(SessionID session) {
@@ -116,6 +116,17 @@ public class RequestProcessor {
     }
   }
 
+  /**
+   * The key used to pick the worker for a request on the given concurrency key of an entity, null if any worker will do.
+   */
+  public static Object schedulingKey(EntityID entity, int concurrencyKey) {
+    if (concurrencyKey == ConcurrencyStrategy.UNIVERSAL_KEY) {
+      return null;
+    }
+//  create some additional entropy so all entities are not ordered the same
+    return concurrencyKey ^ entity.hashCode();
+  }
+
   private static SyncReplicationActivity createReplicationActivity(EntityID id, long version, FetchID fetchID, ClientID src, ClientInstanceID instance, 
       ServerEntityAction type, TransactionID tid, TransactionID oldest, MessagePayload payload, int concurrency) {
     SyncReplicationActivity.ActivityType actionCode = type.replicationType();
@@ -158,11 +169,7 @@ public class RequestProcessor {
 
     @Override
     public Object getSchedulingKey() {
-      if (key == ConcurrencyStrategy.UNIVERSAL_KEY) {
-        return null;
-      }
-//  create some additional entropy so all entities are not ordered the same
-      return key ^ entity.hashCode();
+      return schedulingKey(entity, key);
     }
 //  Runnable so handler can cast and execute
     @Override
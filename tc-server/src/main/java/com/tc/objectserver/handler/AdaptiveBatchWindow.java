@@ -0,0 +1,129 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunes the number of batches in flight and the size of each batch from the measured send time of batches, the time
+ * from handing a batch to the group manager until its sent callback, in the manner of TCP congestion control.  This is
+ * local send latency, not the round trip to the passive ack.  While the send time stays near the lowest one seen, the
+ * window grows by one batch per send time and full batches double the batch limit.  When the send time inflates the
+ * link is queueing so both are halved, at most once per send time.
+ * <p>
+ * Not thread safe, the owner calls it under its own lock.
+ */
+class AdaptiveBatchWindow {
+  static final int MINIMUM_BATCH_SIZE = 16;
+  static final long MINIMUM_BATCH_BYTES = 64 * 1024;
+  // a send time within this factor of the minimum is not considered queueing
+  private static final double QUEUEING_FACTOR = 2.0;
+  // the minimum send time is forgotten after this long so that a changed route is picked up
+  private static final long MIN_SEND_EXPIRY = TimeUnit.SECONDS.toNanos(10);
+
+  private final int minimumWindow;
+  private final int maximumWindow;
+  private final int maximumBatchSize;
+  private final long maximumBatchBytes;
+
+  private double window;
+  private int batchLimit;
+  private long smoothedSend;
+  private long minSend = Long.MAX_VALUE;
+  private long minSendStamp;
+  private long lastDecrease;
+  private double bytesPerNano;
+
+  private long samples;
+  private long decreases;
+
+  AdaptiveBatchWindow(int minimumWindow, int maximumWindow, int maximumBatchSize, long maximumBatchBytes) {
+    this.minimumWindow = Math.max(1, minimumWindow);
+    this.maximumWindow = Math.max(this.minimumWindow, maximumWindow);
+    this.maximumBatchSize = Math.max(MINIMUM_BATCH_SIZE, maximumBatchSize);
+    this.maximumBatchBytes = Math.max(MINIMUM_BATCH_BYTES, maximumBatchBytes);
+    this.window = this.minimumWindow;
+    this.batchLimit = MINIMUM_BATCH_SIZE;
+  }
+
+  int getWindow() {
+    return (int) window;
+  }
+
+  int getBatchLimit() {
+    return batchLimit;
+  }
+
+  /**
+   * @return the payload a batch may carry before it is sent regardless of the window, roughly what the link
+   *  delivers in one send time
+   */
+  long getBatchBytesLimit() {
+    long bdp = (long) (bytesPerNano * smoothedSend);
+    return Math.min(maximumBatchBytes, Math.max(MINIMUM_BATCH_BYTES, bdp));
+  }
+
+  /**
+   * Record a batch which reached its sent callback.
+   *
+   * @param now the completion time, in nanos
+   * @param elapsed the time from handing the batch to the group manager to its sent callback, in nanos
+   * @param batchSize the number of messages in the batch
+   * @param bytes the payload of the batch
+   */
+  void sample(long now, long elapsed, int batchSize, long bytes) {
+    elapsed = Math.max(1L, elapsed);
+    samples += 1;
+    smoothedSend = (smoothedSend == 0) ? elapsed : smoothedSend + ((elapsed - smoothedSend) >> 3);
+    if (elapsed <= minSend || now - minSendStamp > MIN_SEND_EXPIRY) {
+      minSend = elapsed;
+      minSendStamp = now;
+    }
+    double rate = (double) bytes / elapsed;
+    bytesPerNano = (bytesPerNano == 0) ? rate : bytesPerNano + (rate - bytesPerNano) / 8;
+
+    if (elapsed > minSend * QUEUEING_FACTOR) {
+      if (now - lastDecrease > smoothedSend) {
+        lastDecrease = now;
+        decreases += 1;
+        window = Math.max(minimumWindow, window / 2);
+        batchLimit = Math.max(MINIMUM_BATCH_SIZE, batchLimit / 2);
+      }
+    } else {
+      window = Math.min(maximumWindow, window + 1 / window);
+      if (batchSize >= batchLimit) {
+        batchLimit = Math.min(maximumBatchSize, batchLimit * 2);
+      }
+    }
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("window", getWindow());
+    map.put("maximumWindow", maximumWindow);
+    map.put("batchLimit", batchLimit);
+    map.put("batchBytesLimit", getBatchBytesLimit());
+    map.put("smoothedSendMicros", TimeUnit.NANOSECONDS.toMicros(smoothedSend));
+    map.put("minSendMicros", minSend == Long.MAX_VALUE ? 0L : TimeUnit.NANOSECONDS.toMicros(minSend));
+    map.put("samples", samples);
+    map.put("decreases", decreases);
+    return map;
+  }
+}
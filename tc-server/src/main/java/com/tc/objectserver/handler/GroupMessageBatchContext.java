@@ -27,6 +27,10 @@ import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
 import com.tc.net.groups.GroupMessage;
 import com.tc.net.utils.L2Utils;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -43,6 +47,9 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   private final int maximumBatchSize;
   private final int idealMessagesInFlight;
   private final Consumer<ServerID> networkDoneTarget;
+  // null unless the batch size and in-flight window adapt to the measured send time
+  private final AdaptiveBatchWindow adaptive;
+  private final Deque<SentBatch> sentBatches = new ArrayDeque<>();
   
   private int messagesInFlight;
   private M cachedMessage;
@@ -50,12 +57,24 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
 
 
   public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, ServerID target, int maximumBatchSize, int idealMessagesInFlight, Consumer<ServerID> networkDoneTarget) {
+    this(messageFactory, groupManager, target, maximumBatchSize, idealMessagesInFlight, 0, networkDoneTarget);
+  }
+
+  /**
+   * @param maximumMessagesInFlight if larger than idealMessagesInFlight, the in-flight window adapts between the two
+   *  and the batch size adapts up to maximumBatchSize, based on the time each batch takes from being handed to the
+   *  group manager to its sent callback.  This is local send latency, not the passive ack round trip.
+   */
+  public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, ServerID target, int maximumBatchSize, int idealMessagesInFlight, int maximumMessagesInFlight, Consumer<ServerID> networkDoneTarget) {
     this.messageFactory = messageFactory;
     this.groupManager = groupManager;
     this.target = target;
     this.maximumBatchSize = maximumBatchSize;
     this.idealMessagesInFlight = idealMessagesInFlight;
     this.networkDoneTarget = networkDoneTarget;
+    this.adaptive = (idealMessagesInFlight > 0 && maximumMessagesInFlight > idealMessagesInFlight)
+        ? new AdaptiveBatchWindow(idealMessagesInFlight, maximumMessagesInFlight, maximumBatchSize, THRESHOLD)
+        : null;
   }
 
   /**
@@ -70,7 +89,7 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
     // See if we have an existing message we must batch.
     boolean didCreateNewBatch = false;
     try {
-      while (this.cachedMessage != null && this.cachedMessage.getBatchSize() >= maximumBatchSize) {
+      while (this.cachedMessage != null && this.cachedMessage.getBatchSize() >= batchLimit()) {
         wait();
       }      
     } catch (InterruptedException ie) {
@@ -116,7 +135,7 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       } catch (GroupException e) {
         LOGGER.warn("replication message failed", e);
         //  message failed but we still need to reset state
-        this.handleNetworkDone();
+        this.networkDone(messageToSend);
         throw e;
       }
     }
@@ -137,12 +156,13 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
           }
           return true;
         } else {
+          forgetSent(messageToSend);
           return false;
         }
       } catch (GroupException e) {
         LOGGER.warn("replication message failed", e);
         //  message failed but we still need to reset state
-        this.handleNetworkDone();
+        this.networkDone(messageToSend);
         throw e;
       }
     } else {
@@ -155,20 +175,36 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       // See if we have a batched message and are ready to send one.
       // Note that we will override the ideal number of in-flight messages if the batch is getting too large.
     if (null != this.cachedMessage) {
+      long payload = this.cachedMessage.getPayloadSize();
       if ((0 == this.idealMessagesInFlight) ||
-        (this.messagesInFlight < this.idealMessagesInFlight) ||
-        (this.cachedMessage.getBatchSize() >= this.maximumBatchSize) || 
-        (this.cachedMessage.getPayloadSize() > THRESHOLD)
+        (this.messagesInFlight < window()) ||
+        (this.cachedMessage.getBatchSize() >= batchLimit()) || 
+        (payload > batchBytesLimit())
       ) {
         // There is a batched message so send it.
         messageToSend = this.cachedMessage;
         this.cachedMessage = null;
         notifyAll();
         this.messagesInFlight += 1;
+        if (this.adaptive != null) {
+          this.sentBatches.addLast(new SentBatch(messageToSend, System.nanoTime(), payload));
+        }
       }
     }
     return messageToSend;
   }
+
+  private int window() {
+    return (this.adaptive != null) ? this.adaptive.getWindow() : this.idealMessagesInFlight;
+  }
+
+  private int batchLimit() {
+    return (this.adaptive != null) ? this.adaptive.getBatchLimit() : this.maximumBatchSize;
+  }
+
+  private long batchBytesLimit() {
+    return (this.adaptive != null) ? this.adaptive.getBatchBytesLimit() : THRESHOLD;
+  }
   
   private synchronized void waitForFlush() {
     try {
@@ -181,8 +217,24 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   }
 
   public void handleNetworkDone() {
+    synchronized (this) {
+      // sent callbacks arrive in the order the batches were sent, failed batches were already removed
+      SentBatch batch = this.sentBatches.pollFirst();
+      if (batch != null) {
+        long now = System.nanoTime();
+        this.adaptive.sample(now, now - batch.sent, batch.count, batch.bytes);
+      }
+    }
+    networkDone(null);
+  }
+
+  private void networkDone(IBatchableGroupMessage<E> failed) {
     synchronized (this) {
       this.messagesInFlight -= 1;
+      if (failed != null) {
+        // the failed batch gets no sent callback, drop it so the batches still in flight pair with their own
+        forgetSent(failed);
+      }
       notifyAll();
     }
     
@@ -191,4 +243,36 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       this.networkDoneTarget.accept(target);
     }
   }
+
+  private synchronized void forgetSent(IBatchableGroupMessage<E> message) {
+    this.sentBatches.removeIf(b -> b.message == message);
+  }
+
+  public synchronized Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("target", target.toString());
+    map.put("messagesInFlight", messagesInFlight);
+    map.put("nextReplicationID", nextReplicationID);
+    if (adaptive != null) {
+      map.put("adaptive", adaptive.getStateMap());
+    } else {
+      map.put("maximumBatchSize", maximumBatchSize);
+      map.put("idealMessagesInFlight", idealMessagesInFlight);
+    }
+    return map;
+  }
+
+  private static class SentBatch {
+    private final Object message;
+    private final long sent;
+    private final int count;
+    private final long bytes;
+
+    SentBatch(IBatchableGroupMessage<?> message, long sent, long bytes) {
+      this.message = message;
+      this.sent = sent;
+      this.count = message.getBatchSize();
+      this.bytes = bytes;
+    }
+  }
 }
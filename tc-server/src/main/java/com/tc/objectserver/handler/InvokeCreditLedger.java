@@ -0,0 +1,108 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.net.NodeID;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the invokes each client granted credits has outstanding on the server, from the time an invoke enters the
+ * pipeline until its result is handed back.  Clients bound themselves to their grant but may overdraw when they
+ * wait too long for a credit, an invoke which takes a client over its grant is backed off like one from a client
+ * without credits.
+ * <p>
+ * Invokes resent on reconnect never passed through the ledger so the count does not drop below zero.
+ */
+public class InvokeCreditLedger {
+  private final Map<NodeID, Account> accounts = new ConcurrentHashMap<>();
+  private final LongAdder overGrant = new LongAdder();
+
+  void open(NodeID client, int grant) {
+    accounts.put(client, new Account(grant));
+  }
+
+  void close(NodeID client) {
+    accounts.remove(client);
+  }
+
+  /**
+   * Count an invoke from the client.
+   *
+   * @return true if the client was granted credits and the invoke is within them
+   */
+  boolean invoked(NodeID client) {
+    Account account = accounts.get(client);
+    if (account == null) {
+      return false;
+    }
+    if (account.outstanding.incrementAndGet() > account.grant) {
+      overGrant.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the client was granted credits and is not over them
+   */
+  boolean isWithinGrant(NodeID client) {
+    Account account = accounts.get(client);
+    return account != null && account.outstanding.get() <= account.grant;
+  }
+
+  /**
+   * The result of an invoke from the client was handed back, the client gives back its credit on receiving it.
+   */
+  void completed(NodeID client) {
+    Account account = accounts.get(client);
+    if (account != null) {
+      account.outstanding.getAndUpdate(count -> count > 0 ? count - 1 : 0);
+    }
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    int outstanding = 0;
+    int over = 0;
+    for (Account account : accounts.values()) {
+      int count = account.outstanding.get();
+      outstanding += count;
+      if (count > account.grant) {
+        over += 1;
+      }
+    }
+    map.put("clients", accounts.size());
+    map.put("outstanding", outstanding);
+    map.put("clientsOverGrant", over);
+    map.put("invokesOverGrant", overGrant.sum());
+    return map;
+  }
+
+  private static class Account {
+    private final int grant;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    Account(int grant) {
+      this.grant = grant;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.object.StatType;
+import com.tc.stats.LatencyHistogram;
+import com.tc.text.PrettyPrintable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.tc.object.StatType.SERVER_ADD;
+import static com.tc.object.StatType.SERVER_BEGININVOKE;
+import static com.tc.object.StatType.SERVER_COMPLETE;
+import static com.tc.object.StatType.SERVER_ENDINVOKE;
+import static com.tc.object.StatType.SERVER_RECEIVED;
+import static com.tc.object.StatType.SERVER_REPLICATED;
+import static com.tc.object.StatType.SERVER_RETIRED;
+import static com.tc.object.StatType.SERVER_SCHEDULE;
+
+/**
+ * Aggregates the phase timings of a sampled fraction of invokes into latency distributions per entity class.  The
+ * timings of a sampled invoke are also what is returned to the client so both sides see the same phases of the same
+ * invokes, tied together by the transaction of the invoke.
+ */
+public class InvokeTracer implements PrettyPrintable {
+  // phases in the order an invoke passes through them on the active
+  private static final StatType[][] PHASES = {
+    {SERVER_ADD, SERVER_SCHEDULE},
+    {SERVER_SCHEDULE, SERVER_REPLICATED},
+    {SERVER_REPLICATED, SERVER_BEGININVOKE},
+    {SERVER_BEGININVOKE, SERVER_ENDINVOKE},
+    {SERVER_ENDINVOKE, SERVER_COMPLETE},
+    {SERVER_COMPLETE, SERVER_RETIRED},
+    {SERVER_RECEIVED, SERVER_RETIRED}
+  };
+
+  private final double sampling;
+  private final Map<String, LatencyHistogram[]> byClass = new ConcurrentHashMap<>();
+
+  InvokeTracer(double sampling) {
+    this.sampling = sampling;
+  }
+
+  boolean sample() {
+    return sampling >= 1.0 || (sampling > 0 && ThreadLocalRandom.current().nextDouble() < sampling);
+  }
+
+  /**
+   * @param stats timings of one invoke indexed by {@link StatType#serverSpot()}
+   */
+  void record(String entityClass, long[] stats) {
+    LatencyHistogram[] phases = byClass.computeIfAbsent(entityClass, c -> {
+      LatencyHistogram[] list = new LatencyHistogram[PHASES.length];
+      for (int x = 0; x < list.length; x++) {
+        list[x] = new LatencyHistogram();
+      }
+      return list;
+    });
+    for (int x = 0; x < PHASES.length; x++) {
+      long from = stats[PHASES[x][0].serverSpot()];
+      long to = stats[PHASES[x][1].serverSpot()];
+      // a phase the invoke skipped is never stamped
+      if (from != 0 && to != 0) {
+        phases[x].record(to - from);
+      }
+    }
+  }
+
+  @Override
+  public Map<String, ?> getStateMap() {
+    Map<String, Object> classes = new TreeMap<>();
+    byClass.forEach((name, phases) -> {
+      Map<String, Object> entity = new LinkedHashMap<>();
+      for (int x = 0; x < PHASES.length; x++) {
+        entity.put(PHASES[x][0].description() + "->" + PHASES[x][1].description(), phases[x].getStateMap());
+      }
+      classes.put(name, entity);
+    });
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("sampling", sampling);
+    map.put("entities", classes);
+    Map<String, Object> top = new LinkedHashMap<>();
+    top.put("invokeTraces", map);
+    return top;
+  }
+}
@@ -61,6 +61,8 @@ import com.tc.objectserver.entity.ServerEntityRequestImpl;
 import com.tc.objectserver.entity.ServerEntityRequestResponse;
 import com.tc.objectserver.persistence.EntityData;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.services.ClientMessageSender;
 import com.tc.services.EntityMessengerService;
 import com.tc.util.Assert;
@@ -70,14 +72,21 @@ import com.tc.util.concurrent.SetOnceFlag;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.concurrent.Future;
 import java.util.function.Predicate;
@@ -86,6 +95,8 @@ import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
 import com.tc.net.protocol.tcm.TCAction;
 import org.terracotta.server.ServerEnv;
 
@@ -109,6 +120,9 @@ public class ProcessTransactionHandler implements ReconnectListener {
   private final ConcurrentHashMap<ClientID, VoltronEntityMultiResponse> invokeReturn = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<ClientID, Integer> inflightFetch = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<TransactionID, Future<Void>> transactionOrderPersistenceFutures = new ConcurrentHashMap<>();
+  private final InvokeTracer tracer = new InvokeTracer(TCPropertiesImpl.getProperties().getFloat(TCPropertiesConsts.INVOKE_TRACE_SAMPLING));
+  private final InvokeCreditLedger credits = new InvokeCreditLedger();
+  private final int resendParallelism = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.RECONNECT_RESEND_PARALLELISM, 1);
 
   @Override
   public synchronized void reconnectComplete() {
@@ -270,6 +284,14 @@ public class ProcessTransactionHandler implements ReconnectListener {
     return sender;
   }
 
+  public InvokeTracer getInvokeTracer() {
+    return tracer;
+  }
+
+  public InvokeCreditLedger getInvokeCredits() {
+    return credits;
+  }
+
   public ProcessTransactionHandler(Persistor persistor, DSOChannelManager channelManager, EntityManager entityManager) {
     this.persistor = persistor;
     this.dsoChannelManager = channelManager;
@@ -370,6 +392,16 @@ public class ProcessTransactionHandler implements ReconnectListener {
     // if the client is valid and the transaction id is valid, then this came from a real client
     // and the client expects to be able to reconnect
     ServerEntityRequestImpl request = new ServerEntityRequestImpl(descriptor.getClientInstanceID(), action, sourceNodeID, transactionID, oldestTransactionOnClient, requiresReceived);
+    if (ServerEntityAction.INVOKE_ACTION == action && sourceNodeID != null) {
+      // a failure is the result of the invoke, on whichever path it is sent.  Successful results are counted by the InvokeHandler
+      Consumer<ServerException> fail = chainfail;
+      chainfail = (e)->{
+        credits.completed(sourceNodeID);
+        if (fail != null) {
+          fail.accept(e);
+        }
+      };
+    }
     if (sourceNodeID != null && !sourceNodeID.isNull() && transactionID.isValid()) {
       Assert.assertTrue(oldestTransactionOnClient.isValid());
       // This client still needs transaction order persistence.
@@ -423,7 +455,8 @@ public class ProcessTransactionHandler implements ReconnectListener {
       ManagedEntity entity = optionalEntity.get();
       // Note that it is possible to trigger an exception when decoding a message in addInvokeRequest.
       if (ServerEntityAction.INVOKE_ACTION == action) {
-        InvokeHandler handler = new InvokeHandler(request, this::insertMessageInStream, chaincomplete, chainfail, requiresReceived, requiresRetired);
+        InvokeHandler handler = new InvokeHandler(request, this::insertMessageInStream, chaincomplete, chainfail, requiresReceived, requiresRetired,
+            tracer.sample() ? entity.getID().getClassName() : null);
         handler.addMessage();
         if(transactionOrderPersistenceFuture != null) {
           transactionOrderPersistenceFutures.put(transactionID, transactionOrderPersistenceFuture);
@@ -483,6 +516,10 @@ public class ProcessTransactionHandler implements ReconnectListener {
   }
 
   public void loadExistingEntities() {
+    loadExistingEntities(TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.ENTITY_RELOAD_PARALLELISM, 1));
+  }
+
+  void loadExistingEntities(int parallelism) {
     // issue-439: We need to sort these entities, ascending by consumerID.
     List<EntityData.Value> sortingList = new ArrayList<EntityData.Value>(this.persistor.getEntityPersistor().loadEntityData());
     Collections.sort(sortingList, new Comparator<EntityData.Value>() {
@@ -497,15 +534,97 @@ public class ProcessTransactionHandler implements ReconnectListener {
             : -1;
       }});
 
-    for(EntityData.Value entityValue : sortingList) {
-      Assert.assertTrue(entityValue.version > 0);
-      Assert.assertTrue(entityValue.consumerID > 0);
-      EntityID entityID = new EntityID(entityValue.className, entityValue.entityName);
-      try {
-        entityManager.loadExisting(entityID, entityValue.version, entityValue.consumerID, entityValue.canDelete, entityValue.configuration);
-      } catch (ServerException e) {
-        // We aren't expecting to fail loading anything from the existing set.
-        throw new IllegalArgumentException(e);
+    Progress progress = new Progress("loaded", "existing entities", sortingList.size());
+    if (parallelism <= 1 || sortingList.size() <= 1) {
+      for(EntityData.Value entityValue : sortingList) {
+        loadExistingEntity(entityValue, progress);
+      }
+    } else {
+      loadExistingEntitiesInParallel(sortingList, parallelism, progress);
+    }
+    progress.done(parallelism);
+  }
+
+  /**
+   * An entity can only depend on entities created before it so the load keeps consumer id order between entities of
+   * different types.  Runs of consecutive entities of the same type are siblings which are loaded together on a fork
+   * join pool.
+   */
+  private void loadExistingEntitiesInParallel(List<EntityData.Value> sorted, int parallelism, Progress progress) {
+    ForkJoinPool pool = newPool("EntityReload-", parallelism);
+    try {
+      int from = 0;
+      while (from < sorted.size()) {
+        String type = sorted.get(from).className;
+        int to = from + 1;
+        while (to < sorted.size() && sorted.get(to).className.equals(type)) {
+          to += 1;
+        }
+        List<EntityData.Value> siblings = sorted.subList(from, to);
+        if (siblings.size() == 1) {
+          loadExistingEntity(siblings.get(0), progress);
+        } else {
+          pool.submit(()->siblings.parallelStream().forEach(v->loadExistingEntity(v, progress))).join();
+        }
+        from = to;
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void loadExistingEntity(EntityData.Value entityValue, Progress progress) {
+    Assert.assertTrue(entityValue.version > 0);
+    Assert.assertTrue(entityValue.consumerID > 0);
+    EntityID entityID = new EntityID(entityValue.className, entityValue.entityName);
+    try {
+      entityManager.loadExisting(entityID, entityValue.version, entityValue.consumerID, entityValue.canDelete, entityValue.configuration);
+    } catch (ServerException e) {
+      // We aren't expecting to fail loading anything from the existing set.
+      throw new IllegalArgumentException(e);
+    }
+    progress.step();
+  }
+
+  private static ForkJoinPool newPool(String name, int parallelism) {
+    // entity code resolves its classes through the context loader of the calling thread
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    return new ForkJoinPool(parallelism, p -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+      thread.setName(name + thread.getPoolIndex());
+      thread.setContextClassLoader(loader);
+      return thread;
+    }, null, false);
+  }
+
+  private static class Progress {
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    private final String action;
+    private final String what;
+    private final int total;
+    private final long start = System.nanoTime();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong lastReport = new AtomicLong(start);
+
+    Progress(String action, String what, int total) {
+      this.action = action;
+      this.what = what;
+      this.total = total;
+    }
+
+    void step() {
+      int current = count.incrementAndGet();
+      long now = System.nanoTime();
+      long last = lastReport.get();
+      if (now - last > REPORT_INTERVAL && lastReport.compareAndSet(last, now)) {
+        LOGGER.info("{} {} of {} {}", action, current, total, what);
+      }
+    }
+
+    void done(int parallelism) {
+      if (total > 0) {
+        LOGGER.info("{} {} {} in {}ms with parallelism {}", action, count.get(), what,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), parallelism);
       }
     }
   }
@@ -616,18 +735,12 @@ public class ProcessTransactionHandler implements ReconnectListener {
     }
     this.reconnectDone = null;
 
-    // Replay all the already-ordered messages.
-    for (VoltronEntityMessage message : this.resendReplayList) {
-      LOGGER.debug("RESENDS:" + message);
-      executeResend(message);
-    }
+    // Replay all the already-ordered messages followed by the new messages found during resends.
+    List<VoltronEntityMessage> resends = new ArrayList<>();
+    this.resendReplayList.forEach(resends::add);
+    resends.addAll(this.resendNewList);
     this.resendReplayList = null;
-
-    // Replay all the new messages found during resends.
-    for (VoltronEntityMessage message : this.resendNewList) {
-      LOGGER.debug("RESENDS:" + message);
-      executeResend(message);
-    }
+    replayResends(resends, resendParallelism);
 //  remove tracking for any resent create journal entries
     this.persistor.getEntityPersistor().removeTrackingForClient(ClientID.NULL_ID);
     LOGGER.debug("RESENDS:END");
@@ -646,20 +759,89 @@ public class ProcessTransactionHandler implements ReconnectListener {
     return Optional.empty();
   }
 
-  private void executeResend(VoltronEntityMessage message) {
-    ClientID sourceNodeID = message.getSource();
-    EntityDescriptor descriptor = message.getEntityDescriptor();
-    ServerEntityAction action = decodeMessageType(message.getVoltronType());
+  /**
+   * Resends must be scheduled in their original order, which this thread defines.  What does not depend on the
+   * order is decoding the invoke payloads, which is also what dominates the replay of a large fleet, so with a
+   * parallelism above one the payloads are decoded up front on a fork join pool, grouped by entity so each entity
+   * is looked up once.  Scheduling then only computes concurrency keys from the decoded messages and the invokes
+   * for independent keys run concurrently on the request processor as usual.
+   */
+  private void replayResends(List<VoltronEntityMessage> resends, int parallelism) {
+    List<MessagePayload> payloads = new ArrayList<>(resends.size());
+    for (VoltronEntityMessage message : resends) {
+      payloads.add(resendPayload(message));
+    }
+    if (parallelism > 1 && resends.size() > 1) {
+      decodeResends(resends, payloads, parallelism);
+    }
+    Progress progress = new Progress("replayed", "resends", resends.size());
+    for (int x = 0; x < resends.size(); x++) {
+      LOGGER.debug("RESENDS:" + resends.get(x));
+      executeResend(resends.get(x), payloads.get(x));
+      progress.step();
+    }
+    progress.done(parallelism);
+  }
+
+  private void decodeResends(List<VoltronEntityMessage> resends, List<MessagePayload> payloads, int parallelism) {
+    Map<Object, Optional<ManagedEntity>> entities = new HashMap<>();
+    List<Runnable> decodes = new ArrayList<>();
+    for (int x = 0; x < resends.size(); x++) {
+      VoltronEntityMessage message = resends.get(x);
+      if (message.getVoltronType() == VoltronEntityMessage.Type.INVOKE_ACTION) {
+        EntityDescriptor descriptor = message.getEntityDescriptor();
+        // indexed descriptors can't be hashed, the fetch id identifies the entity for them
+        Object key = descriptor.isIndexed() ? descriptor.getFetchID() : descriptor.getEntityID();
+        Optional<ManagedEntity> entity = entities.computeIfAbsent(key, k->lookupForDecode(descriptor));
+        if (entity.isPresent()) {
+          MessageCodec<?, ?> codec = entity.get().getCodec();
+          MessagePayload payload = payloads.get(x);
+          decodes.add(()->{
+            try {
+              payload.decodeMessage(raw->codec.decodeMessage(raw));
+            } catch (MessageCodecException ce) {
+              // kept by the payload and reported when the invoke is scheduled
+            }
+          });
+        }
+      }
+    }
+    ForkJoinPool pool = newPool("ResendDecode-", parallelism);
+    try {
+      pool.submit(()->decodes.parallelStream().forEach(Runnable::run)).join();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Optional<ManagedEntity> lookupForDecode(EntityDescriptor descriptor) {
+    try {
+      return entityManager.getEntity(descriptor);
+    } catch (ServerException ee) {
+      // the failure is reported when the resend is scheduled
+      return Optional.empty();
+    }
+  }
+
+  private static MessagePayload resendPayload(VoltronEntityMessage message) {
     // Note that we currently don't expect messages which already have an EntityMessage instance to appear here.
     EntityMessage entityMessage = message.getEntityMessage();
     Assert.assertNull(entityMessage);
-    TCByteBuffer extendedData = message.getExtendedData();
+    MessagePayload payload = MessagePayload.commonMessagePayloadNotBusy(message.getExtendedData(), entityMessage, message.doesRequireReplication());
+    payload.setDebugId(message.toString());
+    return payload;
+  }
 
+  private void executeResend(VoltronEntityMessage message) {
+    executeResend(message, resendPayload(message));
+  }
+
+  private void executeResend(VoltronEntityMessage message, MessagePayload payload) {
+    ClientID sourceNodeID = message.getSource();
+    EntityDescriptor descriptor = message.getEntityDescriptor();
+    ServerEntityAction action = decodeMessageType(message.getVoltronType());
     TransactionID transactionID = message.getTransactionID();
-    boolean doesRequireReplication = message.doesRequireReplication();
     TransactionID oldestTransactionOnClient = message.getOldestTransactionOnClient();
-    MessagePayload payload = MessagePayload.commonMessagePayloadNotBusy(extendedData, entityMessage, doesRequireReplication);
-    payload.setDebugId(message.toString());
 
     boolean requestedReceived = message.doesRequestReceived();
     boolean requestedRetired = message.doesRequestRetired();
@@ -715,12 +897,15 @@ public class ProcessTransactionHandler implements ReconnectListener {
     private final boolean sendReceived;
     private final boolean holdResultForRetired;
     private byte[] heldResult;
-    private final long[] stats = new long[StatType.SERVER_RETIRED.serverSpot() + 1];
+    private final long[] stats = new long[StatType.END.serverSpot()];
+    // the entity class of a sampled invoke, null when the invoke is not traced
+    private final String traced;
 
-    InvokeHandler(ServerEntityRequest request, Consumer<VoltronEntityResponse> sender, Consumer<byte[]> complete, Consumer<ServerException> failure, boolean reqReceived, boolean reqRetired) {
+    InvokeHandler(ServerEntityRequest request, Consumer<VoltronEntityResponse> sender, Consumer<byte[]> complete, Consumer<ServerException> failure, boolean reqReceived, boolean reqRetired, String traced) {
       super(request, sender, complete, failure);
       sendReceived = reqReceived;
       holdResultForRetired = reqRetired;
+      this.traced = traced;
     }
 
     @Override
@@ -780,6 +965,7 @@ public class ProcessTransactionHandler implements ReconnectListener {
         } else {
           if (!holdResultForRetired) {
             addSequentially(getNodeID(), addTo->addTo.addResult(getTransaction(), result));
+            credits.completed(getNodeID());
           } else {
             heldResult = result;
           }
@@ -810,11 +996,15 @@ public class ProcessTransactionHandler implements ReconnectListener {
         if (!getNodeID().isNull()) {
           stats[StatType.SERVER_RETIRED.serverSpot()] = System.nanoTime();
           Assert.assertTrue(lastSent.isSet());
-          safeGetChannel(getNodeID()).ifPresent(c -> {
-            if (c.getAttachment("SendStats") != null) {
-              addSequentially(getNodeID(), addTo -> addTo.addStats(InvokeHandler.this.getTransaction(), stats));
-            }
-          });
+          if (traced != null) {
+            tracer.record(traced, stats);
+            safeGetChannel(getNodeID()).ifPresent(c -> {
+              if (c.getAttachment("SendStats") != null) {
+                addSequentially(getNodeID(), addTo -> addTo.addStats(InvokeHandler.this.getTransaction(), stats));
+              }
+            });
+          }
+          boolean resultHeld = heldResult != null;
           addSequentially(getNodeID(), addTo -> {
             if (heldResult != null) {
               return addTo.addResultAndRetire(InvokeHandler.this.getTransaction(), heldResult);
@@ -822,6 +1012,9 @@ public class ProcessTransactionHandler implements ReconnectListener {
               return addTo.addRetired(InvokeHandler.this.getTransaction());
             }
           });
+          if (resultHeld) {
+            credits.completed(getNodeID());
+          }
         }
         MonitoringEventCreator.finish();
         complete.complete(null);
@@ -839,6 +1032,11 @@ public class ProcessTransactionHandler implements ReconnectListener {
       stats[StatType.SERVER_SCHEDULE.serverSpot()] = System.nanoTime();
     }
 
+    @Override
+    public void replicated() {
+      stats[StatType.SERVER_REPLICATED.serverSpot()] = System.nanoTime();
+    }
+
     @Override
     public void beginInvoke() {
       stats[StatType.SERVER_BEGININVOKE.serverSpot()] = System.nanoTime();
@@ -0,0 +1,114 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Releases the received acks of replicated activities in the order the activities arrived, whatever order the
+ * workers applying them get them received by their entities.  Receipts are reserved by the ordering thread and
+ * completed from any thread, an ack is only sent once every receipt reserved before it is completed or skipped.
+ */
+class ReceivedAckSequence {
+  private final Deque<Receipt> receipts = new ArrayDeque<>();
+  // set while one thread sends the acks at the head, the others only mark their receipt done
+  private boolean releasing;
+
+  synchronized Receipt reserve(Runnable ack) {
+    Receipt receipt = new Receipt(ack);
+    receipts.addLast(receipt);
+    return receipt;
+  }
+
+  private void complete(Receipt receipt, boolean send) {
+    synchronized (this) {
+      if (receipt.done) {
+        return;
+      }
+      receipt.done = true;
+      receipt.send = send;
+      if (releasing) {
+        return;
+      }
+      releasing = true;
+    }
+    boolean released = false;
+    try {
+      while (true) {
+        Receipt next;
+        synchronized (this) {
+          next = receipts.peekFirst();
+          if (next == null || !next.done) {
+            releasing = false;
+            released = true;
+            return;
+          }
+          receipts.pollFirst();
+        }
+        if (next.send) {
+          next.ack.run();
+        }
+      }
+    } finally {
+      if (!released) {
+        synchronized (this) {
+          releasing = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * The place of one activity in the sequence, run when its entity receives it.
+   */
+  class Receipt implements Runnable {
+    private final Runnable ack;
+    // guarded by the sequence
+    private boolean done;
+    private boolean send;
+    // only touched by the thread applying the activity
+    private boolean handedOff;
+
+    private Receipt(Runnable ack) {
+      this.ack = ack;
+    }
+
+    @Override
+    public void run() {
+      complete(this, true);
+    }
+
+    /**
+     * The receipt was given to a result capture which runs it when the entity receives the activity.
+     */
+    void handOff() {
+      handedOff = true;
+    }
+
+    /**
+     * Called once the activity was applied, gives up the place of an activity no entity is going to receive so the
+     * acks behind it are not held back.
+     */
+    void skipUnlessHandedOff() {
+      if (!handedOff) {
+        complete(this, false);
+      }
+    }
+  }
+}
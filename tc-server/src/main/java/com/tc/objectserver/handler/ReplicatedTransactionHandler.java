@@ -55,8 +55,11 @@ import com.tc.objectserver.entity.BarrierCompletion;
 import com.tc.objectserver.entity.NoopResultCapture;
 import com.tc.objectserver.entity.PassiveResultCapture;
 import com.tc.objectserver.entity.PlatformEntity;
+import com.tc.objectserver.entity.RequestProcessor;
 import com.tc.objectserver.entity.ResultCaptureImpl;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.tracing.Trace;
 import com.tc.util.Assert;
 import java.io.ByteArrayInputStream;
@@ -90,6 +93,10 @@ public class ReplicatedTransactionHandler {
   private final ManagedEntity platform;
   
   private final SyncState state = new SyncState();
+  // null unless replicated invokes are applied by a pool of workers rather than the replication stage thread
+  private final ReplicationApplyPipeline pipeline;
+  // keeps received acks in arrival order while the pipeline applies activities on several workers, null without it
+  private final ReceivedAckSequence receivedAcks;
 
   private volatile long currentSequence = 0;
 
@@ -99,6 +106,11 @@ public class ReplicatedTransactionHandler {
   
   public ReplicatedTransactionHandler(StateManager state, Stage<Runnable> sendToActive, Persistor persistor, 
       EntityManager manager, GroupManager<AbstractGroupMessage> groupManager) {
+    this(state, sendToActive, persistor, manager, groupManager, TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_SEDA_PASSIVE_APPLY_THREADS, 0));
+  }
+
+  ReplicatedTransactionHandler(StateManager state, Stage<Runnable> sendToActive, Persistor persistor, 
+      EntityManager manager, GroupManager<AbstractGroupMessage> groupManager, int applyThreads) {
     this.stateManager = state;
     this.entityManager = manager;
     this.persistor = persistor;
@@ -108,6 +120,8 @@ public class ReplicatedTransactionHandler {
     } catch (ServerException ee) {
       throw new RuntimeException(ee);
     }
+    this.pipeline = (applyThreads > 0) ? new ReplicationApplyPipeline(ServerConfigurationContext.PASSIVE_REPLICATION_APPLY, applyThreads) : null;
+    this.receivedAcks = (pipeline != null) ? new ReceivedAckSequence() : null;
   }
 
   private final EventHandler<ReplicationMessage> eventHorizon = new AbstractEventHandler<ReplicationMessage>() {
@@ -136,6 +150,9 @@ public class ReplicatedTransactionHandler {
 
     @Override
     public void destroy() {
+      if (pipeline != null) {
+        pipeline.shutdown();
+      }
       ServerEntityRequest req = new ServerEntityRequest() {
         @Override
         public ServerEntityAction getAction() {
@@ -211,6 +228,7 @@ public class ReplicatedTransactionHandler {
         }
       }
       if (activity.isSyncActivity()) {
+        drainPipeline();
         if (SyncReplicationActivity.ActivityType.SYNC_BEGIN == activity.getActivityType()) {
           syncBeginEntityListReceived(activeSender, activity);
         } else {
@@ -233,14 +251,53 @@ public class ReplicatedTransactionHandler {
           if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Applying:" + eid + " " + activity.getActivityType());
           }
-          replicatedActivityReceived(activeSender, activity);
+          if (pipeline != null && canApplyInParallel(activity, eid)) {
+            // order is fixed here, only the apply moves to the worker for this key.  The received ack is still
+            //  sent once the entity accepts the request, as on the serial path, but released in arrival order
+            Future<Void> ordered = persistTransactionOrder(activity);
+            ReceivedAckSequence.Receipt receipt = receivedAcks.reserve(()->ackMessenger.ackReceived(activeSender, activity, ordered));
+            pipeline.dispatch(RequestProcessor.schedulingKey(eid, activity.getConcurrency()), ()->{
+              try {
+                applyReplicatedActivity(activeSender, activity, receipt);
+              } catch (ServerException ee) {
+                throw new RuntimeException(ee);
+              } finally {
+                receipt.skipUnlessHandedOff();
+              }
+            });
+          } else {
+            drainPipeline();
+            replicatedActivityReceived(activeSender, activity);
+          }
         }
       }
     }
   }
 
+  /**
+   * Only invokes on a regular concurrency key of an existing entity can be applied out of line.  Everything else acts
+   *  as a barrier for the entity so it waits for the workers to drain.
+   */
+  private boolean canApplyInParallel(SyncReplicationActivity activity, EntityID eid) {
+    int key = activity.getConcurrency();
+    return activity.getActivityType() == ActivityType.INVOKE_ACTION
+        && key != ConcurrencyStrategy.MANAGEMENT_KEY
+        && key != ConcurrencyStrategy.UNIVERSAL_KEY
+        && eid != null;
+  }
+
+  private void drainPipeline() {
+    if (pipeline != null) {
+      pipeline.drain();
+    }
+  }
+
   private void syncBeginEntityListReceived(ServerID activeSender, SyncReplicationActivity activity) throws ServerException {
-    ackMessenger.ackReceived(activeSender, activity, null);
+    if (receivedAcks != null) {
+      receivedAcks.reserve(()->ackMessenger.ackReceived(activeSender, activity, null)).run();
+    } else {
+      ackMessenger.ackReceived(activeSender, activity, null);
+    }
     beforeSyncAction(activity);
     // In this case, we want to createCapture all the provided entities.
     SyncReplicationActivity.EntityCreationTuple[] entityTuples = activity.getEntitiesToCreateForSync();
@@ -269,21 +326,44 @@ public class ReplicatedTransactionHandler {
 
 //  don't need to worry about resends here for lifecycle messages.  active will filer them  
   private void replicatedActivityReceived(ServerID activeSender, SyncReplicationActivity activity) throws ServerException {
-    Trace trace = new Trace(String.valueOf(activity.getActivityID().id), "Replication");
-    trace.start();
+    Future<Void> transactionOrderPersistenceFuture = persistTransactionOrder(activity);
+    Runnable ack = ()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture);
+    if (receivedAcks != null) {
+      // entities may still be receiving activities the workers applied, this ack goes out behind theirs
+      ReceivedAckSequence.Receipt receipt = receivedAcks.reserve(ack);
+      try {
+        applyReplicatedActivity(activeSender, activity, receipt);
+      } finally {
+        receipt.skipUnlessHandedOff();
+      }
+    } else {
+      applyReplicatedActivity(activeSender, activity, ack);
+    }
+  }
+
+  private Future<Void> persistTransactionOrder(SyncReplicationActivity activity) {
     ClientID sourceNodeID = activity.getSource();
     TransactionID transactionID = activity.getTransactionID();
     TransactionID oldestTransactionOnClient = activity.getOldestTransactionOnClient();
 
-    Future<Void> tmpFuture = null;
     // Note that we only want to persist the messages with a true sourceNodeID.  Synthetic invocations and sync messages
     // don't have one (although sync messages shouldn't come down this path).
     if (sourceNodeID != null && !sourceNodeID.isNull() && transactionID.isValid()) {
       Assert.assertTrue(oldestTransactionOnClient.isValid());
-      tmpFuture = this.persistor.getTransactionOrderPersistor().updateWithNewMessage(sourceNodeID, transactionID,oldestTransactionOnClient);
+      return this.persistor.getTransactionOrderPersistor().updateWithNewMessage(sourceNodeID, transactionID,oldestTransactionOnClient);
     }
+    return null;
+  }
 
-    final Future<Void> transactionOrderPersistenceFuture = tmpFuture;
+  /**
+   * @param received run when the entity receives the request
+   */
+  private void applyReplicatedActivity(ServerID activeSender, SyncReplicationActivity activity, Runnable received) throws ServerException {
+    Trace trace = new Trace(String.valueOf(activity.getActivityID().id), "Replication");
+    trace.start();
+    ClientID sourceNodeID = activity.getSource();
+    TransactionID transactionID = activity.getTransactionID();
+    TransactionID oldestTransactionOnClient = activity.getOldestTransactionOnClient();
 
     TCByteBuffer extendedData = activity.getExtendedData();
 
@@ -298,7 +378,7 @@ public class ReplicatedTransactionHandler {
         ManagedEntity temp = entityManager.createEntity(activity.getEntityID(), activity.getVersion(), activity.getFetchID().toLong());
         boolean canDelete = temp.canDelete();
         Assert.assertTrue(temp.getConsumerID() + " == " + activity.getFetchID().toLong(), temp.getConsumerID() == activity.getFetchID().toLong());
-        temp.addRequestMessage(request, MessagePayload.rawDataOnly(extendedData), createCapture(()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture),
+        temp.addRequestMessage(request, MessagePayload.rawDataOnly(extendedData), createCapture(received,
           (result) -> {
             if (!sourceNodeID.isNull()) {
               this.persistor.getEntityPersistor().entityCreated(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), activity.getEntityID(), activity.getVersion(), activity.getFetchID().toLong(), true, TCByteBufferFactory.unwrap(extendedData));
@@ -325,7 +405,7 @@ public class ReplicatedTransactionHandler {
         MessagePayload payload = MessagePayload.syncPayloadNormal(extendedData, activity.getConcurrency());
         if (null != request.getAction()) switch (request.getAction()) {
           case RECONFIGURE_ENTITY:  
-            entityInstance.addRequestMessage(request, payload, createCapture(()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture),
+            entityInstance.addRequestMessage(request, payload, createCapture(received,
               (result)->{
                 //  store the new configuration in the persistor
                 this.persistor.getEntityPersistor().entityReconfigureSucceeded(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), entityInstance.getID(), entityInstance.getVersion(), payload.getRawPayload());
@@ -336,7 +416,7 @@ public class ReplicatedTransactionHandler {
               }));
             break;
           case DESTROY_ENTITY:
-            entityInstance.addRequestMessage(request, payload, createCapture(()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture),
+            entityInstance.addRequestMessage(request, payload, createCapture(received,
               (result)-> {
                 this.persistor.getEntityPersistor().entityDestroyed(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), entityInstance.getID());
                 ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.SUCCESS);
@@ -348,7 +428,7 @@ public class ReplicatedTransactionHandler {
             break;
           case FETCH_ENTITY:
           case RELEASE_ENTITY:
-            entityInstance.addRequestMessage(request, payload, createCapture(()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture),
+            entityInstance.addRequestMessage(request, payload, createCapture(received,
               (result)-> {
                 ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.SUCCESS);
               }, (exception) -> {
@@ -375,7 +455,7 @@ public class ReplicatedTransactionHandler {
             ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.SUCCESS);
             break;
           default:
-            entityInstance.addRequestMessage(request, payload, createCapture(()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture),
+            entityInstance.addRequestMessage(request, payload, createCapture(received,
                 (result)-> ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.SUCCESS), 
                 (exception) -> ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.FAIL)));
             break;
@@ -389,6 +469,9 @@ public class ReplicatedTransactionHandler {
   }
   
   private ResultCapture createCapture(Runnable received, Consumer<byte[]> completed, Consumer<ServerException> failure) {
+    if (received instanceof ReceivedAckSequence.Receipt) {
+      ((ReceivedAckSequence.Receipt) received).handOff();
+    }
     return new PassiveResultCapture(received, completed, failure);
   }
   
@@ -0,0 +1,156 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.exception.TCRuntimeException;
+import com.tc.exception.TCServerRestartException;
+import com.tc.exception.TCShutdownServerException;
+import com.tc.util.Assert;
+import com.tc.util.concurrent.MpscRingBufferQueue;
+import com.tc.util.concurrent.MpscRingBufferQueue.WaitStrategy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans replicated activities out from the single thread which orders them to a fixed set of workers.  Activities with
+ * the same scheduling key always go to the same worker so they are applied in the order they were dispatched.
+ * <p>
+ * The ordering thread calls {@link #drain()} before anything which must not overtake dispatched activities, such as
+ * lifecycle operations and sync messages.  Only the ordering thread may dispatch and drain.
+ * <p>
+ * A failed activity kills its worker the way an exception kills a stage thread, so the server goes down rather than
+ * keep running with a passive diverged from the active.
+ */
+class ReplicationApplyPipeline {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationApplyPipeline.class);
+  private static final int QUEUE_SIZE = 1024;
+
+  private final Worker[] workers;
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile Thread draining;
+  private volatile Throwable failure;
+
+  ReplicationApplyPipeline(String name, int count) {
+    this.workers = new Worker[count];
+    for (int x = 0; x < count; x++) {
+      this.workers[x] = new Worker(name + "_" + x);
+      this.workers[x].start();
+    }
+  }
+
+  void dispatch(Object schedulingKey, Runnable apply) {
+    checkFailure();
+    pending.incrementAndGet();
+    Worker worker = workers[Math.floorMod(schedulingKey.hashCode(), workers.length)];
+    try {
+      worker.queue.put(apply);
+    } catch (InterruptedException ie) {
+      pending.decrementAndGet();
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ie);
+    }
+  }
+
+  /**
+   * Wait for every dispatched activity to be applied.
+   */
+  void drain() {
+    if (pending.get() != 0) {
+      draining = Thread.currentThread();
+      try {
+        // a failed worker never empties its queue
+        while (pending.get() != 0 && failure == null) {
+          LockSupport.park(this);
+          if (Thread.interrupted()) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+      } finally {
+        draining = null;
+      }
+    }
+    checkFailure();
+  }
+
+  void shutdown() {
+    drain();
+    for (Worker worker : workers) {
+      worker.interrupt();
+    }
+  }
+
+  private void checkFailure() {
+    Throwable t = failure;
+    if (t != null) {
+      throw Assert.failure("Unexpected exception executing replicated message", t);
+    }
+  }
+
+  private void failed(Throwable t) {
+    failure = t;
+    Thread waiter = draining;
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  private void applied() {
+    if (pending.decrementAndGet() == 0) {
+      Thread waiter = draining;
+      if (waiter != null) {
+        LockSupport.unpark(waiter);
+      }
+    }
+  }
+
+  private class Worker extends Thread {
+    private final MpscRingBufferQueue<Runnable> queue = new MpscRingBufferQueue<>(QUEUE_SIZE, true, WaitStrategy.PARK);
+
+    Worker(String name) {
+      super(name);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Runnable next;
+        try {
+          next = queue.take();
+        } catch (InterruptedException ie) {
+          return;
+        }
+        try {
+          next.run();
+        } catch (TCServerRestartException | TCShutdownServerException fatal) {
+          failed(fatal);
+          throw fatal;
+        } catch (Throwable t) {
+          LOGGER.error("Uncaught exception applying replicated activity", t);
+          failed(t);
+          throw new TCRuntimeException("Uncaught exception applying replicated activity", t);
+        } finally {
+          applied();
+        }
+      }
+    }
+  }
+}
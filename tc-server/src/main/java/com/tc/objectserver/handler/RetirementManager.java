@@ -23,10 +23,10 @@ import com.tc.util.Assert;
 import com.tc.util.concurrent.SetOnceFlag;
 import org.terracotta.entity.EntityMessage;
 
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -47,6 +47,7 @@ import java.util.stream.Collectors;
  * message, per key.
  */
 public class RetirementManager {
+  private static final CompletableFuture<Void> RETIRED = CompletableFuture.completedFuture(null);
   private final Map<MessageIdentity, LogicalSequence> currentlyRunning;
   private final Map<MessageIdentity, EntityMessage> waitingForDeferredRegistration;
   private final Map<MessageIdentity, EntityMessage> inflightServerMessages;
@@ -82,8 +83,9 @@ public class RetirementManager {
   }
   
   private void removeMessage(EntityMessage invoke) {
-    currentlyRunning.remove(id(invoke));
-    waitingForDeferredRegistration.remove(id(invoke));
+    MessageIdentity key = id(invoke);
+    currentlyRunning.remove(key);
+    waitingForDeferredRegistration.remove(key);
   }
   
   public int size() {
@@ -92,39 +94,71 @@ public class RetirementManager {
 
   public void registerWithMessage(EntityMessage invokeMessage, int concurrencyKey, Retiree retiree) {
     LogicalSequence newWrapper = new LogicalSequence(invokeMessage, concurrencyKey);
+    MessageIdentity key = id(invokeMessage);
 
-    EntityMessage deferred = removeWaitingForDeferred(invokeMessage);
+    EntityMessage deferred = this.waitingForDeferredRegistration.remove(key);
     if (null != deferred) {
       LogicalSequence ls = getCurrentlyRunning(deferred);
       ls.retirementDeferredBy(invokeMessage, newWrapper);
     }
 
     newWrapper.updateWithRetiree(retiree);
-    LogicalSequence previous = messageIsRunning(invokeMessage, newWrapper);
+    LogicalSequence previous = this.currentlyRunning.put(key, newWrapper);
     // We can't find something else there.
     Assert.assertNull(previous);
   }
 
-  private void removeInflightServerMessage(EntityMessage msg) {
-    inflightServerMessages.remove(id(msg));
-  }
   /**
    * This returns a list because it is possible to return a sequence of queued up retirements:  completedMessage may unblock
    * an earlier retirement which is followed by a logical sequence of operations which couldn't retire until it did.
+   * <p>
+   * A sequence is deferred by at most one other (see {@link LogicalSequence#retirementDeferredBy}) so the dependency
+   * graph unblocked by a completion is a chain which is walked in one pass.  Most completions retire exactly one message
+   * so the list is only allocated once a second message joins the chain.
    *
    * @param completedMessage
-   * @return
+   * @return the retirees in the order they must be retired
    */
-  private Deque<LogicalSequence> retireForCompletion(EntityMessage completedMessage) {
-    removeInflightServerMessage(completedMessage);
-    Deque<LogicalSequence> toRetire = new LinkedList<>();
+  private List<Retiree> retireForCompletion(EntityMessage completedMessage) {
+    MessageIdentity key = id(completedMessage);
+    inflightServerMessages.remove(key);
     //  must be non-null if called
-    LogicalSequence ls = this.currentlyRunning.get(id(completedMessage));
-    if (ls.complete()) {
-      toRetire.add(ls);
+    LogicalSequence current = this.currentlyRunning.get(key);
+    if (!current.complete()) {
+      return Collections.emptyList();
+    }
+//  it is assumed here that any message that is completed 
+//  is not having new deferments added to it so synchronization is not needed
+    Retiree first = null;
+    List<Retiree> toRetire = null;
+    int count = 0;
+    while (current != null && current.isRetireable()) {
+      if (count == 0) {
+        first = current.response;
+      } else {
+        if (toRetire == null) {
+          toRetire = new ArrayList<>();
+          toRetire.add(first);
+        }
+        toRetire.add(current.response);
+      }
+      count += 1;
+      removeMessage(current.entityMessage);
+      current.retire();
+      LogicalSequence next = current.deferNotify;
+      if (next != null) {
+        next.entityMessageCompleted(current.entityMessage);
+        current.deferNotify = null;
+      }
+      current = next;
+    }
+    if (count == 0) {
+      return Collections.emptyList();
+    } else if (toRetire == null) {
+      return Collections.singletonList(first);
+    } else {
+      return toRetire;
     }
-    
-    return toRetire;
   }
   
   boolean testingIsRetireable(EntityMessage msg) {
@@ -132,38 +166,9 @@ public class RetirementManager {
   }
   
   List<Retiree> testingRetireForCompletion(EntityMessage completedMessage) {
-    LogicalSequence seq = this.currentlyRunning.get(id(completedMessage));
-    return traverseDependencyGraph(retireForCompletion(completedMessage));
+    return retireForCompletion(completedMessage);
   }
 
-  private List<Retiree> traverseDependencyGraph(Deque<LogicalSequence> requestStack) {
-    List<Retiree> toRetire = new LinkedList<>();
-//  it is assumed heere that any message that is completed 
-//  is not having new deferments added to it so synchronization is not needed
-
-    while(!requestStack.isEmpty()) {
-      LogicalSequence currentRequest = requestStack.pop();
-
-      // proceed if current request is completed
-      if(currentRequest.isRetireable()) {
-        // We can retire.
-        toRetire.add(currentRequest.response);
-        removeMessage(currentRequest.entityMessage);
-        currentRequest.retire();
-        if (currentRequest.deferNotify != null) {
-          currentRequest.deferNotify.entityMessageCompleted(currentRequest.entityMessage);
-          requestStack.push(currentRequest.deferNotify);
-          currentRequest.deferNotify = null;
-        }
-      }
-    }
-    return toRetire;
-  }
-  
-  private LogicalSequence messageIsRunning(EntityMessage msg, LogicalSequence ls) {
-    return this.currentlyRunning.put(id(msg), ls);
-  }
-  
   private LogicalSequence getCurrentlyRunning(EntityMessage msg) {
     return this.currentlyRunning.get(id(msg));
   }
@@ -172,10 +177,6 @@ public class RetirementManager {
     return this.waitingForDeferredRegistration.put(id(toDefer), deferring);
   }
   
-  private EntityMessage removeWaitingForDeferred(EntityMessage invoked) {
-    return this.waitingForDeferredRegistration.remove(id(invoked));
-  }
-
   public void deferRetirement(EntityMessage invokeMessageToDefer, EntityMessage laterMessage) {
     if (Trace.isTraceEnabled()) {
       Trace.activeTrace().log("Deferring retirement for " + invokeMessageToDefer + " until " + laterMessage + " is finished");
@@ -213,9 +214,8 @@ public class RetirementManager {
   }
   
   public void retireMessage(EntityMessage message) {
-    Deque<LogicalSequence> sequence = retireForCompletion(message);
-    List<Retiree> readyToRetire = traverseDependencyGraph(sequence);
-    CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+    List<Retiree> readyToRetire = retireForCompletion(message);
+    CompletableFuture<Void> chain = RETIRED;
     // order matters here, this should be a reverse chain of the original deferment chain
     for (Retiree toRetire : readyToRetire) {
       if (null != toRetire) {
@@ -27,6 +27,7 @@ import com.tc.async.impl.MonitoringEventCreator;
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.net.protocol.tcm.ChannelManagerEventListener;
 import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.object.msg.ClientHandshakeAckMessage;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.properties.TCPropertiesConsts;
@@ -52,18 +53,28 @@ public class VoltronMessageHandler extends AbstractEventHandler<VoltronEntityMes
   private boolean activated = false;
   private static final Logger LOGGER = LoggerFactory.getLogger(VoltronMessageHandler.class);
   private final AtomicInteger clientsConnected = new AtomicInteger();
+  // clients granted invoke credits bound their own outstanding invokes so they are only backed off over their grant
+  private final InvokeCreditLedger credits;
   private boolean ALWAYS_DIRECT = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_SEDA_STAGE_SINGLE_THREAD, false);
   private boolean USE_BACKOFF = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_SEDA_STAGE_USE_BACKOFF, false);
+  private final boolean KEYED_DIRECT = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_SEDA_STAGE_DIRECT_KEYED, false);
+  private boolean keyedActivated = false;
   private final TimedActivation timer = new TimedActivation();
+  private final TimedActivation keyedTimer = new TimedActivation();
   
-  public VoltronMessageHandler(DSOChannelManager clients, boolean use_direct) {
+  public VoltronMessageHandler(DSOChannelManager clients, boolean use_direct, InvokeCreditLedger credits) {
     this.useDirect = use_direct;
+    this.credits = credits;
     clients.addEventListener(new ChannelManagerEventListener() {
       @Override
       public void channelCreated(MessageChannel channel) {
         if (channel.getProductID() != ProductID.DIAGNOSTIC) {
           clientsConnected.incrementAndGet();
         }
+        Object granted = channel.getAttachment(ClientHandshakeAckMessage.INVOKE_CREDITS_ATTACHMENT);
+        if (granted != null) {
+          credits.open(channel.getRemoteNodeID(), (Integer) granted);
+        }
       }
 
       @Override
@@ -71,6 +82,7 @@ public class VoltronMessageHandler extends AbstractEventHandler<VoltronEntityMes
         if (channel.getProductID() != ProductID.DIAGNOSTIC) {
           clientsConnected.decrementAndGet();
         }
+        credits.close(channel.getRemoteNodeID());
       }
     });
   }
@@ -94,9 +106,23 @@ public class VoltronMessageHandler extends AbstractEventHandler<VoltronEntityMes
         DirectExecutionMode.activate(activated);
         LOGGER.debug("switching to direct sink activated:{} with {}", activated , fastPath.size());
       }
+      // with many clients the whole pipeline is rarely empty, run inline whenever the request's own key is idle
+      //  and leave busy keys to their stage queues.  Once the transaction stage backs up the receiving thread
+      //  is better spent hydrating so keyed execution switches off with the same hysteresis as the fast path
+      if (KEYED_DIRECT) {
+        boolean keyed = !fast && destPath.size() < 2;
+        keyedTimer.update(keyed);
+        if (keyedActivated != keyed && keyedTimer.shouldFlip(keyed)) {
+          keyedActivated = keyed;
+          DirectExecutionMode.activateKeyed(keyedActivated);
+          LOGGER.debug("switching keyed direct activated:{} with {}", keyedActivated, destPath.size());
+        }
+      }
     }
     
-    if (!activated && USE_BACKOFF) {
+    boolean withinGrant = (message.getVoltronType() == VoltronEntityMessage.Type.INVOKE_ACTION)
+        ? credits.invoked(message.getSource()) : credits.isWithinGrant(message.getSource());
+    if (!activated && USE_BACKOFF && !withinGrant) {
       if (destPath.size() > 8 && fastPath.size() <= 1) {
         timer.backoffWait();
       } else {
@@ -201,7 +227,9 @@ public class VoltronMessageHandler extends AbstractEventHandler<VoltronEntityMes
     map.put("backoffCount", timer.backoffCount);
     map.put("maxBackoffTime", timer.maxBackoffTime);
     map.put("directMode", this.activated);
+    map.put("keyedDirectMode", this.keyedActivated);
     map.put("clientsConnected", this.clientsConnected.get());
+    map.put("invokeCredits", this.credits.getStateMap());
     return map;
   }
 }
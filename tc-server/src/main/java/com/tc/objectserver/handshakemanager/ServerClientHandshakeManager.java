@@ -45,6 +45,7 @@ import com.tc.objectserver.entity.ReconnectListener;
 import com.tc.objectserver.entity.ReferenceMessage;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.productinfo.ProductInfo;
+import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import java.util.ArrayList;
@@ -68,6 +69,7 @@ public class ServerClientHandshakeManager {
   }
   static final int                       RECONNECT_WARN_INTERVAL           = 15000;
   private static final boolean           SHOULD_SEND_STATS                 = TCPropertiesImpl.getProperties().getBoolean("client.send.stats", false);
+  private static final int               INVOKE_CREDITS                    = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_SEDA_STAGE_INVOKE_CREDITS, 0);
   private State                          state                             = State.INIT;
   private final List<ReconnectListener>     waitingForReconnect = new ArrayList<>();
 
@@ -77,6 +79,12 @@ public class ServerClientHandshakeManager {
   private final ConsistencyManager       consistency;
   private final Logger logger;
   private final Set<ClientID>            unconnectedClients        = new HashSet<>();
+  // reconnect window progress
+  private int                            expectedClients;
+  private int                            reconnectedClients;
+  private long                           resentReferences;
+  private long                           resentMessages;
+  private long                           reconnectStart;
   private final Logger consoleLogger;
   private final Sink<VoltronEntityMessage> voltron;
   private final ProductInfo productInfo;
@@ -117,6 +125,10 @@ public class ServerClientHandshakeManager {
       if (canAcceptStats(handshake.getClientVersion())) {
         handshake.getChannel().addAttachment("SendStats", true, true);
       }
+      if (INVOKE_CREDITS > 0 && handshake.isInvokeCreditsSupported()) {
+        // granted with the handshake ack, the client then bounds its outstanding invokes instead of the server backing off
+        handshake.getChannel().addAttachment(ClientHandshakeAckMessage.INVOKE_CREDITS_ATTACHMENT, INVOKE_CREDITS, true);
+      }
       this.logger.info("confirming client handshake for " + state + " " + save + " " + clientID);
       if (this.state == State.STARTED) {
         Assert.assertEquals(save, clientID.toLong());
@@ -154,6 +166,10 @@ public class ServerClientHandshakeManager {
           transactionHandler.handleResentMessage(resentMessage);
         }
 
+        this.reconnectedClients += 1;
+        this.resentReferences += handshake.getReconnectReferences().size();
+        this.resentMessages += handshake.getResendMessages().size();
+
         // Now that we have processed everything from this resend, see if it was the last one.
         this.logger.debug("Removing client " + clientID + " from set of existing unconnected clients.");
         
@@ -208,6 +224,11 @@ public class ServerClientHandshakeManager {
   private void start() {
     this.timer.cancel();
     final Set<NodeID> cids = Collections.unmodifiableSet(this.channelManager.getAllClientIDs());
+    if (this.expectedClients > 0) {
+      this.consoleLogger.info("Reconnect window gathered {} references and {} resends from {} of {} clients in {}ms",
+          this.resentReferences, this.resentMessages, this.reconnectedClients, this.expectedClients,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.reconnectStart));
+    }
     if (!cids.isEmpty()) {
       this.consoleLogger.info("Reconnection with {} clients ", cids.size());
       if (cids.size() <= 10) {
@@ -261,6 +282,8 @@ public class ServerClientHandshakeManager {
       for (ClientID connID : existingClients) {
         this.unconnectedClients.add(connID);
       }
+      this.expectedClients = this.unconnectedClients.size();
+      this.reconnectStart = System.nanoTime();
       startReconnectWindow();
     }
   }
@@ -310,6 +333,11 @@ public class ServerClientHandshakeManager {
     return this.unconnectedClients.size();
   }
 
+  synchronized String getReconnectProgress() {
+    return this.reconnectedClients + " of " + this.expectedClients + " clients reconnected with "
+        + this.resentReferences + " references and " + this.resentMessages + " resends.";
+  }
+
   synchronized boolean connectClient(ClientID cid) {
     consoleLogger.info("Connecting client {}", cid);
     return this.unconnectedClients.remove(cid) && this.unconnectedClients.isEmpty();
@@ -339,7 +367,7 @@ public class ServerClientHandshakeManager {
       if (this.timeToWait > 0 && ServerClientHandshakeManager.this.getUnconnectedClientsSize() > 0) {
 
         String message = "Reconnect window active.  Waiting for " + ServerClientHandshakeManager.this.getUnconnectedClientsSize()
-                         + " clients to connect. " + this.timeToWait + " ms remaining.";
+                         + " clients to connect. " + this.timeToWait + " ms remaining. " + getReconnectProgress();
         if (ServerClientHandshakeManager.this.getUnconnectedClientsSize() <= 10) {
           message += " Unconnected Clients - " + getUnconnectedClients();
         }
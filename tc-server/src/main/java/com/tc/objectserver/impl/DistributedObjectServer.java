@@ -140,6 +140,7 @@ import com.tc.objectserver.core.impl.ServerManagementContext;
 import com.tc.objectserver.entity.ActiveToPassiveReplication;
 import com.tc.objectserver.handler.ClientChannelLifeCycleHandler;
 import com.tc.objectserver.handler.ClientHandshakeHandler;
+import com.tc.objectserver.handler.InvokeTracer;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
 import com.tc.objectserver.persistence.ClientStatePersistor;
@@ -189,6 +190,7 @@ import com.tc.text.MapListPrettyPrint;
 import com.tc.net.core.ProductID;
 import java.net.BindException;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
@@ -271,6 +273,7 @@ public class DistributedObjectServer {
   private ServerConfigurationContext             context;
   private CounterManager                         sampledCounterManager;
   private ServerManagementContext                managementContext;
+  private InvokeTracer                           invokeTracer;
   private Persistor                              persistor;
 
   private L2Coordinator                          l2Coordinator;
@@ -288,6 +291,8 @@ public class DistributedObjectServer {
   private final TerracottaServiceProviderRegistryImpl serviceRegistry;
   private WeightGeneratorFactory globalWeightGeneratorFactory;
   private EntityManagerImpl entityManager;
+  private ReplicationSender replicationSender;
+  private ActiveToPassiveReplication activeToPassiveReplication;
 
   private final SetOnceFlag  stopping = new SetOnceFlag();
   private final CompletableFuture<Void> stopped = new CompletableFuture<>();
@@ -375,14 +380,18 @@ public class DistributedObjectServer {
     collectState(this.seda.getStageManager(), pp);
     collectState(this.persistor, pp);
     collectState(this.communicationsManager, pp);
+    collectState(TCByteBufferFactory.getPool(), pp);
     if (managementContext != null) {
       collectState(new ClientHandshakePrettyPrintable(this.managementContext.getChannelManager().getActiveChannels()), pp);
     }
     collectState(this.groupCommManager, pp);
     collectState(this.l2Coordinator, pp);
     collectState(this.entityManager, pp);
+    collectState(this.replicationSender, pp);
+    collectState(this.activeToPassiveReplication, pp);
     collectState(this.serviceRegistry, pp);
     collectState(this.managementContext, pp);
+    collectState(this.invokeTracer, pp);
     addExtendedConfigState(pp);
 
     return pp.toString().getBytes(set);
@@ -478,6 +487,11 @@ public class DistributedObjectServer {
     this.tcProperties = TCPropertiesImpl.getProperties();
 
     TCByteBufferFactory.setFixedBufferSize(tcProperties.getInt("bytebuffer.direct.size", 4096));
+    if (tcProperties.getBoolean(TCPropertiesConsts.TC_BYTEBUFFER_POOLING_ENABLED, false)) {
+      TCByteBufferFactory.enablePooling(tcProperties.getInt(TCPropertiesConsts.TC_BYTEBUFFER_POOL_MAXSIZE, 512 * 1024),
+          tcProperties.getInt(TCPropertiesConsts.TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT, 16),
+          tcProperties.getLong(TCPropertiesConsts.TC_BYTEBUFFER_COMMON_POOL_MAXBYTES, 64L * 1024 * 1024));
+    }
     final int fastStageSize = -1; // needs to be unbounded due to rescheduling by other stages on the pipeline.  If not unbounded, deadlock can occur.
     final StageManager stageManager = this.seda.getStageManager();
 
@@ -496,8 +510,14 @@ public class DistributedObjectServer {
     // See if we need to add an in-memory service for IPlatformPersistence.
     if (!this.serviceRegistry.hasUserProvidedServiceProvider(IPlatformPersistence.class)) {
       // In this case, we do still need to provide an implementation of IPlatformPersistence, backed by memory, so that entities can request a service which is as persistent as this server is.
+      // A local directory makes it as persistent as the disk it is on instead.
       NullPlatformStorageServiceProvider nullPlatformStorageServiceProvider = new NullPlatformStorageServiceProvider();
-      nullPlatformStorageServiceProvider.initialize(new NullPlatformStorageProviderConfiguration(), platformConfiguration);
+      String localStorage = tcProperties.getProperty(TCPropertiesConsts.PERSISTENCE_LOCAL_DIRECTORY, true);
+      NullPlatformStorageProviderConfiguration storageConfiguration = (localStorage == null || localStorage.trim().isEmpty())
+          ? new NullPlatformStorageProviderConfiguration()
+          : new NullPlatformStorageProviderConfiguration(Paths.get(localStorage.trim()),
+              tcProperties.getLong(TCPropertiesConsts.PERSISTENCE_LOCAL_COMPACTION_BYTES, 64L * 1024 * 1024));
+      nullPlatformStorageServiceProvider.initialize(storageConfiguration, platformConfiguration);
       serviceRegistry.registerExternal(nullPlatformStorageServiceProvider);
     }
 
@@ -684,6 +704,7 @@ public class DistributedObjectServer {
     entityManager = new EntityManagerImpl(this.serviceRegistry, clientEntityStateManager, eventCollector, processor, this::flushLocalPipeline, this.configSetupManager.getServiceLocator());
     // We need to set up a stage to point at the ProcessTransactionHandler and we also need to register it for events, below.
     final ProcessTransactionHandler processTransactionHandler = new ProcessTransactionHandler(this.persistor, channelManager, entityManager);
+    this.invokeTracer = processTransactionHandler.getInvokeTracer();
     stageManager.createStage(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE, VoltronEntityMessage.class, processTransactionHandler.getVoltronMessageHandler(), 1, fastStageSize, USE_DIRECT, true).setSpinningCount(1000);
     stageManager.createStage(ServerConfigurationContext.RESPOND_TO_REQUEST_STAGE, ResponseMessage.class, processTransactionHandler.getMultiResponseSender(), L2Utils.getOptimalCommWorkerThreads());
 //  add the server -> client communicator service
@@ -692,7 +713,7 @@ public class DistributedObjectServer {
     communicatorService.initialized();
     serviceRegistry.registerImplementationProvided(communicatorService);
 
-    VoltronMessageHandler voltron = new VoltronMessageHandler(channelManager, USE_DIRECT);
+    VoltronMessageHandler voltron = new VoltronMessageHandler(channelManager, USE_DIRECT, processTransactionHandler.getInvokeCredits());
     // We need to connect the IInterEntityMessengerProvider to the voltronMessageSink.
 
     Stage<VoltronEntityMessage> fast = stageManager.createStage(ServerConfigurationContext.SINGLE_THREADED_FAST_PATH, VoltronEntityMessage.class, voltron, 1);
@@ -771,12 +792,13 @@ public class DistributedObjectServer {
     final Sink<ReplicationSendingAction> replicationSenderFlushStage =
         stageManager.createStage(ServerConfigurationContext.ACTIVE_TO_PASSIVE_DRIVER_FLUSH_STAGE,
                                  ReplicationSendingAction.class, new GenericHandler<>(), max(3, knownPeers)).getSink();
-    ReplicationSender replicationSender = new ReplicationSender(replicationSenderStage, replicationSenderFlushStage, groupCommManager);
+    replicationSender = new ReplicationSender(replicationSenderStage, replicationSenderFlushStage, groupCommManager);
     final Sink<ReplicationReceivingAction> replicationReceivingStage =
         stageManager.createStage(ServerConfigurationContext.PASSIVE_TO_ACTIVE_DRIVER_STAGE,
                                  ReplicationReceivingAction.class, new GenericHandler<>(), max(3, knownPeers)).getSink();
     final ActiveToPassiveReplication passives = new ActiveToPassiveReplication(consistencyMgr, processTransactionHandler, this.persistor.getEntityPersistor(), replicationSender, replicationReceivingStage, this.getGroupManager());
     processor.setReplication(passives);
+    activeToPassiveReplication = passives;
 
     Stage<ReplicationMessageAck> replicationStageAck = stageManager.createStage(ServerConfigurationContext.PASSIVE_REPLICATION_ACK_STAGE, ReplicationMessageAck.class,
       new AbstractEventHandler<ReplicationMessageAck>() {
@@ -849,7 +871,7 @@ public class DistributedObjectServer {
     // XXX: yucky casts
     this.managementContext = new ServerManagementContext((DSOChannelManagerMBean) channelManager, connectionManager, channelStats,
                                                          connectionPolicy, getOperationGuardian(platformServiceRegistry,
-                                                                 channelLifeCycleHandler), voltron, voltronSink);
+                                                                 channelLifeCycleHandler), voltron, voltronSink, stageManager);
 
     final CallbackOnExitHandler handler = new CallbackGroupExceptionHandler(logger, consoleLogger);
     this.threadGroup.addCallbackOnExitExceptionHandler(GroupException.class, handler);
@@ -21,10 +21,13 @@ import com.tc.net.ClientID;
 import com.tc.objectserver.api.ClientNotFoundException;
 import com.tc.util.Assert;
 import com.tc.net.core.ProductID;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.sequence.MutableSequence;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,27 +39,47 @@ import org.terracotta.persistence.IPlatformPersistence;
 public class ClientStatePersistor {
   private static final String CLIENTS_MAP_FILE_NAME =  "clients_map.map";
   private static final String NEXT_CLIENT_ID_FILE_NAME =  "next_client_id.dat";
+  private static final String INCREMENTAL_STORE_NAME = "client_state_persistor";
   
   
   private final IPlatformPersistence storageManager;
-  private final ConcurrentHashMap<ClientID, Boolean> clients;
+  private final ConcurrentHashMap<ClientID, Boolean> clients = new ConcurrentHashMap<>();
   private final MutableSequence clientIDSequence;
+  // when set, changes are appended to a log instead of rewriting the whole map
+  private final IncrementalMapStore incremental;
   
-  @SuppressWarnings("unchecked")
   public ClientStatePersistor(IPlatformPersistence storageManager) {
+    this(storageManager, TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.PERSISTENCE_INCREMENTAL_ENABLED, false),
+        TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.PERSISTENCE_INCREMENTAL_COMPACTION_INTERVAL, 1024));
+  }
+
+  @SuppressWarnings("unchecked")
+  ClientStatePersistor(IPlatformPersistence storageManager, boolean incremental, int compactionInterval) {
     this.storageManager = storageManager;
     
-    ConcurrentHashMap<ClientID, Boolean> clientsMap = null;
+    IncrementalMapStore store = new IncrementalMapStore(storageManager, INCREMENTAL_STORE_NAME, compactionInterval);
+    store.register(CLIENTS_MAP_FILE_NAME, this.clients);
     try {
-      clientsMap = (ConcurrentHashMap<ClientID, Boolean>) this.storageManager.loadDataElement(CLIENTS_MAP_FILE_NAME);
-      if (null == clientsMap) {
-        clientsMap = new ConcurrentHashMap<>();
+      boolean fromLog = store.load();
+      if (!fromLog) {
+        ConcurrentHashMap<ClientID, Boolean> clientsMap = (ConcurrentHashMap<ClientID, Boolean>) this.storageManager.loadDataElement(CLIENTS_MAP_FILE_NAME);
+        if (null != clientsMap) {
+          this.clients.putAll(clientsMap);
+        }
+      }
+      // migrate whatever was found to the storage layout of the configured mode
+      if (incremental && !fromLog) {
+        store.snapshot();
+        this.storageManager.storeDataElement(CLIENTS_MAP_FILE_NAME, null);
+      } else if (!incremental && fromLog) {
+        this.storageManager.storeDataElement(CLIENTS_MAP_FILE_NAME, this.clients);
+        store.delete();
       }
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading ClientStatePersistor data", e);
     }
-    this.clients = clientsMap;
+    this.incremental = incremental ? store : null;
     // orphaned clients are not supposed to reconnect on restart.  since we are repopulating 
     // restart data, set aside the orphaned clients
     this.clientIDSequence = new Sequence(this.storageManager);
@@ -83,19 +106,27 @@ public class ClientStatePersistor {
     return clients.containsKey(id);
   }
 
-  public void saveClientState(ClientID channelID, ProductID product) {
+  public synchronized void saveClientState(ClientID channelID, ProductID product) {
     // if the client is in the orphaned set, do not add it to the saved list because 
     // it should never connect again.  this can happen if the ConnectionIDFactory services
     // a connection before the existing clients are loaded into the reconnect window
     clients.put(channelID, product.isPermanent());
-    safeStoreClients();
+    if (incremental != null) {
+      incremental.put(CLIENTS_MAP_FILE_NAME, channelID, product.isPermanent());
+    } else {
+      safeStoreClients();
+    }
   }
 
-  public void deleteClientState(ClientID id) throws ClientNotFoundException {
+  public synchronized void deleteClientState(ClientID id) throws ClientNotFoundException {
     if (clients.remove(id) == null) {
       throw new ClientNotFoundException();
     }
-    safeStoreClients();
+    if (incremental != null) {
+      incremental.remove(CLIENTS_MAP_FILE_NAME, id);
+    } else {
+      safeStoreClients();
+    }
   }
 
   Map<String, Object> reportStateToMap(Map<String, Object> map) {
@@ -106,6 +137,11 @@ public class ClientStatePersistor {
       cs.add(clientID.toString());
     }
     map.put("next", clientIDSequence.current());
+    if (incremental != null) {
+      Map<String, Object> log = new LinkedHashMap<>();
+      map.put("incremental", log);
+      incremental.reportStateToMap(log);
+    }
 
     return map;
   }
@@ -24,6 +24,8 @@ import com.tc.object.EntityID;
 import com.tc.objectserver.persistence.EntityData.JournalEntry;
 import com.tc.objectserver.persistence.EntityData.Key;
 import com.tc.objectserver.persistence.EntityData.Value;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import java.io.IOException;
 import java.io.ObjectInput;
@@ -53,32 +55,66 @@ public class EntityPersistor {
   private static final String JOURNAL_CONTAINER_FILE_NAME = "journal_container.map";
   private static final String COUNTERS_FILE_NAME = "counters.map";
   private static final String COUNTERS_CONSUMER_ID = "counters:consumerID";
+  private static final String INCREMENTAL_STORE_NAME = "entity_persistor";
 
   private final IPlatformPersistence storageManager;
-  private final HashMap<EntityData.Key, EntityData.Value> entities;
+  private final HashMap<EntityData.Key, EntityData.Value> entities = new HashMap<>();
   private final HashMap<EntityData.Key, EntityData.Value> deletes = new HashMap<>();
-  private final HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal;
-  private final HashMap<String, Long> counters;
+  private final HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal = new HashMap<>();
+  private final HashMap<String, Long> counters = new HashMap<>();
   private final Map<EntityID, PermanentEntityResult> result = new ConcurrentHashMap<>();
+  // when set, changes are appended to a log instead of rewriting the whole map
+  private final IncrementalMapStore incremental;
 
-  @SuppressWarnings({ "unchecked" })
   public EntityPersistor(IPlatformPersistence storageManager) {
+    this(storageManager, TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.PERSISTENCE_INCREMENTAL_ENABLED, false),
+        TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.PERSISTENCE_INCREMENTAL_COMPACTION_INTERVAL, 1024));
+  }
+
+  @SuppressWarnings({ "unchecked" })
+  EntityPersistor(IPlatformPersistence storageManager, boolean incremental, int compactionInterval) {
     this.storageManager = storageManager;
+    IncrementalMapStore store = new IncrementalMapStore(storageManager, INCREMENTAL_STORE_NAME, compactionInterval);
+    store.register(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    store.register(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    store.register(COUNTERS_FILE_NAME, this.counters);
     try {
-      HashMap<EntityData.Key, EntityData.Value> entities = (HashMap<Key, Value>) this.storageManager.loadDataElement(ENTITIES_ALIVE_FILE_NAME);
-      this.entities = (null != entities) ? entities : new HashMap<>();
-      HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal = (HashMap<ClientID, List<JournalEntry>>) this.storageManager.loadDataElement(JOURNAL_CONTAINER_FILE_NAME);
-      this.entityLifeJournal = (null != entityLifeJournal) ? entityLifeJournal : new HashMap<>();
-      HashMap<String, Long> counters = (HashMap<String, Long>) this.storageManager.loadDataElement(COUNTERS_FILE_NAME);
-      this.counters = (null != counters) ? counters : new HashMap<>();
+      boolean fromLog = store.load();
+      if (!fromLog) {
+        HashMap<EntityData.Key, EntityData.Value> entities = (HashMap<Key, Value>) this.storageManager.loadDataElement(ENTITIES_ALIVE_FILE_NAME);
+        if (null != entities) {
+          this.entities.putAll(entities);
+        }
+        HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal = (HashMap<ClientID, List<JournalEntry>>) this.storageManager.loadDataElement(JOURNAL_CONTAINER_FILE_NAME);
+        if (null != entityLifeJournal) {
+          this.entityLifeJournal.putAll(entityLifeJournal);
+        }
+        HashMap<String, Long> counters = (HashMap<String, Long>) this.storageManager.loadDataElement(COUNTERS_FILE_NAME);
+        if (null != counters) {
+          this.counters.putAll(counters);
+        }
+      }
       // Make sure that the consumerID is initialized to 1 (0 reserved for platform).
       if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
         this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(1L));
       }
+      // migrate whatever was found to the storage layout of the configured mode
+      if (incremental && !fromLog) {
+        store.snapshot();
+        this.storageManager.storeDataElement(ENTITIES_ALIVE_FILE_NAME, null);
+        this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, null);
+        this.storageManager.storeDataElement(COUNTERS_FILE_NAME, null);
+      } else if (!incremental && fromLog) {
+        this.storageManager.storeDataElement(ENTITIES_ALIVE_FILE_NAME, this.entities);
+        this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+        this.storageManager.storeDataElement(COUNTERS_FILE_NAME, this.counters);
+        store.delete();
+      }
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading EntityPersistor map files", e);
     }
+    this.incremental = incremental ? store : null;
   }
 
   public synchronized void clear() {
@@ -88,6 +124,10 @@ public class EntityPersistor {
     if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
       this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(1L));
     }
+    if (this.incremental != null) {
+      this.incremental.snapshot();
+      return;
+    }
     // We can destroy the backing for these objects.
     try {
       this.storageManager.storeDataElement(ENTITIES_ALIVE_FILE_NAME, null);
@@ -101,6 +141,10 @@ public class EntityPersistor {
   
   public synchronized void clearEntityClientJournal() {
     this.entityLifeJournal.clear();
+    if (this.incremental != null) {
+      this.incremental.snapshot();
+      return;
+    }
     try {
       this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, null);
     } catch (IOException e) {
@@ -214,7 +258,7 @@ public class EntityPersistor {
     if (this.deletes.remove(key) == null) {
       this.entities.remove(key);
     }
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    storeEntity(key);
     
     // Record this in the journal - null error on success.
     addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.DESTROY, null, null);
@@ -264,7 +308,7 @@ public class EntityPersistor {
     Assert.assertEquals(version, val.version);
     
     this.entities.put(key, val);
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    storeEntity(key);
     
     // Record this in the journal.
     addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.RECONFIGURE, previousConfiguration, null);
@@ -276,7 +320,7 @@ public class EntityPersistor {
   public synchronized long getNextConsumerID() {
     long consumerID = this.counters.get(COUNTERS_CONSUMER_ID);
     this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(consumerID + 1));
-    storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    storeCounter(COUNTERS_CONSUMER_ID);
     return consumerID;
   }
 
@@ -284,19 +328,19 @@ public class EntityPersistor {
     long checkID = this.counters.get(COUNTERS_CONSUMER_ID);
     if (consumerID >= checkID) {
       this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(consumerID + 1));
-      storeToDisk(COUNTERS_FILE_NAME, this.counters);
+      storeCounter(COUNTERS_CONSUMER_ID);
     }
   }
   
   public synchronized void addTrackingForClient(ClientID sourceNodeID) {
     if (this.entityLifeJournal.putIfAbsent(sourceNodeID, new ArrayList<>()) == null) {
-      storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+      storeJournal(sourceNodeID);
     }
   }
   
   public synchronized void removeTrackingForClient(ClientID sourceNodeID) {
     this.entityLifeJournal.remove(sourceNodeID);
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    storeJournal(sourceNodeID);
   }
 
   public void reportStateToMap(Map<String, Object> map) {
@@ -322,6 +366,11 @@ public class EntityPersistor {
     }
 
     map.put("nextConsumerID", this.counters.get(COUNTERS_CONSUMER_ID));
+    if (this.incremental != null) {
+      Map<String, Object> log = new LinkedHashMap<>();
+      map.put("incremental", log);
+      this.incremental.reportStateToMap(log);
+    }
   }
   
   private List<JournalEntry> filterJournal(List<JournalEntry> list, long oldestTransactionOnClient) {
@@ -348,7 +397,7 @@ public class EntityPersistor {
         newEntry.reconfigureResponse = reconfigureResult;
         clientJournal.add(newEntry);
         this.entityLifeJournal.put(clientID, clientJournal);
-        storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+        storeJournal(clientID);
       }
     }
   }
@@ -387,7 +436,7 @@ public class EntityPersistor {
     if (previous != null) {
       deletes.put(key, value);
     }
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    storeEntity(key);
   }
   
   private void permanentEntityCreated(EntityID id, long consumerid, Exception e) {
@@ -401,8 +450,14 @@ public class EntityPersistor {
   }
   
   public synchronized void removeOrphanedClientsFromJournal(Set<ClientID> connectedClients) {
-    this.entityLifeJournal.entrySet().removeIf(e->!connectedClients.contains(e.getKey()));
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    if (this.incremental != null) {
+      List<ClientID> orphans = new ArrayList<>(this.entityLifeJournal.keySet());
+      orphans.removeAll(connectedClients);
+      orphans.forEach(this::removeTrackingForClient);
+    } else {
+      this.entityLifeJournal.entrySet().removeIf(e->!connectedClients.contains(e.getKey()));
+      storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    }
   }
   
   public synchronized void serialize(ObjectOutput bucket) throws IOException {
@@ -441,14 +496,48 @@ public class EntityPersistor {
           LOGGER.debug(key + " layering " + journal + " " + check);
           this.entityLifeJournal.put(key, check);
         }
+        if (this.incremental != null) {
+          storeJournal(key);
+        }
       }
     } catch (ClassNotFoundException cnf) {
       throw new IOException(cnf);
     }
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    if (this.incremental == null) {
+      storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    }
     long nextConsumer = bucket.readLong();
     this.counters.put(COUNTERS_CONSUMER_ID, nextConsumer);
-    storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    storeCounter(COUNTERS_CONSUMER_ID);
+  }
+
+  private void storeEntity(EntityData.Key key) {
+    if (this.incremental == null) {
+      storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    } else if (this.entities.containsKey(key)) {
+      this.incremental.put(ENTITIES_ALIVE_FILE_NAME, key, this.entities.get(key));
+    } else {
+      this.incremental.remove(ENTITIES_ALIVE_FILE_NAME, key);
+    }
+  }
+
+  private void storeJournal(ClientID clientID) {
+    if (this.incremental == null) {
+      storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    } else if (this.entityLifeJournal.containsKey(clientID)) {
+      // journal lists are trimmed to the transactions still outstanding on the client so they stay small
+      this.incremental.put(JOURNAL_CONTAINER_FILE_NAME, clientID, (Serializable)this.entityLifeJournal.get(clientID));
+    } else {
+      this.incremental.remove(JOURNAL_CONTAINER_FILE_NAME, clientID);
+    }
+  }
+
+  private void storeCounter(String counter) {
+    if (this.incremental == null) {
+      storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    } else {
+      this.incremental.put(COUNTERS_FILE_NAME, counter, this.counters.get(counter));
+    }
   }
 
   private void storeToDisk(String dataName, Serializable dataElement) {
@@ -0,0 +1,249 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.entity.StateDumpCollector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+
+/**
+ * Platform persistence kept on local disk.  Sequences are served from memory like the null storage and
+ * every change is also appended to the shared {@link SequenceLog}, the returned future completes once the
+ * change is durable.  Each data element is written to its own checksummed file which atomically replaces
+ * the previous one.  Elements found on disk are kept serialized until they are first loaded so that they
+ * can be resolved in the loader of the entity asking for them.
+ */
+public class FilePlatformPersistentStorage extends NullPlatformPersistentStorage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilePlatformPersistentStorage.class);
+    private static final String SUFFIX = ".element";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x54434445;
+    // magic, crc, length
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+    private final long consumerID;
+    private final Path directory;
+    private final SequenceLog log;
+    private final Object dataLock = new Object();
+    private final Map<String, byte[]> serialized = new HashMap<>();
+
+    FilePlatformPersistentStorage(long consumerID, Path directory, SequenceLog log) throws IOException {
+      this.consumerID = consumerID;
+      this.directory = directory;
+      this.log = log;
+      Files.createDirectories(directory);
+      readElements();
+      synchronized (this) {
+        fastSequenceCache.putAll(log.recovered(consumerID));
+      }
+      log.open(consumerID, this::copySequences);
+    }
+
+    @Override
+    public Serializable loadDataElement(String name) throws IOException {
+      return loadDataElementInLoader(name, null);
+    }
+
+    @Override
+    public Serializable loadDataElementInLoader(String name, ClassLoader loader) throws IOException {
+      synchronized (dataLock) {
+        Serializable element = nameToDataMap.get(name);
+        if (element == null) {
+          byte[] raw = serialized.get(name);
+          if (raw != null) {
+            element = deserialize(raw, loader);
+            serialized.remove(name);
+            nameToDataMap.put(name, element);
+          }
+        }
+        return element;
+      }
+    }
+
+    @Override
+    public void storeDataElement(String name, Serializable element) throws IOException {
+      synchronized (dataLock) {
+        Path file = directory.resolve(encode(name) + SUFFIX);
+        if (null == element) {
+          Files.deleteIfExists(file);
+        } else {
+          byte[] raw = serialize(element);
+          CRC32 crc = new CRC32();
+          crc.update(raw, 0, raw.length);
+          ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+          header.putInt(MAGIC).putLong(crc.getValue()).putInt(raw.length).flip();
+          Path temp = directory.resolve(encode(name) + TEMP_SUFFIX);
+          try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer body = ByteBuffer.wrap(raw);
+            while (header.hasRemaining()) {
+              out.write(header);
+            }
+            while (body.hasRemaining()) {
+              out.write(body);
+            }
+            out.force(true);
+          }
+          Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(directory);
+        serialized.remove(name);
+        super.storeDataElement(name, element);
+      }
+    }
+
+    @Override
+    public synchronized Future<Void> fastStoreSequence(long sequenceIndex, SequenceTuple newEntry, long oldestValidSequenceID) {
+      super.fastStoreSequence(sequenceIndex, newEntry, oldestValidSequenceID);
+      return log.store(consumerID, sequenceIndex, newEntry.localSequenceID, newEntry.globalSequenceID, oldestValidSequenceID);
+    }
+
+    @Override
+    public synchronized void deleteSequence(long sequenceIndex) {
+      super.deleteSequence(sequenceIndex);
+      log.delete(consumerID, sequenceIndex);
+    }
+
+    private synchronized Map<Long, TransactionSequence> copySequences() {
+      Map<Long, TransactionSequence> copy = new HashMap<>();
+      fastSequenceCache.forEach((index, sequence) -> copy.put(index, sequence.copy()));
+      return copy;
+    }
+
+    @Override
+    public void addStateTo(StateDumpCollector stateDumpCollector) {
+      super.addStateTo(stateDumpCollector);
+      stateDumpCollector.addState("directory", directory.toString());
+      synchronized (dataLock) {
+        stateDumpCollector.addState("unloaded", serialized.size());
+      }
+    }
+
+    private void readElements() throws IOException {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+        for (Path file : files) {
+          String fileName = file.getFileName().toString();
+          if (fileName.endsWith(TEMP_SUFFIX)) {
+            // an element which was never moved into place, the previous version is still intact
+            Files.delete(file);
+          } else if (fileName.endsWith(SUFFIX)) {
+            String name = decode(fileName.substring(0, fileName.length() - SUFFIX.length()));
+            byte[] raw = readElement(file);
+            if (raw != null) {
+              serialized.put(name, raw);
+            }
+          }
+        }
+      }
+    }
+
+    private static byte[] readElement(Path file) throws IOException {
+      byte[] content = Files.readAllBytes(file);
+      if (content.length >= HEADER_SIZE) {
+        ByteBuffer data = ByteBuffer.wrap(content);
+        int magic = data.getInt();
+        long checksum = data.getLong();
+        int length = data.getInt();
+        if (magic == MAGIC && length == content.length - HEADER_SIZE) {
+          CRC32 crc = new CRC32();
+          crc.update(content, HEADER_SIZE, length);
+          if (crc.getValue() == checksum) {
+            byte[] raw = new byte[length];
+            data.get(raw);
+            return raw;
+          }
+        }
+      }
+      throw new IOException("corrupt platform storage element " + file);
+    }
+
+    private static byte[] serialize(Serializable element) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(element);
+      }
+      return bytes.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] raw, ClassLoader loader) throws IOException {
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(raw)) {
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+          if (loader == null) {
+            return super.resolveClass(desc);
+          }
+          return Class.forName(desc.getName(), false, loader);
+        }
+      }) {
+        return (Serializable) in.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException(e);
+      }
+    }
+
+    /**
+     * Element names are hex encoded so any name maps to a valid file name.
+     */
+    private static String encode(String name) {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    }
+
+    private static String decode(String hex) {
+      byte[] bytes = new byte[hex.length() / 2];
+      for (int x = 0; x < bytes.length; x++) {
+        bytes[x] = (byte) Integer.parseInt(hex.substring(x * 2, x * 2 + 2), 16);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Make renames and deletions in the directory durable.  Not every platform can open a directory, in that
+     * case the rename is as durable as the platform makes it.
+     */
+    static void syncDirectory(Path directory) {
+      try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+        dir.force(true);
+      } catch (IOException notSupported) {
+        LOGGER.debug("unable to sync directory {}", directory, notSupported);
+      }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.persistence.IPlatformPersistence;
+
+/**
+ * Persists a group of named maps as a snapshot plus an append-only log of changes, both stored as
+ * data elements of the platform persistence.  Each mutation writes a single small record instead
+ * of re-serializing the whole map.  After a configurable number of records the current maps are
+ * written as a new snapshot and the records it covers are deleted.
+ * <p>
+ * The owner registers its live maps, mutates them and then records the same mutation here.  All
+ * calls are expected to be serialized by the owner.
+ */
+class IncrementalMapStore {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalMapStore.class);
+
+  private final IPlatformPersistence storage;
+  private final String snapshotName;
+  private final String logPrefix;
+  private final int compactionInterval;
+  private final Map<String, Map<Serializable, Serializable>> maps = new LinkedHashMap<>();
+
+  private long logStart;
+  private long nextRecord;
+  private long compactions;
+
+  IncrementalMapStore(IPlatformPersistence storage, String name, int compactionInterval) {
+    this.storage = storage;
+    this.snapshotName = name + ".snapshot";
+    this.logPrefix = name + ".log.";
+    this.compactionInterval = Math.max(1, compactionInterval);
+  }
+
+  /**
+   * Register a live map under the given name.  All maps must be registered before {@link #load()}.
+   */
+  @SuppressWarnings("unchecked")
+  <K, V> void register(String name, Map<K, V> live) {
+    maps.put(name, (Map<Serializable, Serializable>) live);
+  }
+
+  /**
+   * Load the snapshot and replay the log into the registered maps.
+   *
+   * @return false if nothing was stored by this store yet
+   */
+  @SuppressWarnings("unchecked")
+  synchronized boolean load() throws IOException {
+    Snapshot snapshot = (Snapshot) storage.loadDataElement(snapshotName);
+    if (snapshot == null) {
+      return false;
+    }
+    for (Map.Entry<String, Map<Serializable, Serializable>> e : maps.entrySet()) {
+      e.getValue().clear();
+      HashMap<Serializable, Serializable> stored = snapshot.maps.get(e.getKey());
+      if (stored != null) {
+        e.getValue().putAll(stored);
+      }
+    }
+    // records from before the snapshot may survive a crash in the middle of a compaction
+    deleteRecords(snapshot.previousLogStart, snapshot.logStart);
+    logStart = snapshot.logStart;
+    nextRecord = logStart;
+    Record record = (Record) storage.loadDataElement(recordName(nextRecord));
+    while (record != null) {
+      record.applyTo(maps.get(record.map));
+      nextRecord += 1;
+      record = (Record) storage.loadDataElement(recordName(nextRecord));
+    }
+    LOGGER.debug("{} replayed {} records", snapshotName, nextRecord - logStart);
+    return true;
+  }
+
+  synchronized void put(String map, Serializable key, Serializable value) {
+    append(new Record(map, key, value, false));
+  }
+
+  synchronized void remove(String map, Serializable key) {
+    append(new Record(map, key, null, true));
+  }
+
+  /**
+   * Write the current content of all registered maps as the new snapshot and drop the log.
+   */
+  synchronized void snapshot() {
+    HashMap<String, HashMap<Serializable, Serializable>> copy = new HashMap<>();
+    for (Map.Entry<String, Map<Serializable, Serializable>> e : maps.entrySet()) {
+      copy.put(e.getKey(), new HashMap<>(e.getValue()));
+    }
+    store(snapshotName, new Snapshot(copy, logStart, nextRecord));
+    deleteRecords(logStart, nextRecord);
+    logStart = nextRecord;
+    compactions += 1;
+  }
+
+  /**
+   * Remove the snapshot and the log, used when the owner switches back to whole-map storage.
+   */
+  synchronized void delete() {
+    deleteRecords(logStart, nextRecord);
+    store(snapshotName, null);
+    logStart = nextRecord = 0;
+  }
+
+  synchronized void reportStateToMap(Map<String, Object> map) {
+    map.put("pendingRecords", nextRecord - logStart);
+    map.put("compactionInterval", compactionInterval);
+    map.put("compactions", compactions);
+  }
+
+  private void append(Record record) {
+    store(recordName(nextRecord), record);
+    nextRecord += 1;
+    if (nextRecord - logStart >= compactionInterval) {
+      snapshot();
+    }
+  }
+
+  private void deleteRecords(long from, long to) {
+    for (long x = from; x < to; x++) {
+      store(recordName(x), null);
+    }
+  }
+
+  private String recordName(long index) {
+    return logPrefix + index;
+  }
+
+  private void store(String name, Serializable element) {
+    try {
+      storage.storeDataElement(name, element);
+    } catch (IOException e) {
+      // In general, we have no way of solving this problem so throw it.
+      throw new RuntimeException("Failure storing " + name, e);
+    }
+  }
+
+  private static class Snapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final HashMap<String, HashMap<Serializable, Serializable>> maps;
+    private final long previousLogStart;
+    private final long logStart;
+
+    Snapshot(HashMap<String, HashMap<Serializable, Serializable>> maps, long previousLogStart, long logStart) {
+      this.maps = maps;
+      this.previousLogStart = previousLogStart;
+      this.logStart = logStart;
+    }
+  }
+
+  private static class Record implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String map;
+    private final Serializable key;
+    private final Serializable value;
+    private final boolean remove;
+
+    Record(String map, Serializable key, Serializable value, boolean remove) {
+      this.map = map;
+      this.key = key;
+      this.value = value;
+      this.remove = remove;
+    }
+
+    void applyTo(Map<Serializable, Serializable> target) {
+      if (target == null) {
+        return;
+      }
+      if (remove) {
+        target.remove(key);
+      } else {
+        target.put(key, value);
+      }
+    }
+  }
+}
@@ -23,9 +23,8 @@ import org.terracotta.persistence.IPlatformPersistence;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -35,7 +34,7 @@ import java.util.concurrent.Future;
 
 public class NullPlatformPersistentStorage implements IPlatformPersistence, StateDumpable {
     final Map<String, Serializable> nameToDataMap = new ConcurrentHashMap<>();
-    final Map<Long, List<SequenceTuple>> fastSequenceCache = new HashMap<>();
+    final Map<Long, TransactionSequence> fastSequenceCache = new HashMap<>();
 
     @Override
     public Serializable loadDataElement(String name) throws IOException {
@@ -58,30 +57,32 @@ public class NullPlatformPersistentStorage implements IPlatformPersistence, Stat
 
     @Override
     public synchronized Future<Void> fastStoreSequence(long sequenceIndex, SequenceTuple newEntry, long oldestValidSequenceID) {
-      List<SequenceTuple> sequence = fastSequenceCache.get(sequenceIndex);
+      TransactionSequence sequence = fastSequenceCache.get(sequenceIndex);
       if (sequence == null) {
-        sequence = new LinkedList<>();
+        sequence = new TransactionSequence();
         fastSequenceCache.put(sequenceIndex, sequence);
       }
-      if (!sequence.isEmpty()) {
 //  exploiting the knowledge that sequences are always updated in an increasing fashion, as soon as the first
 //  cleaning function fails, bail on the iteration
-        Iterator<SequenceTuple> tuple = sequence.iterator();
-        while (tuple.hasNext()) {
-          if (tuple.next().localSequenceID < oldestValidSequenceID) {
-            tuple.remove();
-          } else {
-            break;
-          }
-        }
-      }
-      sequence.add(newEntry);
+      sequence.trimBefore(oldestValidSequenceID);
+      sequence.add(newEntry.localSequenceID, newEntry.globalSequenceID);
       return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public synchronized List<SequenceTuple> loadSequence(long sequenceIndex) {
-      return fastSequenceCache.get(sequenceIndex);
+      TransactionSequence sequence = fastSequenceCache.get(sequenceIndex);
+      if (sequence == null) {
+        return null;
+      }
+      List<SequenceTuple> list = new ArrayList<>(sequence.size());
+      for (int x = 0; x < sequence.size(); x++) {
+        SequenceTuple tuple = new SequenceTuple();
+        tuple.localSequenceID = sequence.localAt(x);
+        tuple.globalSequenceID = sequence.globalAt(x);
+        list.add(tuple);
+      }
+      return list;
     }
 
     @Override
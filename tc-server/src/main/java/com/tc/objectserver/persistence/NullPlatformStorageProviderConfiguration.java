@@ -20,10 +20,43 @@ package com.tc.objectserver.persistence;
 import org.terracotta.entity.ServiceProvider;
 import org.terracotta.entity.ServiceProviderConfiguration;
 
+import java.nio.file.Path;
+
 /**
  * @author vmad
  */
 public class NullPlatformStorageProviderConfiguration implements ServiceProviderConfiguration {
+    private final Path directory;
+    private final long compactionBytes;
+
+    /**
+     * Keep platform storage in memory, it is only as persistent as this server.
+     */
+    public NullPlatformStorageProviderConfiguration() {
+        this(null, 0L);
+    }
+
+    /**
+     * Keep platform storage in the given directory on local disk.
+     *
+     * @param compactionBytes size of the sequence log after which it is rewritten from the live sequences
+     */
+    public NullPlatformStorageProviderConfiguration(Path directory, long compactionBytes) {
+        this.directory = directory;
+        this.compactionBytes = compactionBytes;
+    }
+
+    /**
+     * @return the storage directory or null if storage is kept in memory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getCompactionBytes() {
+        return compactionBytes;
+    }
+
     @Override
     public Class<? extends ServiceProvider> getServiceProviderType() {
         return NullPlatformStorageServiceProvider.class;
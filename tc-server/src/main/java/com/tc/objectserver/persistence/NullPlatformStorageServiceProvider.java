@@ -27,25 +27,61 @@ import org.terracotta.entity.StateDumpable;
 import org.terracotta.persistence.IPlatformPersistence;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 
+/**
+ * Provides {@link IPlatformPersistence} when no other provider is configured.  Storage is kept in memory
+ * unless the configuration names a directory, in which case it is kept on local disk with one sub-directory
+ * of data elements per consumer and a single sequence log shared by all of them.
+ */
 public class NullPlatformStorageServiceProvider implements ServiceProvider, StateDumpable {
     private final Map<Long, NullPlatformPersistentStorage> providers = new ConcurrentHashMap<>();
+    private Path directory;
+    private long compactionBytes;
+    private volatile SequenceLog log;
 
 
     @Override
     public boolean initialize(ServiceProviderConfiguration serviceProviderConfiguration, PlatformConfiguration platformConfiguration) {
+        if (serviceProviderConfiguration instanceof NullPlatformStorageProviderConfiguration) {
+            NullPlatformStorageProviderConfiguration config = (NullPlatformStorageProviderConfiguration) serviceProviderConfiguration;
+            directory = config.getDirectory();
+            compactionBytes = config.getCompactionBytes();
+        }
+        if (directory != null) {
+            try {
+                log = new SequenceLog(directory, compactionBytes);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("unable to open platform storage in " + directory, ioe);
+            }
+        }
         return true;
     }
 
     @Override
     public <T> T getService(long entityID, ServiceConfiguration<T> serviceConfiguration) {
-        providers.putIfAbsent(entityID, new NullPlatformPersistentStorage());
-        return serviceConfiguration.getServiceType().cast(providers.get(entityID));
+        return serviceConfiguration.getServiceType().cast(providers.computeIfAbsent(entityID, this::createStorage));
+    }
+
+    private NullPlatformPersistentStorage createStorage(long entityID) {
+        SequenceLog current = log;
+        if (current == null) {
+            return new NullPlatformPersistentStorage();
+        }
+        try {
+            return new FilePlatformPersistentStorage(entityID, directory.resolve(Long.toString(entityID)), current);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("unable to open platform storage for " + entityID, ioe);
+        }
     }
 
     @Override
@@ -55,15 +91,37 @@ public class NullPlatformStorageServiceProvider implements ServiceProvider, Stat
 
     public void close() throws IOException {
         providers.clear();
+        if (log != null) {
+            log.close();
+        }
     }
 
     @Override
     public void prepareForSynchronization() throws ServiceProviderCleanupException {
         providers.clear();
+        if (log != null) {
+            try {
+                // everything is synced from the active again, start from an empty directory
+                log.close();
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                        if (!file.equals(directory)) {
+                            Files.delete(file);
+                        }
+                    }
+                }
+                log = new SequenceLog(directory, compactionBytes);
+            } catch (IOException ioe) {
+                throw new ServiceProviderCleanupException("unable to clear platform storage in " + directory, ioe);
+            }
+        }
     }
 
     @Override
     public void addStateTo(StateDumpCollector stateDumpCollector) {
+        if (log != null) {
+            log.getStateMap().forEach(stateDumpCollector::addState);
+        }
         for (Map.Entry<Long, NullPlatformPersistentStorage> entry : providers.entrySet()) {
             entry.getValue().addStateTo(stateDumpCollector.subStateDumpCollector(String.valueOf(entry.getKey())));
         }
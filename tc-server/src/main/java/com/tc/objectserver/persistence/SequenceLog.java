@@ -0,0 +1,360 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-ahead log of the transaction sequences of every consumer of a file backed platform storage.
+ * <p>
+ * Appends are queued to a single writer thread which writes everything waiting as one batch and forces it
+ * to disk once, so concurrent invokes share a single fsync.  The future returned by {@link #append} is
+ * completed once its record is durable.
+ * <p>
+ * Records have a fixed size and carry their own checksum so a torn tail left by a crash is detected and
+ * truncated on open.  Once the log grows past the compaction size it is rewritten from the live sequences.
+ * Replay is idempotent, a record whose local id is not newer than the tail of its sequence is skipped, so
+ * records which are already part of a compacted log may be appended again.
+ */
+class SequenceLog implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SequenceLog.class);
+  static final String LOG_NAME = "sequences.log";
+  private static final String COMPACT_NAME = "sequences.compact";
+  private static final byte STORE = 1;
+  private static final byte DELETE = 2;
+  // crc, type, consumer, index, local, global, oldest
+  static final int RECORD_SIZE = Integer.BYTES + 1 + Long.BYTES * 5;
+  private static final int MAX_BATCH = 4096;
+
+  private final Path directory;
+  private final long compactionBytes;
+  private final Map<Long, Supplier<Map<Long, TransactionSequence>>> consumers = new HashMap<>();
+  // sequences replayed for consumers which have not been opened yet
+  private final Map<Long, Map<Long, TransactionSequence>> recovered;
+  private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * MAX_BATCH);
+  private final CRC32 crc = new CRC32();
+
+  private FileChannel channel;
+  private volatile IOException failure;
+  private volatile boolean closed;
+
+  private final LongAdder records = new LongAdder();
+  private final LongAdder syncs = new LongAdder();
+  private final LongAdder compactions = new LongAdder();
+
+  SequenceLog(Path directory, long compactionBytes) throws IOException {
+    this.directory = directory;
+    this.compactionBytes = compactionBytes;
+    Files.createDirectories(directory);
+    Files.deleteIfExists(directory.resolve(COMPACT_NAME));
+    this.recovered = replay();
+    compact();
+    this.writer = new Thread(this::run, "Sequence Log Writer - " + directory);
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * @return copies of the sequences replayed for a consumer which has not been opened yet
+   */
+  Map<Long, TransactionSequence> recovered(long consumerID) {
+    Map<Long, TransactionSequence> copy = new HashMap<>();
+    synchronized (recovered) {
+      Map<Long, TransactionSequence> sequences = recovered.get(consumerID);
+      if (sequences != null) {
+        sequences.forEach((index, sequence) -> copy.put(index, sequence.copy()));
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Hand the sequences of a consumer over to its storage.  From now on compaction takes them from the
+   * supplier, which must return copies taken under the storage's own lock.
+   */
+  void open(long consumerID, Supplier<Map<Long, TransactionSequence>> live) {
+    synchronized (recovered) {
+      recovered.remove(consumerID);
+      consumers.put(consumerID, live);
+    }
+  }
+
+  CompletableFuture<Void> store(long consumerID, long sequenceIndex, long localID, long globalID, long oldestValid) {
+    return append(new Record(STORE, consumerID, sequenceIndex, localID, globalID, oldestValid));
+  }
+
+  CompletableFuture<Void> delete(long consumerID, long sequenceIndex) {
+    return append(new Record(DELETE, consumerID, sequenceIndex, 0L, 0L, 0L));
+  }
+
+  private CompletableFuture<Void> append(Record record) {
+    IOException failed = failure;
+    if (failed != null) {
+      record.done.completeExceptionally(failed);
+    } else if (closed) {
+      record.done.completeExceptionally(new IOException("sequence log closed"));
+    } else {
+      queue.add(record);
+    }
+    return record.done;
+  }
+
+  private void run() {
+    List<Record> batch = new ArrayList<>();
+    while (true) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException ie) {
+        break;
+      }
+      queue.drainTo(batch, MAX_BATCH - 1);
+      boolean stop = batch.stream().anyMatch(r -> r.type == 0);
+      write(batch);
+      batch.clear();
+      if (stop) {
+        break;
+      }
+    }
+  }
+
+  private void write(List<Record> batch) {
+    IOException failed = failure;
+    if (failed == null) {
+      try {
+        buffer.clear();
+        int count = 0;
+        for (Record r : batch) {
+          if (r.type != 0) {
+            encode(r);
+            count += 1;
+          }
+        }
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+          channel.force(false);
+          syncs.increment();
+          records.add(count);
+        }
+        if (channel.size() > compactionBytes) {
+          compact();
+        }
+      } catch (IOException ioe) {
+        LOGGER.error("failed to write the sequence log in {}", directory, ioe);
+        failure = ioe;
+        failed = ioe;
+      }
+    }
+    for (Record r : batch) {
+      if (failed == null) {
+        r.done.complete(null);
+      } else {
+        r.done.completeExceptionally(failed);
+      }
+    }
+  }
+
+  private void encode(Record r) {
+    int start = buffer.position();
+    buffer.position(start + Integer.BYTES);
+    buffer.put(r.type).putLong(r.consumerID).putLong(r.sequenceIndex)
+        .putLong(r.localID).putLong(r.globalID).putLong(r.oldestValid);
+    crc.reset();
+    crc.update(buffer.array(), start + Integer.BYTES, RECORD_SIZE - Integer.BYTES);
+    buffer.putInt(start, (int) crc.getValue());
+  }
+
+  /**
+   * Read every intact record and truncate anything after the first torn or corrupt one.
+   */
+  private Map<Long, Map<Long, TransactionSequence>> replay() throws IOException {
+    Map<Long, Map<Long, TransactionSequence>> state = new HashMap<>();
+    Path log = directory.resolve(LOG_NAME);
+    if (!Files.exists(log)) {
+      return state;
+    }
+    try (FileChannel in = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+      long valid = 0;
+      while (true) {
+        record.clear();
+        while (record.hasRemaining() && in.read(record) >= 0) {
+          // keep reading until the record is full or the end is reached
+        }
+        if (record.hasRemaining()) {
+          break;
+        }
+        record.flip();
+        int expected = record.getInt();
+        crc.reset();
+        crc.update(record.array(), Integer.BYTES, RECORD_SIZE - Integer.BYTES);
+        if (expected != (int) crc.getValue()) {
+          break;
+        }
+        apply(state, record.get(), record.getLong(), record.getLong(), record.getLong(), record.getLong(), record.getLong());
+        valid += RECORD_SIZE;
+      }
+      if (valid < in.size()) {
+        LOGGER.warn("truncating {} bytes of torn records from {}", in.size() - valid, log);
+        in.truncate(valid);
+        in.force(true);
+      }
+    }
+    return state;
+  }
+
+  private static void apply(Map<Long, Map<Long, TransactionSequence>> state, byte type, long consumerID,
+                            long sequenceIndex, long localID, long globalID, long oldestValid) throws IOException {
+    if (type == STORE) {
+      TransactionSequence sequence = state.computeIfAbsent(consumerID, c -> new HashMap<>())
+          .computeIfAbsent(sequenceIndex, i -> new TransactionSequence());
+      sequence.trimBefore(oldestValid);
+      if (sequence.size() == 0 || sequence.localAt(sequence.size() - 1) < localID) {
+        sequence.add(localID, globalID);
+      }
+    } else if (type == DELETE) {
+      Map<Long, TransactionSequence> sequences = state.get(consumerID);
+      if (sequences != null) {
+        sequences.remove(sequenceIndex);
+      }
+    } else {
+      throw new IOException("unknown sequence log record " + type);
+    }
+  }
+
+  /**
+   * Rewrite the log from the live sequences of opened consumers and the recovered sequences of the others.
+   */
+  private void compact() throws IOException {
+    Path target = directory.resolve(COMPACT_NAME);
+    try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      buffer.clear();
+      Map<Long, Map<Long, TransactionSequence>> snapshot = new HashMap<>();
+      Map<Long, Supplier<Map<Long, TransactionSequence>>> opened;
+      synchronized (recovered) {
+        for (Long consumer : recovered.keySet()) {
+          snapshot.put(consumer, recovered(consumer));
+        }
+        opened = new HashMap<>(consumers);
+      }
+      // the storages are asked outside of the lock since they may be opening a consumer while holding their own
+      opened.forEach((consumer, live) -> snapshot.put(consumer, live.get()));
+      for (Map.Entry<Long, Map<Long, TransactionSequence>> consumer : snapshot.entrySet()) {
+        for (Map.Entry<Long, TransactionSequence> sequence : consumer.getValue().entrySet()) {
+          TransactionSequence s = sequence.getValue();
+          for (int x = 0; x < s.size(); x++) {
+            if (!buffer.hasRemaining()) {
+              flush(out);
+            }
+            encode(new Record(STORE, consumer.getKey(), sequence.getKey(), s.localAt(x), s.globalAt(x), s.localAt(0)));
+          }
+        }
+      }
+      flush(out);
+      out.force(true);
+    }
+    if (channel != null) {
+      channel.close();
+    }
+    Files.move(target, directory.resolve(LOG_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    FilePlatformPersistentStorage.syncDirectory(directory);
+    channel = FileChannel.open(directory.resolve(LOG_NAME), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    compactions.increment();
+  }
+
+  private void flush(FileChannel out) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      queue.add(new Record((byte) 0, 0L, 0L, 0L, 0L, 0L));
+      try {
+        writer.join();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      IOException closing = new IOException("sequence log closed");
+      for (Record r = queue.poll(); r != null; r = queue.poll()) {
+        r.done.completeExceptionally(closing);
+      }
+      channel.close();
+    }
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("directory", directory.toString());
+    map.put("records", records.sum());
+    map.put("syncs", syncs.sum());
+    map.put("compactions", compactions.sum());
+    map.put("waiting", queue.size());
+    map.put("failed", failure != null);
+    return map;
+  }
+
+  private static class Record {
+    // a type of 0 stops the writer
+    private final byte type;
+    private final long consumerID;
+    private final long sequenceIndex;
+    private final long localID;
+    private final long globalID;
+    private final long oldestValid;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    Record(byte type, long consumerID, long sequenceIndex, long localID, long globalID, long oldestValid) {
+      this.type = type;
+      this.consumerID = consumerID;
+      this.sequenceIndex = sequenceIndex;
+      this.localID = localID;
+      this.globalID = globalID;
+      this.oldestValid = oldestValid;
+    }
+  }
+}
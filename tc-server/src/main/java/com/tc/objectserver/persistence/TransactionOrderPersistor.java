@@ -26,31 +26,36 @@ import com.tc.net.core.ProductID;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 
 /**
  * Stores the information mapping the client-local TransactionIDs of in-flight transactions into a global order.
  * This is persisted because reconnect on restart needs to ensure that the transactions being replayed are done so in
  * the same order as their original order.
+ * <p>
+ * Each client's sequence is assigned its global ids in increasing order so the global position of a transaction is
+ * the number of entries before it in all of the client sequences, which is found with a binary search per client
+ * rather than by merging everything into one list.  Updates from different clients only contend on their own
+ * sequence.
  */
 public class TransactionOrderPersistor {
   private final IPlatformPersistence storageManager;
-  private Long receivedTransactionCount = 0L;
-    
-  private List<ClientTransaction> globalList = null;
-  private final Set<ClientID> permNodeIDs = new HashSet<>();
-  private final Map<ClientID, List<ClientTransaction>> fastSequenceCache = new HashMap<>();
+  private final AtomicLong receivedTransactionCount = new AtomicLong();
+  // updates share the read side, anything that needs a consistent view of all clients takes the write side
+  private final StampedLock lock = new StampedLock();
+
+  private volatile Map<Long, TransactionSequence> replayView = null;
+  private final Set<ClientID> permNodeIDs = ConcurrentHashMap.newKeySet();
+  private final Map<ClientID, TransactionSequence> fastSequenceCache = new ConcurrentHashMap<>();
   
   public TransactionOrderPersistor(IPlatformPersistence storageManager, Set<ClientID> clients) {
     this.storageManager = storageManager;
@@ -65,7 +70,7 @@ public class TransactionOrderPersistor {
    * This new transactionID will be enqueued as the most recent transaction for the given source but also globally.
    * Any transactions for this source which are older than oldestTransactionOnClient will be removed from persistence.
    */
-  public synchronized Future<Void> updateWithNewMessage(ClientID source, TransactionID transactionID, TransactionID oldestTransactionOnClient) {
+  public Future<Void> updateWithNewMessage(ClientID source, TransactionID transactionID, TransactionID oldestTransactionOnClient) {
     // We need to ensure that the arguments are sane.
     if ((null == oldestTransactionOnClient) || (null == transactionID)) {
       throw new IllegalArgumentException("Transactions cannot be null");
@@ -73,52 +78,70 @@ public class TransactionOrderPersistor {
     if (oldestTransactionOnClient.compareTo(transactionID) > 0) {
       throw new IllegalArgumentException("Oldest transaction cannot come after new transaction");
     }
-    
-    // This operation requires that the globalList be rebuilt.
-    this.globalList = null;
-    
-    // Increment the number of received transactions.
-    this.receivedTransactionCount += 1;
-    
-    // We now pass this straight into the underlying storage.
-    // if the oldestTransactionID is not valid, this is an internal message generated on 
-    // the server and does not need to be kept.
-    if (!source.isNull() && oldestTransactionOnClient.isValid()) {
-      if (this.permNodeIDs.contains(source)) {
-        // Create the new pair.
-        IPlatformPersistence.SequenceTuple transaction = new IPlatformPersistence.SequenceTuple();
-        transaction.localSequenceID = transactionID.toLong();
-        transaction.globalSequenceID = this.receivedTransactionCount;
 
-        return this.storageManager.fastStoreSequence(source.toLong(), transaction, oldestTransactionOnClient.toLong());
-      } else {
-        ClientTransaction transaction = new ClientTransaction();
-        transaction.localTransactionID = transactionID.toLong();
-        transaction.globalTransactionID = this.receivedTransactionCount;
-        return fastStoreSequence(source, transaction, oldestTransactionOnClient.toLong());
+    long stamp = lock.readLock();
+    try {
+      // This operation invalidates the view used for replay.
+      if (this.replayView != null) {
+        this.replayView = null;
+      }
+      // We now pass this straight into the underlying storage.
+      // if the oldestTransactionID is not valid, this is an internal message generated on
+      // the server and does not need to be kept.
+      if (!source.isNull() && oldestTransactionOnClient.isValid()) {
+        if (this.permNodeIDs.contains(source)) {
+          // the global id must be taken under the same lock as the store so each sequence stays ordered
+          synchronized (this.permNodeIDs) {
+            IPlatformPersistence.SequenceTuple transaction = new IPlatformPersistence.SequenceTuple();
+            transaction.localSequenceID = transactionID.toLong();
+            transaction.globalSequenceID = this.receivedTransactionCount.incrementAndGet();
+            return this.storageManager.fastStoreSequence(source.toLong(), transaction, oldestTransactionOnClient.toLong());
+          }
+        } else {
+          TransactionSequence sequence = fastSequenceCache.get(source);
+          if (sequence != null) {
+            synchronized (sequence) {
+              //  exploiting the knowledge that sequences are always updated in an increasing fashion
+              sequence.trimBefore(oldestTransactionOnClient.toLong());
+              sequence.add(transactionID.toLong(), this.receivedTransactionCount.incrementAndGet());
+            }
+            return null;
+          }
+          // must be a client that will not reconnect
+        }
       }
-    } else {
+      // Increment the number of received transactions.
+      this.receivedTransactionCount.incrementAndGet();
       return null;
+    } finally {
+      lock.unlockRead(stamp);
     }
   }
   
-  synchronized void addTrackingForClient(ClientID source, ProductID product) {
-    // Make sure we have tracking for this client.
-    if (product.isPermanent()) {
-      this.permNodeIDs.add(source);
-    } else if (product.isReconnectEnabled()) {
-      this.fastSequenceCache.put(source, new LinkedList<>());
-    } else {
-      // do nothing, this type of client will never reconnect
+  void addTrackingForClient(ClientID source, ProductID product) {
+    long stamp = lock.writeLock();
+    try {
+      // Make sure we have tracking for this client.
+      if (product.isPermanent()) {
+        this.permNodeIDs.add(source);
+      } else if (product.isReconnectEnabled()) {
+        this.fastSequenceCache.put(source, new TransactionSequence());
+      } else {
+        // do nothing, this type of client will never reconnect
+      }
+    } finally {
+      lock.unlockWrite(stamp);
     }
   }
 
   /**
    * Called when we no longer need to track transaction ordering information from source (presumably due to a disconnect).
    */
-  synchronized void removeTrackingForClient(ClientID source) {
+  void removeTrackingForClient(ClientID source) {
     long sourceID = source.toLong();
+    long stamp = lock.writeLock();
     try {
+      this.replayView = null;
       if (this.permNodeIDs.remove(source)) {
         this.storageManager.deleteSequence(sourceID);
       } else {
@@ -126,94 +149,50 @@ public class TransactionOrderPersistor {
       }
     } catch (IOException e) {
       Assert.fail(e.getLocalizedMessage());
+    } finally {
+      lock.unlockWrite(stamp);
     }
   }
 
-  private Future<Void> fastStoreSequence(ClientID sequenceIndex, ClientTransaction newEntry, long oldestValidSequenceID) {
-    List<ClientTransaction> sequence = fastSequenceCache.get(sequenceIndex);
-    if (sequence != null) {
-      if (!sequence.isEmpty()) {
-  //  exploiting the knowledge that sequences are always updated in an increasing fashion, as soon as the first
-  //  cleaning function fails, bail on the iteration
-        Iterator<ClientTransaction> tuple = sequence.iterator();
-        while (tuple.hasNext()) {
-          if (tuple.next().localTransactionID < oldestValidSequenceID) {
-            tuple.remove();
-          } else {
-            break;
-          }
-        }
-      }
-      sequence.add(newEntry);
-    } else {
-      // must be a client that will not reconnect
-    }
-    return null;
-  }
-    
-  private static class ClientTransaction {
-    public long clientID;
-    public long localTransactionID;
-    public long globalTransactionID;
-
-    @Override
-    public int hashCode() {
-      return (int) ((7 * clientID)
-          ^ (5 * localTransactionID)
-          ^ globalTransactionID);
-    }
-    @Override
-    public boolean equals(Object obj) {
-      boolean isEqual = (obj == this);
-      if (!isEqual && (obj instanceof ClientTransaction)) {
-        ClientTransaction other = (ClientTransaction) obj;
-        isEqual = (this.clientID == other.clientID)
-            && (this.localTransactionID == other.localTransactionID)
-            && (this.globalTransactionID == other.globalTransactionID);
-      }
-      return isEqual;
-    }
-
-    @Override
-    public String toString() {
-      return "{clientID=" + clientID +
-             ", localTransactionID=" + localTransactionID +
-             ", globalTransactionID=" + globalTransactionID +
-             '}';
-    }
-  }
-  
-  private synchronized List<ClientTransaction> buildGlobalListIfNecessary() {
-    if (null == this.globalList) {
-      TreeMap<Long, ClientTransaction> sortMap = new TreeMap<>();
-      for (ClientID clientID : this.permNodeIDs) {
-        List<IPlatformPersistence.SequenceTuple> transactions = null;
-        try {
-          transactions = this.storageManager.loadSequence(clientID.toLong());
-        } catch (IOException e) {
-          Assert.fail(e.getLocalizedMessage());
-        }
-        if (transactions != null) {
-          for (IPlatformPersistence.SequenceTuple tuple : transactions) {
-            ClientTransaction transaction = new ClientTransaction();
-            transaction.clientID = clientID.toLong();
-            transaction.localTransactionID = tuple.localSequenceID;
-            transaction.globalTransactionID = tuple.globalSequenceID;
-            sortMap.put(tuple.globalSequenceID, transaction);
+  private Map<Long, TransactionSequence> buildReplayViewIfNecessary() {
+    Map<Long, TransactionSequence> view = this.replayView;
+    if (null == view) {
+      long stamp = lock.writeLock();
+      try {
+        view = this.replayView;
+        if (null == view) {
+          view = new HashMap<>();
+          long last = 0L;
+          for (ClientID clientID : this.permNodeIDs) {
+            List<IPlatformPersistence.SequenceTuple> transactions = null;
+            try {
+              transactions = this.storageManager.loadSequence(clientID.toLong());
+            } catch (IOException e) {
+              Assert.fail(e.getLocalizedMessage());
+            }
+            if (transactions != null) {
+              TransactionSequence sequence = new TransactionSequence();
+              for (IPlatformPersistence.SequenceTuple tuple : transactions) {
+                sequence.add(tuple.localSequenceID, tuple.globalSequenceID);
+              }
+              last = Math.max(last, sequence.lastGlobal());
+              view.put(clientID.toLong(), sequence);
+            }
           }
-        }
-      }
-      for (List<ClientTransaction> all : this.fastSequenceCache.values()) {
-        if (all != null) {
-          for (ClientTransaction t : all) {
-            sortMap.put(t.globalTransactionID, t);
+          for (Map.Entry<ClientID, TransactionSequence> entry : this.fastSequenceCache.entrySet()) {
+            TransactionSequence sequence = entry.getValue().copy();
+            last = Math.max(last, sequence.lastGlobal());
+            view.put(entry.getKey().toLong(), sequence);
           }
+          this.replayView = view;
+          // no update can run while the write lock is held
+          this.receivedTransactionCount.set(last);
         }
+      } finally {
+        lock.unlockWrite(stamp);
       }
-      globalList = Collections.unmodifiableList(new ArrayList<>(sortMap.values()));
-      receivedTransactionCount = !sortMap.isEmpty() ? sortMap.lastKey() : 0L;
     }
-    return globalList;
+    return view;
   }
 
   /**
@@ -221,18 +200,15 @@ public class TransactionOrderPersistor {
    * Returns the index or -1 if it isn't known.
    */
   public int getIndexToReplay(ClientID source, TransactionID transaction) {
-    long sourceID = source.toLong();
-    long transactionID = transaction.toLong();
-    
-    int index = -1;
-    List<ClientTransaction> list = buildGlobalListIfNecessary();
-    int seek = 0;
-    for (ClientTransaction oneTransaction : list) {
-      if ((oneTransaction.clientID == sourceID) && (oneTransaction.localTransactionID == transactionID)) {
-        index = seek;
-        break;
-      }
-      seek += 1;
+    Map<Long, TransactionSequence> view = buildReplayViewIfNecessary();
+    TransactionSequence sequence = view.get(source.toLong());
+    long globalID = (sequence != null) ? sequence.globalFor(transaction.toLong()) : -1L;
+    if (globalID < 0) {
+      return -1;
+    }
+    int index = 0;
+    for (TransactionSequence oneSequence : view.values()) {
+      index += oneSequence.countBefore(globalID);
     }
     return index;
   }
@@ -240,58 +216,67 @@ public class TransactionOrderPersistor {
   /**
    * Clears all internal state.
    */
-  public synchronized  void clearAllRecords() {
-    this.globalList = null;
-    for (ClientID nodeID : this.permNodeIDs) {
-      try {
-        this.storageManager.deleteSequence(nodeID.toLong());
-      } catch (IOException e) {
-        Assert.fail(e.getLocalizedMessage());
+  public void clearAllRecords() {
+    long stamp = lock.writeLock();
+    try {
+      this.replayView = null;
+      for (ClientID nodeID : this.permNodeIDs) {
+        try {
+          this.storageManager.deleteSequence(nodeID.toLong());
+        } catch (IOException e) {
+          Assert.fail(e.getLocalizedMessage());
+        }
       }
+      this.fastSequenceCache.clear();
+    } finally {
+      lock.unlockWrite(stamp);
     }
-    this.fastSequenceCache.clear();
   }
 
   /**
    * @return The number of transactions which have been observed by the persistor (NOT the number persisted).
    */
   public long getReceivedTransactionCount() {
-    return this.receivedTransactionCount;
+    return this.receivedTransactionCount.get();
   }
   
-  public synchronized Map<String, Object> reportStateToMap(Map<String, Object> map) {
+  public Map<String, Object> reportStateToMap(Map<String, Object> map) {
     map.put("className", this.getClass().getName());
     map.put("receivedTransactions", getReceivedTransactionCount());
-    if(this.permNodeIDs != null && storageManager != null) {
-      Map<String, Object> clientMap = new LinkedHashMap<>();
-      map.put("permanentClients", clientMap);
-      for (ClientID clientNodeID : permNodeIDs) {
-        List<IPlatformPersistence.SequenceTuple> transactions = null;
-        try {
-          transactions = this.storageManager.loadSequence(clientNodeID.toLong());
-        } catch (IOException e) {
-          Assert.fail(e.getLocalizedMessage());
-        }
-        List<String> trans = new ArrayList<>();
-        if (transactions != null) {
-          for (IPlatformPersistence.SequenceTuple transaction : transactions) {
-            trans.add("Global seq Id = " + transaction.globalSequenceID + ", local seq id = " + transaction.localSequenceID);
+    long stamp = lock.writeLock();
+    try {
+      if(this.permNodeIDs != null && storageManager != null) {
+        Map<String, Object> clientMap = new LinkedHashMap<>();
+        map.put("permanentClients", clientMap);
+        for (ClientID clientNodeID : permNodeIDs) {
+          List<IPlatformPersistence.SequenceTuple> transactions = null;
+          try {
+            transactions = this.storageManager.loadSequence(clientNodeID.toLong());
+          } catch (IOException e) {
+            Assert.fail(e.getLocalizedMessage());
+          }
+          List<String> trans = new ArrayList<>();
+          if (transactions != null) {
+            for (IPlatformPersistence.SequenceTuple transaction : transactions) {
+              trans.add("Global seq Id = " + transaction.globalSequenceID + ", local seq id = " + transaction.localSequenceID);
+            }
           }
+          clientMap.put(clientNodeID.toString(), trans);
         }
-        clientMap.put(clientNodeID.toString(), trans);
       }
-    }
 
-    Map<String, Object> clientMap = new LinkedHashMap<>();
-    map.put("regularClients", clientMap);
-    for (Map.Entry<ClientID, List<ClientTransaction>> entry : fastSequenceCache.entrySet()) {
-      List<String> trans = new ArrayList<>();
-      if (entry.getValue() != null) {
+      Map<String, Object> clientMap = new LinkedHashMap<>();
+      map.put("regularClients", clientMap);
+      for (Map.Entry<ClientID, TransactionSequence> entry : fastSequenceCache.entrySet()) {
+        List<String> trans = new ArrayList<>();
+        TransactionSequence sequence = entry.getValue();
         clientMap.put(entry.getKey().toString(), trans);
-        for (ClientTransaction transaction : entry.getValue()) {
-          trans.add("Global seq Id = " + transaction.globalTransactionID + ", local seq id = " + transaction.localTransactionID);
+        for (int x = 0; x < sequence.size(); x++) {
+          trans.add("Global seq Id = " + sequence.globalAt(x) + ", local seq id = " + sequence.localAt(x));
         }
       }
+    } finally {
+      lock.unlockWrite(stamp);
     }
     return map;
   }
@@ -0,0 +1,167 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.util.Arrays;
+
+/**
+ * Ring of (local, global) transaction id pairs for one client, kept in primitive arrays so that
+ * appending and trimming does not allocate in the steady state.  Not thread safe.
+ */
+final class TransactionSequence {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] local;
+  private long[] global;
+  private int head;
+  private int size;
+  // true while global ids only ever increased, which allows binary searches
+  private boolean ordered = true;
+
+  TransactionSequence() {
+    this(INITIAL_CAPACITY);
+  }
+
+  private TransactionSequence(int capacity) {
+    this.local = new long[capacity];
+    this.global = new long[capacity];
+  }
+
+  int size() {
+    return size;
+  }
+
+  long localAt(int index) {
+    return local[slot(index)];
+  }
+
+  long globalAt(int index) {
+    return global[slot(index)];
+  }
+
+  /**
+   * Drop the leading entries older than the oldest transaction the client still has outstanding.
+   * Sequences are always updated in an increasing fashion so trimming stops at the first entry kept.
+   */
+  void trimBefore(long oldestLocal) {
+    while (size > 0 && local[head] < oldestLocal) {
+      head = (head + 1) & (local.length - 1);
+      size -= 1;
+    }
+  }
+
+  void add(long localID, long globalID) {
+    if (size == local.length) {
+      grow();
+    }
+    if (size > 0 && globalAt(size - 1) >= globalID) {
+      ordered = false;
+    }
+    int slot = slot(size);
+    local[slot] = localID;
+    global[slot] = globalID;
+    size += 1;
+  }
+
+  void clear() {
+    head = 0;
+    size = 0;
+    ordered = true;
+  }
+
+  /**
+   * @return the global id recorded for the local transaction or -1 if it is not in the sequence
+   */
+  long globalFor(long localID) {
+    for (int x = 0; x < size; x++) {
+      if (localAt(x) == localID) {
+        return globalAt(x);
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * @return the number of entries ordered before the given global id
+   */
+  int countBefore(long globalID) {
+    if (ordered) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (globalAt(mid) < globalID) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    } else {
+      int count = 0;
+      for (int x = 0; x < size; x++) {
+        if (globalAt(x) < globalID) {
+          count += 1;
+        }
+      }
+      return count;
+    }
+  }
+
+  long lastGlobal() {
+    long max = 0L;
+    for (int x = 0; x < size; x++) {
+      max = Math.max(max, globalAt(x));
+    }
+    return max;
+  }
+
+  TransactionSequence copy() {
+    TransactionSequence copy = new TransactionSequence(local.length);
+    for (int x = 0; x < size; x++) {
+      copy.add(localAt(x), globalAt(x));
+    }
+    return copy;
+  }
+
+  private int slot(int index) {
+    return (head + index) & (local.length - 1);
+  }
+
+  private void grow() {
+    long[] newLocal = new long[local.length << 1];
+    long[] newGlobal = new long[global.length << 1];
+    for (int x = 0; x < size; x++) {
+      newLocal[x] = localAt(x);
+      newGlobal[x] = globalAt(x);
+    }
+    local = newLocal;
+    global = newGlobal;
+    head = 0;
+  }
+
+  @Override
+  public String toString() {
+    long[] pairs = new long[size * 2];
+    for (int x = 0; x < size; x++) {
+      pairs[x * 2] = localAt(x);
+      pairs[x * 2 + 1] = globalAt(x);
+    }
+    return "TransactionSequence{" + Arrays.toString(pairs) + '}';
+  }
+}
@@ -20,6 +20,7 @@ package com.tc.stats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tc.async.api.StageManager;
 import com.tc.management.TerracottaManagement;
 import com.tc.net.core.TCConnectionManager;
 import com.tc.net.groups.GroupManager;
@@ -39,6 +40,7 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -88,6 +90,7 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   private final ConnectionPolicy                       connectionPolicy;
   private final VoltronMessageHandler               messageHandler;
   private final VoltronMessageSink                  messageSink;
+  private final StageManager                        stageManager;
   
   private volatile int jmxRemotePort = DEFAULT_JMX_REMOTE_PORT;
   private volatile JMXConnectorServer jmxConnectorServer;
@@ -103,6 +106,7 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     this.connectionPolicy = managementContext.getConnectionPolicy();
     this.messageHandler = managementContext.getVoltronMessageHandler();
     this.messageSink = managementContext.getVoltronMessageSink();
+    this.stageManager = managementContext.getStageManager();
     this.connections = managementContext.getConnectionManager();
     this.group = configContext.getL2Coordinator().getGroupManager();
     // add various listeners (do this before the setupXXX() methods below so we don't ever miss anything)
@@ -506,4 +510,9 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   public boolean isAlwaysHydrate() {
     return this.messageSink.isAlwaysHydrate();
   }
+
+  @Override
+  public Map<String, ?> getStageLatencies() {
+    return stageManager == null ? Collections.emptyMap() : stageManager.getLatencies();
+  }
 }
@@ -88,4 +88,8 @@ public interface DSOMBean extends TerracottaMBean {
   void setAlwaysHydrate(boolean hydrate);
   
   boolean isAlwaysHydrate();
+  /**
+   * Queue wait and service time percentiles per stage along with the busiest scheduling keys of multi-threaded stages.
+   */
+  Map<String, ?> getStageLatencies();
 }
@@ -116,6 +116,45 @@ public class ClientEntityStateManagerImplTest {
     assertTrue(verifyNoReferences(new FetchID(1)));
   }
 
+  @Test
+  public void testIndexesFollowConcurrentChanges() throws Exception {
+    FetchID shared = new FetchID(1);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      ClientID client = new ClientID(t);
+      threads[t] = new Thread(() -> {
+        for (int x = 1; x <= 1000; x++) {
+          ClientDescriptorImpl cd = new ClientDescriptorImpl(client, new ClientInstanceID(x));
+          clientEntityStateManager.addReference(cd, shared);
+          clientEntityStateManager.addReference(cd, new FetchID(x % 3 + 2));
+          if (x % 2 == 0) {
+            clientEntityStateManager.removeReference(cd);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    // every add of the shared entity was replaced by another entity
+    assertTrue(verifyNoReferences(shared));
+    assertEquals(3, clientEntityStateManager.clientDisconnected(new ClientID(0)).size());
+    assertEquals(167, clientEntityStateManager.clientDisconnectedFromEntity(new ClientID(1), new FetchID(2)).size());
+    assertTrue(clientEntityStateManager.verifyNoClientReferences(new ClientID(4)));
+
+    for (int x = 1; x <= 1000; x += 2) {
+      for (int t = 0; t < threads.length; t++) {
+        assertTrue(removeReference(new ClientDescriptorImpl(new ClientID(t), new ClientInstanceID(x))));
+      }
+    }
+    for (int x = 2; x <= 4; x++) {
+      assertTrue(verifyNoReferences(new FetchID(x)));
+    }
+    assertTrue(clientEntityStateManager.verifyNoClientReferences(new ClientID(0)));
+    assertTrue(clientEntityStateManager.clientDisconnected(new ClientID(0)).isEmpty());
+  }
+
   private boolean addReference(ClientDescriptorImpl clientID, FetchID descriptor) {
     // This only fails by asserting.
     boolean didSucceed = false;
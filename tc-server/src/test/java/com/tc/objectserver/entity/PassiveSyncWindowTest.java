@@ -0,0 +1,150 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.entity;
+
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.mockito.InOrder;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class PassiveSyncWindowTest {
+
+  @Test
+  public void testSerialWaitsForEach() {
+    PassiveSyncWindow window = PassiveSyncWindow.serial();
+    ActivePassiveAckWaiter start = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter payload = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter key = mock(ActivePassiveAckWaiter.class);
+    window.entityStarted(start);
+    verify(start).waitForCompleted();
+    window.payloadSent(payload, 10);
+    verify(payload).waitForReceived();
+    window.keyEnded(key);
+    verify(key).waitForCompleted();
+  }
+
+  @Test
+  public void testWindowWaitsForOldest() {
+    PassiveSyncWindow window = new PassiveSyncWindow(2);
+    ActivePassiveAckWaiter start = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter key1 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter key2 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter end = mock(ActivePassiveAckWaiter.class);
+    window.entityStarted(start);
+    window.keyEnded(key1);
+    verify(start, never()).waitForCompleted();
+    window.keyEnded(key2);
+    verify(start).waitForCompleted();
+    verify(key1, never()).waitForCompleted();
+    window.entityEnded(end);
+    verify(key1).waitForCompleted();
+    verify(key2, never()).waitForCompleted();
+    window.drain();
+    InOrder order = inOrder(key2, end);
+    order.verify(key2).waitForCompleted();
+    order.verify(end).waitForCompleted();
+  }
+
+  @Test
+  public void testPayloadsOnlyWaitForReceived() {
+    PassiveSyncWindow window = new PassiveSyncWindow(1);
+    ActivePassiveAckWaiter p1 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter p2 = mock(ActivePassiveAckWaiter.class);
+    window.payloadSent(p1, 100);
+    window.payloadSent(p2, 100);
+    verify(p1).waitForReceived();
+    verify(p1, never()).waitForCompleted();
+    verify(p2, never()).waitForReceived();
+    window.drain();
+    verify(p2).waitForReceived();
+    Map<String, Object> state = window.getStateMap();
+    assertEquals(2L, state.get("payloads"));
+    assertEquals(200L, state.get("payloadBytes"));
+  }
+
+  @Test
+  public void testPayloadBytesWaitForApply() {
+    PassiveSyncWindow window = new PassiveSyncWindow(8, 250 + 2 * PassiveSyncWindow.PAYLOAD_OVERHEAD);
+    ActivePassiveAckWaiter p1 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter p2 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter p3 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter big = mock(ActivePassiveAckWaiter.class);
+    window.payloadSent(p1, 100);
+    window.payloadSent(p2, 100);
+    verify(p1, never()).waitForCompleted();
+    // the third payload exceeds the budget so the oldest must be applied first
+    window.payloadSent(p3, 100);
+    verify(p1).waitForCompleted();
+    verify(p2, never()).waitForCompleted();
+    // a payload larger than the whole budget waits for everything before it but goes through itself
+    window.payloadSent(big, 1000);
+    verify(p2).waitForCompleted();
+    verify(p3).waitForCompleted();
+    verify(big, never()).waitForCompleted();
+    assertEquals(1000L + PassiveSyncWindow.PAYLOAD_OVERHEAD, window.getStateMap().get("pendingApplyBytes"));
+    window.drain();
+    verify(big).waitForCompleted();
+    assertEquals(0L, window.getStateMap().get("pendingApplyBytes"));
+  }
+
+  @Test
+  public void testAppliedPayloadsLeaveTheBudget() {
+    PassiveSyncWindow window = new PassiveSyncWindow(8, 250 + 2 * PassiveSyncWindow.PAYLOAD_OVERHEAD);
+    ActivePassiveAckWaiter p1 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter p2 = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter p3 = mock(ActivePassiveAckWaiter.class);
+    window.payloadSent(p1, 100);
+    window.payloadSent(p2, 100);
+    when(p1.isCompleted()).thenReturn(true);
+    // the oldest payload was already applied so it no longer counts and nothing waits
+    window.payloadSent(p3, 100);
+    verify(p1, never()).waitForCompleted();
+    verify(p2, never()).waitForCompleted();
+    assertEquals(200L + 2 * PassiveSyncWindow.PAYLOAD_OVERHEAD, window.getStateMap().get("pendingApplyBytes"));
+    when(p2.isCompleted()).thenReturn(true);
+    when(p3.isCompleted()).thenReturn(true);
+    assertEquals(0L, window.getStateMap().get("pendingApplyBytes"));
+  }
+
+  @Test
+  public void testProgressCountsAcks() {
+    PassiveSyncWindow window = new PassiveSyncWindow(4);
+    window.setEntityCount(1);
+    ActivePassiveAckWaiter key = mock(ActivePassiveAckWaiter.class);
+    ActivePassiveAckWaiter end = mock(ActivePassiveAckWaiter.class);
+    doAnswer(inv -> {
+      ((Runnable) inv.getArgument(0)).run();
+      return null;
+    }).when(key).runWhenCompleted(any());
+    window.keyEnded(key);
+    window.entityEnded(end);
+    Map<String, Object> state = window.getStateMap();
+    assertEquals(1L, state.get("keysSent"));
+    assertEquals(1L, state.get("keysAcked"));
+    assertEquals(1L, state.get("entitiesSent"));
+    assertEquals(0L, state.get("entitiesAcked"));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class AdaptiveBatchWindowTest {
+  private static final long SEND = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testGrowsWhileSendTimeIsSteady() {
+    AdaptiveBatchWindow window = new AdaptiveBatchWindow(1, 8, 1024, Long.MAX_VALUE);
+    assertEquals(1, window.getWindow());
+    assertEquals(AdaptiveBatchWindow.MINIMUM_BATCH_SIZE, window.getBatchLimit());
+    long now = 0;
+    for (int x = 0; x < 200; x++) {
+      now += SEND;
+      window.sample(now, SEND, window.getBatchLimit(), 1024);
+    }
+    assertEquals(8, window.getWindow());
+    assertEquals(1024, window.getBatchLimit());
+  }
+
+  @Test
+  public void testSmallBatchesKeepLimitLow() {
+    AdaptiveBatchWindow window = new AdaptiveBatchWindow(1, 8, 1024, Long.MAX_VALUE);
+    long now = 0;
+    for (int x = 0; x < 200; x++) {
+      now += SEND;
+      window.sample(now, SEND, 1, 100);
+    }
+    assertEquals(AdaptiveBatchWindow.MINIMUM_BATCH_SIZE, window.getBatchLimit());
+  }
+
+  @Test
+  public void testHalvesWhenQueueing() {
+    AdaptiveBatchWindow window = new AdaptiveBatchWindow(2, 16, 1024, Long.MAX_VALUE);
+    long now = 0;
+    for (int x = 0; x < 500; x++) {
+      now += SEND;
+      window.sample(now, SEND, window.getBatchLimit(), 1024);
+    }
+    assertEquals(16, window.getWindow());
+    now += SEND;
+    window.sample(now, SEND * 10, 1, 1024);
+    assertEquals(8, window.getWindow());
+    assertEquals(512, window.getBatchLimit());
+    // a second inflated sample within the same send time does not decrease again
+    window.sample(now + 1, SEND * 10, 1, 1024);
+    assertEquals(8, window.getWindow());
+    // never below the floor
+    for (int x = 0; x < 20; x++) {
+      now += SEND * 100;
+      window.sample(now, SEND * 10, 1, 1024);
+    }
+    assertEquals(2, window.getWindow());
+    assertEquals(AdaptiveBatchWindow.MINIMUM_BATCH_SIZE, window.getBatchLimit());
+    assertTrue((Long) window.getStateMap().get("decreases") > 1L);
+  }
+
+  @Test
+  public void testBytesLimitFollowsBandwidth() {
+    AdaptiveBatchWindow window = new AdaptiveBatchWindow(1, 8, 1024, 16 * 1024 * 1024);
+    assertEquals(AdaptiveBatchWindow.MINIMUM_BATCH_BYTES, window.getBatchBytesLimit());
+    long now = 0;
+    for (int x = 0; x < 200; x++) {
+      now += SEND;
+      window.sample(now, SEND, 1, 1024 * 1024);
+    }
+    // one megabyte per send time
+    long limit = window.getBatchBytesLimit();
+    assertTrue(Long.toString(limit), limit > 900 * 1024 && limit < 1100 * 1024);
+  }
+}
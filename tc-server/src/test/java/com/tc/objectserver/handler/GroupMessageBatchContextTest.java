@@ -0,0 +1,84 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.l2.msg.IBatchableGroupMessage;
+import com.tc.net.ServerID;
+import com.tc.net.groups.AbstractGroupMessage;
+import com.tc.net.groups.GroupException;
+import com.tc.net.groups.GroupManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class GroupMessageBatchContextTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailedBatchDoesNotTakeTheSampleOfAnEarlierOne() throws Exception {
+    GroupManager<AbstractGroupMessage> group = mock(GroupManager.class);
+    ServerID target = new ServerID("passive", new byte[] {1});
+    // the first batch is full so its sample doubles the batch limit, the second is a single message
+    IBatchableGroupMessage<Integer> full = batch(AdaptiveBatchWindow.MINIMUM_BATCH_SIZE);
+    IBatchableGroupMessage<Integer> single = batch(1);
+    List<Runnable> callbacks = new ArrayList<>();
+    doAnswer(invocation -> {
+      callbacks.add(invocation.getArgument(2));
+      return null;
+    }).when(group).sendToWithSentCallback(eq(target), eq(full.asAbstractGroupMessage()), any(Runnable.class));
+    doThrow(new GroupException("closed")).when(group).sendToWithSentCallback(eq(target), eq(single.asAbstractGroupMessage()), any(Runnable.class));
+
+    GroupMessageBatchContext<IBatchableGroupMessage<Integer>, Integer> context =
+        new GroupMessageBatchContext<>(i -> (i == 0) ? full : single, group, target, 1024, 2, 8, null);
+    context.batchMessage(0);
+    context.flushBatch();
+    context.batchMessage(1);
+    try {
+      context.flushBatch();
+      fail();
+    } catch (GroupException expected) {
+      // the second batch never got a sent callback
+    }
+    assertEquals(1, callbacks.size());
+    // the callback of the first batch must be paired with the first batch, not with the failed one
+    callbacks.get(0).run();
+    Map<String, Object> adaptive = (Map<String, Object>) context.getStateMap().get("adaptive");
+    assertEquals(1L, adaptive.get("samples"));
+    assertEquals(AdaptiveBatchWindow.MINIMUM_BATCH_SIZE * 2, adaptive.get("batchLimit"));
+    assertEquals(0, context.getStateMap().get("messagesInFlight"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static IBatchableGroupMessage<Integer> batch(int size) {
+    IBatchableGroupMessage<Integer> message = mock(IBatchableGroupMessage.class);
+    AbstractGroupMessage wire = mock(AbstractGroupMessage.class);
+    when(message.getBatchSize()).thenReturn(size);
+    when(message.asAbstractGroupMessage()).thenReturn(wire);
+    return message;
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.net.ClientID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class InvokeCreditLedgerTest {
+
+  @Test
+  public void testClientWithoutGrantIsNeverWithin() {
+    InvokeCreditLedger ledger = new InvokeCreditLedger();
+    ClientID client = new ClientID(1);
+    assertFalse(ledger.invoked(client));
+    assertFalse(ledger.isWithinGrant(client));
+  }
+
+  @Test
+  public void testOverdrawnClientIsOverGrantUntilCompleted() {
+    InvokeCreditLedger ledger = new InvokeCreditLedger();
+    ClientID client = new ClientID(1);
+    ledger.open(client, 2);
+    assertTrue(ledger.invoked(client));
+    assertTrue(ledger.invoked(client));
+    assertFalse(ledger.invoked(client));
+    assertFalse(ledger.isWithinGrant(client));
+    assertEquals(1, ledger.getStateMap().get("clientsOverGrant"));
+    ledger.completed(client);
+    assertTrue(ledger.isWithinGrant(client));
+    assertEquals(1L, ledger.getStateMap().get("invokesOverGrant"));
+  }
+
+  @Test
+  public void testResentCompletionsDoNotGoNegative() {
+    InvokeCreditLedger ledger = new InvokeCreditLedger();
+    ClientID client = new ClientID(1);
+    ledger.open(client, 1);
+    ledger.completed(client);
+    ledger.completed(client);
+    assertTrue(ledger.invoked(client));
+    assertFalse(ledger.invoked(client));
+    ledger.close(client);
+    assertEquals(0, ledger.getStateMap().get("clients"));
+  }
+}
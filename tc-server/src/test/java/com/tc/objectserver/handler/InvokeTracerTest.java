@@ -0,0 +1,56 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.object.StatType;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InvokeTracerTest {
+
+  @Test
+  public void testSampling() {
+    assertTrue(new InvokeTracer(1.0).sample());
+    assertFalse(new InvokeTracer(0).sample());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRecordPerEntityClass() {
+    InvokeTracer tracer = new InvokeTracer(1.0);
+    long[] stats = new long[StatType.END.serverSpot()];
+    stats[StatType.SERVER_ADD.serverSpot()] = 1_000;
+    stats[StatType.SERVER_SCHEDULE.serverSpot()] = 3_000;
+    stats[StatType.SERVER_BEGININVOKE.serverSpot()] = 5_000;
+    stats[StatType.SERVER_ENDINVOKE.serverSpot()] = 9_000;
+    tracer.record("entity.Type", stats);
+
+    Map<String, Object> traces = (Map<String, Object>) tracer.getStateMap().get("invokeTraces");
+    Map<String, Object> entities = (Map<String, Object>) traces.get("entities");
+    Map<String, Object> phases = (Map<String, Object>) entities.get("entity.Type");
+    Map<String, Object> invoke = (Map<String, Object>) phases.get("SERVER:begin->SERVER:end");
+    assertEquals(1L, invoke.get("count"));
+    // never replicated so the phases around replication are left out
+    Map<String, Object> replicate = (Map<String, Object>) phases.get("SERVER:schedule->SERVER:replicated");
+    assertEquals(0L, replicate.get("count"));
+  }
+}
@@ -18,7 +18,11 @@
 package com.tc.objectserver.handler;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.After;
@@ -51,13 +55,17 @@ import com.tc.object.FetchID;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.object.net.NoSuchChannelException;
 import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.api.EntityManager;
+import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.api.ServerEntityAction;
+import com.tc.objectserver.api.ServerEntityRequest;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.core.impl.ManagementTopologyEventCollector;
 import com.tc.objectserver.entity.ClientEntityStateManager;
 import com.tc.objectserver.entity.ClientEntityStateManagerImpl;
 import com.tc.objectserver.entity.EntityManagerImpl;
 import com.tc.objectserver.entity.LocalPipelineFlushMessage;
+import com.tc.objectserver.entity.MessagePayload;
 import com.tc.objectserver.entity.PassiveReplicationBroker;
 import com.tc.objectserver.entity.RequestProcessor;
 import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
@@ -65,18 +73,34 @@ import com.tc.objectserver.persistence.EntityData;
 import com.tc.objectserver.persistence.EntityPersistor;
 import com.tc.objectserver.persistence.Persistor;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.services.InternalServiceRegistry;
 import com.tc.services.TerracottaServiceProviderRegistry;
 import com.tc.util.Assert;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
 import org.terracotta.monitoring.IMonitoringProducer;
+import org.terracotta.server.Server;
+import org.terracotta.server.ServerEnv;
 
 
 public class ProcessTransactionHandlerTest {
@@ -198,6 +222,65 @@ public class ProcessTransactionHandlerTest {
     this.processTransactionHandler.loadExistingEntities();
   }
   
+  @Test
+  public void testLoadExistingInParallel() throws Exception {
+    List<EntityData.Value> persisted = new ArrayList<>();
+    for (int x = 1; x <= 16; x++) {
+      EntityData.Value data = new EntityData.Value();
+      data.className = TEST_ENTITY_CLASS_NAME;
+      data.version = 1L;
+      // persisted out of order, the load sorts them
+      data.consumerID = 17 - x;
+      data.entityName = "foo" + x;
+      data.configuration = new byte[0];
+      persisted.add(data);
+    }
+    when(this.entityPersistor.loadEntityData()).thenReturn(persisted);
+
+    this.processTransactionHandler.loadExistingEntities(4);
+    for (int x = 1; x <= 16; x++) {
+      EntityID entityID = new EntityID(TEST_ENTITY_CLASS_NAME, "foo" + x);
+      Assert.assertTrue(entityManager.getEntity(EntityDescriptor.createDescriptorForLifecycle(entityID, 1L)).isPresent());
+    }
+
+    // runs of another type in between, a later entity of another type may depend on every earlier one
+    persisted.clear();
+    for (int x = 1; x <= 24; x++) {
+      EntityData.Value data = new EntityData.Value();
+      data.className = (x > 8 && x <= 16) ? "com.tc.objectserver.testentity.OtherEntity" : TEST_ENTITY_CLASS_NAME;
+      data.version = 1L;
+      data.consumerID = x;
+      data.entityName = "bar" + x;
+      data.configuration = new byte[0];
+      persisted.add(data);
+    }
+    List<EntityData.Value> loaded = Collections.synchronizedList(new ArrayList<>());
+    EntityManager recording = mock(EntityManager.class);
+    doAnswer(invocation -> {
+      long consumerID = invocation.getArgument(2);
+      EntityData.Value data = persisted.get((int) consumerID - 1);
+      // hold some siblings back so a broken barrier would let the next type overtake them
+      if (consumerID % 3 == 0) {
+        Thread.sleep(20);
+      }
+      loaded.add(data);
+      return null;
+    }).when(recording).loadExisting(any(), anyLong(), anyLong(), anyBoolean(), any());
+    Persistor persistor = mock(Persistor.class);
+    when(persistor.getEntityPersistor()).thenReturn(this.entityPersistor);
+    new ProcessTransactionHandler(persistor, mock(DSOChannelManager.class), recording).loadExistingEntities(4);
+
+    Assert.assertEquals(persisted.size(), loaded.size());
+    for (int x = 0; x < loaded.size(); x++) {
+      EntityData.Value later = loaded.get(x);
+      for (EntityData.Value earlier : persisted) {
+        if (earlier.consumerID < later.consumerID && !earlier.className.equals(later.className)) {
+          Assert.assertTrue(earlier.entityName + " loaded after " + later.entityName, loaded.subList(0, x).contains(earlier));
+        }
+      }
+    }
+  }
+
   @Test
   public void testFailOnLoadVersionMismatch() throws Exception {
     EntityData.Value data = new EntityData.Value();
@@ -289,6 +372,118 @@ public class ProcessTransactionHandlerTest {
   }
 
 
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testParallelResendReplay() throws Exception {
+    Server previous = ServerEnv.getServer();
+    Server server = mock(Server.class);
+    when(server.isActive()).thenReturn(true);
+    ServerEnv.setDefaultServer(server);
+    try {
+      replayResendsInParallel();
+    } finally {
+      ServerEnv.setDefaultServer(previous);
+    }
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private void replayResendsInParallel() throws Exception {
+
+    // entity 1 decodes every payload, the codec of entity 2 fails
+    Map<Long, EntityMessage> decoded = new ConcurrentHashMap<>();
+    Set<String> decodeThreads = ConcurrentHashMap.newKeySet();
+    MessageCodec goodCodec = mock(MessageCodec.class);
+    when(goodCodec.decodeMessage(any())).thenAnswer(invocation -> {
+      decodeThreads.add(Thread.currentThread().getName());
+      byte[] raw = invocation.getArgument(0);
+      return decoded.get((long) raw[0]);
+    });
+    MessageCodecException codecFailure = new MessageCodecException("bad payload", null);
+    MessageCodec badCodec = mock(MessageCodec.class);
+    when(badCodec.decodeMessage(any())).thenThrow(codecFailure);
+
+    List<Long> scheduled = new ArrayList<>();
+    List<String> failures = new ArrayList<>();
+    ManagedEntity good = mock(ManagedEntity.class);
+    ManagedEntity bad = mock(ManagedEntity.class);
+    doReturn(goodCodec).when(good).getCodec();
+    doReturn(badCodec).when(bad).getCodec();
+    for (ManagedEntity entity : Arrays.asList(good, bad)) {
+      doAnswer(invocation -> {
+        ServerEntityRequest request = invocation.getArgument(0);
+        MessagePayload payload = invocation.getArgument(1);
+        long tid = request.getTransaction().toLong();
+        scheduled.add(tid);
+        if (tid < 100) {
+          // resends arrive decoded, the decoder handed in at schedule time is never used
+          try {
+            EntityMessage message = payload.decodeMessage(raw -> {
+              throw new AssertionError("resend " + tid + " decoded while scheduling");
+            });
+            Assert.assertEquals(decoded.get(tid), message);
+          } catch (MessageCodecException e) {
+            Assert.assertEquals(codecFailure, e);
+            failures.add(Long.toString(tid));
+          }
+        }
+        return null;
+      }).when(entity).addRequestMessage(any(), any(), any());
+    }
+    EntityManager recording = mock(EntityManager.class);
+    when(recording.getEntity(any())).thenAnswer(invocation -> {
+      EntityDescriptor descriptor = invocation.getArgument(0);
+      return Optional.of(descriptor.getFetchID().toLong() == 1L ? good : bad);
+    });
+
+    // already ordered resends replay by their persisted index, ahead of the new ones in arrival order
+    long[] arrival = {1, 2, 3, 4, 5, 6};
+    int[] index = {2, -1, 0, -1, 1, -1};
+    long[] fetch = {1, 1, 2, 1, 1, 2};
+    Map<Long, Integer> indexes = new HashMap<>();
+    for (int x = 0; x < arrival.length; x++) {
+      indexes.put(arrival[x], index[x]);
+      decoded.put(arrival[x], mock(EntityMessage.class));
+    }
+    when(this.transactionOrderPersistor.getIndexToReplay(any(), any())).thenAnswer(invocation -> indexes.get(((TransactionID) invocation.getArgument(1)).toLong()));
+    Persistor persistor = mock(Persistor.class);
+    when(persistor.getEntityPersistor()).thenReturn(this.entityPersistor);
+    when(persistor.getTransactionOrderPersistor()).thenReturn(this.transactionOrderPersistor);
+
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.RECONNECT_RESEND_PARALLELISM, "4");
+    ProcessTransactionHandler handler;
+    try {
+      handler = new ProcessTransactionHandler(persistor, mock(DSOChannelManager.class), recording);
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.RECONNECT_RESEND_PARALLELISM, "1");
+    }
+    ServerConfigurationContext cxt = mock(ServerConfigurationContext.class);
+    when(cxt.getStage(anyString(), any(Class.class))).thenReturn(mock(Stage.class));
+    when(cxt.getClientHandshakeManager()).thenReturn(mock(ServerClientHandshakeManager.class));
+    handler.getVoltronMessageHandler().initializeContext(cxt);
+    for (int x = 0; x < arrival.length; x++) {
+      handler.handleResentMessage(createResend(new FetchID(fetch[x]), arrival[x]));
+    }
+    handler.reconnectComplete();
+    // the first event replays the resends ahead of itself
+    handler.getVoltronMessageHandler().handleEvent(createResend(new FetchID(1), 100));
+
+    Assert.assertEquals(Arrays.asList(3L, 5L, 1L, 2L, 4L, 6L, 100L), scheduled);
+    Assert.assertEquals(Arrays.asList("3", "6"), failures);
+    // each payload was decoded once, off the ordering thread
+    verify(goodCodec, times(4)).decodeMessage(any());
+    verify(badCodec, times(2)).decodeMessage(any());
+    for (String name : decodeThreads) {
+      Assert.assertTrue(name, name.startsWith("ResendDecode-"));
+    }
+  }
+
+  private NetworkVoltronEntityMessage createResend(FetchID fetch, long transaction) {
+    NetworkVoltronEntityMessage request = createMockRequest(VoltronEntityMessage.Type.INVOKE_ACTION, null, new TransactionID(transaction));
+    when(request.getEntityDescriptor()).thenReturn(EntityDescriptor.createDescriptorForInvoke(fetch, new ClientInstanceID(1)));
+    when(request.getExtendedData()).thenReturn(TCByteBufferFactory.wrap(new byte[] {(byte) transaction}));
+    return request;
+  }
+
   /**
    * This is pulled out as its own helper since the mocked EntityIDs aren't .equals() each other so using the same
    * instance gives convenient de facto equality.
@@ -47,6 +47,7 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.api.ResultCapture;
 import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.api.ServerEntityRequest;
+import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.entity.MessagePayload;
 import com.tc.objectserver.entity.PlatformEntity;
 import com.tc.objectserver.entity.SimpleCompletion;
@@ -58,9 +59,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -230,6 +237,125 @@ public class ReplicatedTransactionHandlerTest {
     verify(groupManager, times(2)).sendToWithSentCallback(eq(sid), any(), any());
   }
   
+  @Test
+  public void testPipelinedApplyKeepsKeyOrder() throws Exception {
+    Stage runner = mock(Stage.class);
+    when(runner.getSink()).thenReturn(mock(Sink.class));
+    Persistor persistor = mock(Persistor.class);
+    when(persistor.getEntityPersistor()).thenReturn(this.entityPersistor);
+    when(persistor.getTransactionOrderPersistor()).thenReturn(this.transactionOrderPersistor);
+    ReplicatedTransactionHandler pipelined = new ReplicatedTransactionHandler(stateManager, runner, persistor, this.entityManager, this.groupManager, 4);
+    EntityID eid = new EntityID("foo", "bar");
+    FetchID fetch = new FetchID(1L);
+    ServerID sid = new ServerID("test", "test".getBytes());
+    ManagedEntity entity = mock(ManagedEntity.class);
+    when(entity.getID()).thenReturn(eid);
+    when(this.entityManager.getEntity(any())).thenReturn(Optional.of(entity));
+    Map<Integer, List<Integer>> applied = new ConcurrentHashMap<>();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    Mockito.doAnswer(invocation->{
+      MessagePayload payload = (MessagePayload)invocation.getArguments()[1];
+      applied.computeIfAbsent(payload.getConcurrency(), k->Collections.synchronizedList(new ArrayList<>())).add(payload.getRawPayload()[0] & 0xff);
+      threads.add(Thread.currentThread().getName());
+      ((ResultCapture)invocation.getArguments()[2]).complete(new byte[0]);
+      return null;
+    }).when(entity).addRequestMessage(any(), any(), any());
+    List<SyncReplicationActivity> activities = new ArrayList<>();
+    for (int x = 0; x < 100; x++) {
+      SyncReplicationActivity activity = mock(SyncReplicationActivity.class);
+      when(activity.getConcurrency()).thenReturn(1 + (x % 5));
+      when(activity.getActivityType()).thenReturn(SyncReplicationActivity.ActivityType.INVOKE_ACTION);
+      when(activity.getEntityID()).thenReturn(eid);
+      when(activity.getFetchID()).thenReturn(fetch);
+      when(activity.getOldestTransactionOnClient()).thenReturn(TransactionID.NULL_ID);
+      when(activity.getExtendedData()).thenReturn(TCByteBufferFactory.wrap(new byte[] {(byte) x}));
+      when(activity.getActivityID()).thenReturn(SyncReplicationActivity.ActivityID.getNextID());
+      activities.add(activity);
+    }
+    ReplicationMessage msg = mock(ReplicationMessage.class);
+    when(msg.messageFrom()).thenReturn(sid);
+    when(msg.getActivities()).thenReturn(activities);
+    EventHandler<ReplicationMessage> handler = pipelined.getEventHandler();
+    handler.handleEvent(createReceivedActivity(SyncReplicationActivity.createStartSyncMessage(new SyncReplicationActivity.EntityCreationTuple[0])));
+    handler.handleEvent(createReceivedActivity(SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(new byte[0]))));
+    handler.handleEvent(msg);
+    // destroy drains the workers
+    handler.destroy();
+    int total = 0;
+    for (Map.Entry<Integer, List<Integer>> e : applied.entrySet()) {
+      List<Integer> order = e.getValue();
+      for (int x = 1; x < order.size(); x++) {
+        Assert.assertTrue(order.get(x - 1) < order.get(x));
+      }
+      total += order.size();
+    }
+    Assert.assertEquals(100, total);
+    Assert.assertTrue(threads.stream().allMatch(t->t.contains(ServerConfigurationContext.PASSIVE_REPLICATION_APPLY)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPipelinedReceivedAcksKeepArrivalOrder() throws Exception {
+    Stage runner = mock(Stage.class);
+    when(runner.getSink()).thenReturn(mock(Sink.class));
+    Persistor persistor = mock(Persistor.class);
+    when(persistor.getEntityPersistor()).thenReturn(this.entityPersistor);
+    when(persistor.getTransactionOrderPersistor()).thenReturn(this.transactionOrderPersistor);
+    ReplicatedTransactionHandler pipelined = new ReplicatedTransactionHandler(stateManager, runner, persistor, this.entityManager, this.groupManager, 4);
+    EntityID eid = new EntityID("foo", "bar");
+    FetchID fetch = new FetchID(1L);
+    ServerID sid = new ServerID("test", "test".getBytes());
+    ManagedEntity entity = mock(ManagedEntity.class);
+    when(entity.getID()).thenReturn(eid);
+    when(this.entityManager.getEntity(any())).thenReturn(Optional.of(entity));
+    Mockito.doAnswer(invocation->{
+      MessagePayload payload = (MessagePayload)invocation.getArguments()[1];
+      // one key is slow so the entities receive the others ahead of it
+      if (payload.getConcurrency() == 1) {
+        Thread.sleep(2);
+      }
+      ((ResultCapture)invocation.getArguments()[2]).complete(new byte[0]);
+      return null;
+    }).when(entity).addRequestMessage(any(), any(), any());
+    // the received ack waits on the persisted transaction order right before it goes out
+    List<Integer> acked = Collections.synchronizedList(new ArrayList<>());
+    List<SyncReplicationActivity> activities = new ArrayList<>();
+    for (int x = 0; x < 100; x++) {
+      int index = x;
+      TransactionID txn = new TransactionID(x + 1);
+      Future<Void> ordered = mock(Future.class);
+      when(ordered.get()).thenAnswer(i->{
+        acked.add(index);
+        return null;
+      });
+      when(this.transactionOrderPersistor.updateWithNewMessage(eq(source), eq(txn), any())).thenReturn(ordered);
+      SyncReplicationActivity activity = mock(SyncReplicationActivity.class);
+      when(activity.getConcurrency()).thenReturn(1 + (x % 5));
+      when(activity.getActivityType()).thenReturn(SyncReplicationActivity.ActivityType.INVOKE_ACTION);
+      when(activity.getEntityID()).thenReturn(eid);
+      when(activity.getFetchID()).thenReturn(fetch);
+      when(activity.getSource()).thenReturn(source);
+      when(activity.getTransactionID()).thenReturn(txn);
+      when(activity.getOldestTransactionOnClient()).thenReturn(new TransactionID(1));
+      when(activity.getExtendedData()).thenReturn(TCByteBufferFactory.wrap(new byte[] {(byte) x}));
+      when(activity.getActivityID()).thenReturn(SyncReplicationActivity.ActivityID.getNextID());
+      activities.add(activity);
+    }
+    ReplicationMessage msg = mock(ReplicationMessage.class);
+    when(msg.messageFrom()).thenReturn(sid);
+    when(msg.getActivities()).thenReturn(activities);
+    EventHandler<ReplicationMessage> handler = pipelined.getEventHandler();
+    handler.handleEvent(createReceivedActivity(SyncReplicationActivity.createStartSyncMessage(new SyncReplicationActivity.EntityCreationTuple[0])));
+    handler.handleEvent(createReceivedActivity(SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(new byte[0]))));
+    handler.handleEvent(msg);
+    handler.destroy();
+    List<Integer> expected = new ArrayList<>();
+    for (int x = 0; x < 100; x++) {
+      expected.add(x);
+    }
+    Assert.assertEquals(expected, acked);
+  }
+
   @Test
   public void testDestroy() throws Exception {
     this.rth.getEventHandler().destroy();
@@ -45,6 +45,7 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.function.Supplier;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -157,6 +158,7 @@ public class ServerClientHandshakeManagerTest {
     assertFalse(this.manager.isStarted());
     verify(this.transactionHandler).handleResentMessage(resend);
     verify(this.voltronSink, never()).addToSink(any(LocalPipelineFlushMessage.class));
+    assertEquals("1 of 2 clients reconnected with 0 references and 1 resends.", this.manager.getReconnectProgress());
     
     // This second message will now start the server.
     ClientHandshakeMessage message2 = mock(ClientHandshakeMessage.class);
@@ -169,6 +171,7 @@ public class ServerClientHandshakeManagerTest {
     assertFalse(this.manager.isStarting());
     assertTrue(this.manager.isStarted());
     verify(this.voltronSink).addToSink(any(LocalPipelineFlushMessage.class));
+    assertEquals("2 of 2 clients reconnected with 0 references and 1 resends.", this.manager.getReconnectProgress());
   }
 
   @Test
@@ -247,4 +247,43 @@ public class EntityPersistorTest extends TCTestCase {
       // expected
     }
   }    
+
+  public void testIncrementalReload() throws Exception {
+    NullPlatformPersistentStorage storage = new NullPlatformPersistentStorage();
+    EntityPersistor persistor = new EntityPersistor(storage, true, 4);
+    persistor.addTrackingForClient(client);
+    EntityID keep = new EntityID("test", "keep");
+    EntityID gone = new EntityID("test", "gone");
+    persistor.entityCreated(client, 1L, 0L, keep, 1L, persistor.getNextConsumerID(), true, new byte[0]);
+    persistor.entityCreated(client, 2L, 0L, gone, 1L, persistor.getNextConsumerID(), true, new byte[0]);
+    persistor.entityDestroyed(client, 3L, 0L, gone);
+    persistor.entityReconfigureSucceeded(client, 4L, 0L, keep, 1L, new byte[] {1});
+    long nextConsumer = persistor.getNextConsumerID();
+    // the whole maps are never written in incremental mode
+    Assert.assertNull(storage.loadDataElement("entities_alive.map"));
+
+    EntityPersistor reloaded = new EntityPersistor(storage, true, 4);
+    Assert.assertTrue(reloaded.containsEntity(keep));
+    Assert.assertFalse(reloaded.containsEntity(gone));
+    Assert.assertEquals(1, reloaded.loadEntityData().iterator().next().configuration[0]);
+    Assert.assertEquals(nextConsumer + 1, reloaded.getNextConsumerID());
+    Assert.assertTrue(reloaded.wasEntityDestroyedInJournal(gone, client, 3L));
+  }
+
+  public void testIncrementalMigration() throws Exception {
+    NullPlatformPersistentStorage storage = new NullPlatformPersistentStorage();
+    EntityID eid = new EntityID("test", "test");
+    EntityPersistor legacy = new EntityPersistor(storage, false, 4);
+    legacy.entityCreatedNoJournal(eid, 1L, legacy.getNextConsumerID(), true, new byte[0]);
+
+    EntityPersistor incremental = new EntityPersistor(storage, true, 4);
+    Assert.assertTrue(incremental.containsEntity(eid));
+    Assert.assertNull(storage.loadDataElement("entities_alive.map"));
+    incremental.entityDestroyed(ClientID.NULL_ID, TransactionID.NULL_ID.toLong(), TransactionID.NULL_ID.toLong(), eid);
+
+    EntityPersistor back = new EntityPersistor(storage, false, 4);
+    Assert.assertFalse(back.containsEntity(eid));
+    Assert.assertNull(storage.loadDataElement("entity_persistor.snapshot"));
+    Assert.assertEquals(2L, back.getNextConsumerID());
+  }
 }
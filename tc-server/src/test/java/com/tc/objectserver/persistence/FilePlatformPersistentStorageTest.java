@@ -0,0 +1,131 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terracotta.persistence.IPlatformPersistence.SequenceTuple;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class FilePlatformPersistentStorageTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReloadAfterReopen() throws Exception {
+    Path dir = folder.newFolder().toPath();
+    SequenceLog log = new SequenceLog(dir, 1024 * 1024);
+    FilePlatformPersistentStorage storage = new FilePlatformPersistentStorage(1L, dir.resolve("1"), log);
+    storage.storeDataElement("state/map", "first");
+    storage.storeDataElement("state/map", "second");
+    storage.storeDataElement("gone", "value");
+    storage.storeDataElement("gone", null);
+    List<Future<Void>> syncs = new ArrayList<>();
+    for (long x = 1; x <= 100; x++) {
+      syncs.add(storage.fastStoreSequence(7L, tuple(x, x * 10), x - 4));
+    }
+    syncs.add(storage.fastStoreSequence(8L, tuple(1, 1), 0));
+    storage.deleteSequence(8L);
+    for (Future<Void> sync : syncs) {
+      sync.get();
+    }
+    log.close();
+
+    log = new SequenceLog(dir, 1024 * 1024);
+    storage = new FilePlatformPersistentStorage(1L, dir.resolve("1"), log);
+    assertEquals("second", storage.loadDataElementInLoader("state/map", getClass().getClassLoader()));
+    assertNull(storage.loadDataElement("gone"));
+    List<SequenceTuple> sequence = storage.loadSequence(7L);
+    assertEquals(5, sequence.size());
+    assertEquals(96L, sequence.get(0).localSequenceID);
+    assertEquals(1000L, sequence.get(4).globalSequenceID);
+    assertNull(storage.loadSequence(8L));
+    log.close();
+  }
+
+  @Test
+  public void testTornTailIsTruncated() throws Exception {
+    Path dir = folder.newFolder().toPath();
+    SequenceLog log = new SequenceLog(dir, 1024 * 1024);
+    FilePlatformPersistentStorage storage = new FilePlatformPersistentStorage(2L, dir.resolve("2"), log);
+    storage.fastStoreSequence(1L, tuple(1, 5), 0).get();
+    storage.fastStoreSequence(1L, tuple(2, 6), 0).get();
+    log.close();
+    // chop the last record in half as a crash in the middle of a write would
+    truncate(dir.resolve(SequenceLog.LOG_NAME), SequenceLog.RECORD_SIZE + SequenceLog.RECORD_SIZE / 2);
+
+    log = new SequenceLog(dir, 1024 * 1024);
+    storage = new FilePlatformPersistentStorage(2L, dir.resolve("2"), log);
+    List<SequenceTuple> sequence = storage.loadSequence(1L);
+    assertEquals(1, sequence.size());
+    assertEquals(5L, sequence.get(0).globalSequenceID);
+    storage.fastStoreSequence(1L, tuple(3, 7), 0).get();
+    log.close();
+
+    log = new SequenceLog(dir, 1024 * 1024);
+    storage = new FilePlatformPersistentStorage(2L, dir.resolve("2"), log);
+    assertEquals(2, storage.loadSequence(1L).size());
+    log.close();
+  }
+
+  @Test
+  public void testCompactionKeepsUnopenedConsumers() throws Exception {
+    Path dir = folder.newFolder().toPath();
+    SequenceLog log = new SequenceLog(dir, 1024 * 1024);
+    new FilePlatformPersistentStorage(3L, dir.resolve("3"), log).fastStoreSequence(1L, tuple(1, 1), 0).get();
+    log.close();
+
+    // consumer 3 is never opened while consumer 4 forces many compactions
+    log = new SequenceLog(dir, SequenceLog.RECORD_SIZE * 8);
+    FilePlatformPersistentStorage storage = new FilePlatformPersistentStorage(4L, dir.resolve("4"), log);
+    for (long x = 1; x <= 100; x++) {
+      storage.fastStoreSequence(1L, tuple(x, x), x).get();
+    }
+    log.close();
+
+    log = new SequenceLog(dir, 1024 * 1024);
+    assertEquals(1, new FilePlatformPersistentStorage(3L, dir.resolve("3"), log).loadSequence(1L).size());
+    assertEquals(1, new FilePlatformPersistentStorage(4L, dir.resolve("4"), log).loadSequence(1L).size());
+    log.close();
+  }
+
+  private static SequenceTuple tuple(long local, long global) {
+    SequenceTuple tuple = new SequenceTuple();
+    tuple.localSequenceID = local;
+    tuple.globalSequenceID = global;
+    return tuple;
+  }
+
+  private static void truncate(Path file, long size) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(size);
+    }
+  }
+}
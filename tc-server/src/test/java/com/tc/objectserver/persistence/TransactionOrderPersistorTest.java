@@ -245,6 +245,62 @@ public class TransactionOrderPersistorTest extends TCTestCase {
     assertEquals(0, this.orderPersistor.getIndexToReplay(this.client1, newTransaction));
   }
 
+  /**
+   * Test that regular clients tracked in memory are interleaved with permanent ones in the global order.
+   */
+  public void testRegularClientsInterleavedGlobally() {
+    ClientID regular = new ClientID(3);
+    this.orderPersistor.addTrackingForClient(regular, ProductID.STRIPE);
+    TransactionID oldest = new TransactionID(1L);
+
+    for (int i = 1; i < 40; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      this.orderPersistor.updateWithNewMessage(this.client1, transaction, oldest);
+      this.orderPersistor.updateWithNewMessage(regular, transaction, oldest);
+    }
+    for (int i = 1; i < 40; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      assertEquals((i - 1) * 2, this.orderPersistor.getIndexToReplay(this.client1, transaction));
+      assertEquals((i - 1) * 2 + 1, this.orderPersistor.getIndexToReplay(regular, transaction));
+    }
+    // a new message must invalidate the view used for replay
+    TransactionID newTransaction = new TransactionID(40);
+    this.orderPersistor.updateWithNewMessage(regular, newTransaction, new TransactionID(40));
+    assertEquals(39, this.orderPersistor.getIndexToReplay(regular, newTransaction));
+    assertEquals(-1, this.orderPersistor.getIndexToReplay(regular, new TransactionID(39)));
+  }
+
+  /**
+   * Test that concurrent updates from many clients produce a dense global order.
+   */
+  public void testConcurrentRegularClients() throws InterruptedException {
+    int count = 8;
+    ClientThread[] threads = new ClientThread[count];
+    for (int x = 0; x < count; x++) {
+      ClientID client = new ClientID(10 + x);
+      this.orderPersistor.addTrackingForClient(client, ProductID.STRIPE);
+      threads[x] = new ClientThread(this.orderPersistor, client, new TransactionID(1L), 1, 500);
+    }
+    for (ClientThread thread : threads) {
+      thread.start();
+    }
+    for (ClientThread thread : threads) {
+      thread.join();
+    }
+    assertEquals(count * 499L, this.orderPersistor.getReceivedTransactionCount());
+    boolean[] seen = new boolean[count * 499];
+    for (int x = 0; x < count; x++) {
+      int previous = -1;
+      for (int i = 1; i < 500; ++i) {
+        int index = this.orderPersistor.getIndexToReplay(new ClientID(10 + x), new TransactionID(i));
+        assertTrue(index > previous);
+        assertFalse(seen[index]);
+        seen[index] = true;
+        previous = index;
+      }
+    }
+  }
+
   public void testSaveReloadEmpty() throws IOException {
     // Create the storage.
     NullPlatformPersistentStorage storage = new NullPlatformPersistentStorage();
@@ -0,0 +1,75 @@
+/*
+ *  Copyright Terracotta, Inc.
+ *  Copyright IBM Corp. 2024, 2025
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+
+public class TransactionSequenceTest {
+
+  @Test
+  public void testTrimAndWrap() {
+    TransactionSequence sequence = new TransactionSequence();
+    // keep a window of 10 while going around the ring many times
+    for (long x = 1; x <= 1000; x++) {
+      sequence.trimBefore(x - 9);
+      sequence.add(x, x * 2);
+      assertEquals(Math.min(x, 10), sequence.size());
+    }
+    assertEquals(991L, sequence.localAt(0));
+    assertEquals(1000L, sequence.localAt(9));
+    assertEquals(2000L, sequence.globalFor(1000L));
+    assertEquals(-1L, sequence.globalFor(990L));
+  }
+
+  @Test
+  public void testGrowKeepsOrder() {
+    TransactionSequence sequence = new TransactionSequence();
+    for (long x = 1; x <= 10; x++) {
+      sequence.add(x, x);
+    }
+    sequence.trimBefore(6);
+    // wrapped ring has to be unrolled when it grows
+    for (long x = 11; x <= 100; x++) {
+      sequence.add(x, x);
+    }
+    assertEquals(95, sequence.size());
+    for (int x = 0; x < sequence.size(); x++) {
+      assertEquals(x + 6L, sequence.localAt(x));
+    }
+    TransactionSequence copy = sequence.copy();
+    assertEquals(95, copy.size());
+    assertEquals(100L, copy.lastGlobal());
+  }
+
+  @Test
+  public void testCountBefore() {
+    TransactionSequence sequence = new TransactionSequence();
+    for (long x = 1; x <= 5; x++) {
+      sequence.add(x, x * 10);
+    }
+    assertEquals(0, sequence.countBefore(10));
+    assertEquals(1, sequence.countBefore(11));
+    assertEquals(5, sequence.countBefore(100));
+    // out of order global ids fall back to a scan
+    sequence.add(6, 5);
+    assertEquals(1, sequence.countBefore(10));
+    assertEquals(6, sequence.countBefore(100));
+  }
+}
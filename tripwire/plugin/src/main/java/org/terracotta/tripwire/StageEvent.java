@@ -40,6 +40,15 @@ class StageEvent extends Event implements org.terracotta.tripwire.Event {
   private int max;
   @Timespan(Timespan.MILLISECONDS)
   private long runtime;
+  @Label("Queue Time")
+  @Timespan(Timespan.MICROSECONDS)
+  private long queued;
+  @Label("Max Queue Time")
+  @Timespan(Timespan.MICROSECONDS)
+  private long maxQueued;
+  @Label("Max Service Time")
+  @Timespan(Timespan.MICROSECONDS)
+  private long maxService;
 
   StageEvent(String stage, int threads)  {
     this.stage = stage;
@@ -53,6 +62,12 @@ class StageEvent extends Event implements org.terracotta.tripwire.Event {
     this.runtime = TimeUnit.NANOSECONDS.toMillis(runtime);
   }
   
+  void setLatency(long queued, long maxQueued, long maxService) {
+    this.queued = TimeUnit.NANOSECONDS.toMicros(queued);
+    this.maxQueued = TimeUnit.NANOSECONDS.toMicros(maxQueued);
+    this.maxService = TimeUnit.NANOSECONDS.toMicros(maxService);
+  }
+  
   boolean hasCount() {
     return count > 0;
   }
@@ -19,4 +19,9 @@ package org.terracotta.tripwire;
 public interface StageMonitor extends Monitor {
 
   public void eventOccurred(int backlog, long value);
+  /**
+   * @param queued nanos the event waited between enqueue and dequeue
+   * @param service nanos the handler spent on the event
+   */
+  public void latencyOccurred(long queued, long service);
 }
@@ -15,6 +15,7 @@
  */
 package org.terracotta.tripwire;
 
+import java.util.concurrent.atomic.LongAccumulator;
 import java.util.concurrent.atomic.LongAdder;
 import jdk.jfr.FlightRecorder;
 
@@ -25,6 +26,9 @@ class StageMonitorImpl implements StageMonitor {
   private final int threads;
   private final LongAdder count = new LongAdder();
   private final LongAdder runtime = new LongAdder();
+  private final LongAdder queued = new LongAdder();
+  private final LongAccumulator maxQueued = new LongAccumulator(Math::max, 0L);
+  private final LongAccumulator maxService = new LongAccumulator(Math::max, 0L);
   private volatile StageEvent event;
   private volatile int min = Integer.MAX_VALUE;
   private volatile int max = 0;
@@ -33,6 +37,7 @@ class StageMonitorImpl implements StageMonitor {
       StageEvent e = newEvent();
       if (e != null) {
         e.setStats(getCount(), min, max, getRuntime());
+        e.setLatency(queued.sumThenReset(), maxQueued.getThenReset(), maxService.getThenReset());
         min = Integer.MAX_VALUE;
         max = 0;
         if (e.hasCount()) {
@@ -61,6 +66,13 @@ class StageMonitorImpl implements StageMonitor {
     count.increment();
   }
   
+  @Override
+  public void latencyOccurred(long queue, long service) {
+    queued.add(queue);
+    maxQueued.accumulate(queue);
+    maxService.accumulate(service);
+  }
+  
   private int getCount() {
     return (int)count.sumThenReset();
   }
@@ -73,6 +73,10 @@ public class TripwireFactory {
       public void eventOccurred(int backlog, long value) {
       }
 
+      @Override
+      public void latencyOccurred(long queued, long service) {
+      }
+
       @Override
       public void register() {
       }